@@ -48,11 +48,13 @@ import android.view.animation.BounceInterpolator;
 import android.view.animation.Interpolator;
 import android.widget.Toast;
 
+import com.amazon.geo.mapsv2.CameraUpdateFactory;
 import com.amazon.geo.mapsv2.AmazonMap;
 import com.amazon.geo.mapsv2.Projection;
 import com.amazon.geo.mapsv2.model.BitmapDescriptor;
 import com.amazon.geo.mapsv2.model.BitmapDescriptorFactory;
 import com.amazon.geo.mapsv2.model.LatLng;
+import com.amazon.geo.mapsv2.model.LatLngBounds;
 import com.amazon.geo.mapsv2.model.Marker;
 import com.amazon.geo.mapsv2.model.MarkerOptions;
 
@@ -62,12 +64,17 @@ import org.onebusaway.android.app.Application;
 import org.onebusaway.android.io.elements.ObaReferences;
 import org.onebusaway.android.io.elements.ObaRoute;
 import org.onebusaway.android.io.elements.ObaStop;
+import org.onebusaway.android.map.ClusterEngine;
+import org.onebusaway.android.map.SpatialGridIndex;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import androidx.core.content.ContextCompat;
@@ -121,8 +128,81 @@ public class StopOverlay implements MarkerListeners {
 
     OnFocusChangedListener mOnFocusChangedListener;
 
+    /**
+     * Below this zoom level, stops are shown as clusters instead of individual markers
+     */
+    private static final float CLUSTER_ZOOM = 15f;
+
+    /**
+     * Number of zoom levels to zoom in when a cluster is tapped
+     */
+    private static final float CLUSTER_CLICK_ZOOM_IN = 2f;
+
+    private static final ClusterEngine.Locator<ObaStop> STOP_LOCATOR =
+            new ClusterEngine.Locator<ObaStop>() {
+                @Override
+                public String getId(ObaStop stop) {
+                    return stop.getId();
+                }
+
+                @Override
+                public double getLatitude(ObaStop stop) {
+                    return stop.getLatitude();
+                }
+
+                @Override
+                public double getLongitude(ObaStop stop) {
+                    return stop.getLongitude();
+                }
+            };
+
+    /**
+     * Computes clusters off of the main thread
+     */
+    private static final ExecutorService mClusterExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * All stops that have been loaded since the overlay was last cleared, including those whose
+     * markers have been removed from the map
+     */
+    private final ClusterEngine<ObaStop> mClusterEngine = new ClusterEngine<>(STOP_LOCATOR);
+
+    private final HashMap<ClusterEngine.Cluster<ObaStop>, Marker> mClusterMarkers =
+            new HashMap<>();
+
+    private final HashMap<Marker, ClusterEngine.Cluster<ObaStop>> mMarkerClusters =
+            new HashMap<>();
+
+    private final HashMap<String, BitmapDescriptor> mClusterIcons = new HashMap<>();
+
+    private boolean mShowingClusters = false;
+
+    /**
+     * False if stops should always be shown as individual markers, e.g., for the stops of a route
+     */
+    private boolean mClusteringEnabled = true;
+
+    /**
+     * Incremented each time clusters are requested, so results that arrive after a newer request
+     * are dropped
+     */
+    private int mClusterGeneration = 0;
+
     @Override
     public boolean markerClicked(Marker marker) {
+        ClusterEngine.Cluster<ObaStop> cluster = mMarkerClusters.get(marker);
+        if (cluster != null) {
+            if (cluster.getItem() != null) {
+                doFocusChange(cluster.getItem());
+            } else {
+                // Zoom in to split the cluster
+                mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(
+                        new LatLng(cluster.getLatitude(), cluster.getLongitude()),
+                        mMap.getCameraPosition().zoom + CLUSTER_CLICK_ZOOM_IN));
+            }
+            return true;
+        }
+
         long startTime = Long.MAX_VALUE, endTime = Long.MAX_VALUE;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
             startTime = SystemClock.elapsedRealtimeNanos();
@@ -198,6 +278,24 @@ public class StopOverlay implements MarkerListeners {
         // Make sure that the MarkerData has been initialized
         setupMarkerData();
         mMarkerData.populate(stops, routes);
+        if (mClusteringEnabled && mClusterEngine.add(stops) > 0 && mShowingClusters) {
+            updateClusters();
+        }
+    }
+
+    /**
+     * Enables or disables showing clusters of stops when zoomed out.  When disabled, every stop
+     * is always shown as its own marker so it can be tapped.
+     */
+    public synchronized void setClusteringEnabled(boolean enabled) {
+        if (mClusteringEnabled == enabled) {
+            return;
+        }
+        mClusteringEnabled = enabled;
+        if (!enabled) {
+            mClusterEngine.clear();
+            hideClusters();
+        }
     }
 
     public synchronized int size() {
@@ -216,6 +314,154 @@ public class StopOverlay implements MarkerListeners {
         if (mMarkerData != null) {
             mMarkerData.clear(clearFocusedStop);
         }
+        mClusterEngine.clear();
+        mClusterGeneration++;
+        removeClusterMarkers();
+    }
+
+    /**
+     * Shows clusters of stops instead of stop markers if clustering is enabled and the map is
+     * zoomed out below CLUSTER_ZOOM, or the stop markers if not.  Should be called when the map
+     * camera changes.
+     */
+    public synchronized void updateClusters() {
+        setupMarkerData();
+        final float zoom = mMap.getCameraPosition().zoom;
+        if (!mClusteringEnabled || zoom >= CLUSTER_ZOOM) {
+            hideClusters();
+            return;
+        }
+        if (!mShowingClusters) {
+            mShowingClusters = true;
+            mMarkerData.setMarkersVisible(false);
+        }
+
+        final LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+        final int generation = ++mClusterGeneration;
+        mClusterExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<ClusterEngine.Cluster<ObaStop>> clusters = mClusterEngine
+                        .getClusters(zoom, bounds.southwest.latitude,
+                                bounds.southwest.longitude, bounds.northeast.latitude,
+                                bounds.northeast.longitude);
+                mActivity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showClusters(generation, clusters);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Updates the cluster markers on the map to match the provided clusters, leaving markers for
+     * clusters that haven't changed in place
+     */
+    private synchronized void showClusters(int generation,
+            List<ClusterEngine.Cluster<ObaStop>> clusters) {
+        if (generation != mClusterGeneration || mActivity.isFinishing()) {
+            return;
+        }
+        ClusterEngine.Update<ObaStop> update = ClusterEngine.diff(mClusterMarkers.keySet(),
+                clusters);
+        for (ClusterEngine.Cluster<ObaStop> cluster : update.getRemoved()) {
+            Marker m = mClusterMarkers.remove(cluster);
+            mMarkerClusters.remove(m);
+            m.remove();
+        }
+        for (ClusterEngine.Cluster<ObaStop> cluster : update.getAdded()) {
+            MarkerOptions options = new MarkerOptions()
+                    .position(new LatLng(cluster.getLatitude(), cluster.getLongitude()));
+            ObaStop stop = cluster.getItem();
+            if (stop != null) {
+                options.icon(getBitmapDescriptorForBusStopDirection(stop.getDirection()))
+                        .flat(true)
+                        .anchor(getXPercentOffsetForDirection(stop.getDirection()),
+                                getYPercentOffsetForDirection(stop.getDirection()));
+            } else {
+                options.icon(getClusterIcon(cluster.getSize()))
+                        .anchor(0.5f, 0.5f);
+            }
+            Marker m = mMap.addMarker(options);
+            mClusterMarkers.put(cluster, m);
+            mMarkerClusters.put(m, cluster);
+        }
+        Log.d(TAG, "Clusters - removed " + update.getRemoved().size() + ", added "
+                + update.getAdded().size() + ", total " + mClusterMarkers.size());
+    }
+
+    /**
+     * Shows the stop markers instead of clusters, if clusters are currently shown
+     */
+    private void hideClusters() {
+        if (mShowingClusters) {
+            mShowingClusters = false;
+            mClusterGeneration++;
+            removeClusterMarkers();
+            mMarkerData.setMarkersVisible(true);
+        }
+    }
+
+    private void removeClusterMarkers() {
+        for (Marker m : mMarkerClusters.keySet()) {
+            m.remove();
+        }
+        mClusterMarkers.clear();
+        mMarkerClusters.clear();
+    }
+
+    /**
+     * Returns the icon for a cluster of the provided size, which shows the exact size for small
+     * clusters and a rounded-down size (e.g., "50+") for larger ones
+     */
+    private BitmapDescriptor getClusterIcon(int size) {
+        String label;
+        if (size < 10) {
+            label = String.valueOf(size);
+        } else if (size < 100) {
+            label = (size / 10 * 10) + "+";
+        } else if (size < 1000) {
+            label = (size / 100 * 100) + "+";
+        } else {
+            label = "1000+";
+        }
+        BitmapDescriptor icon = mClusterIcons.get(label);
+        if (icon == null) {
+            icon = BitmapDescriptorFactory.fromBitmap(createClusterIcon(label));
+            mClusterIcons.put(label, icon);
+        }
+        return icon;
+    }
+
+    private static Bitmap createClusterIcon(String label) {
+        Resources r = Application.get().getResources();
+        int px = r.getDimensionPixelSize(R.dimen.map_stop_cluster_size);
+        Bitmap bm = Bitmap.createBitmap(px, px, Bitmap.Config.ARGB_8888);
+        Canvas c = new Canvas(bm);
+
+        Paint fill = new Paint();
+        fill.setAntiAlias(true);
+        fill.setStyle(Paint.Style.FILL);
+        fill.setColor(r.getColor(R.color.theme_primary));
+        c.drawCircle(px / 2f, px / 2f, px / 2f - 1, fill);
+
+        Paint stroke = new Paint();
+        stroke.setAntiAlias(true);
+        stroke.setStyle(Paint.Style.STROKE);
+        stroke.setStrokeWidth(2.0f);
+        stroke.setColor(Color.WHITE);
+        c.drawCircle(px / 2f, px / 2f, px / 2f - 2, stroke);
+
+        Paint text = new Paint();
+        text.setAntiAlias(true);
+        text.setColor(Color.WHITE);
+        text.setTextAlign(Paint.Align.CENTER);
+        text.setTextSize(r.getDimension(R.dimen.map_stop_cluster_text_size));
+        float baseline = px / 2f - (text.descent() + text.ascent()) / 2f;
+        c.drawText(label, px / 2f, baseline, text);
+        return bm;
     }
 
     /**
@@ -680,15 +926,27 @@ public class StopOverlay implements MarkerListeners {
         /**
          * Stops-for-location REST API endpoint returns 100 markers per call by default
          * (see http://goo.gl/tzvrLb), so we'll support showing max results of around 2 calls
-         * before
-         * we completely clear the map and start over.  Note that this is a fuzzy max, since we
-         * don't
-         * want to clear the overlay in the middle of processing an API response and remove markers
-         * in
-         * the current view
+         * before we start removing markers that are far outside the current view.  Note that
+         * this is a fuzzy max, since we never remove markers in or near the current view
          */
         private static final int FUZZY_MAX_MARKER_COUNT = 200;
 
+        /**
+         * Size in degrees of the grid cells used to find markers that are outside the view
+         */
+        private static final double GRID_CELL_SIZE = 0.005;
+
+        /**
+         * Fraction of the visible region's width and height added to each side of it when
+         * deciding which markers are far enough out of view to remove
+         */
+        private static final double VIEWPORT_EXPANSION = 0.5;
+
+        /**
+         * Max number of hidden markers kept for reuse for each stop direction
+         */
+        private static final int MAX_RECYCLED_MARKERS = 50;
+
         /**
          * A cached set of markers currently shown on the map, up to roughly
          * FUZZY_MAX_MARKER_COUNT in size.  This is needed to add/remove markers from the map.
@@ -696,6 +954,19 @@ public class StopOverlay implements MarkerListeners {
          */
         private HashMap<String, Marker> mStopMarkers;
 
+        /**
+         * A grid of the markers in mStopMarkers by location, used to find the markers that are
+         * outside the current view without checking each one.  StopId is the key.
+         */
+        private SpatialGridIndex<Marker> mMarkerGrid;
+
+        /**
+         * Markers that have been removed from view and hidden, so they can be moved to a new
+         * stop instead of adding a new marker.  Since the icon and anchor depend on the stop
+         * direction, the markers are kept separately for each direction, which is the key.
+         */
+        private HashMap<String, ArrayDeque<Marker>> mRecycledMarkers;
+
         /**
          * A cached set of ObaStops that are currently shown on the map, up to roughly
          * FUZZY_MAX_MARKER_COUNT in size.  Since onMarkerClick() provides a marker, we need a
@@ -725,8 +996,15 @@ public class StopOverlay implements MarkerListeners {
          */
         private List<ObaRoute> mFocusedRoutes;
 
+        /**
+         * False if the stop markers are hidden because clusters are shown instead
+         */
+        private boolean mMarkersVisible = true;
+
         MarkerData() {
             mStopMarkers = new HashMap<String, Marker>();
+            mMarkerGrid = new SpatialGridIndex<Marker>(GRID_CELL_SIZE);
+            mRecycledMarkers = new HashMap<String, ArrayDeque<Marker>>();
             mStops = new HashMap<Marker, ObaStop>();
             mStopRoutes = new HashMap<String, ObaRoute>();
             mFocusedRoutes = new LinkedList<ObaRoute>();
@@ -734,47 +1012,56 @@ public class StopOverlay implements MarkerListeners {
 
         synchronized void populate(List<ObaStop> stops, List<ObaRoute> routes) {
             int count = 0;
+            int recycled = 0;
 
             if (mStopMarkers.size() >= FUZZY_MAX_MARKER_COUNT) {
-                // We've exceed our max, so clear the current marker cache and start over
-                Log.d(TAG, "Exceed max marker cache of " + FUZZY_MAX_MARKER_COUNT
-                        + ", clearing cache");
-                removeMarkersFromMap();
-                mStopMarkers.clear();
-                mStops.clear();
-
-                // Make sure the currently focused stop still exists on the map
-                if (mCurrentFocusStop != null && mFocusedRoutes != null) {
-                    addMarkerToMap(mCurrentFocusStop, mFocusedRoutes);
-                    count++;
-                }
+                // We've exceeded our max, so remove the markers that are far from the current view
+                int removed = removeMarkersOutsideView();
+                Log.d(TAG, "Exceeded max marker cache of " + FUZZY_MAX_MARKER_COUNT
+                        + ", removed " + removed + " markers outside of view");
             }
 
             for (ObaStop stop : stops) {
                 if (!mStopMarkers.containsKey(stop.getId())) {
-                    addMarkerToMap(stop, routes);
+                    if (addMarkerToMap(stop, routes)) {
+                        recycled++;
+                    }
                     count++;
                 }
             }
 
-            Log.d(TAG, "Added " + count + " markers, total markers = " + mStopMarkers.size());
+            Log.d(TAG, "Added " + count + " markers (" + recycled + " recycled), total markers = "
+                    + mStopMarkers.size());
         }
 
         /**
-         * Places a marker on the map for this stop, and adds it to our marker HashMap
+         * Places a marker on the map for this stop, and adds it to our marker HashMap.  A hidden
+         * marker for a stop with the same direction is reused if one is available.
          *
          * @param stop   ObaStop that should be shown on the map
          * @param routes A list of ObaRoutes that serve this stop
+         * @return true if a recycled marker was used, false if a new marker was added to the map
          */
-        private void addMarkerToMap(ObaStop stop, List<ObaRoute> routes) {
-            Marker m = mMap.addMarker(new MarkerOptions()
-                            .position(MapHelpV2.makeLatLng(stop.getLocation()))
-                            .icon(getBitmapDescriptorForBusStopDirection(stop.getDirection()))
-                            .flat(true)
-                            .anchor(getXPercentOffsetForDirection(stop.getDirection()),
-                                    getYPercentOffsetForDirection(stop.getDirection()))
-            );
+        private boolean addMarkerToMap(ObaStop stop, List<ObaRoute> routes) {
+            LatLng position = MapHelpV2.makeLatLng(stop.getLocation());
+            ArrayDeque<Marker> recycled = mRecycledMarkers.get(stop.getDirection());
+            Marker m = recycled != null ? recycled.poll() : null;
+            boolean reused = m != null;
+            if (reused) {
+                m.setPosition(position);
+                m.setVisible(mMarkersVisible);
+            } else {
+                m = mMap.addMarker(new MarkerOptions()
+                                .position(position)
+                                .icon(getBitmapDescriptorForBusStopDirection(stop.getDirection()))
+                                .visible(mMarkersVisible)
+                                .flat(true)
+                                .anchor(getXPercentOffsetForDirection(stop.getDirection()),
+                                        getYPercentOffsetForDirection(stop.getDirection()))
+                );
+            }
             mStopMarkers.put(stop.getId(), m);
+            mMarkerGrid.put(stop.getId(), stop.getLatitude(), stop.getLongitude(), m);
             mStops.put(m, stop);
             for (ObaRoute route : routes) {
                 // ObaRoutes may have already been added for other stops, so check before adding
@@ -782,6 +1069,77 @@ public class StopOverlay implements MarkerListeners {
                     mStopRoutes.put(route.getId(), route);
                 }
             }
+            return reused;
+        }
+
+        /**
+         * Removes the markers that are outside the visible region of the map, expanded by
+         * VIEWPORT_EXPANSION on each side.  The focused stop is always kept on the map.
+         *
+         * @return the number of markers removed
+         */
+        private int removeMarkersOutsideView() {
+            LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+            double latBuffer = (bounds.northeast.latitude - bounds.southwest.latitude)
+                    * VIEWPORT_EXPANSION;
+            double lonBuffer = (bounds.northeast.longitude - bounds.southwest.longitude)
+                    * VIEWPORT_EXPANSION;
+            if (lonBuffer < 0) {
+                // The view crosses the 180th meridian, so keep everything
+                return 0;
+            }
+            List<String> stopIds = mMarkerGrid.getIdsOutside(
+                    bounds.southwest.latitude - latBuffer,
+                    bounds.southwest.longitude - lonBuffer,
+                    bounds.northeast.latitude + latBuffer,
+                    bounds.northeast.longitude + lonBuffer);
+            List<String> removed = new ArrayList<>(stopIds.size());
+            for (String stopId : stopIds) {
+                if (mCurrentFocusStop != null && mCurrentFocusStop.getId().equals(stopId)) {
+                    continue;
+                }
+                Marker m = mStopMarkers.remove(stopId);
+                mMarkerGrid.remove(stopId);
+                ObaStop stop = mStops.remove(m);
+                recycleMarker(m, stop != null ? stop.getDirection() : null);
+                removed.add(stopId);
+            }
+            // Evict the same stops from the clusters, so they don't grow without bound either.
+            // Clusters keep their identity across removals, so only the cluster markers that
+            // contained these stops are replaced by the next diff.
+            mClusterEngine.remove(removed);
+            return removed.size();
+        }
+
+        /**
+         * Hides the marker so it can be reused for another stop with the same direction, or
+         * removes it from the map if enough markers are already waiting to be reused
+         */
+        private void recycleMarker(Marker m, String direction) {
+            ArrayDeque<Marker> recycled = mRecycledMarkers.get(direction);
+            if (recycled == null) {
+                recycled = new ArrayDeque<Marker>();
+                mRecycledMarkers.put(direction, recycled);
+            }
+            if (recycled.size() < MAX_RECYCLED_MARKERS) {
+                m.setVisible(false);
+                recycled.add(m);
+            } else {
+                m.remove();
+            }
+        }
+
+        /**
+         * Shows or hides all stop markers, including those added later
+         */
+        synchronized void setMarkersVisible(boolean visible) {
+            if (mMarkersVisible == visible) {
+                return;
+            }
+            mMarkersVisible = visible;
+            for (Marker m : mStopMarkers.values()) {
+                m.setVisible(visible);
+            }
         }
 
         synchronized ObaStop getStopFromMarker(Marker marker) {
@@ -923,6 +1281,11 @@ public class StopOverlay implements MarkerListeners {
             for (Map.Entry<String, Marker> entry : mStopMarkers.entrySet()) {
                 entry.getValue().remove();
             }
+            for (ArrayDeque<Marker> recycled : mRecycledMarkers.values()) {
+                for (Marker m : recycled) {
+                    m.remove();
+                }
+            }
         }
 
         /**
@@ -936,6 +1299,8 @@ public class StopOverlay implements MarkerListeners {
 
                 // Clear the data structures
                 mStopMarkers.clear();
+                mMarkerGrid.clear();
+                mRecycledMarkers.clear();
             }
             if (mStops != null) {
                 mStops.clear();
@@ -34,6 +34,7 @@ import android.graphics.BitmapFactory;
 import android.graphics.drawable.GradientDrawable;
 import android.location.Location;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -53,13 +54,19 @@ import com.amazon.geo.mapsv2.model.MarkerOptions;
 
 import org.onebusaway.android.R;
 import org.onebusaway.android.app.Application;
+import org.onebusaway.android.io.ObaApi;
 import org.onebusaway.android.io.elements.ObaRoute;
 import org.onebusaway.android.io.elements.ObaTrip;
 import org.onebusaway.android.io.elements.ObaTripDetails;
 import org.onebusaway.android.io.elements.ObaTripStatus;
 import org.onebusaway.android.io.elements.OccupancyState;
 import org.onebusaway.android.io.elements.Status;
+import org.onebusaway.android.io.request.ObaShapeRequest;
+import org.onebusaway.android.io.request.ObaShapeResponse;
 import org.onebusaway.android.io.request.ObaTripsForRouteResponse;
+import org.onebusaway.android.map.CompactShape;
+import org.onebusaway.android.map.ShapeCache;
+import org.onebusaway.android.map.ShapeInterpolator;
 import org.onebusaway.android.ui.TripDetailsActivity;
 import org.onebusaway.android.ui.TripDetailsListFragment;
 import org.onebusaway.android.util.ArrivalInfoUtils;
@@ -70,6 +77,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -134,6 +143,47 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
      */
     private static final float VEHICLE_MARKER_Z_INDEX = 1;
 
+    /**
+     * How often vehicle markers are moved along their trip shapes between updates from the
+     * server, and how often the "last updated" time in the vehicle info window is refreshed
+     */
+    private static final long MARKER_REFRESH_PERIOD = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Max time after a vehicle's position was observed that it will be extrapolated along its
+     * trip shape
+     */
+    private static final long MAX_EXTRAPOLATION_TIME = TimeUnit.MINUTES.toMillis(2);
+
+    /**
+     * Vehicles that appear to move faster than this (in meters per second) between updates
+     * aren't extrapolated, since the data is likely bad
+     */
+    private static final double MAX_VEHICLE_SPEED = 40;
+
+    private static final int MAX_CACHED_SHAPES = 20;
+
+    /**
+     * Loads trip shapes off of the main thread
+     */
+    private static final ExecutorService mShapeExecutor = Executors.newSingleThreadExecutor();
+
+    // ShapeId -> interpolator for the points of the shape
+    private final LruCache<String, ShapeInterpolator> mShapes = new LruCache<>(MAX_CACHED_SHAPES);
+
+    // ShapeIds that are currently being loaded
+    private final HashSet<String> mLoadingShapes = new HashSet<>();
+
+    private final Handler mPositionRefreshHandler = new Handler();
+
+    private final Runnable mPositionRefresh = new Runnable() {
+        public void run() {
+            if (mMarkerData != null && mMarkerData.updateInterpolatedPositions()) {
+                mPositionRefreshHandler.postDelayed(this, MARKER_REFRESH_PERIOD);
+            }
+        }
+    };
+
     public VehicleOverlay(Activity activity, AmazonMap map) {
         mActivity = activity;
         mMap = map;
@@ -168,6 +218,9 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
         mLastResponse = response;
         // Show the markers on the map
         mMarkerData.populate(routeIds, response);
+        // Move the markers along their trips until the next response
+        mPositionRefreshHandler.removeCallbacks(mPositionRefresh);
+        mPositionRefreshHandler.postDelayed(mPositionRefresh, MARKER_REFRESH_PERIOD);
     }
 
     public synchronized int size() {
@@ -182,6 +235,7 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
      * Clears any vehicle markers from the map
      */
     public synchronized void clear() {
+        mPositionRefreshHandler.removeCallbacks(mPositionRefresh);
         if (mMarkerData != null) {
             mMarkerData.clear();
             mMarkerData = null;
@@ -565,6 +619,120 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
         }
     }
 
+    /**
+     * Loads the shape with the provided ID in the background, if it's not already loaded, so
+     * vehicles running trips with this shape can be moved along it
+     *
+     * @param shapeId ID of the shape to load
+     */
+    private void loadShape(final String shapeId) {
+        if (mShapes.get(shapeId) != null || mLoadingShapes.contains(shapeId)) {
+            return;
+        }
+        mLoadingShapes.add(shapeId);
+        final Context context = mActivity.getApplicationContext();
+        mShapeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                CompactShape compactShape = ShapeCache.getInstance().getById(shapeId);
+                if (compactShape == null) {
+                    ObaShapeResponse response = ObaShapeRequest.newRequest(context, shapeId)
+                            .call();
+                    if (response.getCode() == ObaApi.OBA_OK) {
+                        compactShape = ShapeCache.getInstance().putById(shapeId, response);
+                    } else {
+                        Log.d(TAG, "Couldn't load shape " + shapeId + ": " + response.getCode());
+                    }
+                }
+                final ShapeInterpolator shape;
+                if (compactShape != null && compactShape.size() > 0) {
+                    shape = compactShape.createInterpolator();
+                } else {
+                    shape = null;
+                }
+                mActivity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLoadingShapes.remove(shapeId);
+                        if (shape != null) {
+                            mShapes.put(shapeId, shape);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * The progress of a vehicle along its trip as of the last update from the server, used to
+     * extrapolate its position until the next update
+     */
+    private static final class VehicleMotion {
+
+        final String mShapeId;
+
+        // Distance along the trip (in meters) as of mFixTime
+        double mDistance;
+
+        double mTotalDistance;
+
+        // Server time when the vehicle was at mDistance
+        long mFixTime;
+
+        // SystemClock.elapsedRealtime() when the vehicle was at mDistance
+        long mFixElapsedTime;
+
+        // Speed along the trip in meters per second, or NaN if it isn't known
+        double mSpeed = Double.NaN;
+
+        VehicleMotion(String shapeId) {
+            mShapeId = shapeId;
+        }
+
+        /**
+         * Updates the progress along the trip, and estimates the speed from the change in
+         * distance since the previous update
+         *
+         * @param fixTime    server time when the vehicle was at the distance along the trip
+         * @param serverTime server time of the response that contained the distance
+         */
+        void update(double distance, double totalDistance, long fixTime, long serverTime) {
+            if (mFixTime != 0) {
+                if (fixTime <= mFixTime) {
+                    // The vehicle hasn't reported a new position since the last update
+                    return;
+                }
+                double speed = (distance - mDistance)
+                        / ((fixTime - mFixTime) / (double) TimeUnit.SECONDS.toMillis(1));
+                if (speed >= 0 && speed <= MAX_VEHICLE_SPEED) {
+                    // Smooth the speed over updates
+                    mSpeed = Double.isNaN(mSpeed) ? speed : (mSpeed + speed) / 2;
+                } else {
+                    mSpeed = Double.NaN;
+                }
+            }
+            mDistance = distance;
+            mTotalDistance = totalDistance;
+            mFixTime = fixTime;
+            // Extrapolate from when the vehicle was observed, not when the response was received
+            mFixElapsedTime = SystemClock.elapsedRealtime() - Math.max(0, serverTime - fixTime);
+        }
+
+        /**
+         * @return the estimated distance along the trip now, or NaN if it can't be estimated
+         */
+        double getDistance() {
+            if (Double.isNaN(mSpeed)) {
+                return Double.NaN;
+            }
+            long elapsed = Math.min(SystemClock.elapsedRealtime() - mFixElapsedTime,
+                    MAX_EXTRAPOLATION_TIME);
+            double distance = mDistance
+                    + mSpeed * elapsed / (double) TimeUnit.SECONDS.toMillis(1);
+            return Math.min(distance, mTotalDistance);
+        }
+    }
+
 
     @Override
     public boolean markerClicked(Marker marker) {
@@ -603,11 +771,21 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
          */
         private HashMap<String, Marker> mVehicleMarkers;
 
+        /**
+         * The progress along their trips of vehicles with real-time info, used to move the
+         * markers between updates.  activeTripId is the key.
+         */
+        private HashMap<String, VehicleMotion> mMotions;
+
+        // Reused to hold interpolated positions
+        private final double[] mPosition = new double[2];
+
         private static final int INITIAL_HASHMAP_SIZE = 5;
 
         MarkerData() {
             mVehicles = new HashMap<>(INITIAL_HASHMAP_SIZE);
             mVehicleMarkers = new HashMap<>(INITIAL_HASHMAP_SIZE);
+            mMotions = new HashMap<>(INITIAL_HASHMAP_SIZE);
         }
 
         /**
@@ -648,6 +826,8 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
                             isRealtime = false;
                         }
 
+                        updateMotion(isRealtime, status, response);
+
                         Marker m = mVehicleMarkers.get(status.getActiveTripId());
 
                         if (m == null) {
@@ -679,6 +859,86 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
                     mVehicleUncoloredIcons.missCount()));
         }
 
+        /**
+         * Updates the progress of the vehicle along its trip from its status, so the marker can
+         * be moved along the trip shape until the next update
+         *
+         * @param isRealtime true if the status contains real-time info, false if it doesn't
+         * @param status     the vehicles status
+         * @param response   the response which contained the provided status
+         */
+        private void updateMotion(boolean isRealtime, ObaTripStatus status,
+                                  ObaTripsForRouteResponse response) {
+            String tripId = status.getActiveTripId();
+            ObaTrip trip = response.getTrip(tripId);
+            Double distance = status.getDistanceAlongTrip();
+            if (!isRealtime || distance == null || trip == null || trip.getShapeId() == null) {
+                mMotions.remove(tripId);
+                return;
+            }
+            VehicleMotion motion = mMotions.get(tripId);
+            if (motion == null || !trip.getShapeId().equals(motion.mShapeId)) {
+                motion = new VehicleMotion(trip.getShapeId());
+                mMotions.put(tripId, motion);
+            }
+            // Time of the AVL fix that the distance along the trip is based on
+            long fixTime = status.getLastUpdateTime();
+            if (fixTime == 0) {
+                fixTime = status.getLastLocationUpdateTime();
+            }
+            if (fixTime == 0) {
+                fixTime = response.getCurrentTime();
+            }
+            Double total = status.getTotalDistanceAlongTrip();
+            motion.update(distance, total != null ? total : Double.MAX_VALUE, fixTime,
+                    response.getCurrentTime());
+            loadShape(trip.getShapeId());
+        }
+
+        /**
+         * Returns the current position of the vehicle running the trip extrapolated along the
+         * trip shape, or null if it can't be extrapolated (e.g., the shape hasn't been loaded
+         * yet or the speed of the vehicle isn't known)
+         *
+         * @param tripId activeTripId of the vehicle
+         */
+        private LatLng getInterpolatedPosition(String tripId) {
+            VehicleMotion motion = mMotions.get(tripId);
+            if (motion == null) {
+                return null;
+            }
+            double distance = motion.getDistance();
+            if (Double.isNaN(distance)) {
+                return null;
+            }
+            ShapeInterpolator shape = mShapes.get(motion.mShapeId);
+            if (shape == null) {
+                return null;
+            }
+            shape.getPosition(distance, mPosition);
+            return MapHelpV2.makeLatLng(mPosition[0], mPosition[1]);
+        }
+
+        /**
+         * Moves each vehicle marker to its extrapolated position along its trip shape
+         *
+         * @return true if there are vehicles that should continue to be moved, false if there
+         * aren't
+         */
+        synchronized boolean updateInterpolatedPositions() {
+            if (mMotions == null) {
+                return false;
+            }
+            for (Map.Entry<String, VehicleMotion> entry : mMotions.entrySet()) {
+                Marker m = mVehicleMarkers.get(entry.getKey());
+                LatLng position = getInterpolatedPosition(entry.getKey());
+                if (m != null && position != null) {
+                    m.setPosition(position);
+                }
+            }
+            return !mMotions.isEmpty();
+        }
+
         /**
          * Places a marker on the map for this vehicle, and adds it to our marker HashMap
          *
@@ -718,8 +978,13 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
             mVehicles.put(m, status);
             // Update vehicle position
             Location markerLoc = MapHelpV2.makeLocation(m.getPosition());
-            // If its a small distance, animate the movement
-            if (l.distanceTo(markerLoc) < MAX_VEHICLE_ANIMATION_DISTANCE) {
+            LatLng interpolated = getInterpolatedPosition(status.getActiveTripId());
+            if (interpolated != null) {
+                // The marker is moved along the trip shape every MARKER_REFRESH_PERIOD, so
+                // don't start an animation that would conflict with it
+                m.setPosition(interpolated);
+            } else if (l.distanceTo(markerLoc) < MAX_VEHICLE_ANIMATION_DISTANCE) {
+                // If its a small distance, animate the movement
                 AnimationUtil.animateMarkerTo(m, MapHelpV2.makeLatLng(l));
             } else {
                 // Just snap the marker to the new location - large animations look weird
@@ -755,6 +1020,7 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
                         // Remove the marker from map and data structures
                         entry.getValue().remove();
                         mVehicles.remove(m);
+                        mMotions.remove(tripId);
                         iterator.remove();
                         removed++;
                     }
@@ -771,6 +1037,7 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
                         // Remove the marker from map and data structures
                         entry.getValue().remove();
                         mVehicles.remove(m);
+                        mMotions.remove(tripId);
                         mVehicleMarkers.remove(tripId);
                         removed++;
                     }
@@ -836,6 +1103,10 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
                 mVehicles.clear();
                 mVehicles = null;
             }
+            if (mMotions != null) {
+                mMotions.clear();
+                mMotions = null;
+            }
         }
 
         synchronized int size() {
@@ -989,8 +1260,6 @@ public class VehicleOverlay implements AmazonMap.OnInfoWindowClickListener, Mark
             return view;
         }
 
-        private final long MARKER_REFRESH_PERIOD = TimeUnit.SECONDS.toMillis(1);
-
         private final Handler mMarkerRefreshHandler = new Handler();
 
         private final Runnable mMarkerRefresh = new Runnable() {
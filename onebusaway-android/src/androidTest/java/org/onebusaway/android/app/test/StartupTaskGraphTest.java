@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.app.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.app.StartupTaskGraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the order that startup tasks run in, and that awaiting a task that hasn't started runs
+ * it on the calling thread
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupTaskGraphTest {
+
+    @Test
+    public void testOrder() throws InterruptedException {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        StartupTaskGraph graph = new StartupTaskGraph();
+        graph.add(new Task("main", true, order));
+        graph.add(new Task("slow", false, order) {
+            @Override
+            protected void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // Continue
+                }
+                super.run();
+            }
+        });
+        StartupTaskGraph.Task region = graph.add(new Task("region", false, order));
+        StartupTaskGraph.Task dependent = graph.add(new Task("dependent", false, order, region));
+        graph.start();
+
+        // Main thread tasks are done when start() returns
+        assertEquals("main", order.get(0));
+
+        // The background thread is still on the slow task, so the region runs on this thread
+        region.await();
+        assertEquals("region", order.get(1));
+
+        dependent.await();
+        assertTrue(dependent.isDone());
+        assertEquals(4, order.size());
+        assertTrue(order.indexOf("dependent") > order.indexOf("region"));
+        assertTrue(region.getDuration() >= 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMainDependsOnBackground() {
+        StartupTaskGraph graph = new StartupTaskGraph();
+        List<String> order = new ArrayList<>();
+        StartupTaskGraph.Task background = graph.add(new Task("background", false, order));
+        graph.add(new Task("main", true, order, background));
+    }
+
+    private static class Task extends StartupTaskGraph.Task {
+
+        private final List<String> mOrder;
+
+        Task(String name, boolean mainThread, List<String> order,
+                StartupTaskGraph.Task... dependencies) {
+            super(name, mainThread, dependencies);
+            mOrder = order;
+        }
+
+        @Override
+        protected void run() {
+            mOrder.add(getName());
+        }
+    }
+}
@@ -15,18 +15,27 @@
  */
 package org.onebusaway.android.io.test;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.VisibilityChecker;
 
 import org.junit.Test;
 import org.onebusaway.android.io.JacksonSerializer;
 import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.request.ObaArrivalInfoResponse;
 import org.onebusaway.android.io.request.ObaResponse;
 import org.onebusaway.android.io.request.ObaStopsForLocationResponse;
+import org.onebusaway.android.io.request.ObaStopsForRouteResponse;
+import org.onebusaway.android.io.request.ObaTripsForRouteResponse;
 import org.onebusaway.android.mock.Resources;
 
 import android.util.Log;
 
 import java.io.Reader;
+import java.util.concurrent.TimeUnit;
 
 import static androidx.test.InstrumentationRegistry.getTargetContext;
 import static junit.framework.Assert.assertEquals;
@@ -83,6 +92,56 @@ public class JacksonTest extends ObaTestCase {
         assertNotNull(response);
     }
 
+    /**
+     * Makes sure that binding responses directly from the token stream gives the same result as
+     * the previous approach of materializing the entire JsonNode tree first, and logs the time
+     * taken by each approach for the largest fixtures
+     */
+    @Test
+    public void testStreamingMatchesTree() throws Exception {
+        mSerializer = (JacksonSerializer) JacksonSerializer.getInstance();
+        compareStreamingToTree("trips_for_route_hart_5", ObaTripsForRouteResponse.class);
+        compareStreamingToTree("stops_for_location_downtown_seattle",
+                ObaStopsForLocationResponse.class);
+        compareStreamingToTree("arrivals_and_departures_for_stop_hart_6497",
+                ObaArrivalInfoResponse.class);
+        compareStreamingToTree("stops_for_route_1_44", ObaStopsForRouteResponse.class);
+    }
+
+    private <T> void compareStreamingToTree(String resource, Class<T> cls) throws Exception {
+        final int iterations = 20;
+        ObjectMapper treeMapper = new ObjectMapper();
+        treeMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        treeMapper.setVisibilityChecker(
+                VisibilityChecker.Std.defaultInstance()
+                        .withFieldVisibility(JsonAutoDetect.Visibility.ANY));
+
+        T streamed = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Reader reader = Resources.read(getTargetContext(), Resources.getTestUri(resource));
+            streamed = mSerializer.deserialize(reader, cls);
+        }
+        long streamingTime = System.nanoTime() - start;
+
+        T tree = null;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Reader reader = Resources.read(getTargetContext(), Resources.getTestUri(resource));
+            JsonNode node = treeMapper.readTree(reader);
+            tree = treeMapper.treeToValue(node, cls);
+        }
+        long treeTime = System.nanoTime() - start;
+
+        assertNotNull(streamed);
+        assertNotNull(tree);
+        assertEquals(mSerializer.serialize(tree), mSerializer.serialize(streamed));
+
+        Log.d("JacksonTest", resource + " - streaming: "
+                + TimeUnit.NANOSECONDS.toMillis(streamingTime / iterations) + "ms, tree: "
+                + TimeUnit.NANOSECONDS.toMillis(treeTime / iterations) + "ms");
+    }
+
     @JsonPropertyOrder(value = {"code", "version", "text"})
     public class MockResponse {
 
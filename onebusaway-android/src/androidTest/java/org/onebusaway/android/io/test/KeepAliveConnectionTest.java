@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io.test;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.ObaConnection;
+import org.onebusaway.android.io.ObaKeepAliveConnectionFactory;
+import org.onebusaway.android.io.request.ObaArrivalInfoResponse;
+import org.onebusaway.android.mock.Resources;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests ObaKeepAliveConnectionFactory against a local stand-in HTTP server that supports
+ * keep-alive and gzip, and logs the bytes on the wire and latency for a series of requests
+ */
+@RunWith(AndroidJUnit4.class)
+public class KeepAliveConnectionTest {
+
+    private static final String TAG = "KeepAliveConnectionTest";
+
+    private static final int REQUEST_COUNT = 10;
+
+    private StandInServer mServer;
+
+    private byte[] mBody;
+
+    @Before
+    public void before() throws IOException {
+        InputStream in = getTargetContext().getContentResolver().openInputStream(
+                Resources.getTestUri("arrivals_and_departures_for_stop_1_29261"));
+        mBody = IOUtils.toByteArray(in);
+        in.close();
+        mServer = new StandInServer(mBody);
+        mServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testKeepAliveAndGzip() throws IOException {
+        ObaKeepAliveConnectionFactory factory = new ObaKeepAliveConnectionFactory.Builder()
+                .setConnectTimeout(5000)
+                .setReadTimeout(5000)
+                .setMaxConnectionsPerHost(2)
+                .build();
+        Uri uri = Uri.parse("http://127.0.0.1:" + mServer.getPort()
+                + "/api/where/arrivals-and-departures-for-stop/1_29261.json");
+
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            ObaConnection conn = factory.newConnection(uri);
+            try {
+                assertEquals(200, conn.getResponseCode());
+                ObaArrivalInfoResponse response = ObaApi
+                        .getSerializer(ObaArrivalInfoResponse.class)
+                        .deserialize(conn.get(), ObaArrivalInfoResponse.class);
+                ObaTestCase.assertOK(response);
+            } finally {
+                conn.disconnect();
+            }
+        }
+
+        assertEquals(REQUEST_COUNT, factory.getRequestCount());
+        assertTrue(mServer.isGzipRequested());
+        // Compressed bytes on the wire should be well below the decoded size
+        assertTrue(factory.getBytesReceived() < factory.getBytesDecoded());
+        // All requests should have been served over a single reused socket
+        assertEquals(1, mServer.getAcceptedCount());
+
+        Log.d(TAG, "Requests: " + factory.getRequestCount()
+                + ", bytes on wire: " + factory.getBytesReceived()
+                + ", uncompressed bytes: " + (long) mBody.length * REQUEST_COUNT
+                + ", avg latency: " + factory.getTotalLatencyMillis() / REQUEST_COUNT + "ms");
+    }
+
+    /**
+     * Minimal HTTP/1.1 server that returns the same body for every request on a connection until
+     * the client closes it
+     */
+    private static class StandInServer extends Thread {
+
+        private final ServerSocket mSocket;
+
+        private final byte[] mBody;
+
+        private final byte[] mGzipBody;
+
+        private final AtomicInteger mAccepted = new AtomicInteger();
+
+        private volatile boolean mGzipRequested = false;
+
+        StandInServer(byte[] body) throws IOException {
+            mSocket = new ServerSocket(0);
+            mBody = body;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(body);
+            gzip.close();
+            mGzipBody = out.toByteArray();
+        }
+
+        int getPort() {
+            return mSocket.getLocalPort();
+        }
+
+        int getAcceptedCount() {
+            return mAccepted.get();
+        }
+
+        boolean isGzipRequested() {
+            return mGzipRequested;
+        }
+
+        void shutdown() throws IOException {
+            mSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!mSocket.isClosed()) {
+                try {
+                    final Socket client = mSocket.accept();
+                    mAccepted.incrementAndGet();
+                    new Thread() {
+                        @Override
+                        public void run() {
+                            serve(client);
+                        }
+                    }.start();
+                } catch (IOException e) {
+                    // Server was shut down
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(client.getInputStream(), "US-ASCII"));
+                OutputStream out = client.getOutputStream();
+                String requestLine;
+                while ((requestLine = in.readLine()) != null) {
+                    if (requestLine.isEmpty()) {
+                        continue;
+                    }
+                    boolean gzip = false;
+                    String header;
+                    while ((header = in.readLine()) != null && !header.isEmpty()) {
+                        if (header.toLowerCase().startsWith("accept-encoding:")
+                                && header.toLowerCase().contains("gzip")) {
+                            gzip = true;
+                        }
+                    }
+                    mGzipRequested |= gzip;
+                    byte[] body = gzip ? mGzipBody : mBody;
+                    StringBuilder response = new StringBuilder("HTTP/1.1 200 OK\r\n")
+                            .append("Content-Type: application/json\r\n")
+                            .append("Content-Length: ").append(body.length).append("\r\n")
+                            .append("Connection: keep-alive\r\n");
+                    if (gzip) {
+                        response.append("Content-Encoding: gzip\r\n");
+                    }
+                    response.append("\r\n");
+                    out.write(response.toString().getBytes("US-ASCII"));
+                    out.write(body);
+                    out.flush();
+                }
+                client.close();
+            } catch (IOException e) {
+                Log.e(TAG, e.toString());
+            }
+        }
+    }
+}
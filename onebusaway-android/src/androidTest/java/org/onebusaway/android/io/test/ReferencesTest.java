@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.elements.ObaReferencesElement;
+import org.onebusaway.android.io.elements.ObaStop;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Tests dereferencing elements by ID from the references in OBA REST API responses, and
+ * compares the time taken against a linear search of the stop array
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReferencesTest {
+
+    private static final String TAG = "ReferencesTest";
+
+    private static final int STOP_COUNT = 1000;
+
+    @Test
+    public void testStopLookups() {
+        ObaReferencesElement refs = createReferences(STOP_COUNT);
+        String[] ids = new String[STOP_COUNT];
+        for (int i = 0; i < STOP_COUNT; i++) {
+            ids[i] = "1_" + i;
+        }
+
+        // Indexed lookups
+        long start = System.nanoTime();
+        for (String id : ids) {
+            ObaStop stop = refs.getStop(id);
+            assertNotNull(stop);
+            assertEquals(id, stop.getId());
+        }
+        long indexedTime = System.nanoTime() - start;
+
+        // Linear search, as done before the index was added
+        List<ObaStop> all = refs.getStops(ids);
+        assertEquals(STOP_COUNT, all.size());
+        ObaStop[] array = all.toArray(new ObaStop[all.size()]);
+        start = System.nanoTime();
+        for (String id : ids) {
+            assertNotNull(linearSearch(array, id));
+        }
+        long linearTime = System.nanoTime() - start;
+
+        // Batch lookup
+        start = System.nanoTime();
+        List<ObaStop> batch = refs.getStops(ids);
+        long batchTime = System.nanoTime() - start;
+        assertEquals(STOP_COUNT, batch.size());
+        for (int i = 0; i < STOP_COUNT; i++) {
+            assertEquals(ids[i], batch.get(i).getId());
+        }
+
+        assertNull(refs.getStop("not_a_stop"));
+        assertEquals(0, refs.getStops(new String[]{"not_a_stop"}).size());
+
+        Log.d(TAG, STOP_COUNT + " stops - indexed: "
+                + TimeUnit.NANOSECONDS.toMicros(indexedTime) + "us, linear: "
+                + TimeUnit.NANOSECONDS.toMicros(linearTime) + "us, batch: "
+                + TimeUnit.NANOSECONDS.toMicros(batchTime) + "us");
+    }
+
+    @Test
+    public void testEmptyReferences() {
+        ObaReferencesElement refs = ObaReferencesElement.EMPTY_OBJECT;
+        assertNull(refs.getStop("1_1"));
+        assertNull(refs.getRoute("1_1"));
+        assertNull(refs.getTrip("1_1"));
+        assertNull(refs.getAgency("1"));
+        assertNull(refs.getSituation("1"));
+        assertEquals(0, refs.getRoutes(new String[]{"1_1"}).size());
+    }
+
+    private static ObaStop linearSearch(ObaStop[] stops, String id) {
+        for (ObaStop stop : stops) {
+            if (stop.getId().equals(id)) {
+                return stop;
+            }
+        }
+        return null;
+    }
+
+    private static ObaReferencesElement createReferences(int stopCount) {
+        StringBuilder json = new StringBuilder("{\"stops\":[");
+        for (int i = 0; i < stopCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"1_").append(i)
+                    .append("\",\"lat\":47.6,\"lon\":-122.3,\"name\":\"Stop ").append(i)
+                    .append("\",\"code\":\"").append(i).append("\"}");
+        }
+        json.append("]}");
+        return ObaApi.getSerializer(ObaReferencesElement.class)
+                .deserializeFromResponse(json.toString(), ObaReferencesElement.class);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io.test;
+
+import org.junit.Test;
+import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.ObaRequestCoalescer;
+import org.onebusaway.android.io.request.ObaArrivalInfoRequest;
+import org.onebusaway.android.io.request.ObaArrivalInfoResponse;
+
+import android.net.Uri;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+/**
+ * Tests deduplication of identical OBA REST API requests
+ */
+public class RequestCoalescerTest extends ObaTestCase {
+
+    private static final int THREAD_COUNT = 5;
+
+    @Test
+    public void testConcurrentRequestsShareResult() throws Exception {
+        final ObaRequestCoalescer coalescer = ObaRequestCoalescer.getInstance();
+        final Uri uri = Uri.parse("http://example.com/api/where/test.json");
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ObaRequestCoalescer.Response[] results =
+                new ObaRequestCoalescer.Response[THREAD_COUNT];
+
+        final Callable<ObaRequestCoalescer.Response> loader =
+                new Callable<ObaRequestCoalescer.Response>() {
+                    @Override
+                    public ObaRequestCoalescer.Response call() throws Exception {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        release.await();
+                        return ObaRequestCoalescer.Response.fromError(ObaApi.OBA_OK, "");
+                    }
+                };
+
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    results[index] = coalescer.call(uri, 0, false, loader);
+                }
+            };
+            threads[i].start();
+            if (i == 0) {
+                // Make sure the first request is in flight before the others are made
+                started.await();
+            }
+        }
+        // Give the other threads a chance to join the in-flight request
+        Thread.sleep(200);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loads.get());
+        for (ObaRequestCoalescer.Response result : results) {
+            assertSame(results[0], result);
+        }
+    }
+
+    @Test
+    public void testInterruptedWaiterDoesNotRetry() throws Exception {
+        final ObaRequestCoalescer coalescer = ObaRequestCoalescer.getInstance();
+        final Uri uri = Uri.parse("http://example.com/api/where/interrupted.json");
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ObaRequestCoalescer.Response[] waiterResult = new ObaRequestCoalescer.Response[1];
+
+        final Callable<ObaRequestCoalescer.Response> loader =
+                new Callable<ObaRequestCoalescer.Response>() {
+                    @Override
+                    public ObaRequestCoalescer.Response call() throws Exception {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        release.await();
+                        return ObaRequestCoalescer.Response.fromError(ObaApi.OBA_OK, "");
+                    }
+                };
+
+        Thread owner = new Thread() {
+            @Override
+            public void run() {
+                coalescer.call(uri, 0, false, loader);
+            }
+        };
+        owner.start();
+        started.await();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                waiterResult[0] = coalescer.call(uri, 0, false, loader);
+            }
+        };
+        waiter.start();
+        // Give the waiter a chance to join the in-flight request
+        Thread.sleep(200);
+        waiter.interrupt();
+        waiter.join();
+        release.countDown();
+        owner.join();
+
+        assertEquals(1, loads.get());
+        assertEquals(ObaApi.OBA_IO_EXCEPTION, waiterResult[0].getCode());
+    }
+
+    @Test
+    public void testArrivalsReusedWithinWindow() {
+        ObaRequestCoalescer coalescer = ObaRequestCoalescer.getInstance();
+        long executed = coalescer.getExecutedCount();
+        long reused = coalescer.getReusedCount();
+
+        ObaArrivalInfoResponse first = ObaArrivalInfoRequest
+                .newRequest(getTargetContext(), "1_29261").call();
+        assertOK(first);
+        ObaArrivalInfoResponse second = ObaArrivalInfoRequest
+                .newRequest(getTargetContext(), "1_29261").call();
+
+        // Callers get their own copy of the shared response
+        assertNotSame(first, second);
+        assertEquals(first.getArrivalInfo().length, second.getArrivalInfo().length);
+        assertEquals(executed + 1, coalescer.getExecutedCount());
+        assertEquals(reused + 1, coalescer.getReusedCount());
+    }
+
+    @Test
+    public void testForceRefreshBypassesReuse() {
+        ObaRequestCoalescer coalescer = ObaRequestCoalescer.getInstance();
+        ObaArrivalInfoResponse first = ObaArrivalInfoRequest
+                .newRequest(getTargetContext(), "1_29261").call();
+        assertOK(first);
+        long executed = coalescer.getExecutedCount();
+        long reused = coalescer.getReusedCount();
+
+        ObaArrivalInfoRequest request = ObaArrivalInfoRequest
+                .newRequest(getTargetContext(), "1_29261");
+        request.setForceRefresh(true);
+        assertOK(request.call());
+
+        assertEquals(executed + 1, coalescer.getExecutedCount());
+        assertEquals(reused, coalescer.getReusedCount());
+    }
+}
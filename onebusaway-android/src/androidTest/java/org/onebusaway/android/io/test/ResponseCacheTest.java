@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.ObaResponseCache;
+import org.onebusaway.android.io.request.ObaArrivalInfoRequest;
+import org.onebusaway.android.io.request.ObaArrivalInfoResponse;
+import org.onebusaway.android.io.request.ObaShapeRequest;
+import org.onebusaway.android.io.request.ObaShapeResponse;
+
+import android.net.Uri;
+
+import java.io.File;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the on-disk cache for responses to OBA REST API requests for rarely-changing data
+ */
+public class ResponseCacheTest extends ObaTestCase {
+
+    private ObaResponseCache mCache;
+
+    private ObaResponseCache mOldCache;
+
+    @Before
+    @Override
+    public void before() {
+        super.before();
+        mCache = new ObaResponseCache(
+                new File(getTargetContext().getCacheDir(), "oba-responses-test"),
+                ObaResponseCache.DEFAULT_MAX_SIZE);
+        mCache.clear();
+        mOldCache = ObaApi.getDefaultContext().setResponseCache(mCache);
+    }
+
+    @After
+    @Override
+    public void after() {
+        ObaApi.getDefaultContext().setResponseCache(mOldCache);
+        mCache.clear();
+        super.after();
+    }
+
+    @Test
+    public void testCachedRequest() {
+        ObaShapeResponse response = ObaShapeRequest
+                .newRequest(getTargetContext(), "1_40046045").call();
+        assertOK(response);
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(0, mCache.getHitCount());
+
+        response = ObaShapeRequest.newRequest(getTargetContext(), "1_40046045").call();
+        assertOK(response);
+        assertTrue(response.getLength() > 0);
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    @Test
+    public void testErrorResponseNotCached() {
+        ObaShapeResponse response = ObaShapeRequest
+                .newRequest(getTargetContext(), "1_notfound").call();
+        assertEquals(ObaApi.OBA_NOT_FOUND, response.getCode());
+        assertEquals(0, mCache.getSize());
+
+        response = ObaShapeRequest.newRequest(getTargetContext(), "1_notfound").call();
+        assertEquals(ObaApi.OBA_NOT_FOUND, response.getCode());
+        assertEquals(2, mCache.getMissCount());
+        assertEquals(0, mCache.getHitCount());
+    }
+
+    @Test
+    public void testRealtimeBypassesCache() {
+        ObaArrivalInfoResponse response = ObaArrivalInfoRequest
+                .newRequest(getTargetContext(), "1_29261").call();
+        assertOK(response);
+        assertEquals(0, mCache.getMissCount());
+        assertEquals(0, mCache.getHitCount());
+        assertEquals(0, mCache.getSize());
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        ObaResponseCache cache = new ObaResponseCache(
+                new File(getTargetContext().getCacheDir(), "oba-responses-lru-test"), 2500);
+        cache.clear();
+        byte[] body = new byte[1000];
+        Uri first = Uri.parse("http://example.com/1");
+        Uri second = Uri.parse("http://example.com/2");
+        Uri third = Uri.parse("http://example.com/3");
+
+        cache.put(first, body, "\"1\"", null);
+        cache.put(second, body, "\"2\"", null);
+        // Touch the first entry so the second is least recently used
+        assertNotNull(cache.get(first));
+        cache.put(third, body, "\"3\"", null);
+
+        assertTrue(cache.getSize() <= 2500);
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        ObaResponseCache.Entry entry = cache.get(third);
+        assertNotNull(entry);
+        assertEquals("\"3\"", entry.getEtag());
+        cache.clear();
+    }
+}
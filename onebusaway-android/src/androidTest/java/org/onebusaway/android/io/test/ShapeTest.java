@@ -18,6 +18,7 @@ package org.onebusaway.android.io.test;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.onebusaway.android.io.elements.ObaShapeElement;
+import org.onebusaway.android.map.CompactShape;
 
 import android.location.Location;
 
@@ -63,6 +64,50 @@ public class ShapeTest {
         assertEquals(-126453000 / 1E6, pt.getLongitude());
     }
 
+    @Test
+    public void testDecodeLinesE5() {
+        int[] coords = ObaShapeElement.decodeLineE5("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 3);
+        assertEquals(6, coords.length);
+        assertEquals(3850000, coords[0]);
+        assertEquals(-12020000, coords[1]);
+        assertEquals(4070000, coords[2]);
+        assertEquals(-12095000, coords[3]);
+        assertEquals(4325200, coords[4]);
+        assertEquals(-12645300, coords[5]);
+
+        // The number of points is only a hint
+        assertEquals(6, ObaShapeElement.decodeLineE5("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 1).length);
+        assertEquals(6, ObaShapeElement.decodeLineE5("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 10).length);
+        assertEquals(0, ObaShapeElement.decodeLineE5("", 0).length);
+    }
+
+    @Test
+    public void testSimplify() {
+        // A straight line with points every ~1m, plus a ~1km spike in the middle
+        int count = 1001;
+        int[] coords = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            coords[i * 2] = 4760000 + (i == 500 ? 1000 : 0);
+            coords[i * 2 + 1] = -12230000 + i;
+        }
+        CompactShape shape = new CompactShape(coords);
+        assertEquals(count, shape.size());
+
+        // At a low zoom level the spike isn't visible, so only the end points are kept
+        int[] indexes = shape.getSimplifiedIndexes(5);
+        assertEquals(2, indexes.length);
+        assertEquals(0, indexes[0]);
+        assertEquals(count - 1, indexes[1]);
+
+        // At a high zoom level the spike is kept, but the points along the line are not
+        indexes = shape.getSimplifiedIndexes(18);
+        assertEquals(5, indexes.length);
+        assertEquals(500, indexes[2]);
+
+        assertEquals(47.61, shape.getMaxLatitude(), 1e-9);
+        assertEquals(-122.3, shape.getMinLongitude(), 1e-9);
+    }
+
     @Test
     public void testDecodeLevels() {
         List<Integer> list = ObaShapeElement.decodeLevels("mD", 1);
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.map.ClusterEngine;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests clustering of stops on the map, and benchmarks clustering a large number of synthetic
+ * stops at each zoom level
+ */
+@RunWith(AndroidJUnit4.class)
+public class ClusterEngineTest {
+
+    private static final String TAG = "ClusterEngineTest";
+
+    private static final int BENCHMARK_STOP_COUNT = 50000;
+
+    // Area around Seattle
+    private static final double SOUTH = 47.3;
+
+    private static final double WEST = -122.5;
+
+    private static final double NORTH = 47.9;
+
+    private static final double EAST = -122.0;
+
+    private static final class TestStop {
+
+        final String mId;
+
+        final double mLat;
+
+        final double mLon;
+
+        TestStop(String id, double lat, double lon) {
+            mId = id;
+            mLat = lat;
+            mLon = lon;
+        }
+    }
+
+    private static final ClusterEngine.Locator<TestStop> LOCATOR =
+            new ClusterEngine.Locator<TestStop>() {
+                @Override
+                public String getId(TestStop stop) {
+                    return stop.mId;
+                }
+
+                @Override
+                public double getLatitude(TestStop stop) {
+                    return stop.mLat;
+                }
+
+                @Override
+                public double getLongitude(TestStop stop) {
+                    return stop.mLon;
+                }
+            };
+
+    @Test
+    public void testClustersContainAllStops() {
+        ClusterEngine<TestStop> engine = new ClusterEngine<>(LOCATOR);
+        List<TestStop> stops = createStops(1000);
+        assertEquals(1000, engine.add(stops));
+        // Adding the same stops again does nothing
+        assertEquals(0, engine.add(stops));
+
+        for (int zoom = 0; zoom <= ClusterEngine.MAX_ZOOM; zoom++) {
+            List<ClusterEngine.Cluster<TestStop>> clusters =
+                    engine.getClusters(zoom, SOUTH, WEST, NORTH, EAST);
+            assertEquals(1000, countStops(clusters));
+        }
+
+        // At low zoom everything is in a single cluster, and at high zoom every stop is separate
+        List<ClusterEngine.Cluster<TestStop>> clusters =
+                engine.getClusters(2, SOUTH, WEST, NORTH, EAST);
+        assertEquals(1, clusters.size());
+        assertNull(clusters.get(0).getItem());
+        clusters = engine.getClusters(ClusterEngine.MAX_ZOOM, SOUTH, WEST, NORTH, EAST);
+        assertEquals(1000, clusters.size());
+        for (ClusterEngine.Cluster<TestStop> cluster : clusters) {
+            assertNotNull(cluster.getItem());
+        }
+    }
+
+    @Test
+    public void testIncrementalAdd() {
+        ClusterEngine<TestStop> engine = new ClusterEngine<>(LOCATOR);
+        List<TestStop> stops = createStops(2000);
+        engine.add(stops.subList(0, 1000));
+        // Compute a zoom level, and then add more stops to it
+        assertEquals(1000, countStops(engine.getClusters(12, SOUTH, WEST, NORTH, EAST)));
+        engine.add(stops.subList(1000, 2000));
+        List<ClusterEngine.Cluster<TestStop>> incremental =
+                engine.getClusters(12, SOUTH, WEST, NORTH, EAST);
+        assertEquals(2000, countStops(incremental));
+
+        // Should match clustering all the stops at once
+        ClusterEngine<TestStop> all = new ClusterEngine<>(LOCATOR);
+        all.add(stops);
+        ClusterEngine.Update<TestStop> update = ClusterEngine.diff(incremental,
+                all.getClusters(12, SOUTH, WEST, NORTH, EAST));
+        assertEquals(0, update.getAdded().size());
+        assertEquals(0, update.getRemoved().size());
+    }
+
+    @Test
+    public void testZoomChangesOnlySplitClusters() {
+        ClusterEngine<TestStop> engine = new ClusterEngine<>(LOCATOR);
+        engine.add(createStops(5000));
+        for (int zoom = 10; zoom < 16; zoom++) {
+            List<ClusterEngine.Cluster<TestStop>> out =
+                    engine.getClusters(zoom, SOUTH, WEST, NORTH, EAST);
+            List<ClusterEngine.Cluster<TestStop>> in =
+                    engine.getClusters(zoom + 1, SOUTH, WEST, NORTH, EAST);
+            ClusterEngine.Update<TestStop> update = ClusterEngine.diff(out, in);
+            // Each removed cluster is replaced by the clusters it splits into, which contain
+            // the same stops
+            assertEquals(countStops(update.getRemoved()), countStops(update.getAdded()));
+            assertTrue(update.getAdded().size() >= update.getRemoved().size());
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        ClusterEngine<TestStop> engine = new ClusterEngine<>(LOCATOR);
+        List<TestStop> stops = createStops(2000);
+        engine.add(stops);
+        assertEquals(2000, countStops(engine.getClusters(12, SOUTH, WEST, NORTH, EAST)));
+
+        List<String> ids = new ArrayList<>();
+        for (TestStop stop : stops.subList(500, 1500)) {
+            ids.add(stop.mId);
+        }
+        assertEquals(1000, engine.remove(ids));
+        assertEquals(1000, engine.size());
+        assertFalse(engine.contains(stops.get(500).mId));
+        assertTrue(engine.contains(stops.get(1500).mId));
+
+        // Should match clustering only the remaining stops
+        List<TestStop> remaining = new ArrayList<>(stops.subList(0, 500));
+        remaining.addAll(stops.subList(1500, 2000));
+        ClusterEngine<TestStop> expected = new ClusterEngine<>(LOCATOR);
+        expected.add(remaining);
+        assertEquals(toStrings(expected.getClusters(12, SOUTH, WEST, NORTH, EAST)),
+                toStrings(engine.getClusters(12, SOUTH, WEST, NORTH, EAST)));
+
+        // Removed stops can be added again
+        assertEquals(1000, engine.add(stops));
+        assertEquals(2000, countStops(engine.getClusters(12, SOUTH, WEST, NORTH, EAST)));
+    }
+
+    @Test
+    public void testClustersStableAcrossRemove() {
+        ClusterEngine<TestStop> engine = new ClusterEngine<>(LOCATOR);
+        engine.add(Arrays.asList(new TestStop("1", 47.60, -122.30),
+                new TestStop("2", 47.60001, -122.30001),
+                new TestStop("3", 47.80, -122.10),
+                new TestStop("4", 47.80001, -122.10001)));
+        List<ClusterEngine.Cluster<TestStop>> before =
+                engine.getClusters(10, SOUTH, WEST, NORTH, EAST);
+        assertEquals(2, before.size());
+
+        // Replacing a stop keeps the size of its cluster, but it's a different cluster now,
+        // while the other cluster is unchanged
+        engine.remove(Collections.singletonList("4"));
+        engine.add(Collections.singletonList(new TestStop("5", 47.80002, -122.10002)));
+        ClusterEngine.Update<TestStop> update = ClusterEngine.diff(before,
+                engine.getClusters(10, SOUTH, WEST, NORTH, EAST));
+        assertEquals(1, update.getRemoved().size());
+        assertEquals(1, update.getAdded().size());
+        assertEquals(2, update.getAdded().get(0).getSize());
+        assertEquals(47.80001, update.getAdded().get(0).getLatitude(), 0.000001);
+    }
+
+    @Test
+    public void testBenchmark() {
+        List<TestStop> stops = createStops(BENCHMARK_STOP_COUNT);
+        ClusterEngine<TestStop> engine = new ClusterEngine<>(LOCATOR);
+
+        long start = System.nanoTime();
+        engine.add(stops);
+        Log.d(TAG, "Added " + BENCHMARK_STOP_COUNT + " stops in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+
+        for (int zoom = 8; zoom <= 16; zoom++) {
+            start = System.nanoTime();
+            List<ClusterEngine.Cluster<TestStop>> clusters =
+                    engine.getClusters(zoom, SOUTH, WEST, NORTH, EAST);
+            long firstTime = System.nanoTime() - start;
+
+            // The second time the zoom level has already been computed
+            start = System.nanoTime();
+            engine.getClusters(zoom, SOUTH, WEST, NORTH, EAST);
+            long secondTime = System.nanoTime() - start;
+
+            assertEquals(BENCHMARK_STOP_COUNT, countStops(clusters));
+            Log.d(TAG, "Zoom " + zoom + ": " + clusters.size() + " clusters, first "
+                    + TimeUnit.NANOSECONDS.toMillis(firstTime) + "ms, cached "
+                    + TimeUnit.NANOSECONDS.toMillis(secondTime) + "ms");
+        }
+    }
+
+    private static int countStops(List<ClusterEngine.Cluster<TestStop>> clusters) {
+        int count = 0;
+        for (ClusterEngine.Cluster<TestStop> cluster : clusters) {
+            count += cluster.getSize();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sizes and locations of the clusters, so clusters from different engines can be
+     * compared
+     */
+    private static Set<String> toStrings(List<ClusterEngine.Cluster<TestStop>> clusters) {
+        Set<String> result = new HashSet<>();
+        for (ClusterEngine.Cluster<TestStop> cluster : clusters) {
+            result.add(cluster.toString());
+        }
+        return result;
+    }
+
+    private static List<TestStop> createStops(int count) {
+        Random random = new Random(count);
+        List<TestStop> stops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            stops.add(new TestStop("1_" + i, SOUTH + random.nextDouble() * (NORTH - SOUTH),
+                    WEST + random.nextDouble() * (EAST - WEST)));
+        }
+        return stops;
+    }
+}
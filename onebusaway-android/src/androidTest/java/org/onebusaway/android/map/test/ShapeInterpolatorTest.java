@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.map.ShapeInterpolator;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Tests finding positions at distances along a trip shape
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShapeInterpolatorTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testPositions() {
+        // A line going north along the prime meridian, where a degree is ~111km
+        double[] lats = {0.0, 1.0, 2.0};
+        double[] lons = {0.0, 0.0, 0.0};
+        ShapeInterpolator shape = new ShapeInterpolator(lats, lons);
+        double leg = shape.getLength() / 2;
+        assertEquals(111195, leg, 100);
+
+        double[] position = new double[2];
+        shape.getPosition(leg / 2, position);
+        assertEquals(0.5, position[0], DELTA);
+        assertEquals(0.0, position[1], DELTA);
+
+        // Exactly on a point
+        shape.getPosition(leg, position);
+        assertEquals(1.0, position[0], DELTA);
+        assertEquals(0.0, position[1], DELTA);
+
+        shape.getPosition(leg * 1.25, position);
+        assertEquals(1.25, position[0], DELTA);
+        assertEquals(0.0, position[1], DELTA);
+
+        // Distances before the start and past the end are clamped
+        shape.getPosition(-10, position);
+        assertEquals(0.0, position[0], DELTA);
+        assertEquals(0.0, position[1], DELTA);
+        shape.getPosition(shape.getLength() + 10, position);
+        assertEquals(2.0, position[0], DELTA);
+        assertEquals(0.0, position[1], DELTA);
+    }
+
+    @Test
+    public void testSinglePoint() {
+        ShapeInterpolator shape = new ShapeInterpolator(new double[]{47.6}, new double[]{-122.3});
+        assertEquals(0.0, shape.getLength(), DELTA);
+        double[] position = new double[2];
+        shape.getPosition(100, position);
+        assertEquals(47.6, position[0], DELTA);
+        assertEquals(-122.3, position[1], DELTA);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.map.SpatialGridIndex;
+
+import java.util.HashSet;
+import java.util.List;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests finding the values in a spatial grid that are outside an area of the map
+ */
+@RunWith(AndroidJUnit4.class)
+public class SpatialGridIndexTest {
+
+    @Test
+    public void testIdsOutside() {
+        SpatialGridIndex<String> grid = new SpatialGridIndex<>(0.01);
+        // Downtown Seattle
+        grid.put("near1", 47.6062, -122.3321, "near1");
+        grid.put("near2", 47.6100, -122.3400, "near2");
+        // Bellevue and Tacoma
+        grid.put("far1", 47.6101, -122.2015, "far1");
+        grid.put("far2", 47.2529, -122.4443, "far2");
+        assertEquals(4, grid.size());
+
+        List<String> outside = grid.getIdsOutside(47.58, -122.36, 47.63, -122.30);
+        assertEquals(2, outside.size());
+        HashSet<String> ids = new HashSet<>(outside);
+        assertTrue(ids.contains("far1"));
+        assertTrue(ids.contains("far2"));
+
+        // Moving a value updates its cell
+        grid.put("far1", 47.6070, -122.3330, "far1");
+        assertEquals(4, grid.size());
+        assertEquals(1, grid.getIdsOutside(47.58, -122.36, 47.63, -122.30).size());
+
+        assertEquals("far2", grid.remove("far2"));
+        assertFalse(grid.contains("far2"));
+        assertNull(grid.get("far2"));
+        assertNull(grid.remove("far2"));
+        assertEquals(0, grid.getIdsOutside(47.58, -122.36, 47.63, -122.30).size());
+    }
+}
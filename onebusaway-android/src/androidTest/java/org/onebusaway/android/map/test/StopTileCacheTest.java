@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map.test;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.map.StopTileCache;
+
+import java.util.List;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests splitting the map viewport into tiles for loading stops
+ */
+@RunWith(AndroidJUnit4.class)
+public class StopTileCacheTest {
+
+    // Downtown Seattle
+    private static final double LAT = 47.6062;
+
+    private static final double LON = -122.3321;
+
+    @Test
+    public void testTilesCoverViewport() {
+        double latSpan = 0.02;
+        double lonSpan = 0.03;
+        List<StopTileCache.Tile> tiles = StopTileCache.getTiles(LAT, LON, latSpan, lonSpan);
+        assertTrue(tiles.size() >= 1 && tiles.size() <= 9);
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (StopTileCache.Tile tile : tiles) {
+            double half = tile.getSize() / 2;
+            // Tiles are at least half the span of the viewport, and never bigger than it
+            assertTrue(tile.getSize() >= lonSpan / 2);
+            assertTrue(tile.getSize() <= lonSpan);
+            minLat = Math.min(minLat, tile.getCenterLat() - half);
+            maxLat = Math.max(maxLat, tile.getCenterLat() + half);
+            minLon = Math.min(minLon, tile.getCenterLon() - half);
+            maxLon = Math.max(maxLon, tile.getCenterLon() + half);
+        }
+        assertTrue(minLat <= LAT - latSpan / 2 && maxLat >= LAT + latSpan / 2);
+        assertTrue(minLon <= LON - lonSpan / 2 && maxLon >= LON + lonSpan / 2);
+    }
+
+    @Test
+    public void testSmallPanReusesTiles() {
+        List<StopTileCache.Tile> before = StopTileCache.getTiles(LAT, LON, 0.02, 0.02);
+        List<StopTileCache.Tile> after = StopTileCache.getTiles(LAT + 0.001, LON, 0.02, 0.02);
+        int shared = 0;
+        for (StopTileCache.Tile tile : after) {
+            if (before.contains(tile)) {
+                shared++;
+            }
+        }
+        // At most one new row of tiles is needed for a small pan
+        assertTrue(after.size() - shared <= 3);
+    }
+
+    @Test
+    public void testLargeViewportNotTiled() {
+        assertNull(StopTileCache.getTiles(LAT, LON, 2.0, 2.0));
+        assertNull(StopTileCache.getTiles(LAT, LON, 0, 0));
+        assertEquals(StopTileCache.getTiles(LAT, LON, 0.02, 0.02),
+                StopTileCache.getTiles(LAT, LON, 0.02, 0.02));
+    }
+}
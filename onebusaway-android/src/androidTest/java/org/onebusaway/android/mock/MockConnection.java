@@ -23,6 +23,7 @@ import android.util.Log;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.net.HttpURLConnection;
 
@@ -52,14 +53,12 @@ public class MockConnection implements ObaConnection {
 
     @Override
     public Reader get() throws IOException {
-        Log.d(TAG, "Get URI: " + mUri);
-        // Find a mock response for this URI.
-        String response = mUriMap.getUri(mUri);
-        if ("__404__".equals(response)) {
-            mResponseCode = HttpURLConnection.HTTP_NOT_FOUND;
-            throw new FileNotFoundException();
-        }
-        return Resources.read(mContext, Resources.getTestUri(response));
+        return Resources.read(mContext, getResponseUri());
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return mContext.getContentResolver().openInputStream(getResponseUri());
     }
 
     @Override
@@ -71,4 +70,26 @@ public class MockConnection implements ObaConnection {
     public int getResponseCode() throws IOException {
         return mResponseCode;
     }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return null;
+    }
+
+    /**
+     * Finds the mock response for this URI
+     */
+    private Uri getResponseUri() throws IOException {
+        Log.d(TAG, "Get URI: " + mUri);
+        String response = mUriMap.getUri(mUri);
+        if ("__404__".equals(response)) {
+            mResponseCode = HttpURLConnection.HTTP_NOT_FOUND;
+            throw new FileNotFoundException();
+        }
+        return Resources.getTestUri(response);
+    }
 }
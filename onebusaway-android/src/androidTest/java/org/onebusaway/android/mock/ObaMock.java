@@ -18,6 +18,8 @@ package org.onebusaway.android.mock;
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.io.ObaApi;
 import org.onebusaway.android.io.ObaConnectionFactory;
+import org.onebusaway.android.io.ObaRequestCoalescer;
+import org.onebusaway.android.io.ObaResponseCache;
 import org.onebusaway.android.io.elements.ObaRegion;
 
 import android.content.Context;
@@ -28,6 +30,8 @@ public class ObaMock {
 
     private final ObaConnectionFactory mOldFactory;
 
+    private final ObaResponseCache mOldCache;
+
     private ObaRegion mOldRegion = null;
 
     private String mOldCustomApiUrl = null;
@@ -35,6 +39,9 @@ public class ObaMock {
     public ObaMock(Context context) {
         mMockFactory = new MockConnectionFactory(context);
         mOldFactory = ObaApi.getDefaultContext().setConnectionFactory(mMockFactory);
+        // Make sure mock responses always come from the mock connection
+        mOldCache = ObaApi.getDefaultContext().setResponseCache(null);
+        ObaRequestCoalescer.getInstance().clear();
 
         // Save the current region or custom API URL
         if (Application.get().getCurrentRegion() != null) {
@@ -46,6 +53,8 @@ public class ObaMock {
 
     public void finish() {
         ObaApi.getDefaultContext().setConnectionFactory(mOldFactory);
+        ObaApi.getDefaultContext().setResponseCache(mOldCache);
+        ObaRequestCoalescer.getInstance().clear();
 
         /*
          * Restore the previous region or custom API URL
@@ -21,6 +21,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.onebusaway.android.io.test.ObaTestCase;
 import org.onebusaway.android.mock.Resources;
+import org.onebusaway.android.nav.LocationRate;
 import org.onebusaway.android.nav.NavigationServiceProvider;
 import org.onebusaway.android.nav.model.Path;
 import org.onebusaway.android.nav.model.PathLink;
@@ -39,6 +40,7 @@ import java.util.Collections;
 import androidx.test.runner.AndroidJUnit4;
 
 import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 import static org.onebusaway.android.util.TestUtils.isRunningOnTravis;
@@ -722,6 +724,53 @@ public class NavigationTest extends ObaTestCase {
         runSimulation("nav_trip33", 335, 401);
     }
 
+    /**
+     * Replays the longest recorded trips with location updates requested at the rates that
+     * NavigationService uses, and checks that the alerts are still triggered at the same
+     * locations while far fewer fixes are processed
+     */
+    @Test
+    public void testLocationRate() throws IOException {
+        checkTravis();
+        int allFixes = 0;
+        int stagedFixes = 0;
+
+        allFixes += runSimulation("nav_trip1", 848, 978, false);
+        stagedFixes += runSimulation("nav_trip1", 848, 978, true);
+        allFixes += runSimulation("nav_trip13", 2549, 2732, false);
+        stagedFixes += runSimulation("nav_trip13", 2549, 2732, true);
+        allFixes += runSimulation("nav_trip22", 1085, 1198, false);
+        stagedFixes += runSimulation("nav_trip22", 1085, 1198, true);
+        allFixes += runSimulation("nav_trip30", 1001, 1048, false);
+        stagedFixes += runSimulation("nav_trip30", 1001, 1048, true);
+        allFixes += runSimulation("nav_trip31", 2508, 2654, false);
+        stagedFixes += runSimulation("nav_trip31", 2508, 2654, true);
+
+        Log.d(TAG, "Fixes processed - every fix: " + allFixes + ", staged: " + stagedFixes);
+        assertTrue(stagedFixes < allFixes / 2);
+    }
+
+    @Test
+    public void testLocationRateIntervals() {
+        LocationRate rate = new LocationRate();
+        assertEquals(-1, rate.getInterval());
+
+        // Far away, coarse updates just often enough to not skip past the "get ready" radius
+        assertTrue(rate.update(5000));
+        assertEquals(60000, rate.getInterval());
+        assertTrue(rate.update(1000));
+        long interval = rate.getInterval();
+        assertTrue(interval * LocationRate.MAX_SPEED / 1000 < 1000 - LocationRate.NEAR_DISTANCE);
+
+        // An outlier further away doesn't slow updates down again
+        assertTrue(!rate.update(5000));
+        assertEquals(interval, rate.getInterval());
+
+        // Every fix near the stop
+        assertTrue(rate.update(LocationRate.NEAR_DISTANCE));
+        assertTrue(rate.isFastest());
+    }
+
     /**
      * Runs the simulation with the provided CSV data and expected "Get ready" and "Pull the Cord Now" notification indexes
      *
@@ -730,10 +779,23 @@ public class NavigationTest extends ObaTestCase {
      * @param expectedPullCordIndex the index for when the "Pull the Cord Now" notification is expected
      */
     private void runSimulation(String csvFileName, int expectedGetReadyIndex, int expectedPullCordIndex) throws IOException {
+        runSimulation(csvFileName, expectedGetReadyIndex, expectedPullCordIndex, false);
+    }
+
+    /**
+     * Runs the simulation with the provided CSV data and expected "Get ready" and "Pull the Cord Now" notification indexes
+     *
+     * @param staged true to skip the fixes that wouldn't be delivered at the location update rates
+     *               requested by NavigationService, false to process every fix
+     * @return the number of fixes processed by the NavigationServiceProvider
+     */
+    private int runSimulation(String csvFileName, int expectedGetReadyIndex,
+            int expectedPullCordIndex, boolean staged) throws IOException {
         Reader reader = Resources.read(getTargetContext(), Resources.getTestUri(csvFileName));
         String csv = IOUtils.toString(reader);
         NavigationSimulation trip = new NavigationSimulation(csv);
-        trip.runSimulation(expectedGetReadyIndex, expectedPullCordIndex);
+        return trip.runSimulation(expectedGetReadyIndex, expectedPullCordIndex,
+                staged ? new LocationRate() : null);
     }
 
     // Class for holding relevant details for testing.
@@ -883,11 +945,16 @@ public class NavigationTest extends ObaTestCase {
          * the Cord Now" notification is expected
          * @param expectedGetReadyIndex the index when the "Get Ready" notification is expected
          * @param expectedPullCordIndex the index for when the "Pull the Cord Now" notification is expected
+         * @param rate the location update rate to replay the fixes at, or null to replay every fix
+         * @return the number of fixes processed by the NavigationServiceProvider
          */
-        void runSimulation(int expectedGetReadyIndex, int expectedPullCordIndex) {
+        int runSimulation(int expectedGetReadyIndex, int expectedPullCordIndex, LocationRate rate) {
             NavigationServiceProvider provider = new NavigationServiceProvider(mTripId,
                     mDestinationId);
             Location prevLocation = null;
+            int fixes = 0;
+            // Time since the last fix that would have been delivered at the requested rate
+            long sinceLastFix = 0;
             // Use the first location time as the starting time for this PathLink
             // TODO - capture PathLink nav starting time in logs
             PathLink link = new PathLink(mLocations[0].getTime(), null, mSecondToLastLocation, mDestinationLocation, mTripId);
@@ -904,11 +971,23 @@ public class NavigationTest extends ObaTestCase {
                     Log.e(TAG, e.getMessage());
                 }
 
+                sinceLastFix += mTimes[i];
+                if (rate != null && rate.getInterval() != -1 && !rate.isFastest()
+                        && sinceLastFix < rate.getInterval()) {
+                    // This fix wouldn't be delivered at the requested rate
+                    continue;
+                }
+                sinceLastFix = 0;
+
                 // Code added to check for duplicate locations in the .csv log files
                 if (prevLocation == null || !LocationUtils.isDuplicate(prevLocation, l)) {
                     provider.locationUpdated(l);
+                    fixes++;
                 }
                 prevLocation = l;
+                if (rate != null) {
+                    rate.update(provider.mSectoCurDistance);
+                }
 
                 if (provider.getGetReady() && i < expectedGetReadyIndex) {
                     fail("Get ready triggered too soon");
@@ -936,11 +1015,23 @@ public class NavigationTest extends ObaTestCase {
                     Log.e(TAG, e.getMessage());
                 }
 
+                sinceLastFix += mTimes[i];
+                if (rate != null && rate.getInterval() != -1 && !rate.isFastest()
+                        && sinceLastFix < rate.getInterval()) {
+                    // This fix wouldn't be delivered at the requested rate
+                    continue;
+                }
+                sinceLastFix = 0;
+
                 // Code added to check for duplicate locations in the .csv log files
                 if (prevLocation == null || !LocationUtils.isDuplicate(prevLocation, l)) {
                     provider.locationUpdated(l);
+                    fixes++;
                 }
                 prevLocation = l;
+                if (rate != null) {
+                    rate.update(provider.mSectoCurDistance);
+                }
 
                 if (provider.getFinished() && i < expectedPullCordIndex) {
                     fail("Pull the Cord triggered too soon");
@@ -954,6 +1045,7 @@ public class NavigationTest extends ObaTestCase {
 
             Boolean check2 = provider.getGetReady() && provider.getFinished();
             assertTrue(check2);
+            return fixes;
         }
     }
 
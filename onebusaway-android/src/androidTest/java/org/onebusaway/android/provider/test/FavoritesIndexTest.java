@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.provider.test;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.app.Application;
+import org.onebusaway.android.provider.FavoritesIndex;
+import org.onebusaway.android.provider.ObaContract;
+
+import android.content.ContentValues;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests that the in-memory favorites index gives the same answers as the database as favorites
+ * and hidden alerts are changed
+ */
+@RunWith(AndroidJUnit4.class)
+public class FavoritesIndexTest {
+
+    private static final String ROUTE_ID = "Test_Route_1";
+
+    private static final String HEADSIGN = "Test Headsign";
+
+    private static final String STOP_1 = "Test_Stop_1";
+
+    private static final String STOP_2 = "Test_Stop_2";
+
+    private static final String ALERT_ID = "Test_Alert_1";
+
+    @After
+    public void tearDown() {
+        ObaContract.RouteHeadsignFavorites.markAsFavorite(Application.get(), ROUTE_ID, HEADSIGN,
+                null, false);
+        Application.get().getContentResolver().delete(
+                ObaContract.ServiceAlerts.CONTENT_URI, ObaContract.ServiceAlerts._ID + "=?",
+                new String[]{ALERT_ID});
+        FavoritesIndex.getInstance().invalidate();
+    }
+
+    @Test
+    public void testRouteHeadsignFavorites() {
+        assertFalse(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_1));
+
+        // Favorite for a single stop
+        ObaContract.RouteHeadsignFavorites.markAsFavorite(Application.get(), ROUTE_ID, HEADSIGN,
+                STOP_1, true);
+        assertTrue(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_1));
+        assertFalse(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_2));
+
+        // Favorite for all stops, then exclude one stop
+        ObaContract.RouteHeadsignFavorites.markAsFavorite(Application.get(), ROUTE_ID, HEADSIGN,
+                null, true);
+        assertTrue(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_2));
+        ObaContract.RouteHeadsignFavorites.markAsFavorite(Application.get(), ROUTE_ID, HEADSIGN,
+                STOP_2, false);
+        assertFalse(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_2));
+        assertTrue(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_1));
+
+        // Reloading from the database gives the same results
+        FavoritesIndex.getInstance().invalidate();
+        assertFalse(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_2));
+        assertTrue(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_1));
+
+        // Re-favoriting the excluded stop removes the exclusion
+        ObaContract.RouteHeadsignFavorites.markAsFavorite(Application.get(), ROUTE_ID, HEADSIGN,
+                STOP_2, true);
+        assertTrue(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_2));
+
+        // Unfavoriting for all stops removes every record for the route/headsign
+        ObaContract.RouteHeadsignFavorites.markAsFavorite(Application.get(), ROUTE_ID, HEADSIGN,
+                null, false);
+        assertFalse(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_1));
+        assertFalse(ObaContract.RouteHeadsignFavorites.isFavorite(ROUTE_ID, HEADSIGN, STOP_2));
+    }
+
+    @Test
+    public void testHiddenAlerts() {
+        assertFalse(ObaContract.ServiceAlerts.isHidden(ALERT_ID));
+
+        ObaContract.ServiceAlerts.insertOrUpdate(ALERT_ID, new ContentValues(), false, null);
+        assertFalse(ObaContract.ServiceAlerts.isHidden(ALERT_ID));
+
+        ObaContract.ServiceAlerts.insertOrUpdate(ALERT_ID, new ContentValues(), false, true);
+        assertTrue(ObaContract.ServiceAlerts.isHidden(ALERT_ID));
+
+        // Saving the alert again without changes leaves it hidden
+        ObaContract.ServiceAlerts.insertOrUpdate(ALERT_ID, new ContentValues(), false, null);
+        assertTrue(ObaContract.ServiceAlerts.isHidden(ALERT_ID));
+
+        FavoritesIndex.getInstance().invalidate();
+        assertTrue(ObaContract.ServiceAlerts.isHidden(ALERT_ID));
+
+        ObaContract.ServiceAlerts.showAllAlerts();
+        assertFalse(ObaContract.ServiceAlerts.isHidden(ALERT_ID));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.provider.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.provider.ObaContract;
+import org.onebusaway.android.provider.ObaProvider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that the most frequent queries against the OBA database use an index instead of
+ * scanning the table, and that the database uses write-ahead logging
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void before() {
+        // Make sure the provider has created and upgraded the database
+        Cursor c = getTargetContext().getContentResolver().query(ObaContract.Stops.CONTENT_URI,
+                new String[]{ObaContract.Stops._ID}, null, null, null);
+        if (c != null) {
+            c.close();
+        }
+        mDb = SQLiteDatabase.openDatabase(
+                ObaProvider.getDatabasePath(getTargetContext()).getPath(), null,
+                SQLiteDatabase.OPEN_READONLY);
+    }
+
+    @After
+    public void after() {
+        mDb.close();
+    }
+
+    @Test
+    public void testWriteAheadLogging() {
+        Cursor c = mDb.rawQuery("PRAGMA journal_mode", null);
+        try {
+            assertTrue(c.moveToFirst());
+            assertEquals("wal", c.getString(0).toLowerCase());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test
+    public void testRouteHeadsignFavorites() {
+        assertUsesIndex("idx_route_headsign_favorites",
+                "SELECT * FROM " + ObaContract.RouteHeadsignFavorites.PATH + " WHERE " +
+                        ObaContract.RouteHeadsignFavorites.ROUTE_ID + "=? AND " +
+                        ObaContract.RouteHeadsignFavorites.HEADSIGN + "=? AND " +
+                        ObaContract.RouteHeadsignFavorites.STOP_ID + "=?",
+                "1_100", "Downtown", "1_200");
+    }
+
+    @Test
+    public void testStarredStops() {
+        assertUsesIndex("idx_stops_favorite",
+                "SELECT * FROM " + ObaContract.Stops.PATH + " WHERE " +
+                        ObaContract.Stops.FAVORITE + "=1 ORDER BY " +
+                        ObaContract.Stops.USE_COUNT + " desc");
+    }
+
+    @Test
+    public void testStarredRoutes() {
+        assertUsesIndex("idx_routes_favorite",
+                "SELECT * FROM " + ObaContract.Routes.PATH + " WHERE " +
+                        ObaContract.Routes.FAVORITE + "=1 ORDER BY " +
+                        ObaContract.Routes.USE_COUNT + " desc");
+    }
+
+    @Test
+    public void testTrips() {
+        assertUsesIndex("idx_trips_id_stop",
+                "SELECT * FROM " + ObaContract.Trips.PATH + " WHERE " +
+                        ObaContract.Trips._ID + "=? AND " +
+                        ObaContract.Trips.STOP_ID + "=?",
+                "1_300", "1_200");
+    }
+
+    @Test
+    public void testTripAlerts() {
+        assertUsesIndex("idx_trip_alerts_trip_stop",
+                "SELECT * FROM " + ObaContract.TripAlerts.PATH + " WHERE " +
+                        ObaContract.TripAlerts.TRIP_ID + "=? AND " +
+                        ObaContract.TripAlerts.STOP_ID + "=? AND " +
+                        ObaContract.TripAlerts.START_TIME + "=?",
+                "1_300", "1_200", "0");
+    }
+
+    @Test
+    public void testNavStops() {
+        assertUsesIndex("idx_nav_stops_nav_id",
+                "SELECT * FROM " + ObaContract.NavStops.PATH + " WHERE " +
+                        ObaContract.NavStops.NAV_ID + "=? ORDER BY " +
+                        ObaContract.NavStops.SEQUENCE + " ASC",
+                "1");
+    }
+
+    private void assertUsesIndex(String index, String sql, String... args) {
+        Cursor c = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        try {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                plan.append(c.getString(detail)).append('\n');
+            }
+        } finally {
+            c.close();
+        }
+        assertTrue("Expected " + index + " in query plan:\n" + plan,
+                plan.toString().contains(index));
+    }
+}
@@ -18,9 +18,16 @@ package org.onebusaway.android.provider.test;
 import org.junit.Test;
 import org.onebusaway.android.io.elements.ObaRegion;
 import org.onebusaway.android.io.test.ObaLoaderTestCase;
+import org.onebusaway.android.provider.ObaContract;
 import org.onebusaway.android.util.RegionUtils;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.util.Log;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import static androidx.test.InstrumentationRegistry.getTargetContext;
 import static junit.framework.Assert.assertEquals;
@@ -32,6 +39,8 @@ import static junit.framework.Assert.assertNull;
  */
 public class RegionsLoaderTest extends ObaLoaderTestCase {
 
+    private static final String TAG = "RegionsLoaderTest";
+
     @Test
     public void testLoader() {
         // Load regions from resources
@@ -51,6 +60,35 @@ public class RegionsLoaderTest extends ObaLoaderTestCase {
         _assertPugetSound(regions.get(1));
     }
 
+    /**
+     * Compares the time to save the full regions list in one batch against applying each
+     * operation in its own transaction, as was done before batching
+     */
+    @Test
+    public void testSaveToProviderTiming() throws Exception {
+        ArrayList<ObaRegion> regionsFromResources = RegionUtils
+                .getRegionsFromResources(getTargetContext());
+        ArrayList<ContentProviderOperation> ops = RegionUtils
+                .getSaveOperations(regionsFromResources);
+        ContentResolver cr = getTargetContext().getContentResolver();
+
+        long start = System.nanoTime();
+        for (ContentProviderOperation op : ops) {
+            cr.applyBatch(ObaContract.AUTHORITY, new ArrayList<>(Collections.singletonList(op)));
+        }
+        long separateTime = System.nanoTime() - start;
+        assertEquals(7, RegionUtils.getRegionsFromProvider(getTargetContext()).size());
+
+        start = System.nanoTime();
+        RegionUtils.saveToProvider(getTargetContext(), regionsFromResources);
+        long batchTime = System.nanoTime() - start;
+        assertEquals(7, RegionUtils.getRegionsFromProvider(getTargetContext()).size());
+
+        Log.d(TAG, ops.size() + " operations - separate transactions: "
+                + TimeUnit.NANOSECONDS.toMillis(separateTime) + "ms, batch: "
+                + TimeUnit.NANOSECONDS.toMillis(batchTime) + "ms");
+    }
+
     private void assertBounds(ObaRegion.Bounds bound,
                               double lat, double lon, double latSpan, double lonSpan) {
         assertEquals(lat, bound.getLat());
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.provider.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.app.Application;
+import org.onebusaway.android.io.elements.ObaRoute;
+import org.onebusaway.android.io.elements.ObaRouteElement;
+import org.onebusaway.android.io.elements.ObaStop;
+import org.onebusaway.android.io.elements.ObaStopElement;
+import org.onebusaway.android.mock.MockRegion;
+import org.onebusaway.android.provider.SearchIndex;
+
+import android.location.Location;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests matching and ranking stops and routes in the local search index
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchIndexTest {
+
+    @Before
+    public void setUp() {
+        Application.get().setCurrentRegion(MockRegion.getTampa(getTargetContext()));
+
+        List<ObaStop> stops = new ArrayList<>();
+        stops.add(new ObaStopElement("Test_1", 28.0600, -82.4100, "Fowler Ave @ 50th St", "1001",
+                "E"));
+        stops.add(new ObaStopElement("Test_2", 28.0610, -82.4000, "Fowler Ave @ 56th St", "1002",
+                "E"));
+        stops.add(new ObaStopElement("Test_3", 27.9500, -82.4600, "Marion Transit Center",
+                "1003", "N"));
+
+        List<ObaRoute> routes = new ArrayList<>();
+        routes.add(new ObaRouteElement("Test_6", "6", "56th Street", "", ObaRoute.TYPE_BUS, "",
+                "FF0000", "FFFFFF", "Test"));
+        routes.add(new ObaRouteElement("Test_5", "5", "40th Street", "", ObaRoute.TYPE_BUS, "",
+                "00FF00", "000000", "Test"));
+        routes.add(new ObaRouteElement("Test_56", "56", "Fowler Avenue", "", ObaRoute.TYPE_BUS, "",
+                "0000FF", "FFFFFF", "Test"));
+
+        SearchIndex.getInstance().replace(SearchIndex.getServerKey(), routes, stops);
+    }
+
+    @After
+    public void tearDown() {
+        // Leave an empty index that isn't ready, so it's rebuilt from the server
+        SearchIndex.getInstance().replace("", Collections.<ObaRoute>emptyList(),
+                Collections.<ObaStop>emptyList());
+    }
+
+    @Test
+    public void testSearchStops() {
+        assertTrue(SearchIndex.getInstance().isReady());
+
+        // Prefix matches on each word, closest first
+        Location center = new Location("test");
+        center.setLatitude(28.0611);
+        center.setLongitude(-82.4001);
+        List<ObaStop> stops = SearchIndex.getInstance().searchStops("fowl av", center, 10);
+        assertEquals(2, stops.size());
+        assertEquals("Test_2", stops.get(0).getId());
+        assertEquals("Test_1", stops.get(1).getId());
+        assertEquals("E", stops.get(0).getDirection());
+
+        // Exact stop code
+        stops = SearchIndex.getInstance().searchStops("1003", center, 10);
+        assertEquals(1, stops.size());
+        assertEquals("Marion Transit Center", stops.get(0).getName());
+
+        assertTrue(SearchIndex.getInstance().searchStops("nowhere", center, 10).isEmpty());
+    }
+
+    @Test
+    public void testSearchRoutes() {
+        // An exact short name comes before other matches
+        List<ObaRoute> routes = SearchIndex.getInstance().searchRoutes("56", 10);
+        assertFalse(routes.isEmpty());
+        assertEquals("Test_56", routes.get(0).getId());
+
+        routes = SearchIndex.getInstance().searchRoutes("fowler", 10);
+        assertEquals(1, routes.size());
+        assertEquals("Fowler Avenue", routes.get(0).getLongName());
+        assertEquals(0x0000FF, routes.get(0).getColor() & 0xFFFFFF);
+    }
+
+    @Test
+    public void testMoreMatchesThanCandidates() {
+        // More matches than are ranked, with the closest stop, the exact stop code and the
+        // exact short name last
+        List<ObaStop> stops = new ArrayList<>();
+        List<ObaRoute> routes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            stops.add(new ObaStopElement("Test_" + i, 27.0 + i * 0.001, -82.0, "Main St @ " + i,
+                    "1" + i, "N"));
+            routes.add(new ObaRouteElement("Test_1" + i, "1" + i, "Main St", "",
+                    ObaRoute.TYPE_BUS, "", "FF0000", "FFFFFF", "Test"));
+        }
+        stops.add(new ObaStopElement("Test_near", 28.0, -82.0, "Main St @ Near", "2", "N"));
+        stops.add(new ObaStopElement("Test_code", 26.0, -82.0, "Elm St", "1", "N"));
+        routes.add(new ObaRouteElement("Test_1", "1", "Main St", "", ObaRoute.TYPE_BUS, "",
+                "FF0000", "FFFFFF", "Test"));
+        SearchIndex.getInstance().replace(SearchIndex.getServerKey(), routes, stops);
+
+        Location center = new Location("test");
+        center.setLatitude(28.0);
+        center.setLongitude(-82.0);
+        assertEquals("Test_near", SearchIndex.getInstance().searchStops("main", center, 10)
+                .get(0).getId());
+        assertEquals("Test_code", SearchIndex.getInstance().searchStops("1", center, 10)
+                .get(0).getId());
+        assertEquals("Test_1", SearchIndex.getInstance().searchRoutes("1", 10).get(0).getId());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.travelbehavior.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorEventLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests appending to and reading from the travel behavior event log, including recovering from a
+ * record that was only partly written
+ */
+@RunWith(AndroidJUnit4.class)
+public class TravelBehaviorEventLogTest {
+
+    private static final long SEGMENT_SIZE = 1024;
+
+    private static final long MAX_SIZE = 4 * 1024;
+
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(getTargetContext().getCacheDir(), "event-log-test");
+        deleteDir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+    }
+
+    @Test
+    public void testAppendAndRead() throws IOException {
+        TravelBehaviorEventLog log = new TravelBehaviorEventLog(mDir, SEGMENT_SIZE, MAX_SIZE);
+        for (int i = 0; i < 20; i++) {
+            log.append(getEvent(i));
+        }
+        // Events are rolled into a few segments instead of a file per event
+        assertTrue(mDir.list().length > 1);
+        assertTrue(mDir.list().length < 20);
+
+        TravelBehaviorEventLog.Reader reader = log.openReader();
+        // Appended after the reader was opened, so it's left for the next reader
+        log.append(getEvent(20));
+        assertEquals(Arrays.asList(getEvents(0, 20)), readAll(reader));
+        reader.commit();
+
+        reader = log.openReader();
+        assertEquals(Arrays.asList(getEvents(20, 21)), readAll(reader));
+        reader.commit();
+        assertEquals(0, mDir.list().length);
+    }
+
+    @Test
+    public void testPartialRecord() throws IOException {
+        TravelBehaviorEventLog log = new TravelBehaviorEventLog(mDir, SEGMENT_SIZE, MAX_SIZE);
+        log.append(getEvent(0));
+
+        // Add the start of a record, as if the process died while writing it
+        File segment = mDir.listFiles()[0];
+        FileOutputStream out = new FileOutputStream(segment, true);
+        out.write(new byte[]{0, 0, 1, 0, 1, 2});
+        out.close();
+
+        // Opening the log again truncates the partial record, and appends continue after it
+        log = new TravelBehaviorEventLog(mDir, SEGMENT_SIZE, MAX_SIZE);
+        log.append(getEvent(1));
+        TravelBehaviorEventLog.Reader reader = log.openReader();
+        assertEquals(Arrays.asList(getEvents(0, 2)), readAll(reader));
+        reader.commit();
+    }
+
+    @Test
+    public void testMaxSize() throws IOException {
+        TravelBehaviorEventLog log = new TravelBehaviorEventLog(mDir, SEGMENT_SIZE, MAX_SIZE);
+        for (int i = 0; i < 200; i++) {
+            log.append(getEvent(i));
+        }
+        assertTrue(log.getSize() <= MAX_SIZE);
+
+        // The oldest events were dropped, and the newest are kept
+        TravelBehaviorEventLog.Reader reader = log.openReader();
+        List<String> events = readAll(reader);
+        assertTrue(events.size() < 200);
+        assertEquals(getEvent(199), events.get(events.size() - 1));
+        reader.commit();
+    }
+
+    private static List<String> readAll(TravelBehaviorEventLog.Reader reader) throws IOException {
+        List<String> events = new ArrayList<>();
+        String event;
+        while ((event = reader.next()) != null) {
+            events.add(event);
+        }
+        assertNull(reader.next());
+        return events;
+    }
+
+    private static String getEvent(int i) {
+        return "{\"event\":" + i + ",\"stopId\":\"Hillsborough Area Regional Transit_3105\"}";
+    }
+
+    private static String[] getEvents(int start, int end) {
+        String[] events = new String[end - start];
+        for (int i = start; i < end; i++) {
+            events[i - start] = getEvent(i);
+        }
+        return events;
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.travelbehavior.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorEventLog;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorUploadBatch;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorUploadPipeline;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorUploader;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Tests uploading the travel behavior event log in batches to an in-process uploader, including
+ * continuing from the checkpoint after a failed upload
+ */
+@RunWith(AndroidJUnit4.class)
+public class TravelBehaviorUploadPipelineTest {
+
+    private static final String TAG = "TBUploadPipelineTest";
+
+    private static final String FOLDER = "upload-pipeline-test";
+
+    private static final int EVENTS = 350;
+
+    private File mDir;
+
+    private SharedPreferences mPrefs;
+
+    private TravelBehaviorEventLog mLog;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = new File(getTargetContext().getCacheDir(), FOLDER);
+        deleteDir();
+        mPrefs = getTargetContext().getSharedPreferences(FOLDER, Context.MODE_PRIVATE);
+        mPrefs.edit().clear().commit();
+
+        mLog = new TravelBehaviorEventLog(mDir, TravelBehaviorEventLog.SEGMENT_SIZE,
+                TravelBehaviorEventLog.MAX_SIZE);
+        for (int i = 0; i < EVENTS; i++) {
+            mLog.append("{\"id\":" + i + ",\"stopId\":\"Hillsborough Area Regional "
+                    + "Transit_3105\",\"routeId\":\"Hillsborough Area Regional Transit_6\"}");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        deleteDir();
+        mPrefs.edit().clear().commit();
+    }
+
+    @Test
+    public void testUpload() throws IOException {
+        LocalUploader uploader = new LocalUploader();
+        TravelBehaviorUploadPipeline.Stats stats = newPipeline(uploader).run("user", "record");
+        Log.d(TAG, "Uploaded " + stats);
+
+        assertEquals(EVENTS, stats.getRecords());
+        assertEquals(EVENTS, uploader.mIds.size());
+        assertEquals((EVENTS + TravelBehaviorUploadPipeline.MAX_BATCH_RECORDS - 1)
+                / TravelBehaviorUploadPipeline.MAX_BATCH_RECORDS, stats.getBatches());
+        assertTrue(uploader.mDocuments.containsKey("record"));
+        assertTrue(uploader.mDocuments.containsKey("record-1"));
+        assertTrue(stats.getCompressedBytes() < stats.getBytes());
+
+        // The log is cleared once everything is uploaded
+        assertEquals(0, mDir.list().length);
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        LocalUploader uploader = new LocalUploader();
+        uploader.mFailAt = 3;
+        try {
+            newPipeline(uploader).run("user", "record");
+            fail("The third batch should fail");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(2 * TravelBehaviorUploadPipeline.MAX_BATCH_RECORDS, uploader.mIds.size());
+        assertTrue(mDir.list().length > 0);
+
+        // The next run continues after the uploaded batches, so nothing is uploaded twice
+        uploader.mFailAt = -1;
+        TravelBehaviorUploadPipeline.Stats stats = newPipeline(uploader).run("user", "record");
+        assertEquals(EVENTS - 2 * TravelBehaviorUploadPipeline.MAX_BATCH_RECORDS,
+                stats.getRecords());
+        assertEquals(EVENTS, uploader.mIds.size());
+        assertEquals(EVENTS, uploader.mRecords);
+        assertTrue(uploader.mDocuments.containsKey("record-2"));
+    }
+
+    private TravelBehaviorUploadPipeline<Event> newPipeline(TravelBehaviorUploader uploader) {
+        return new TravelBehaviorUploadPipeline<>(mLog, FOLDER, Event.class,
+                records -> records, uploader, mPrefs);
+    }
+
+    private void deleteDir() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    public static class Event {
+
+        public int id;
+
+        public String stopId;
+
+        public String routeId;
+    }
+
+    /**
+     * Keeps uploaded batches in memory, and fails the upload at a given call
+     */
+    private static class LocalUploader implements TravelBehaviorUploader {
+
+        final Map<String, byte[]> mDocuments = new TreeMap<>();
+
+        final Set<Integer> mIds = new HashSet<>();
+
+        int mRecords;
+
+        int mCalls;
+
+        int mFailAt = -1;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void upload(TravelBehaviorUploadBatch batch) throws IOException {
+            if (++mCalls == mFailAt) {
+                throw new IOException("Upload " + mCalls + " failed");
+            }
+            mDocuments.put(batch.getDocumentId(), batch.getCompressed());
+            for (Event event : (List<Event>) batch.getDocument()) {
+                mIds.add(event.id);
+                mRecords++;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.tripservice.test;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.onebusaway.android.tripservice.PollScheduler;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests grouping trip reminders by stop and adapting the polling interval to the ETA, and
+ * compares the number of arrivals requests per hour against polling each reminder every minute
+ */
+@RunWith(AndroidJUnit4.class)
+public class PollSchedulerTest {
+
+    private static final String TAG = "PollSchedulerTest";
+
+    private static final long ONE_MINUTE = 60 * 1000;
+
+    private static final int REMINDER_COUNT = 10;
+
+    private static final int STOP_COUNT = 2;
+
+    private static final long REMINDER_MIN = 5;
+
+    @After
+    public void tearDown() {
+        PollScheduler.getInstance().clear();
+    }
+
+    @Test
+    public void testPollInterval() {
+        assertEquals(15 * 1000, PollScheduler.getPollInterval(1));
+        assertEquals(30 * 1000, PollScheduler.getPollInterval(4));
+        assertEquals(ONE_MINUTE, PollScheduler.getPollInterval(8));
+        assertEquals(2 * ONE_MINUTE, PollScheduler.getPollInterval(15));
+        assertEquals(5 * ONE_MINUTE, PollScheduler.getPollInterval(30));
+        // Already notified
+        assertEquals(PollScheduler.DEFAULT_INTERVAL, PollScheduler.getPollInterval(0));
+    }
+
+    @Test
+    public void testExactAlarms() {
+        PollScheduler scheduler = PollScheduler.getInstance();
+        long now = 0;
+        // A bus 8 minutes from the reminder time is polled every minute, and a cycle deferred by
+        // Doze could miss the reminder
+        long next = now + PollScheduler.getPollInterval(8);
+        scheduler.setReminderTime(1L, now + 8 * ONE_MINUTE);
+        assertTrue(scheduler.needsExactAlarm(next));
+
+        // A bus 30 minutes away can wait for WorkManager
+        scheduler.setReminderTime(1L, now + 30 * ONE_MINUTE);
+        assertFalse(scheduler.needsExactAlarm(now + PollScheduler.getPollInterval(30)));
+
+        // Unless the next cycle would be after the bus is within the reminder time
+        assertTrue(scheduler.needsExactAlarm(now + 31 * ONE_MINUTE));
+
+        // Already notified
+        scheduler.setReminderTime(1L, 0);
+        assertFalse(scheduler.needsExactAlarm(next));
+
+        // Reminders that aren't active anymore don't need alarms
+        scheduler.setReminderTime(2L, now + ONE_MINUTE);
+        scheduler.remove(2L);
+        assertFalse(scheduler.needsExactAlarm(next));
+    }
+
+    @Test
+    public void testWakeups() {
+        PollScheduler scheduler = PollScheduler.getInstance();
+        HashMap<Long, String> alertStops = new HashMap<>();
+        alertStops.put(1L, "1_100");
+        alertStops.put(2L, "1_200");
+        scheduler.onWakeup(alertStops.keySet());
+        alertStops.remove(2L);
+        scheduler.getDueAlerts(alertStops, 0);
+        scheduler.onWakeup(alertStops.keySet());
+        assertEquals(2, scheduler.getWakeups(1L));
+        // Forgotten once it's no longer active
+        assertEquals(0, scheduler.getWakeups(2L));
+        scheduler.remove(1L);
+        assertEquals(0, scheduler.getWakeups(1L));
+    }
+
+    @Test
+    public void testGroupByStop() {
+        PollScheduler scheduler = PollScheduler.getInstance();
+        HashMap<Long, String> alertStops = new HashMap<>();
+        alertStops.put(1L, "1_100");
+        alertStops.put(2L, "1_100");
+        alertStops.put(3L, "1_200");
+
+        Map<String, List<Long>> due = scheduler.getDueAlerts(alertStops, 0);
+        assertEquals(2, due.size());
+        assertEquals(2, due.get("1_100").size());
+        assertEquals(1, due.get("1_200").size());
+
+        // Alert 3 isn't due again until later, so only stop 1_100 is requested
+        scheduler.setNextPoll(1L, ONE_MINUTE);
+        scheduler.setNextPoll(2L, 2 * ONE_MINUTE);
+        scheduler.setNextPoll(3L, 5 * ONE_MINUTE);
+        assertEquals(ONE_MINUTE, scheduler.getNextCycle(alertStops.keySet(), 0));
+        due = scheduler.getDueAlerts(alertStops, ONE_MINUTE);
+        assertEquals(1, due.size());
+        assertEquals(1, due.get("1_100").size());
+    }
+
+    @Test
+    public void testRequestsPerHour() {
+        PollScheduler scheduler = PollScheduler.getInstance();
+        // Buses arrive over the hour, at one of a few stops
+        HashMap<Long, String> alertStops = new HashMap<>();
+        long[] arrivalTimes = new long[REMINDER_COUNT];
+        for (int i = 0; i < REMINDER_COUNT; i++) {
+            alertStops.put((long) i, "1_" + (i % STOP_COUNT));
+            arrivalTimes[i] = (10 + i * 5) * ONE_MINUTE;
+        }
+
+        long now = 0;
+        int requests = 0;
+        while (now < 60 * ONE_MINUTE) {
+            Map<String, List<Long>> due = scheduler.getDueAlerts(alertStops, now);
+            for (List<Long> alerts : due.values()) {
+                scheduler.onRequest(now);
+                requests++;
+                for (Long id : alerts) {
+                    long eta = (arrivalTimes[id.intValue()] - now) / ONE_MINUTE;
+                    scheduler.setNextPoll(id,
+                            now + PollScheduler.getPollInterval(eta - REMINDER_MIN));
+                }
+            }
+            // Alarms for the next cycle can't be set in the past
+            now = Math.max(now + 1000, scheduler.getNextCycle(alertStops.keySet(), now));
+        }
+        assertTrue(scheduler.getRequestsInLastHour(now) <= requests);
+
+        // Each reminder used to make its own request every minute
+        int perMinuteRequests = REMINDER_COUNT * 60;
+        Log.d(TAG, REMINDER_COUNT + " reminders at " + STOP_COUNT + " stops - coalesced: "
+                + requests + " requests/hour, per reminder: " + perMinuteRequests
+                + " requests/hour");
+        assertTrue(requests < perMinuteRequests);
+    }
+}
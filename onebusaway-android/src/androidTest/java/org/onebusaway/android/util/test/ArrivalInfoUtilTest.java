@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.util.test;
+
+import org.junit.Test;
+import org.onebusaway.android.app.Application;
+import org.onebusaway.android.io.elements.ObaArrivalInfo;
+import org.onebusaway.android.io.elements.ObaRegion;
+import org.onebusaway.android.io.request.ObaArrivalInfoRequest;
+import org.onebusaway.android.io.request.ObaArrivalInfoResponse;
+import org.onebusaway.android.io.test.ObaTestCase;
+import org.onebusaway.android.mock.MockRegion;
+import org.onebusaway.android.ui.ArrivalInfo;
+import org.onebusaway.android.util.ArrivalInfoUtils;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import static androidx.test.InstrumentationRegistry.getTargetContext;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests converting arrivals from the arrivals fixtures into ArrivalInfo, and compares the time
+ * taken against building and formatting each ArrivalInfo before sorting
+ */
+public class ArrivalInfoUtilTest extends ObaTestCase {
+
+    private static final String TAG = "ArrivalInfoUtilTest";
+
+    private static final int ITERATIONS = 200;
+
+    @Test
+    public void testConvertObaArrivalInfo() {
+        ObaRegion tampa = MockRegion.getTampa(getTargetContext());
+        assertNotNull(tampa);
+        Application.get().setCurrentRegion(tampa);
+
+        ObaArrivalInfoResponse response =
+                new ObaArrivalInfoRequest.Builder(getTargetContext(),
+                        "Hillsborough Area Regional Transit_3105").build().call();
+        assertOK(response);
+        ObaArrivalInfo[] arrivals = response.getArrivalInfo();
+        assertNotNull(arrivals);
+        long now = response.getCurrentTime();
+
+        ArrayList<ArrivalInfo> expected = convertEachArrival(arrivals, now);
+        ArrayList<ArrivalInfo> actual = ArrivalInfoUtils.convertObaArrivalInfo(getTargetContext(),
+                arrivals, null, now, true);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getInfo(), actual.get(i).getInfo());
+            assertEquals(expected.get(i).getEta(), actual.get(i).getEta());
+            assertEquals(expected.get(i).getStatusText(), actual.get(i).getStatusText());
+            assertEquals(expected.get(i).getTimeText(), actual.get(i).getTimeText());
+        }
+
+        // Filter by the route of the first arrival
+        String routeId = arrivals[0].getRouteId();
+        ArrayList<String> filter = new ArrayList<>();
+        filter.add(routeId);
+        ArrayList<ArrivalInfo> filtered = ArrivalInfoUtils.convertObaArrivalInfo(
+                getTargetContext(), arrivals, filter, now, true);
+        assertTrue(filtered.size() > 0);
+        for (ArrivalInfo info : filtered) {
+            assertEquals(routeId, info.getInfo().getRouteId());
+        }
+
+        // Time each approach, formatting only the first few rows as if they were on screen
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            convertEachArrival(arrivals, now);
+        }
+        long eachTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            ArrayList<ArrivalInfo> list = ArrivalInfoUtils.convertObaArrivalInfo(
+                    getTargetContext(), arrivals, null, now, true);
+            for (int j = 0; j < Math.min(5, list.size()); j++) {
+                list.get(j).getStatusText();
+                list.get(j).getTimeText();
+            }
+        }
+        long batchTime = System.nanoTime() - start;
+
+        Log.d(TAG, arrivals.length + " arrivals x " + ITERATIONS + " - each: "
+                + TimeUnit.NANOSECONDS.toMillis(eachTime) + "ms, batch: "
+                + TimeUnit.NANOSECONDS.toMillis(batchTime) + "ms");
+    }
+
+    @Test
+    public void testSameArrivals() {
+        ObaRegion tampa = MockRegion.getTampa(getTargetContext());
+        assertNotNull(tampa);
+        Application.get().setCurrentRegion(tampa);
+
+        ObaArrivalInfoResponse response =
+                new ObaArrivalInfoRequest.Builder(getTargetContext(),
+                        "Hillsborough Area Regional Transit_3105").build().call();
+        assertOK(response);
+        ObaArrivalInfo[] arrivals = response.getArrivalInfo();
+        long now = response.getCurrentTime();
+
+        // The same response converted twice is the same rows, displayed the same way
+        ArrayList<ArrivalInfo> first = ArrivalInfoUtils.convertObaArrivalInfo(getTargetContext(),
+                arrivals, null, now, true);
+        ArrayList<ArrivalInfo> second = ArrivalInfoUtils.convertObaArrivalInfo(getTargetContext(),
+                arrivals, null, now, true);
+        assertTrue(first.size() > 1);
+        for (int i = 0; i < first.size(); i++) {
+            assertTrue(first.get(i).isSameArrival(second.get(i)));
+            assertTrue(first.get(i).isDisplayedSameAs(second.get(i)));
+        }
+        assertFalse(first.get(0).isSameArrival(first.get(1)));
+
+        // A minute later, the ETAs change but the rows are still for the same arrivals
+        ArrivalInfo later = new ArrivalInfo(getTargetContext(), first.get(0).getInfo(),
+                now + 60 * 1000, true);
+        assertTrue(first.get(0).isSameArrival(later));
+        assertFalse(first.get(0).isDisplayedSameAs(later));
+    }
+
+    @Test
+    public void testRefreshPeriod() {
+        // Arriving soon
+        assertEquals(ArrivalInfoUtils.MIN_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(2, 0, 0));
+        assertEquals(ArrivalInfoUtils.DEFAULT_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(10, 0, 0));
+        // Far out, or nothing coming
+        assertEquals(2 * ArrivalInfoUtils.DEFAULT_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(25, 0, 0));
+        assertEquals(2 * ArrivalInfoUtils.DEFAULT_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(Long.MAX_VALUE, 0, 0));
+        // Volatile predictions
+        assertEquals(ArrivalInfoUtils.MIN_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(10, 2 * 60 * 1000, 0));
+        // Identical responses back off, up to the max
+        assertEquals(2 * ArrivalInfoUtils.DEFAULT_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(10, 0, 1));
+        assertEquals(ArrivalInfoUtils.MAX_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(10, 0, 5));
+        // ...but not when a vehicle is arriving soon
+        assertEquals(ArrivalInfoUtils.MIN_REFRESH_PERIOD,
+                ArrivalInfoUtils.getRefreshPeriod(2, 0, 2));
+    }
+
+    /**
+     * Counts the requests made during a 10 minute session with the adaptive refresh period,
+     * compared to refreshing every minute
+     */
+    @Test
+    public void testRefreshSession() {
+        final long session = 10 * 60 * 1000;
+        final long fixedRequests = session / ArrivalInfoUtils.DEFAULT_REFRESH_PERIOD;
+
+        // Next bus is 25 minutes out and schedule-only, so responses don't change
+        int farRequests = countRequests(session, 25 * 60 * 1000, 0);
+        // Next bus is 8 minutes out, with predictions changing by 20 seconds each response
+        int nearRequests = countRequests(session, 8 * 60 * 1000, 20 * 1000);
+
+        Log.d(TAG, "Requests in a 10 minute session - fixed: " + fixedRequests
+                + ", far and unchanged: " + farRequests + ", arriving: " + nearRequests);
+        assertTrue(farRequests < fixedRequests);
+        assertTrue(nearRequests > farRequests);
+    }
+
+    private static int countRequests(long session, long arrival, long change) {
+        int requests = 0;
+        int unchanged = 0;
+        long time = 0;
+        while (time < session) {
+            requests++;
+            if (change == 0 && requests > 1) {
+                unchanged++;
+            }
+            long eta = TimeUnit.MILLISECONDS.toMinutes(Math.max(0, arrival - time));
+            time += ArrivalInfoUtils.getRefreshPeriod(eta, change, unchanged);
+        }
+        return requests;
+    }
+
+    /**
+     * Converts the arrivals by building and formatting each ArrivalInfo and then sorting, as
+     * done before the batch conversion
+     */
+    private static ArrayList<ArrivalInfo> convertEachArrival(ObaArrivalInfo[] arrivals,
+            long now) {
+        ArrayList<ArrivalInfo> result = new ArrayList<>(arrivals.length);
+        for (ObaArrivalInfo arrival : arrivals) {
+            ArrivalInfo info = new ArrivalInfo(getTargetContext(), arrival, now, true);
+            info.getStatusText();
+            info.getTimeText();
+            info.getNotifyText();
+            result.add(info);
+        }
+        Collections.sort(result, new Comparator<ArrivalInfo>() {
+            @Override
+            public int compare(ArrivalInfo lhs, ArrivalInfo rhs) {
+                return (int) (lhs.getEta() - rhs.getEta());
+            }
+        });
+        return result;
+    }
+}
@@ -20,20 +20,27 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.onebusaway.android.io.elements.ObaRegion;
+import org.onebusaway.android.io.elements.ObaRegionElement;
 import org.onebusaway.android.mock.MockRegion;
+import org.onebusaway.android.region.RegionIndex;
 import org.onebusaway.android.util.LocationUtils;
 import org.onebusaway.android.util.RegionUtils;
 
 import android.location.Location;
+import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import androidx.test.runner.AndroidJUnit4;
 
 import static androidx.test.InstrumentationRegistry.getTargetContext;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 
 /**
@@ -42,6 +49,8 @@ import static junit.framework.Assert.assertTrue;
 @RunWith(AndroidJUnit4.class)
 public class RegionUtilTest {
 
+    private static final String TAG = "RegionUtilTest";
+
     public static final float APPROXIMATE_DISTANCE_EQUALS_THRESHOLD = 2;  // meters
 
     // Mock regions to use in tests
@@ -160,6 +169,53 @@ public class RegionUtilTest {
         assertFalse(RegionUtils.isLocationWithinRegion(mTampaLoc, mAtlantaRegion));
     }
 
+    @Test
+    public void testIsLocationWithinRegionUsesProvidedRegion() {
+        ArrayList<ObaRegion> list = new ArrayList<>();
+        list.add(mPsRegion);
+        RegionUtils.getRegionIndex(list);
+        // A region with the same ID as Puget Sound that covers Tampa instead
+        ObaRegionElement.Bounds[] bounds = new ObaRegionElement.Bounds[]{
+                new ObaRegionElement.Bounds(mTampaLoc.getLatitude(), mTampaLoc.getLongitude(),
+                        0.5, 0.5)};
+        ObaRegion moved = new ObaRegionElement(mPsRegion.getId(), "Moved", true,
+                "https://example.com/", "", bounds, new ObaRegionElement.Open311Server[0],
+                "en_US", "", true, true, false, "", false, "", "", "", false, false, null, null,
+                null, false, false);
+
+        assertTrue(RegionUtils.isLocationWithinRegion(mTampaLoc, moved));
+        assertFalse(RegionUtils.isLocationWithinRegion(mSeattleLoc, moved));
+        assertTrue(RegionUtils.isLocationWithinRegion(mSeattleLoc, mPsRegion));
+    }
+
+    @Test
+    public void testRegionIndexReusedForSameRegions() {
+        ArrayList<ObaRegion> first = new ArrayList<>();
+        ArrayList<ObaRegion> second = new ArrayList<>();
+        Random firstRandom = new Random(0);
+        Random secondRandom = new Random(0);
+        for (int i = 0; i < 10; i++) {
+            first.add(createRegion(i, firstRandom));
+            second.add(createRegion(i, secondRandom));
+        }
+        // Equal regions in a different list (e.g., read from the database again) reuse the index
+        RegionIndex index = RegionUtils.getRegionIndex(first);
+        assertSame(index, RegionUtils.getRegionIndex(second));
+
+        // Lookups return the caller's instance, even when only the server URLs changed
+        ObaRegion moved = createRegion(0, new Random(0), "https://example.org/");
+        second.set(0, moved);
+        Location loc = new Location("test");
+        loc.setLatitude(moved.getBounds()[0].getLat());
+        loc.setLongitude(moved.getBounds()[0].getLon());
+        assertSame(moved, RegionUtils.getClosestRegion(second, loc, false));
+
+        // Reloaded regions rebuild it
+        second.set(0, createRegion(0, new Random(1)));
+        RegionUtils.updateRegionIndex(second);
+        assertNotSame(index, RegionUtils.getRegionIndex(second));
+    }
+
     @Test
     public void testIsRegionUsable() {
         assertTrue(RegionUtils.isRegionUsable(mPsRegion));
@@ -170,6 +226,78 @@ public class RegionUtilTest {
         assertFalse(RegionUtils.isRegionUsable(MockRegion.getInactiveRegion(getTargetContext())));
     }
 
+    /**
+     * Compares the closest region from the spatial index against checking the distance to every
+     * bound of every region, for a synthetic list of 500 regions
+     */
+    @Test
+    public void testRegionIndexBenchmark() {
+        final int regionCount = 500;
+        final int queryCount = 1000;
+        Random random = new Random(0);
+        ArrayList<ObaRegion> regions = new ArrayList<>(regionCount);
+        for (int i = 0; i < regionCount; i++) {
+            regions.add(createRegion(i, random));
+        }
+        RegionIndex index = new RegionIndex(regions);
+
+        double[][] queries = new double[queryCount][];
+        for (int i = 0; i < queryCount; i++) {
+            queries[i] = new double[]{random.nextDouble() * 140 - 70,
+                    random.nextDouble() * 360 - 180};
+        }
+
+        ObaRegion[] indexed = new ObaRegion[queryCount];
+        long start = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            indexed[i] = index.getClosestRegion(queries[i][0], queries[i][1]);
+        }
+        long indexTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queryCount; i++) {
+            ObaRegion closest = null;
+            float minDistance = Float.MAX_VALUE;
+            for (ObaRegion region : regions) {
+                float distance = RegionUtils.getDistanceAway(region, queries[i][0], queries[i][1]);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    closest = region;
+                }
+            }
+            // The index uses a spherical distance, so allow ties within a few meters to differ
+            if (closest != indexed[i]) {
+                float indexedDistance = RegionUtils.getDistanceAway(indexed[i], queries[i][0],
+                        queries[i][1]);
+                assertTrue(indexedDistance - minDistance < indexedDistance * 0.005);
+            }
+        }
+        long linearTime = System.nanoTime() - start;
+
+        Log.d(TAG, regionCount + " regions, " + queryCount + " queries - index: "
+                + TimeUnit.NANOSECONDS.toMicros(indexTime) + "us, linear: "
+                + TimeUnit.NANOSECONDS.toMicros(linearTime) + "us");
+        // Each closest-region query should take well under a millisecond
+        assertTrue(indexTime / queryCount < TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static ObaRegion createRegion(long id, Random random) {
+        return createRegion(id, random, "https://example.com/");
+    }
+
+    private static ObaRegion createRegion(long id, Random random, String obaBaseUrl) {
+        double lat = random.nextDouble() * 140 - 70;
+        double lon = random.nextDouble() * 360 - 180;
+        ObaRegionElement.Bounds[] bounds = new ObaRegionElement.Bounds[1 + random.nextInt(8)];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = new ObaRegionElement.Bounds(lat + random.nextDouble(),
+                    lon + random.nextDouble(), 0.5, 0.5);
+        }
+        return new ObaRegionElement(id, "Region " + id, true, obaBaseUrl, "",
+                bounds, new ObaRegionElement.Open311Server[0], "en_US", "", true, true, false,
+                "", false, "", "", "", false, false, null, null, null, false, false);
+    }
+
     /**
      * Asserts that the expectedDistance is approximately equal to the actual distance, within
      * APPROXIMATE_DISTANCE_EQUALS_THRESHOLD
@@ -64,10 +64,12 @@ import org.onebusaway.android.io.elements.ObaShape;
 import org.onebusaway.android.io.elements.ObaStop;
 import org.onebusaway.android.io.request.ObaResponse;
 import org.onebusaway.android.io.request.ObaTripsForRouteResponse;
+import org.onebusaway.android.map.CompactShape;
 import org.onebusaway.android.map.DirectionsMapController;
 import org.onebusaway.android.map.MapModeController;
 import org.onebusaway.android.map.MapParams;
 import org.onebusaway.android.map.RouteMapController;
+import org.onebusaway.android.map.ShapeCache;
 import org.onebusaway.android.map.StopMapController;
 import org.onebusaway.android.map.bike.BikeshareMapController;
 import org.onebusaway.android.map.googlemapsv2.bike.BikeStationOverlay;
@@ -162,8 +164,16 @@ public class BaseMapFragment extends SupportMapFragment
 
     private String mMapMode = "";
 
+    private boolean mClusterStops = false;
+
     private ArrayList<Polyline> mLineOverlay = new ArrayList<Polyline>();
 
+    // Decoded shape for each polyline in mLineOverlay
+    private ArrayList<CompactShape> mLineShapes = new ArrayList<CompactShape>();
+
+    // Zoom level that the polylines in mLineOverlay were simplified for
+    private int mLineZoom = -1;
+
     // Markers that are added to the map by classes external to this map package
     private SimpleMarkerOverlay mSimpleMarkerOverlay;
 
@@ -540,6 +550,7 @@ public class BaseMapFragment extends SupportMapFragment
         }
         mStopOverlay = new StopOverlay(getActivity(), mMap);
         mStopOverlay.setOnFocusChangeListener(this);
+        mStopOverlay.setClusteringEnabled(mClusterStops);
         return true;
     }
 
@@ -591,8 +602,11 @@ public class BaseMapFragment extends SupportMapFragment
         } else {
             mControllers = new ArrayList<>();
         }
+        // Clustering would hide the stops of a route behind clusters, so only use it in stop mode
+        mClusterStops = MapParams.MODE_STOP.equals(mode);
         if (mStopOverlay != null) {
             mStopOverlay.clear(false);
+            mStopOverlay.setClusteringEnabled(mClusterStops);
         }
         BikeshareMapController bikeshareMapController = new BikeshareMapController(this);
         setupBikeStationOverlay(MapParams.MODE_DIRECTIONS.equals(mode));
@@ -1026,20 +1040,24 @@ public class BaseMapFragment extends SupportMapFragment
         if (mMap != null) {
             if (clear) {
                 mLineOverlay.clear();
+                mLineShapes.clear();
             }
             PolylineOptions lineOptions;
 
             int totalPoints = 0;
+            mLineZoom = (int) getZoomLevelAsFloat();
 
             for (ObaShape s : shapes) {
+                CompactShape shape = ShapeCache.getInstance().get(s);
                 lineOptions = new PolylineOptions();
                 lineOptions.color(lineOverlayColor);
 
-                for (Location l : s.getPoints()) {
-                    lineOptions.add(MapHelpV2.makeLatLng(l));
+                for (LatLng l : getSimplifiedPoints(shape, mLineZoom)) {
+                    lineOptions.add(l);
                 }
                 // Add the line to the map, and keep a reference in the ArrayList
                 mLineOverlay.add(mMap.addPolyline(lineOptions));
+                mLineShapes.add(shape);
 
                 totalPoints += lineOptions.getPoints().size();
             }
@@ -1053,6 +1071,46 @@ public class BaseMapFragment extends SupportMapFragment
         setRouteOverlay(lineOverlayColor, shapes, true);
     }
 
+    /**
+     * Re-simplifies the route polylines if the map has been zoomed to a different level
+     */
+    private void updateRouteOverlayZoom(float zoom) {
+        int level = (int) zoom;
+        if (level == mLineZoom || mLineOverlay.size() != mLineShapes.size()) {
+            return;
+        }
+        mLineZoom = level;
+        for (int i = 0; i < mLineOverlay.size(); i++) {
+            mLineOverlay.get(i).setPoints(getSimplifiedPoints(mLineShapes.get(i), level));
+        }
+    }
+
+    private static List<LatLng> getSimplifiedPoints(CompactShape shape, float zoom) {
+        int[] indexes = shape.getSimplifiedIndexes(zoom);
+        List<LatLng> points = new ArrayList<>(indexes.length);
+        for (int i : indexes) {
+            points.add(MapHelpV2.makeLatLng(shape.getLatitude(i), shape.getLongitude(i)));
+        }
+        return points;
+    }
+
+    /**
+     * Returns the bounds of all route polylines, using the full shapes rather than the
+     * simplified points drawn on the map
+     */
+    private LatLngBounds getRouteOverlayBounds() {
+        LatLngBounds.Builder builder = new LatLngBounds.Builder();
+        for (CompactShape shape : mLineShapes) {
+            if (shape.size() > 0) {
+                builder.include(MapHelpV2.makeLatLng(shape.getMinLatitude(),
+                        shape.getMinLongitude()));
+                builder.include(MapHelpV2.makeLatLng(shape.getMaxLatitude(),
+                        shape.getMaxLongitude()));
+            }
+        }
+        return builder.build();
+    }
+
     /**
      * Updates markers for the provided routeIds from the status info from the given
      * ObaTripsForRouteResponse
@@ -1080,18 +1138,13 @@ public class BaseMapFragment extends SupportMapFragment
     public void zoomToRoute() {
         if (mMap != null) {
             if (!mLineOverlay.isEmpty()) {
-                LatLngBounds.Builder builder = new LatLngBounds.Builder();
-                for (Polyline p : mLineOverlay) {
-                    for (LatLng l : p.getPoints()) {
-                        builder.include(l);
-                    }
-                }
+                LatLngBounds bounds = getRouteOverlayBounds();
 
                 Activity a = getActivity();
                 if (a != null) {
                     int padding = UIUtils.dpToPixels(a, DEFAULT_MAP_PADDING_DP);
                     mMap.moveCamera(
-                            (CameraUpdateFactory.newLatLngBounds(builder.build(), padding)));
+                            (CameraUpdateFactory.newLatLngBounds(bounds, padding)));
                 }
             } else {
                 Toast.makeText(getActivity(), getString(R.string.route_info_no_shape_data),
@@ -1104,18 +1157,13 @@ public class BaseMapFragment extends SupportMapFragment
     public void zoomToItinerary() {
         if (mMap != null) {
             if (!mLineOverlay.isEmpty()) {
-                LatLngBounds.Builder builder = new LatLngBounds.Builder();
-                for (Polyline p : mLineOverlay) {
-                    for (LatLng l : p.getPoints()) {
-                        builder.include(l);
-                    }
-                }
+                LatLngBounds bounds = getRouteOverlayBounds();
 
                 Activity a = getActivity();
                 if (a != null) {
                     int padding = UIUtils.dpToPixels(a, DEFAULT_MAP_PADDING_DP);
                     mMap.moveCamera(
-                            (CameraUpdateFactory.newLatLngBounds(builder.build(),
+                            (CameraUpdateFactory.newLatLngBounds(bounds,
                                     getResources().getDisplayMetrics().widthPixels,
                                     getResources().getDisplayMetrics().heightPixels,
                                     padding)));
@@ -1168,6 +1216,7 @@ public class BaseMapFragment extends SupportMapFragment
         }
 
         mLineOverlay.clear();
+        mLineShapes.clear();
     }
 
     /**
@@ -1206,6 +1255,10 @@ public class BaseMapFragment extends SupportMapFragment
     @Override
     public void onCameraChange(CameraPosition cameraPosition) {
         Log.d(TAG, "onCameraChange");
+        updateRouteOverlayZoom(cameraPosition.zoom);
+        if (mStopOverlay != null) {
+            mStopOverlay.updateClusters();
+        }
         if (mControllers != null) {
             for (MapModeController controller : mControllers) {
                 controller.notifyMapChanged();
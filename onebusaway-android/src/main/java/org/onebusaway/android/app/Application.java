@@ -20,9 +20,6 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
-import android.content.pm.PackageManager.NameNotFoundException;
 import android.hardware.GeomagneticField;
 import android.location.Location;
 import android.location.LocationManager;
@@ -50,6 +47,8 @@ import org.onebusaway.android.BuildConfig;
 import org.onebusaway.android.R;
 import org.onebusaway.android.io.ObaAnalytics;
 import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.ObaKeepAliveConnectionFactory;
+import org.onebusaway.android.io.ObaResponseCache;
 import org.onebusaway.android.io.elements.ObaRegion;
 import org.onebusaway.android.provider.ObaContract;
 import org.onebusaway.android.report.ui.util.SocialReportHandler;
@@ -112,8 +111,6 @@ public class Application extends MultiDexApplication {
         mApp = this;
         mPrefs = PreferenceManager.getDefaultSharedPreferences(this);
 
-        fixGoogleMapCrash();
-
         // Make sure ES SDK only runs when the app is in the foreground
         // (Workaround for #933 until ES SDK doesn't run Services in the background)
         ProcessLifecycleOwner.get().getLifecycle().addObserver(
@@ -124,15 +121,58 @@ public class Application extends MultiDexApplication {
                     }
                 });
 
-        initOba();
-        initObaRegion();
-        initOpen311(getCurrentRegion());
+        StartupTaskGraph startup = new StartupTaskGraph();
 
-        reportAnalytics();
+        // Needed before the first frame
+        startup.add(new StartupTaskGraph.Task("fixGoogleMapCrash", true) {
+            @Override
+            protected void run() {
+                fixGoogleMapCrash();
+            }
+        });
+        startup.add(new StartupTaskGraph.Task("initOba", true) {
+            @Override
+            protected void run() {
+                initOba();
+            }
+        });
+        // The first activity reads the region on the main thread, so waiting for a background
+        // thread to load it would only add a priority inversion
+        StartupTaskGraph.Task regionTask = startup.add(
+                new StartupTaskGraph.Task("initObaRegion", true) {
+                    @Override
+                    protected void run() {
+                        initObaRegion();
+                    }
+                });
 
-        createNotificationChannels();
+        // Deferred to a background thread
+        startup.add(new StartupTaskGraph.Task("initOpen311", false, regionTask) {
+            @Override
+            protected void run() {
+                initOpen311(getCurrentRegion());
+            }
+        });
+        startup.add(new StartupTaskGraph.Task("reportAnalytics", false, regionTask) {
+            @Override
+            protected void run() {
+                reportAnalytics();
+            }
+        });
+        startup.add(new StartupTaskGraph.Task("createNotificationChannels", false) {
+            @Override
+            protected void run() {
+                createNotificationChannels();
+            }
+        });
+        startup.add(new StartupTaskGraph.Task("startCollectingData", false) {
+            @Override
+            protected void run() {
+                TravelBehaviorManager.startCollectingData(getApplicationContext());
+            }
+        });
 
-        TravelBehaviorManager.startCollectingData(getApplicationContext());
+        startup.start();
     }
 
     /**
@@ -453,6 +493,13 @@ public class Application extends MultiDexApplication {
     }
 
     private void initOba() {
+        // Reuse connections and request compressed responses for all OBA REST API requests
+        ObaApi.getDefaultContext().setConnectionFactory(
+                new ObaKeepAliveConnectionFactory.Builder().build());
+        // Cache responses for data that rarely changes, like shapes and routes
+        ObaApi.getDefaultContext().setResponseCache(new ObaResponseCache(
+                new File(getCacheDir(), "oba-responses"), ObaResponseCache.DEFAULT_MAX_SIZE));
+
         String uuid = mPrefs.getString(APP_UID, null);
         if (uuid == null) {
             // Generate one and save that.
@@ -462,16 +509,8 @@ public class Application extends MultiDexApplication {
 
         checkArrivalStylePreferenceDefault();
 
-        // Get the current app version.
-        PackageManager pm = getPackageManager();
-        PackageInfo appInfo = null;
-        try {
-            appInfo = pm.getPackageInfo(getPackageName(), PackageManager.GET_META_DATA);
-        } catch (NameNotFoundException e) {
-            // Do nothing, perhaps we'll get to show it again? Or never.
-            return;
-        }
-        ObaApi.getDefaultContext().setAppInfo(appInfo.versionCode, uuid);
+        // The version code is known at build time, so there's no need to ask the PackageManager
+        ObaApi.getDefaultContext().setAppInfo(BuildConfig.VERSION_CODE, uuid);
     }
 
     private void checkArrivalStylePreferenceDefault() {
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.app;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.core.os.TraceCompat;
+
+/**
+ * Runs the work done when the app process starts.  Tasks that must finish before the first frame
+ * run on the main thread when the graph is started.  The rest run in the order they were added
+ * on a background thread, or on the calling thread if they're awaited before the background
+ * thread gets to them.  A task always runs after the tasks it depends on, and the time each task
+ * takes is logged and added to systrace.
+ */
+public final class StartupTaskGraph {
+
+    private static final String TAG = "StartupTaskGraph";
+
+    /**
+     * Work done at startup, which runs exactly once
+     */
+    public abstract static class Task {
+
+        private final String mName;
+
+        private final boolean mMainThread;
+
+        private final Task[] mDependencies;
+
+        private final AtomicBoolean mStarted = new AtomicBoolean(false);
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+
+        private volatile long mDuration = -1;
+
+        /**
+         * @param name         name of the task in logs and traces
+         * @param mainThread   true if the task must finish before the first frame
+         * @param dependencies tasks that must finish before this task runs
+         */
+        public Task(String name, boolean mainThread, Task... dependencies) {
+            mName = name;
+            mMainThread = mainThread;
+            mDependencies = dependencies;
+        }
+
+        protected abstract void run();
+
+        public String getName() {
+            return mName;
+        }
+
+        public boolean isDone() {
+            return mDone.getCount() == 0;
+        }
+
+        /**
+         * Returns the time the task took to run in milliseconds, or -1 if it hasn't finished
+         */
+        public long getDuration() {
+            return mDuration;
+        }
+
+        /**
+         * Blocks until this task and its dependencies have finished, running any of them that
+         * haven't started yet on the calling thread
+         */
+        public void await() {
+            for (Task dependency : mDependencies) {
+                dependency.await();
+            }
+            if (mStarted.compareAndSet(false, true)) {
+                runAndTrace();
+                return;
+            }
+            boolean interrupted = false;
+            while (!isDone()) {
+                try {
+                    mDone.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void runAndTrace() {
+            long start = System.nanoTime();
+            TraceCompat.beginSection(mName);
+            try {
+                run();
+            } finally {
+                TraceCompat.endSection();
+                mDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                mDone.countDown();
+                Log.d(TAG, mName + " took " + mDuration + "ms on "
+                        + Thread.currentThread().getName());
+            }
+        }
+    }
+
+    private final List<Task> mTasks = new ArrayList<>();
+
+    /**
+     * Adds a task to the graph.  The task's dependencies must already have been added, and a task
+     * that runs on the main thread can only depend on other main thread tasks.
+     *
+     * @return the task that was added
+     */
+    public Task add(Task task) {
+        for (Task dependency : task.mDependencies) {
+            if (!mTasks.contains(dependency)) {
+                throw new IllegalArgumentException(task.mName + " depends on "
+                        + dependency.mName + ", which hasn't been added");
+            }
+            if (task.mMainThread && !dependency.mMainThread) {
+                throw new IllegalArgumentException(task.mName + " runs on the main thread but "
+                        + "depends on " + dependency.mName + ", which doesn't");
+            }
+        }
+        mTasks.add(task);
+        return task;
+    }
+
+    /**
+     * Runs the main thread tasks, then starts running the other tasks in the background.  Must
+     * be called on the main thread.
+     */
+    public void start() {
+        long start = System.nanoTime();
+        final List<Task> background = new ArrayList<>();
+        for (Task task : mTasks) {
+            if (task.mMainThread) {
+                task.await();
+            } else {
+                background.add(task);
+            }
+        }
+        Log.d(TAG, "Main thread tasks took "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        if (background.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Leave the CPU to the main thread while the first frame is drawn
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "StartupTasks");
+            }
+        });
+        for (final Task task : background) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    task.await();
+                }
+            });
+        }
+        // The thread exits once the queued tasks have run
+        executor.shutdown();
+    }
+}
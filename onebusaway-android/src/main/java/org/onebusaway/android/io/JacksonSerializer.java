@@ -26,18 +26,18 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.introspect.VisibilityChecker;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.TextNode;
-import com.fasterxml.jackson.databind.node.TreeTraversingParser;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JacksonSerializer implements ObaApi.SerializationHandler {
 
@@ -57,6 +57,13 @@ public class JacksonSerializer implements ObaApi.SerializationHandler {
                         .withFieldVisibility(JsonAutoDetect.Visibility.ANY));
     }
 
+    /**
+     * ObjectReaders are immutable and thread-safe, so we build one per response class the first
+     * time it's needed and reuse it for every subsequent response of that type
+     */
+    private static final ConcurrentHashMap<Class<?>, ObjectReader> mReaders =
+            new ConcurrentHashMap<>();
+
     private JacksonSerializer() { /* singleton */ }
 
     /**
@@ -67,23 +74,41 @@ public class JacksonSerializer implements ObaApi.SerializationHandler {
     }
 
     /**
-     * Returns the JsonParser if the reader has valid content, null if it does not
+     * Returns a streaming JsonParser positioned on the first token if the reader has valid
+     * content, null if it does not.  Responses are bound directly from the token stream rather
+     * than first being materialized into a JsonNode tree.
      * @param reader
      * @return the JsonParser if the reader has valid content, null if it does not
      * @throws IOException
      */
     private static JsonParser getJsonParser(Reader reader)
             throws IOException {
-        JsonNode node = mMapper.readTree(reader);
-        if (node == null) {
-            // According to Jackson docs, the "input has no content to bind", so return null (error)
+        JsonParser parser = mMapper.getFactory().createParser(reader);
+        if (parser.nextToken() == null) {
+            // The "input has no content to bind", so return null (error)
+            parser.close();
             return null;
         }
-        TreeTraversingParser parser = new TreeTraversingParser(node);
-        parser.setCodec(mMapper);
         return parser;
     }
 
+    /**
+     * Returns the cached ObjectReader for the provided class, creating it if necessary
+     * @param cls the class to bind responses to
+     * @return the cached ObjectReader for the provided class
+     */
+    private static ObjectReader getObjectReader(Class<?> cls) {
+        ObjectReader objectReader = mReaders.get(cls);
+        if (objectReader == null) {
+            objectReader = mMapper.readerFor(cls);
+            ObjectReader existing = mReaders.putIfAbsent(cls, objectReader);
+            if (existing != null) {
+                objectReader = existing;
+            }
+        }
+        return objectReader;
+    }
+
     public String toJson(String input) {
         TextNode node = JsonNodeFactory.instance.textNode(input);
         return node.toString();
@@ -118,7 +143,11 @@ public class JacksonSerializer implements ObaApi.SerializationHandler {
             T t = null;
             JsonParser parser = getJsonParser(reader);
             if (parser != null) {
-                t = parser.readValueAs(cls);
+                try {
+                    t = getObjectReader(cls).readValue(parser);
+                } finally {
+                    parser.close();
+                }
             }
             if (t == null) {
                 t = createFromError(cls, ObaApi.OBA_INTERNAL_ERROR, "Json error");
@@ -16,6 +16,7 @@
 package org.onebusaway.android.io;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 
 /**
@@ -34,7 +35,17 @@ public interface ObaConnection {
 
     public Reader get() throws IOException;
 
+    /**
+     * Same as get(), but returns the raw bytes of the response body for callers that store it
+     * instead of parsing it
+     */
+    public InputStream getStream() throws IOException;
+
     public Reader post(String string) throws IOException;
 
     public int getResponseCode() throws IOException;
+
+    public void setRequestProperty(String key, String value);
+
+    public String getHeaderField(String name);
 }
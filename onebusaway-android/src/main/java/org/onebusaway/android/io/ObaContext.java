@@ -39,6 +39,8 @@ public class ObaContext {
 
     private ObaConnectionFactory mConnectionFactory = ObaDefaultConnectionFactory.getInstance();
 
+    private ObaResponseCache mResponseCache;
+
     private ObaRegion mRegion;
 
     public ObaContext() {
@@ -88,6 +90,20 @@ public class ObaContext {
         return mConnectionFactory;
     }
 
+    /**
+     * Sets the on-disk cache used for responses to requests that provide a cache policy, or null
+     * to disable response caching
+     */
+    public ObaResponseCache setResponseCache(ObaResponseCache cache) {
+        ObaResponseCache prev = mResponseCache;
+        mResponseCache = cache;
+        return prev;
+    }
+
+    public ObaResponseCache getResponseCache() {
+        return mResponseCache;
+    }
+
     public void setBaseUrl(Context context, Uri.Builder builder) {
         // If there is a custom preference, then use that.
         String serverName = Application.get().getCustomApiUrl();
@@ -165,6 +181,7 @@ public class ObaContext {
         result.setApiKey(mApiKey);
         result.setAppInfo(mAppVer, mAppUid);
         result.setConnectionFactory(mConnectionFactory);
+        result.setResponseCache(mResponseCache);
         return result;
     }
 }
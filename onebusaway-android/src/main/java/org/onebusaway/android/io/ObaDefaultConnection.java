@@ -20,6 +20,7 @@ import android.util.Log;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
@@ -50,6 +51,11 @@ public final class ObaDefaultConnection implements ObaConnection {
                 new BufferedInputStream(mConnection.getInputStream(), 8 * 1024));
     }
 
+    @Override
+    public InputStream getStream() throws IOException {
+        return new BufferedInputStream(mConnection.getInputStream(), 8 * 1024);
+    }
+
     @Override
     public Reader post(String string) throws IOException {
         byte[] data = string.getBytes();
@@ -72,4 +78,14 @@ public final class ObaDefaultConnection implements ObaConnection {
     public int getResponseCode() throws IOException {
         return mConnection.getResponseCode();
     }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        mConnection.setRequestProperty(key, value);
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return mConnection.getHeaderField(name);
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A connection created by ObaKeepAliveConnectionFactory.  Unlike ObaDefaultConnection, the
+ * underlying socket isn't closed when the request is finished - the response stream is closed
+ * instead so the socket goes back to the platform keep-alive pool for the next request to the
+ * same host.
+ */
+final class ObaKeepAliveConnection implements ObaConnection {
+
+    private static final String TAG = "ObaKeepAliveConnection";
+
+    private final ObaKeepAliveConnectionFactory mFactory;
+
+    private final HttpURLConnection mConnection;
+
+    private final Semaphore mHostPermits;
+
+    private final long mStartTime;
+
+    private CountingInputStream mWireStream;
+
+    private CountingInputStream mDecodedStream;
+
+    private boolean mReleased = false;
+
+    ObaKeepAliveConnection(Uri uri, ObaKeepAliveConnectionFactory factory) throws IOException {
+        Log.d(TAG, uri.toString());
+        mFactory = factory;
+        mStartTime = SystemClock.elapsedRealtime();
+
+        URL url = new URL(uri.toString());
+        mHostPermits = factory.getHostPermits(url.getAuthority());
+        try {
+            if (!mHostPermits.tryAcquire(factory.getConnectTimeout(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a connection to " + url.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a connection to " + url.getHost());
+        }
+
+        try {
+            mConnection = (HttpURLConnection) url.openConnection();
+        } catch (IOException e) {
+            mHostPermits.release();
+            throw e;
+        }
+        mConnection.setConnectTimeout(factory.getConnectTimeout());
+        mConnection.setReadTimeout(factory.getReadTimeout());
+        // Setting Accept-Encoding ourselves turns off the platform's transparent gzip handling,
+        // so we're responsible for decompressing the response in getReader()
+        mConnection.setRequestProperty("Accept-Encoding", "gzip");
+        mConnection.setRequestProperty("Connection", "keep-alive");
+    }
+
+    @Override
+    public void disconnect() {
+        if (mReleased) {
+            return;
+        }
+        mReleased = true;
+        try {
+            if (mDecodedStream != null) {
+                // Closing (rather than disconnecting) returns the socket to the keep-alive pool
+                mDecodedStream.close();
+            } else {
+                InputStream error = mConnection.getErrorStream();
+                if (error != null) {
+                    error.close();
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, e.toString());
+        } finally {
+            mHostPermits.release();
+            mFactory.onRequestFinished(
+                    mWireStream != null ? mWireStream.getCount() : 0,
+                    mDecodedStream != null ? mDecodedStream.getCount() : 0,
+                    SystemClock.elapsedRealtime() - mStartTime);
+        }
+    }
+
+    @Override
+    public Reader get() throws IOException {
+        return getReader();
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return getDecodedStream();
+    }
+
+    @Override
+    public Reader post(String string) throws IOException {
+        byte[] data = string.getBytes();
+
+        mConnection.setDoOutput(true);
+        mConnection.setFixedLengthStreamingMode(data.length);
+        mConnection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+
+        // Set the output stream
+        OutputStream stream = mConnection.getOutputStream();
+        stream.write(data);
+        stream.flush();
+        stream.close();
+
+        return getReader();
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        return mConnection.getResponseCode();
+    }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        mConnection.setRequestProperty(key, value);
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return mConnection.getHeaderField(name);
+    }
+
+    private Reader getReader() throws IOException {
+        return new InputStreamReader(getDecodedStream(), "UTF-8");
+    }
+
+    private InputStream getDecodedStream() throws IOException {
+        mWireStream = new CountingInputStream(mConnection.getInputStream());
+        InputStream in = new BufferedInputStream(mWireStream, 8 * 1024);
+        if ("gzip".equalsIgnoreCase(mConnection.getContentEncoding())) {
+            in = new GZIPInputStream(in, 8 * 1024);
+        }
+        mDecodedStream = new CountingInputStream(in);
+        return mDecodedStream;
+    }
+
+    /**
+     * Keeps track of the number of bytes read from the wrapped stream
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long mCount = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                mCount += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+    }
+}
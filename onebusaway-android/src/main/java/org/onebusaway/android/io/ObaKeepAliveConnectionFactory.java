@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io;
+
+import android.net.Uri;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection factory that keeps HTTP connections alive between requests so they can be reused
+ * from the platform connection pool, requests gzip-compressed responses, and limits the number of
+ * simultaneous connections to each host.  Install it using ObaContext.setConnectionFactory().
+ *
+ * The factory also keeps running totals of the number of requests, the bytes actually received
+ * over the wire, the bytes after decompression, and the time spent on each request so the
+ * effect of compression and connection reuse can be measured.
+ */
+public class ObaKeepAliveConnectionFactory implements ObaConnectionFactory {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 15 * 1000;
+
+    public static final int DEFAULT_READ_TIMEOUT = 30 * 1000;
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    private final int mConnectTimeout;
+
+    private final int mReadTimeout;
+
+    private final int mMaxConnectionsPerHost;
+
+    private final ConcurrentHashMap<String, Semaphore> mHostPermits = new ConcurrentHashMap<>();
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+
+    private final AtomicLong mBytesReceived = new AtomicLong();
+
+    private final AtomicLong mBytesDecoded = new AtomicLong();
+
+    private final AtomicLong mTotalLatencyMillis = new AtomicLong();
+
+    private ObaKeepAliveConnectionFactory(Builder builder) {
+        mConnectTimeout = builder.mConnectTimeout;
+        mReadTimeout = builder.mReadTimeout;
+        mMaxConnectionsPerHost = builder.mMaxConnectionsPerHost;
+    }
+
+    public static class Builder {
+
+        private int mConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+        private int mReadTimeout = DEFAULT_READ_TIMEOUT;
+
+        private int mMaxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+        /**
+         * @param timeout the connect timeout in milliseconds
+         */
+        public Builder setConnectTimeout(int timeout) {
+            mConnectTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param timeout the read timeout in milliseconds
+         */
+        public Builder setReadTimeout(int timeout) {
+            mReadTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param max the maximum number of simultaneous connections to a single host
+         */
+        public Builder setMaxConnectionsPerHost(int max) {
+            if (max < 1) {
+                throw new IllegalArgumentException("max connections per host must be at least 1");
+            }
+            mMaxConnectionsPerHost = max;
+            return this;
+        }
+
+        public ObaKeepAliveConnectionFactory build() {
+            // Size the platform keep-alive pool to match our per-host limit.  This is only read
+            // by the platform when the pool is first created, so the factory should be built
+            // before the first connection is opened (e.g., in Application.onCreate()).
+            System.setProperty("http.keepAlive", "true");
+            System.setProperty("http.maxConnections", String.valueOf(mMaxConnectionsPerHost));
+            return new ObaKeepAliveConnectionFactory(this);
+        }
+    }
+
+    @Override
+    public ObaConnection newConnection(Uri uri) throws IOException {
+        return new ObaKeepAliveConnection(uri, this);
+    }
+
+    int getConnectTimeout() {
+        return mConnectTimeout;
+    }
+
+    int getReadTimeout() {
+        return mReadTimeout;
+    }
+
+    /**
+     * Returns the semaphore limiting simultaneous connections to the provided host
+     */
+    Semaphore getHostPermits(String host) {
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(mMaxConnectionsPerHost, true);
+            Semaphore existing = mHostPermits.putIfAbsent(host, permits);
+            if (existing != null) {
+                permits = existing;
+            }
+        }
+        return permits;
+    }
+
+    void onRequestFinished(long bytesReceived, long bytesDecoded, long latencyMillis) {
+        mRequestCount.incrementAndGet();
+        mBytesReceived.addAndGet(bytesReceived);
+        mBytesDecoded.addAndGet(bytesDecoded);
+        mTotalLatencyMillis.addAndGet(latencyMillis);
+    }
+
+    /**
+     * @return the number of requests completed by connections from this factory
+     */
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return the number of response body bytes received over the wire (i.e., compressed)
+     */
+    public long getBytesReceived() {
+        return mBytesReceived.get();
+    }
+
+    /**
+     * @return the number of response body bytes after decompression
+     */
+    public long getBytesDecoded() {
+        return mBytesDecoded.get();
+    }
+
+    /**
+     * @return the total time in milliseconds from opening each connection until it was released
+     */
+    public long getTotalLatencyMillis() {
+        return mTotalLatencyMillis.get();
+    }
+
+    /**
+     * Resets all request statistics to zero
+     */
+    public void resetStats() {
+        mRequestCount.set(0);
+        mBytesReceived.set(0);
+        mBytesDecoded.set(0);
+        mTotalLatencyMillis.set(0);
+    }
+}
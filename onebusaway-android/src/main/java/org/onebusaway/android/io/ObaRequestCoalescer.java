@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicates identical OBA REST API requests.  When a request is made for a URI that is
+ * already being fetched by another thread (e.g., the arrivals list loader and the trip
+ * reminder poller both requesting the same stop), the second caller waits for and shares the
+ * result of the first instead of making its own HTTP call.  Requests can also allow a
+ * successful result to be reused for a short time after it completes.  Only requests that opt
+ * in with RequestBase.getReuseWindow() or a cache policy go through here, since the response has
+ * to be buffered - all others are parsed straight from the connection.
+ *
+ * Only the raw response body is shared - each caller deserializes its own copy, so callers
+ * are free to modify the response objects they get back.
+ */
+public final class ObaRequestCoalescer {
+
+    private static class SingletonHolder {
+
+        public static final ObaRequestCoalescer INSTANCE = new ObaRequestCoalescer();
+    }
+
+    /**
+     * An immutable response body, or the error that prevented getting one
+     */
+    public static final class Response {
+
+        private final byte[] mBody;
+
+        private final int mCode;
+
+        private final String mError;
+
+        private Response(byte[] body, int code, String error) {
+            mBody = body;
+            mCode = code;
+            mError = error;
+        }
+
+        /**
+         * Reads and closes the provided stream
+         */
+        public static Response fromStream(InputStream in) throws IOException {
+            byte[] body = ObaResponseCache.readFully(in);
+            return new Response(body, ObaResponseCache.getCode(body), null);
+        }
+
+        public static Response fromEntry(ObaResponseCache.Entry entry) {
+            byte[] body = entry.getBody();
+            return new Response(body, ObaResponseCache.getCode(body), null);
+        }
+
+        public static Response fromError(int code, String error) {
+            return new Response(null, code, error);
+        }
+
+        /**
+         * @return the OBA response code, or -1 if the body couldn't be parsed
+         */
+        public int getCode() {
+            return mCode;
+        }
+
+        public boolean isOk() {
+            return mCode == ObaApi.OBA_OK;
+        }
+
+        /**
+         * Returns a new response object for this body
+         */
+        public <T> T deserialize(Class<T> cls) {
+            ObaApi.SerializationHandler handler = ObaApi.getSerializer(cls);
+            T t = null;
+            if (mBody != null) {
+                try {
+                    t = handler.deserialize(
+                            new InputStreamReader(new ByteArrayInputStream(mBody), "UTF-8"), cls);
+                } catch (UnsupportedEncodingException e) {
+                    throw new AssertionError(e);
+                }
+                if (t == null) {
+                    t = handler.createFromError(cls, ObaApi.OBA_INTERNAL_ERROR, "Json error");
+                }
+            } else {
+                t = handler.createFromError(cls, mCode, mError);
+            }
+            return t;
+        }
+    }
+
+    private static final class Completed {
+
+        final Response mResult;
+
+        final long mCompletedAt;
+
+        final long mReuseWindow;
+
+        Completed(Response result, long completedAt, long reuseWindow) {
+            mResult = result;
+            mCompletedAt = completedAt;
+            mReuseWindow = reuseWindow;
+        }
+
+        boolean isExpired(long now) {
+            return now - mCompletedAt >= mReuseWindow;
+        }
+    }
+
+    private final HashMap<String, FutureTask<Response>> mInFlight = new HashMap<>();
+
+    private final HashMap<String, Completed> mCompleted = new HashMap<>();
+
+    private final AtomicLong mExecutedCount = new AtomicLong();
+
+    private final AtomicLong mSharedCount = new AtomicLong();
+
+    private final AtomicLong mReusedCount = new AtomicLong();
+
+    private ObaRequestCoalescer() { /* singleton */ }
+
+    public static ObaRequestCoalescer getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the response for the provided URI, either by running the loader or by sharing the
+     * response of an identical request that is in flight or completed within reuseWindow.
+     *
+     * @param uri          the request URI
+     * @param reuseWindow  how long in milliseconds a successful response can be reused after it
+     *                     completes, or 0 to only share responses of requests that are in flight
+     * @param forceRefresh true if the user explicitly asked for new data, so a completed
+     *                     response shouldn't be reused.  An in-flight request is still shared.
+     * @param loader       performs the actual request, and must not throw
+     * @return the response
+     */
+    public Response call(Uri uri, long reuseWindow, boolean forceRefresh,
+            Callable<Response> loader) {
+        final String key = uri.toString();
+        FutureTask<Response> task;
+        boolean owner = false;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            pruneCompleted(now);
+            Completed completed = mCompleted.get(key);
+            if (completed != null && !forceRefresh && reuseWindow > 0
+                    && now - completed.mCompletedAt < reuseWindow) {
+                mReusedCount.incrementAndGet();
+                return completed.mResult;
+            }
+            task = mInFlight.get(key);
+            if (task == null) {
+                task = new FutureTask<>(loader);
+                mInFlight.put(key, task);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            mExecutedCount.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                synchronized (this) {
+                    mInFlight.remove(key);
+                }
+            }
+        } else {
+            mSharedCount.incrementAndGet();
+        }
+
+        try {
+            Response result = task.get();
+            if (owner && reuseWindow > 0 && result.isOk()) {
+                synchronized (this) {
+                    mCompleted.put(key,
+                            new Completed(result, SystemClock.elapsedRealtime(), reuseWindow));
+                }
+            }
+            return result;
+        } catch (InterruptedException e) {
+            // Only waiters block here, and they shouldn't make the request again on their own
+            Thread.currentThread().interrupt();
+            return Response.fromError(ObaApi.OBA_IO_EXCEPTION, e.toString());
+        } catch (ExecutionException e) {
+            // Every caller sharing the request gets the same failure rather than retrying it
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Forgets all completed results so the next request for each URI goes to the server
+     */
+    public synchronized void clear() {
+        mCompleted.clear();
+    }
+
+    /**
+     * @return the number of requests that were actually executed
+     */
+    public long getExecutedCount() {
+        return mExecutedCount.get();
+    }
+
+    /**
+     * @return the number of requests that shared the result of an identical in-flight request
+     */
+    public long getSharedCount() {
+        return mSharedCount.get();
+    }
+
+    /**
+     * @return the number of requests that reused a recently completed result
+     */
+    public long getReusedCount() {
+        return mReusedCount.get();
+    }
+
+    private void pruneCompleted(long now) {
+        Iterator<Map.Entry<String, Completed>> it = mCompleted.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().isExpired(now)) {
+                it.remove();
+            }
+        }
+    }
+}
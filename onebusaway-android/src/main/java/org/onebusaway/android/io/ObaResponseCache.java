@@ -0,0 +1,536 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.io;
+
+import android.net.Uri;
+import android.util.JsonReader;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded, LRU, on-disk cache of raw OBA REST API responses for endpoints whose data
+ * rarely changes (shapes, routes, etc.).  Requests opt in by returning a Policy from
+ * RequestBase.getCachePolicy() - real-time requests don't override that method and always go
+ * to the server.
+ *
+ * Entries are fresh for Policy.getMaxAge(), after which they are revalidated with the server
+ * using If-None-Match/If-Modified-Since.  Within Policy.getStaleWhileRevalidate() after expiring,
+ * the stale entry is returned immediately and revalidated in the background.
+ */
+public class ObaResponseCache {
+
+    private static final String TAG = "ObaResponseCache";
+
+    private static final int FILE_VERSION = 1;
+
+    public static final long DEFAULT_MAX_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * How long a response to a particular type of request can be used
+     */
+    public static final class Policy {
+
+        public static final Policy SHAPE = new Policy(TimeUnit.DAYS.toMillis(7),
+                TimeUnit.DAYS.toMillis(30));
+
+        public static final Policy ROUTE = new Policy(TimeUnit.DAYS.toMillis(1),
+                TimeUnit.DAYS.toMillis(7));
+
+        public static final Policy STOPS_FOR_ROUTE = new Policy(TimeUnit.DAYS.toMillis(1),
+                TimeUnit.DAYS.toMillis(7));
+
+        public static final Policy AGENCIES_WITH_COVERAGE = new Policy(TimeUnit.DAYS.toMillis(1),
+                TimeUnit.DAYS.toMillis(7));
+
+        // Users can explicitly refresh the regions list, so always check with the server
+        // once the entry has expired
+        public static final Policy REGIONS = new Policy(TimeUnit.HOURS.toMillis(1), 0);
+
+        private final long mMaxAge;
+
+        private final long mStaleWhileRevalidate;
+
+        /**
+         * @param maxAge               how long in milliseconds a response is fresh
+         * @param staleWhileRevalidate how long in milliseconds after a response expires that it
+         *                             can still be returned while it is revalidated in the
+         *                             background
+         */
+        public Policy(long maxAge, long staleWhileRevalidate) {
+            mMaxAge = maxAge;
+            mStaleWhileRevalidate = staleWhileRevalidate;
+        }
+
+        public long getMaxAge() {
+            return mMaxAge;
+        }
+
+        public long getStaleWhileRevalidate() {
+            return mStaleWhileRevalidate;
+        }
+    }
+
+    /**
+     * A cached response body and the validators the server sent with it
+     */
+    public static final class Entry {
+
+        private final byte[] mBody;
+
+        private final String mEtag;
+
+        private final String mLastModified;
+
+        private final long mFetchedAt;
+
+        Entry(byte[] body, String etag, String lastModified, long fetchedAt) {
+            mBody = body;
+            mEtag = etag;
+            mLastModified = lastModified;
+            mFetchedAt = fetchedAt;
+        }
+
+        public Reader getReader() {
+            try {
+                return new InputStreamReader(new ByteArrayInputStream(mBody), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        byte[] getBody() {
+            return mBody;
+        }
+
+        public String getEtag() {
+            return mEtag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        public long getFetchedAt() {
+            return mFetchedAt;
+        }
+
+        public boolean isFresh(Policy policy, long now) {
+            return now - mFetchedAt < policy.getMaxAge();
+        }
+
+        public boolean isUsableWhileRevalidating(Policy policy, long now) {
+            return now - mFetchedAt < policy.getMaxAge() + policy.getStaleWhileRevalidate();
+        }
+    }
+
+    /**
+     * Thrown by fetch() when the server responds with something other than 200 or 304
+     */
+    public static final class ResponseCodeException extends IOException {
+
+        private final int mResponseCode;
+
+        ResponseCodeException(int responseCode) {
+            super("HTTP response code " + responseCode);
+            mResponseCode = responseCode;
+        }
+
+        public int getResponseCode() {
+            return mResponseCode;
+        }
+    }
+
+    private final File mDir;
+
+    private final long mMaxSize;
+
+    // Cache key -> file size, in least-recently-used order
+    private final LinkedHashMap<String, Long> mIndex = new LinkedHashMap<>(32, 0.75f, true);
+
+    private long mSize = 0;
+
+    private boolean mIndexLoaded = false;
+
+    private final ExecutorService mRevalidateExecutor = Executors.newSingleThreadExecutor();
+
+    private final Set<String> mRevalidating = Collections.synchronizedSet(new HashSet<String>());
+
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    private final AtomicLong mStaleHitCount = new AtomicLong();
+
+    private final AtomicLong mRevalidatedCount = new AtomicLong();
+
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    public ObaResponseCache(File dir, long maxSize) {
+        mDir = dir;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached entry for the provided request URI, or null if there isn't one
+     */
+    public synchronized Entry get(Uri uri) {
+        loadIndex();
+        String key = getKey(uri);
+        if (mIndex.get(key) == null) {
+            return null;
+        }
+        File file = new File(mDir, key);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FILE_VERSION) {
+                removeKey(key);
+                return null;
+            }
+            long fetchedAt = in.readLong();
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            // Persist the LRU order so it survives process restarts
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(body, etag, lastModified, fetchedAt);
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't read cache entry: " + e);
+            removeKey(key);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores a response body and its validators for the provided request URI
+     */
+    public synchronized Entry put(Uri uri, byte[] body, String etag, String lastModified) {
+        loadIndex();
+        Entry entry = new Entry(body, etag, lastModified, System.currentTimeMillis());
+        String key = getKey(uri);
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            Log.e(TAG, "Couldn't create cache directory " + mDir);
+            return entry;
+        }
+        File tmp = new File(mDir, key + ".tmp");
+        File file = new File(mDir, key);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(FILE_VERSION);
+            out.writeLong(entry.getFetchedAt());
+            out.writeUTF(etag != null ? etag : "");
+            out.writeUTF(lastModified != null ? lastModified : "");
+            out.writeInt(body.length);
+            out.write(body);
+            out.close();
+            out = null;
+            // Write to a temp file first so a crash never leaves a partial entry behind
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Couldn't rename " + tmp);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't write cache entry: " + e);
+            closeQuietly(out);
+            tmp.delete();
+            return entry;
+        }
+        Long previous = mIndex.put(key, file.length());
+        if (previous != null) {
+            mSize -= previous;
+        }
+        mSize += file.length();
+        trimToSize();
+        return entry;
+    }
+
+    /**
+     * Removes any cached entry for the provided request URI
+     */
+    public synchronized void remove(Uri uri) {
+        loadIndex();
+        removeKey(getKey(uri));
+    }
+
+    /**
+     * Removes all cached entries
+     */
+    public synchronized void clear() {
+        loadIndex();
+        for (String key : mIndex.keySet().toArray(new String[mIndex.size()])) {
+            removeKey(key);
+        }
+    }
+
+    /**
+     * Requests the provided URI from the server, using the validators from the previous entry
+     * (if any) to make a conditional request.  The cache is updated with the result, unless the
+     * body is an OBA error response, which is returned without being stored.
+     *
+     * @param uri      the request URI
+     * @param previous the existing cache entry for this URI, or null if there isn't one
+     * @return the new or revalidated entry
+     * @throws ResponseCodeException if the server returned an error response code
+     */
+    public Entry fetch(Uri uri, Entry previous) throws IOException {
+        ObaConnection conn = null;
+        try {
+            conn = ObaApi.getDefaultContext().getConnectionFactory().newConnection(uri);
+            if (previous != null) {
+                if (previous.getEtag() != null) {
+                    conn.setRequestProperty("If-None-Match", previous.getEtag());
+                }
+                if (previous.getLastModified() != null) {
+                    conn.setRequestProperty("If-Modified-Since", previous.getLastModified());
+                }
+            }
+            int responseCode = conn.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                mRevalidatedCount.incrementAndGet();
+                return put(uri, previous.mBody, previous.getEtag(), previous.getLastModified());
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new ResponseCodeException(responseCode);
+            }
+            byte[] body = readFully(conn.getStream());
+            String etag = conn.getHeaderField("ETag");
+            String lastModified = conn.getHeaderField("Last-Modified");
+            if (getCode(body) != ObaApi.OBA_OK) {
+                // Don't let an error replace a good entry or be served to later requests
+                return new Entry(body, etag, lastModified, System.currentTimeMillis());
+            }
+            return put(uri, body, etag, lastModified);
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Revalidates the provided entry on a background thread, unless a revalidation for the same
+     * URI is already in progress
+     */
+    public void revalidateAsync(final Uri uri, final Entry previous) {
+        final String key = getKey(uri);
+        if (!mRevalidating.add(key)) {
+            return;
+        }
+        mRevalidateExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetch(uri, previous);
+                } catch (IOException e) {
+                    Log.d(TAG, "Background revalidation failed: " + e);
+                } finally {
+                    mRevalidating.remove(key);
+                }
+            }
+        });
+    }
+
+    public void recordHit() {
+        mHitCount.incrementAndGet();
+    }
+
+    public void recordStaleHit() {
+        mStaleHitCount.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of requests served from a fresh cache entry
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return the number of requests served from a stale entry while it was revalidated
+     */
+    public long getStaleHitCount() {
+        return mStaleHitCount.get();
+    }
+
+    /**
+     * @return the number of conditional requests for which the server responded 304
+     */
+    public long getRevalidatedCount() {
+        return mRevalidatedCount.get();
+    }
+
+    /**
+     * @return the number of requests that had to go to the server before returning
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return the current total size of the cache on disk, in bytes
+     */
+    public synchronized long getSize() {
+        loadIndex();
+        return mSize;
+    }
+
+    private void loadIndex() {
+        if (mIndexLoaded) {
+            return;
+        }
+        mIndexLoaded = true;
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Oldest access first, so the LinkedHashMap iteration order is least recently used first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                // Left over from an interrupted write
+                file.delete();
+                continue;
+            }
+            mIndex.put(file.getName(), file.length());
+            mSize += file.length();
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> it = mIndex.entrySet().iterator();
+        while (mSize > mMaxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(mDir, eldest.getKey()).delete();
+            mSize -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    private void removeKey(String key) {
+        Long size = mIndex.remove(key);
+        if (size != null) {
+            mSize -= size;
+        }
+        new File(mDir, key).delete();
+    }
+
+    private static String getKey(Uri uri) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(uri.toString().getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        byte[] buffer = new byte[8 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the "code" of the OBA response in the body, or -1 if the body isn't an OBA response.
+     * Other values are skipped without being deserialized.
+     */
+    static int getCode(byte[] body) {
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(
+                    new InputStreamReader(new ByteArrayInputStream(body), "UTF-8"));
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("code".equals(reader.nextName())) {
+                    return reader.nextInt();
+                }
+                reader.skipValue();
+            }
+            return -1;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            return -1;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c == null) {
+            return;
+        }
+        try {
+            c.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
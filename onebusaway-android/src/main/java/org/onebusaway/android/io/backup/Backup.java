@@ -16,6 +16,7 @@
 package org.onebusaway.android.io.backup;
 
 import org.apache.commons.io.FileUtils;
+import org.onebusaway.android.provider.FavoritesIndex;
 import org.onebusaway.android.provider.ObaContract;
 import org.onebusaway.android.provider.ObaProvider;
 
@@ -59,6 +60,20 @@ public final class Backup {
         // 1. The path to the database;
         // 2. The path on the SD card to the backup file.
         File backupPath = getBackup(context);
+
+        // Move any changes in the write-ahead log into the database file before copying it
+        ContentProviderClient client = null;
+        try {
+            client = context.getContentResolver()
+                    .acquireContentProviderClient(ObaContract.AUTHORITY);
+            ObaProvider provider = (ObaProvider) client.getLocalContentProvider();
+            provider.checkpoint();
+        } finally {
+            if (client != null) {
+                client.release();
+            }
+        }
+
         FileUtils.copyFile(getDB(context), backupPath);
         return backupPath.getAbsolutePath();
     }
@@ -78,7 +93,12 @@ public final class Backup {
             ObaProvider provider = (ObaProvider) client.getLocalContentProvider();
             provider.closeDB();
 
+            // Remove the write-ahead log of the old database so it isn't applied to the backup
+            FileUtils.deleteQuietly(new File(dbPath.getPath() + "-wal"));
+            FileUtils.deleteQuietly(new File(dbPath.getPath() + "-shm"));
             FileUtils.copyFile(backupPath, dbPath);
+            // The restored database may have different favorites and hidden alerts
+            FavoritesIndex.getInstance().invalidate();
 
         } finally {
             if (client != null) {
@@ -17,6 +17,7 @@ package org.onebusaway.android.io.elements;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 public final class ObaReferencesElement implements ObaReferences {
@@ -33,6 +34,20 @@ public final class ObaReferencesElement implements ObaReferences {
 
     private final ObaSituationElement[] situations;
 
+    //
+    // Indexes by ID, built the first time each type is dereferenced.  These are transient so
+    // Jackson ignores them.
+    //
+    private transient volatile HashMap<String, ObaStopElement> mStopIndex;
+
+    private transient volatile HashMap<String, ObaRouteElement> mRouteIndex;
+
+    private transient volatile HashMap<String, ObaTripElement> mTripIndex;
+
+    private transient volatile HashMap<String, ObaAgencyElement> mAgencyIndex;
+
+    private transient volatile HashMap<String, ObaSituationElement> mSituationIndex;
+
     public ObaReferencesElement() {
         stops = ObaStopElement.EMPTY_ARRAY;
         routes = ObaRouteElement.EMPTY_ARRAY;
@@ -43,22 +58,22 @@ public final class ObaReferencesElement implements ObaReferences {
 
     @Override
     public ObaStop getStop(String id) {
-        return findById(stops, id);
+        return getStopIndex().get(id);
     }
 
     @Override
     public List<ObaStop> getStops(String[] ids) {
-        return findList(ObaStop.class, stops, ids);
+        return findList(ObaStop.class, getStopIndex(), ids);
     }
 
     @Override
     public ObaRoute getRoute(String id) {
-        return findById(routes, id);
+        return getRouteIndex().get(id);
     }
 
     @Override
     public List<ObaRoute> getRoutes(String[] ids) {
-        return findList(ObaRoute.class, routes, ids);
+        return findList(ObaRoute.class, getRouteIndex(), ids);
     }
 
     @Override
@@ -68,55 +83,103 @@ public final class ObaReferencesElement implements ObaReferences {
 
     @Override
     public ObaTrip getTrip(String id) {
-        return findById(trips, id);
+        return getTripIndex().get(id);
     }
 
     @Override
     public List<ObaTrip> getTrips(String[] ids) {
-        return findList(ObaTrip.class, trips, ids);
+        return findList(ObaTrip.class, getTripIndex(), ids);
     }
 
     @Override
     public ObaAgency getAgency(String id) {
-        return findById(agencies, id);
+        return getAgencyIndex().get(id);
     }
 
     @Override
     public List<ObaAgency> getAgencies(String[] ids) {
-        return findList(ObaAgency.class, agencies, ids);
+        return findList(ObaAgency.class, getAgencyIndex(), ids);
     }
 
     @Override
     public ObaSituation getSituation(String id) {
-        return findById(situations, id);
+        return getSituationIndex().get(id);
     }
 
     @Override
     public List<ObaSituation> getSituations(String[] ids) {
-        return findList(ObaSituation.class, situations, ids);
+        return findList(ObaSituation.class, getSituationIndex(), ids);
     }
 
     //
-    // TODO: This will be much easier when we convert to HashMap storage.
+    // Two threads may race to build the same index, but they'll build identical maps, and
+    // the volatile fields make sure whichever one wins is safely published.
     //
-    private static <T extends ObaElement> T findById(T[] objects, String id) {
+    private HashMap<String, ObaStopElement> getStopIndex() {
+        HashMap<String, ObaStopElement> index = mStopIndex;
+        if (index == null) {
+            index = buildIndex(stops);
+            mStopIndex = index;
+        }
+        return index;
+    }
+
+    private HashMap<String, ObaRouteElement> getRouteIndex() {
+        HashMap<String, ObaRouteElement> index = mRouteIndex;
+        if (index == null) {
+            index = buildIndex(routes);
+            mRouteIndex = index;
+        }
+        return index;
+    }
+
+    private HashMap<String, ObaTripElement> getTripIndex() {
+        HashMap<String, ObaTripElement> index = mTripIndex;
+        if (index == null) {
+            index = buildIndex(trips);
+            mTripIndex = index;
+        }
+        return index;
+    }
+
+    private HashMap<String, ObaAgencyElement> getAgencyIndex() {
+        HashMap<String, ObaAgencyElement> index = mAgencyIndex;
+        if (index == null) {
+            index = buildIndex(agencies);
+            mAgencyIndex = index;
+        }
+        return index;
+    }
+
+    private HashMap<String, ObaSituationElement> getSituationIndex() {
+        HashMap<String, ObaSituationElement> index = mSituationIndex;
+        if (index == null) {
+            index = buildIndex(situations);
+            mSituationIndex = index;
+        }
+        return index;
+    }
+
+    private static <T extends ObaElement> HashMap<String, T> buildIndex(T[] objects) {
+        // Sized so the map never needs to be rehashed
+        HashMap<String, T> index = new HashMap<String, T>(objects.length * 4 / 3 + 1);
         final int len = objects.length;
         for (int i = 0; i < len; ++i) {
             final T obj = objects[i];
-            if (obj.getId().equals(id)) {
-                return obj;
+            // Keep the first element for any duplicate IDs, like the old linear search did
+            if (!index.containsKey(obj.getId())) {
+                index.put(obj.getId(), obj);
             }
         }
-        return null;
+        return index;
     }
 
     private static <E extends ObaElement, T extends E> List<E> findList(
-            Class<E> cls, T[] objects, String[] ids) {
-        ArrayList<E> result = new ArrayList<E>();
+            Class<E> cls, HashMap<String, T> index, String[] ids) {
         final int len = ids.length;
+        ArrayList<E> result = new ArrayList<E>(len);
         for (int i = 0; i < len; ++i) {
-            final String id = ids[i];
-            final T obj = findById(objects, id);
+            final T obj = index.get(ids[i]);
             if (obj != null) {
                 result.add(obj);
             }
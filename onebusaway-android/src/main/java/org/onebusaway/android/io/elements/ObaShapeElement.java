@@ -20,6 +20,7 @@ import org.onebusaway.android.util.LocationUtils;
 import android.location.Location;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class ObaShapeElement implements ObaShape {
@@ -78,10 +79,32 @@ public final class ObaShapeElement implements ObaShape {
      * @return A list of points from the encoded string.
      */
     public static List<Location> decodeLine(String encoded, int numPoints) {
+        int[] coords = decodeLineE5(encoded, numPoints);
+        ArrayList<Location> array = new ArrayList<Location>(coords.length / 2);
+        for (int i = 0; i < coords.length; i += 2) {
+            // The polyline encodes in degrees * 1E5, we need decimal degrees
+            array.add(LocationUtils.makeLocation(coords[i] / 1E5, coords[i + 1] / 1E5));
+        }
+        return array;
+    }
+
+    /**
+     * Decodes an encoded polyline into a packed array of coordinates, without allocating an
+     * object per point.
+     *
+     * @param encoded   The encoded string.
+     * @param numPoints The number of points. This is purely used as a hint
+     *                  to allocate memory; the function will always return the number
+     *                  of points that are contained in the encoded string.
+     * @return the latitude and longitude of each point in degrees * 1E5, as
+     * [lat0, lon0, lat1, lon1, ...]
+     */
+    public static int[] decodeLineE5(String encoded, int numPoints) {
         if (numPoints < 0) {
             throw new IllegalArgumentException("numPoints must be >= 0");
         }
-        ArrayList<Location> array = new ArrayList<Location>(numPoints);
+        int[] coords = new int[numPoints * 2];
+        int count = 0;
 
         final int len = encoded.length();
         int i = 0;
@@ -116,11 +139,15 @@ public final class ObaShapeElement implements ObaShape {
             final int dlon = ((result & 1) == 1 ? ~(result >> 1) : (result >> 1));
             lon += dlon;
 
-            // The polyline encodes in degrees * 1E5, we need decimal degrees
-            array.add(LocationUtils.makeLocation(lat / 1E5, lon / 1E5));
+            if (count + 2 > coords.length) {
+                // numPoints was too small
+                coords = Arrays.copyOf(coords, Math.max(coords.length * 2, count + 2));
+            }
+            coords[count++] = lat;
+            coords[count++] = lon;
         }
 
-        return array;
+        return count == coords.length ? coords : Arrays.copyOf(coords, count);
     }
 
     /**
@@ -15,6 +15,8 @@
  */
 package org.onebusaway.android.io.request;
 
+import org.onebusaway.android.io.ObaResponseCache;
+
 import android.content.Context;
 import android.net.Uri;
 
@@ -54,6 +56,11 @@ public final class ObaAgenciesWithCoverageRequest extends RequestBase implements
         return new Builder(context).build();
     }
 
+    @Override
+    protected ObaResponseCache.Policy getCachePolicy() {
+        return ObaResponseCache.Policy.AGENCIES_WITH_COVERAGE;
+    }
+
     @Override
     public ObaAgenciesWithCoverageResponse call() {
         return call(ObaAgenciesWithCoverageResponse.class);
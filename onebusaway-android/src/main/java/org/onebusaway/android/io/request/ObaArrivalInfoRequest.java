@@ -20,6 +20,7 @@ import android.content.Context;
 import android.net.Uri;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Request arrival information for a stop.
@@ -30,6 +31,12 @@ import java.util.concurrent.Callable;
 public final class ObaArrivalInfoRequest extends RequestBase implements
         Callable<ObaArrivalInfoResponse> {
 
+    /**
+     * The arrivals list, its header, and trip reminders can all request the same stop within a
+     * few seconds of each other, so let them share a response for this long
+     */
+    private static final long REUSE_WINDOW = TimeUnit.SECONDS.toMillis(10);
+
     protected ObaArrivalInfoRequest(Uri uri) {
         super(uri);
     }
@@ -74,6 +81,11 @@ public final class ObaArrivalInfoRequest extends RequestBase implements
         return new Builder(context, stopId, minutesAfter).build();
     }
 
+    @Override
+    protected long getReuseWindow() {
+        return REUSE_WINDOW;
+    }
+
     @Override
     public ObaArrivalInfoResponse call() {
         return call(ObaArrivalInfoResponse.class);
@@ -19,6 +19,7 @@ package org.onebusaway.android.io.request;
 import org.onebusaway.android.R;
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.ObaResponseCache;
 
 import android.content.ContentResolver;
 import android.content.Context;
@@ -84,6 +85,11 @@ public final class ObaRegionsRequest extends RequestBase implements
         return new Builder(context, uri).build();
     }
 
+    @Override
+    protected ObaResponseCache.Policy getCachePolicy() {
+        return ObaResponseCache.Policy.REGIONS;
+    }
+
     @Override
     public ObaRegionsResponse call() {
         //If the URI is for an Android resource then get from resource, otherwise get from Region REST API                
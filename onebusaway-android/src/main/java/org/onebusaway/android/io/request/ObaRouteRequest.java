@@ -15,6 +15,8 @@
  */
 package org.onebusaway.android.io.request;
 
+import org.onebusaway.android.io.ObaResponseCache;
+
 import android.content.Context;
 import android.net.Uri;
 
@@ -54,6 +56,11 @@ public final class ObaRouteRequest extends RequestBase implements Callable<ObaRo
         return new Builder(context, routeId).build();
     }
 
+    @Override
+    protected ObaResponseCache.Policy getCachePolicy() {
+        return ObaResponseCache.Policy.ROUTE;
+    }
+
     @Override
     public ObaRouteResponse call() {
         return call(ObaRouteResponse.class);
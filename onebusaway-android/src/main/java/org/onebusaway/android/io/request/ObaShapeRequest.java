@@ -15,6 +15,8 @@
  */
 package org.onebusaway.android.io.request;
 
+import org.onebusaway.android.io.ObaResponseCache;
+
 import android.content.Context;
 import android.net.Uri;
 
@@ -54,6 +56,11 @@ public final class ObaShapeRequest extends RequestBase implements Callable<ObaSh
         return new Builder(context, shapeId).build();
     }
 
+    @Override
+    protected ObaResponseCache.Policy getCachePolicy() {
+        return ObaResponseCache.Policy.SHAPE;
+    }
+
     @Override
     public ObaShapeResponse call() {
         return call(ObaShapeResponse.class);
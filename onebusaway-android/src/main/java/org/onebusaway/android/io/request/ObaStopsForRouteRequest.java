@@ -15,6 +15,8 @@
  */
 package org.onebusaway.android.io.request;
 
+import org.onebusaway.android.io.ObaResponseCache;
+
 import android.content.Context;
 import android.net.Uri;
 
@@ -50,6 +52,11 @@ public final class ObaStopsForRouteRequest extends RequestBase
         }
     }
 
+    @Override
+    protected ObaResponseCache.Policy getCachePolicy() {
+        return ObaResponseCache.Policy.STOPS_FOR_ROUTE;
+    }
+
     @Override
     public ObaStopsForRouteResponse call() {
         return call(ObaStopsForRouteResponse.class);
@@ -19,6 +19,8 @@ package org.onebusaway.android.io.request;
 import org.onebusaway.android.io.ObaApi;
 import org.onebusaway.android.io.ObaConnection;
 import org.onebusaway.android.io.ObaContext;
+import org.onebusaway.android.io.ObaRequestCoalescer;
+import org.onebusaway.android.io.ObaResponseCache;
 
 import android.content.Context;
 import android.net.Uri;
@@ -29,6 +31,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
 import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
 
 /**
  * The base class for Oba requests.
@@ -43,6 +46,10 @@ public class RequestBase {
 
     protected final String mPostData;
 
+    private boolean mForceRefresh = false;
+
+    private boolean mUseCache = true;
+
     protected RequestBase(Uri uri) {
         mUri = uri;
         mPostData = null;
@@ -57,6 +64,22 @@ public class RequestBase {
         return mUri;
     }
 
+    /**
+     * Set to true when the user explicitly asked for new data, so the response comes from the
+     * server even if a cached one would otherwise be used.  The cache is still updated with it.
+     */
+    public void setForceRefresh(boolean forceRefresh) {
+        mForceRefresh = forceRefresh;
+    }
+
+    /**
+     * Set to false for background requests that shouldn't read or fill the response cache, so
+     * they don't evict the responses used by the UI.
+     */
+    public void setUseCache(boolean useCache) {
+        mUseCache = useCache;
+    }
+
     public static class BuilderBase {
 
         protected static final String BASE_PATH = "api/where";
@@ -132,32 +155,85 @@ public class RequestBase {
         }
     }
 
+    /**
+     * Returns the policy for caching responses to this request on disk, or null if responses
+     * should always come from the server.  Requests for data that rarely changes should override
+     * this - the default of null is correct for real-time data.
+     */
+    protected ObaResponseCache.Policy getCachePolicy() {
+        return null;
+    }
+
+    private ObaResponseCache.Policy getUsableCachePolicy() {
+        return mUseCache ? getCachePolicy() : null;
+    }
+
+    /**
+     * Returns how long in milliseconds a successful response to this request can be shared with
+     * identical requests made after it completes.  Identical requests made while this one is in
+     * flight share its response too.  The default of 0 means responses are never shared, so
+     * they're parsed straight from the connection instead of being buffered first.
+     */
+    protected long getReuseWindow() {
+        return 0;
+    }
+
     protected <T> T call(Class<T> cls) {
+        if (mPostData != null) {
+            return post(cls);
+        }
+        long reuseWindow = getReuseWindow();
+        if (reuseWindow <= 0 && (getUsableCachePolicy() == null
+                || ObaApi.getDefaultContext().getResponseCache() == null)) {
+            // Nothing is shared or cached, so there's no need to buffer the response
+            return get(cls);
+        }
+        return ObaRequestCoalescer.getInstance().call(mUri, reuseWindow, mForceRefresh,
+                new Callable<ObaRequestCoalescer.Response>() {
+                    @Override
+                    public ObaRequestCoalescer.Response call() {
+                        return getBuffered();
+                    }
+                }).deserialize(cls);
+    }
+
+    private <T> T post(Class<T> cls) {
         ObaApi.SerializationHandler handler = ObaApi.getSerializer(cls);
         ObaConnection conn = null;
         try {
             conn = ObaApi.getDefaultContext().getConnectionFactory().newConnection(mUri);
-            Reader reader;
-            if (mPostData != null) {
-                reader = conn.post(mPostData);
-            } else {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
-                    // Theoretically you can't call ResponseCode before calling
-                    // getInputStream, but you can't read from the input stream
-                    // before you read the response???
-                    int responseCode = conn.getResponseCode();
-                    if (responseCode != HttpURLConnection.HTTP_OK) {
-                        return handler.createFromError(cls, responseCode, "");
-                    }
-                }
-
-                reader = conn.get();
+            return deserialize(handler, conn.post(mPostData), cls);
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, e.toString());
+            return handler.createFromError(cls, ObaApi.OBA_NOT_FOUND, e.toString());
+        } catch (IOException e) {
+            Log.e(TAG, e.toString());
+            return handler.createFromError(cls, ObaApi.OBA_IO_EXCEPTION, e.toString());
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
             }
-            T t = handler.deserialize(reader, cls);
-            if (t == null) {
-                t = handler.createFromError(cls, ObaApi.OBA_INTERNAL_ERROR, "Json error");
+        }
+    }
+
+    /**
+     * Parses the response straight from the connection, without buffering it
+     */
+    private <T> T get(Class<T> cls) {
+        ObaApi.SerializationHandler handler = ObaApi.getSerializer(cls);
+        ObaConnection conn = null;
+        try {
+            conn = ObaApi.getDefaultContext().getConnectionFactory().newConnection(mUri);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+                // Theoretically you can't call ResponseCode before calling
+                // getInputStream, but you can't read from the input stream
+                // before you read the response???
+                int responseCode = conn.getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    return handler.createFromError(cls, responseCode, "");
+                }
             }
-            return t;
+            return deserialize(handler, conn.get(), cls);
         } catch (FileNotFoundException e) {
             Log.e(TAG, e.toString());
             return handler.createFromError(cls, ObaApi.OBA_NOT_FOUND, e.toString());
@@ -171,4 +247,100 @@ public class RequestBase {
         }
     }
 
+    private static <T> T deserialize(ObaApi.SerializationHandler handler, Reader reader,
+            Class<T> cls) {
+        T t = handler.deserialize(reader, cls);
+        if (t == null) {
+            t = handler.createFromError(cls, ObaApi.OBA_INTERNAL_ERROR, "Json error");
+        }
+        return t;
+    }
+
+    /**
+     * Reads the whole response, so it can be shared by identical requests
+     */
+    private ObaRequestCoalescer.Response getBuffered() {
+        ObaResponseCache cache = ObaApi.getDefaultContext().getResponseCache();
+        ObaResponseCache.Policy policy = getUsableCachePolicy();
+        if (cache != null && policy != null) {
+            return getWithCache(cache, policy);
+        }
+
+        ObaConnection conn = null;
+        try {
+            conn = ObaApi.getDefaultContext().getConnectionFactory().newConnection(mUri);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+                // Theoretically you can't call ResponseCode before calling
+                // getInputStream, but you can't read from the input stream
+                // before you read the response???
+                int responseCode = conn.getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    return ObaRequestCoalescer.Response.fromError(responseCode, "");
+                }
+            }
+            return ObaRequestCoalescer.Response.fromStream(conn.getStream());
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, e.toString());
+            return ObaRequestCoalescer.Response.fromError(ObaApi.OBA_NOT_FOUND, e.toString());
+        } catch (IOException e) {
+            Log.e(TAG, e.toString());
+            return ObaRequestCoalescer.Response.fromError(ObaApi.OBA_IO_EXCEPTION, e.toString());
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    private ObaRequestCoalescer.Response getWithCache(ObaResponseCache cache,
+            ObaResponseCache.Policy policy) {
+        ObaResponseCache.Entry entry = cache.get(mUri);
+        long now = System.currentTimeMillis();
+        if (!mForceRefresh && entry != null && entry.isUsableWhileRevalidating(policy, now)) {
+            ObaRequestCoalescer.Response response = ObaRequestCoalescer.Response.fromEntry(entry);
+            if (response.isOk()) {
+                if (entry.isFresh(policy, now)) {
+                    cache.recordHit();
+                } else {
+                    cache.recordStaleHit();
+                    cache.revalidateAsync(mUri, entry);
+                }
+                return response;
+            }
+            // The cached response is no good, so get a new one
+            cache.remove(mUri);
+            entry = null;
+        }
+
+        cache.recordMiss();
+        try {
+            ObaRequestCoalescer.Response response =
+                    ObaRequestCoalescer.Response.fromEntry(cache.fetch(mUri, entry));
+            if (!response.isOk()) {
+                if (entry != null && response.getCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                    // The error wasn't cached, so fall back to the last good response
+                    return ObaRequestCoalescer.Response.fromEntry(entry);
+                }
+                cache.remove(mUri);
+            }
+            return response;
+        } catch (ObaResponseCache.ResponseCodeException e) {
+            Log.e(TAG, e.toString());
+            if (entry != null && e.getResponseCode() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                // The server is having problems, so an expired response is better than nothing
+                return ObaRequestCoalescer.Response.fromEntry(entry);
+            }
+            return ObaRequestCoalescer.Response.fromError(e.getResponseCode(), "");
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, e.toString());
+            return ObaRequestCoalescer.Response.fromError(ObaApi.OBA_NOT_FOUND, e.toString());
+        } catch (IOException e) {
+            Log.e(TAG, e.toString());
+            if (entry != null) {
+                // We couldn't revalidate, but an expired response is better than nothing
+                return ObaRequestCoalescer.Response.fromEntry(entry);
+            }
+            return ObaRequestCoalescer.Response.fromError(ObaApi.OBA_IO_EXCEPTION, e.toString());
+        }
+    }
 }
@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups items on the map (e.g., stops) into clusters for each zoom level, using a grid of
+ * square cells in Web Mercator coordinates.  The cells of each zoom level are exactly split into
+ * four by the next zoom level, so clusters only split when zooming in and merge when zooming out.
+ * Zoom levels are computed when first requested and kept up to date as items are added.  Items
+ * can be removed to bound memory use.
+ * <p>
+ * This class doesn't use any Android APIs, and is thread-safe so clusters can be computed off
+ * of the main thread.
+ *
+ * @param <T> type of item being clustered
+ */
+public class ClusterEngine<T> {
+
+    /**
+     * Provides the ID and location of an item
+     */
+    public interface Locator<T> {
+
+        String getId(T item);
+
+        double getLatitude(T item);
+
+        double getLongitude(T item);
+    }
+
+    /**
+     * An immutable cluster of one or more items.  Two clusters are equal if they contain the same
+     * items, even if they are from different zoom levels or items were added or removed in
+     * between, so markers for clusters that don't change can be kept on the map.
+     */
+    public static final class Cluster<T> {
+
+        private final int mFirst;
+
+        private final int mLast;
+
+        private final int mSize;
+
+        private final double mLatitude;
+
+        private final double mLongitude;
+
+        private final T mItem;
+
+        Cluster(int first, int last, int size, double latitude, double longitude, T item) {
+            mFirst = first;
+            mLast = last;
+            mSize = size;
+            mLatitude = latitude;
+            mLongitude = longitude;
+            mItem = item;
+        }
+
+        public int getSize() {
+            return mSize;
+        }
+
+        /**
+         * @return the average latitude of the items in the cluster
+         */
+        public double getLatitude() {
+            return mLatitude;
+        }
+
+        /**
+         * @return the average longitude of the items in the cluster
+         */
+        public double getLongitude() {
+            return mLongitude;
+        }
+
+        /**
+         * @return the item if this cluster only contains a single item, or null if it contains
+         * more than one
+         */
+        public T getItem() {
+            return mItem;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Cluster)) {
+                return false;
+            }
+            // Cells are nested across zoom levels, so clusters with the same earliest item can
+            // only differ by items added or removed in between.  Serial numbers increase and are
+            // never reused, so an added item would be the latest one, and a removed item would
+            // change the number of items.
+            Cluster<?> other = (Cluster<?>) o;
+            return mFirst == other.mFirst && mLast == other.mLast && mSize == other.mSize;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * mFirst + mLast) + mSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Cluster[size=" + mSize + ", lat=" + mLatitude + ", lon=" + mLongitude + "]";
+        }
+    }
+
+    /**
+     * The clusters to remove from and add to the map when going from one set of clusters to
+     * another
+     */
+    public static final class Update<T> {
+
+        private final List<Cluster<T>> mRemoved;
+
+        private final List<Cluster<T>> mAdded;
+
+        Update(List<Cluster<T>> removed, List<Cluster<T>> added) {
+            mRemoved = removed;
+            mAdded = added;
+        }
+
+        public List<Cluster<T>> getRemoved() {
+            return mRemoved;
+        }
+
+        public List<Cluster<T>> getAdded() {
+            return mAdded;
+        }
+    }
+
+    private static final class Cell {
+
+        // Indexes of the earliest and latest items
+        int mFirst = Integer.MAX_VALUE;
+
+        int mLast = -1;
+
+        int mCount;
+
+        double mSumLat;
+
+        double mSumLon;
+
+        void add(int index, double lat, double lon) {
+            mFirst = Math.min(mFirst, index);
+            mLast = Math.max(mLast, index);
+            mCount++;
+            mSumLat += lat;
+            mSumLon += lon;
+        }
+    }
+
+    /**
+     * Each grid cell is 1/2^CELL_SHIFT of a 256dp map tile (i.e., 64dp) on each side
+     */
+    private static final int CELL_SHIFT = 2;
+
+    public static final int MAX_ZOOM = 21;
+
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final Locator<T> mLocator;
+
+    private final ArrayList<T> mItems = new ArrayList<>();
+
+    private final HashMap<String, Integer> mIndexes = new HashMap<>();
+
+    // Serial number of each item, in the order they were added.  Unlike indexes, these aren't
+    // changed when items are removed, so they identify the items in clusters.
+    private int[] mSerials = new int[16];
+
+    private int mNextSerial = 0;
+
+    private double[] mLats = new double[16];
+
+    private double[] mLons = new double[16];
+
+    // Web Mercator coordinates of each item, from 0 to 1
+    private double[] mXs = new double[16];
+
+    private double[] mYs = new double[16];
+
+    // Zoom level -> (cell key -> cell), for the zoom levels that have been requested
+    private final HashMap<Integer, HashMap<Long, Cell>> mLevels = new HashMap<>();
+
+    public ClusterEngine(Locator<T> locator) {
+        mLocator = locator;
+    }
+
+    /**
+     * Adds the items to the clusters, ignoring any items with an ID that has already been added
+     *
+     * @return the number of items that were added
+     */
+    public synchronized int add(Collection<T> items) {
+        int added = 0;
+        for (T item : items) {
+            String id = mLocator.getId(item);
+            if (mIndexes.containsKey(id)) {
+                continue;
+            }
+            int index = mItems.size();
+            ensureCapacity(index + 1);
+            mItems.add(item);
+            mIndexes.put(id, index);
+            mSerials[index] = mNextSerial++;
+            mLats[index] = mLocator.getLatitude(item);
+            mLons[index] = mLocator.getLongitude(item);
+            mXs[index] = toX(mLons[index]);
+            mYs[index] = toY(mLats[index]);
+            for (Map.Entry<Integer, HashMap<Long, Cell>> level : mLevels.entrySet()) {
+                addToLevel(level.getValue(), level.getKey(), index);
+            }
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Removes the items with the provided IDs.  Clusters that don't contain any of the items are
+     * still equal to the same clusters returned before this call.
+     *
+     * @return the number of items that were removed
+     */
+    public synchronized int remove(Collection<String> ids) {
+        HashSet<String> toRemove = new HashSet<>(ids);
+        int removed = 0;
+        int kept = 0;
+        for (int i = 0; i < mItems.size(); i++) {
+            T item = mItems.get(i);
+            String id = mLocator.getId(item);
+            if (toRemove.contains(id)) {
+                mIndexes.remove(id);
+                removed++;
+                continue;
+            }
+            mItems.set(kept, item);
+            mIndexes.put(id, kept);
+            mSerials[kept] = mSerials[i];
+            mLats[kept] = mLats[i];
+            mLons[kept] = mLons[i];
+            mXs[kept] = mXs[i];
+            mYs[kept] = mYs[i];
+            kept++;
+        }
+        if (removed > 0) {
+            mItems.subList(kept, mItems.size()).clear();
+            // Zoom levels are rebuilt from the remaining items when next requested
+            mLevels.clear();
+        }
+        return removed;
+    }
+
+    public synchronized boolean contains(String id) {
+        return mIndexes.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return mItems.size();
+    }
+
+    public synchronized void clear() {
+        mItems.clear();
+        mIndexes.clear();
+        mLevels.clear();
+    }
+
+    /**
+     * Returns the clusters for the provided zoom level that are within or overlap the bounds
+     *
+     * @param zoom map zoom level, which is rounded down to a whole level
+     */
+    public synchronized List<Cluster<T>> getClusters(float zoom, double south, double west,
+            double north, double east) {
+        int level = (int) Math.max(0, Math.min(MAX_ZOOM, Math.floor(zoom)));
+        HashMap<Long, Cell> cells = getLevel(level);
+        int cellsPerSide = 1 << (level + CELL_SHIFT);
+        int minX = toCell(toX(west), cellsPerSide);
+        int maxX = toCell(toX(east), cellsPerSide);
+        // Y increases to the south
+        int minY = toCell(toY(north), cellsPerSide);
+        int maxY = toCell(toY(south), cellsPerSide);
+        boolean wrapsX = minX > maxX;
+
+        List<Cluster<T>> result = new ArrayList<>();
+        long viewCells = wrapsX ? Long.MAX_VALUE
+                : (long) (maxX - minX + 1) * (maxY - minY + 1);
+        if (viewCells < cells.size()) {
+            // Fewer cells in view than occupied cells, so look up each cell in view
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    Cell cell = cells.get(getCellKey(x, y));
+                    if (cell != null) {
+                        result.add(toCluster(cell));
+                    }
+                }
+            }
+        } else {
+            for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                long key = entry.getKey();
+                int x = (int) key;
+                int y = (int) (key >> 32);
+                boolean inX = wrapsX ? (x >= minX || x <= maxX) : (x >= minX && x <= maxX);
+                if (inX && y >= minY && y <= maxY) {
+                    result.add(toCluster(entry.getValue()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the clusters that need to be removed and added to go from the previous clusters
+     * to the current clusters.  Clusters that are in both are left out.
+     */
+    public static <T> Update<T> diff(Collection<Cluster<T>> previous,
+            Collection<Cluster<T>> current) {
+        HashSet<Cluster<T>> previousSet = new HashSet<>(previous);
+        HashSet<Cluster<T>> currentSet = new HashSet<>(current);
+        List<Cluster<T>> removed = new ArrayList<>();
+        for (Cluster<T> cluster : previousSet) {
+            if (!currentSet.contains(cluster)) {
+                removed.add(cluster);
+            }
+        }
+        List<Cluster<T>> added = new ArrayList<>();
+        for (Cluster<T> cluster : currentSet) {
+            if (!previousSet.contains(cluster)) {
+                added.add(cluster);
+            }
+        }
+        return new Update<>(removed, added);
+    }
+
+    private HashMap<Long, Cell> getLevel(int level) {
+        HashMap<Long, Cell> cells = mLevels.get(level);
+        if (cells == null) {
+            cells = new HashMap<>();
+            for (int i = 0; i < mItems.size(); i++) {
+                addToLevel(cells, level, i);
+            }
+            mLevels.put(level, cells);
+        }
+        return cells;
+    }
+
+    private void addToLevel(HashMap<Long, Cell> cells, int level, int index) {
+        int cellsPerSide = 1 << (level + CELL_SHIFT);
+        long key = getCellKey(toCell(mXs[index], cellsPerSide), toCell(mYs[index], cellsPerSide));
+        Cell cell = cells.get(key);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(key, cell);
+        }
+        cell.add(index, mLats[index], mLons[index]);
+    }
+
+    private Cluster<T> toCluster(Cell cell) {
+        T item = cell.mCount == 1 ? mItems.get(cell.mFirst) : null;
+        return new Cluster<>(mSerials[cell.mFirst], mSerials[cell.mLast], cell.mCount,
+                cell.mSumLat / cell.mCount, cell.mSumLon / cell.mCount, item);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mLats.length) {
+            int newLength = Math.max(capacity, mLats.length * 2);
+            mSerials = Arrays.copyOf(mSerials, newLength);
+            mLats = Arrays.copyOf(mLats, newLength);
+            mLons = Arrays.copyOf(mLons, newLength);
+            mXs = Arrays.copyOf(mXs, newLength);
+            mYs = Arrays.copyOf(mYs, newLength);
+        }
+    }
+
+    private static double toX(double lon) {
+        return (lon + 180) / 360;
+    }
+
+    private static double toY(double lat) {
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+        double sin = Math.sin(Math.toRadians(clamped));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    private static int toCell(double coordinate, int cellsPerSide) {
+        int cell = (int) Math.floor(coordinate * cellsPerSide);
+        return Math.max(0, Math.min(cellsPerSide - 1, cell));
+    }
+
+    private static long getCellKey(int x, int y) {
+        return ((long) y << 32) | (x & 0xffffffffL);
+    }
+}
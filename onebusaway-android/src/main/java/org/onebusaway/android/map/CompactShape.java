@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map;
+
+import org.onebusaway.android.io.elements.ObaShapeElement;
+
+/**
+ * A decoded polyline (e.g., a route or trip shape) stored as a packed array of coordinates
+ * instead of one object per point, along with simplified versions of the line for each zoom
+ * level that are computed as they are needed.
+ */
+public class CompactShape {
+
+    public static final int MAX_ZOOM = 21;
+
+    /**
+     * Points closer than this many density-independent pixels to the simplified line are
+     * removed
+     */
+    private static final double SIMPLIFY_TOLERANCE_DP = 1.0;
+
+    // Latitude and longitude of each point in degrees * 1E5, as [lat0, lon0, lat1, lon1, ...]
+    private final int[] mCoords;
+
+    private final int mMinLat, mMaxLat, mMinLon, mMaxLon;
+
+    // Zoom level -> indexes of the points kept when simplifying for that level
+    private final int[][] mSimplified = new int[MAX_ZOOM + 1][];
+
+    /**
+     * @param coords latitude and longitude of each point in degrees * 1E5, as
+     *               [lat0, lon0, lat1, lon1, ...]
+     */
+    public CompactShape(int[] coords) {
+        if (coords.length % 2 != 0) {
+            throw new IllegalArgumentException("coords must contain pairs of coordinates");
+        }
+        mCoords = coords;
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE;
+        int minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int i = 0; i < coords.length; i += 2) {
+            minLat = Math.min(minLat, coords[i]);
+            maxLat = Math.max(maxLat, coords[i]);
+            minLon = Math.min(minLon, coords[i + 1]);
+            maxLon = Math.max(maxLon, coords[i + 1]);
+        }
+        mMinLat = minLat;
+        mMaxLat = maxLat;
+        mMinLon = minLon;
+        mMaxLon = maxLon;
+    }
+
+    /**
+     * Decodes an encoded polyline
+     *
+     * @param encoded   the encoded polyline
+     * @param numPoints the number of points in the polyline, used as a hint to allocate memory
+     */
+    public static CompactShape decode(String encoded, int numPoints) {
+        return new CompactShape(ObaShapeElement.decodeLineE5(encoded, numPoints));
+    }
+
+    /**
+     * @return the number of points in the shape
+     */
+    public int size() {
+        return mCoords.length / 2;
+    }
+
+    public double getLatitude(int index) {
+        return mCoords[index * 2] / 1E5;
+    }
+
+    public double getLongitude(int index) {
+        return mCoords[index * 2 + 1] / 1E5;
+    }
+
+    public double getMinLatitude() {
+        return mMinLat / 1E5;
+    }
+
+    public double getMaxLatitude() {
+        return mMaxLat / 1E5;
+    }
+
+    public double getMinLongitude() {
+        return mMinLon / 1E5;
+    }
+
+    public double getMaxLongitude() {
+        return mMaxLon / 1E5;
+    }
+
+    /**
+     * Creates an interpolator for finding positions at distances along this shape
+     */
+    public ShapeInterpolator createInterpolator() {
+        double[] lats = new double[size()];
+        double[] lons = new double[size()];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = getLatitude(i);
+            lons[i] = getLongitude(i);
+        }
+        return new ShapeInterpolator(lats, lons);
+    }
+
+    /**
+     * Returns the indexes of the points that should be drawn at the provided zoom level, using
+     * Douglas-Peucker simplification to remove points that wouldn't visibly change the line
+     *
+     * @param zoom map zoom level, which is rounded down to a whole level
+     * @return indexes of the points to draw, in order
+     */
+    public synchronized int[] getSimplifiedIndexes(float zoom) {
+        int level = (int) Math.max(0, Math.min(MAX_ZOOM, Math.floor(zoom)));
+        if (mSimplified[level] == null) {
+            // Degrees of longitude per dp at this zoom level, with 256dp map tiles
+            double tolerance = 360.0 / (256 * Math.pow(2, level)) * SIMPLIFY_TOLERANCE_DP;
+            mSimplified[level] = simplify(mCoords, tolerance * 1E5);
+        }
+        return mSimplified[level];
+    }
+
+    /**
+     * Simplifies the line using the Douglas-Peucker algorithm
+     *
+     * @param coords    latitude and longitude of each point in degrees * 1E5
+     * @param tolerance max distance in degrees of longitude * 1E5 that a removed point can be
+     *                  from the simplified line
+     * @return indexes of the points that are kept, in order
+     */
+    static int[] simplify(int[] coords, double tolerance) {
+        int n = coords.length / 2;
+        if (n <= 2) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        // Scale latitudes so that distances are the same in both directions in Web Mercator
+        double midLat = (coords[0] + coords[coords.length - 2]) / 2 / 1E5;
+        double latScale = 1 / Math.cos(Math.toRadians(midLat));
+        double toleranceSquared = tolerance * tolerance;
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+
+        // Pairs of first and last indexes of the segments still to be simplified
+        int[] stack = new int[n * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double x1 = coords[first * 2 + 1];
+            double y1 = coords[first * 2] * latScale;
+            double x2 = coords[last * 2 + 1];
+            double y2 = coords[last * 2] * latScale;
+
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = distanceSquared(coords[i * 2 + 1], coords[i * 2] * latScale,
+                        x1, y1, x2, y2);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    farthest = i;
+                }
+            }
+            if (farthest != -1 && maxDistance > toleranceSquared) {
+                keep[farthest] = true;
+                kept++;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int[] result = new int[kept];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the squared distance from point (x, y) to the segment from (x1, y1) to (x2, y2)
+     */
+    private static double distanceSquared(double x, double y, double x1, double y1, double x2,
+            double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((x - x1) * dx + (y - y1) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+        double px = x1 + t * dx - x;
+        double py = y1 + t * dy - y;
+        return px * px + py * py;
+    }
+}
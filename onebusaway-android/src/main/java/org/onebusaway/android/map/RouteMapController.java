@@ -354,7 +354,8 @@ public class RouteMapController implements MapModeController {
         }
     }
 
-    private static final long VEHICLE_REFRESH_PERIOD = TimeUnit.SECONDS.toMillis(10);
+    // VehicleOverlay moves the vehicles along their trips between refreshes
+    private static final long VEHICLE_REFRESH_PERIOD = TimeUnit.SECONDS.toMillis(15);
 
     private final Handler mVehicleRefreshHandler = new Handler();
 
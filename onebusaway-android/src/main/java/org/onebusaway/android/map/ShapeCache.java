@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map;
+
+import org.onebusaway.android.io.elements.ObaShape;
+
+import androidx.collection.LruCache;
+
+/**
+ * A bounded, in-memory cache of decoded shapes, so shapes don't need to be decoded again each
+ * time a route is shown.  Shapes are keyed either by shape ID or by their encoded points, for
+ * shapes (e.g., in the stops-for-route API response) that don't have an ID.
+ */
+public final class ShapeCache {
+
+    private static class SingletonHolder {
+
+        public static final ShapeCache INSTANCE = new ShapeCache();
+    }
+
+    /**
+     * Max total number of points in all cached shapes
+     */
+    private static final int MAX_POINTS = 200000;
+
+    /**
+     * Prefix for keys of shapes cached by ID.  Encoded polylines only contain characters from
+     * '?' to '~', so these keys can't be the same as the encoded points of another shape.
+     */
+    private static final String ID_KEY_PREFIX = "id:";
+
+    private final LruCache<String, CompactShape> mShapes =
+            new LruCache<String, CompactShape>(MAX_POINTS) {
+                @Override
+                protected int sizeOf(String key, CompactShape value) {
+                    return Math.max(1, value.size());
+                }
+            };
+
+    private ShapeCache() { /* singleton */ }
+
+    public static ShapeCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the decoded version of the provided shape, decoding and caching it if it isn't
+     * already cached
+     */
+    public CompactShape get(ObaShape shape) {
+        String key = shape.getRawPoints();
+        CompactShape result = mShapes.get(key);
+        if (result == null) {
+            result = CompactShape.decode(key, shape.getLength());
+            mShapes.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the shape with the provided ID, or null if it isn't cached
+     */
+    public CompactShape getById(String shapeId) {
+        return mShapes.get(ID_KEY_PREFIX + shapeId);
+    }
+
+    /**
+     * Decodes the provided shape and caches it with the shape ID
+     *
+     * @return the decoded shape
+     */
+    public CompactShape putById(String shapeId, ObaShape shape) {
+        CompactShape result = CompactShape.decode(shape.getRawPoints(), shape.getLength());
+        mShapes.put(ID_KEY_PREFIX + shapeId, result);
+        return result;
+    }
+
+    public void clear() {
+        mShapes.evictAll();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map;
+
+import java.util.Arrays;
+
+/**
+ * Finds the point at a given distance along a polyline (e.g., a trip shape), such as the
+ * position of a vehicle from its ObaTripStatus.getDistanceAlongTrip().  The cumulative distance
+ * to each vertex is computed once, so each lookup is a binary search.
+ */
+public class ShapeInterpolator {
+
+    private static final double EARTH_RADIUS_METERS = 6371010.0;
+
+    private final double[] mLats;
+
+    private final double[] mLons;
+
+    // Distance in meters from the first point to each point
+    private final double[] mDistances;
+
+    /**
+     * @param lats latitudes of the polyline points
+     * @param lons longitudes of the polyline points, the same length as lats
+     */
+    public ShapeInterpolator(double[] lats, double[] lons) {
+        if (lats.length != lons.length || lats.length == 0) {
+            throw new IllegalArgumentException("lats and lons must be the same non-zero length");
+        }
+        mLats = lats;
+        mLons = lons;
+        mDistances = new double[lats.length];
+        for (int i = 1; i < lats.length; i++) {
+            mDistances[i] = mDistances[i - 1]
+                    + distance(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+        }
+    }
+
+    /**
+     * @return the length of the polyline in meters
+     */
+    public double getLength() {
+        return mDistances[mDistances.length - 1];
+    }
+
+    /**
+     * Returns the point at the provided distance along the polyline, or the first or last point
+     * if the distance is before the start or past the end
+     *
+     * @param distance distance along the polyline in meters
+     * @param result   array of at least length 2 that the latitude and longitude are written to
+     */
+    public void getPosition(double distance, double[] result) {
+        int i = Arrays.binarySearch(mDistances, distance);
+        if (i >= 0) {
+            // Exactly on a point
+            result[0] = mLats[i];
+            result[1] = mLons[i];
+            return;
+        }
+        // Index of the first point past the distance
+        int next = -i - 1;
+        if (next == 0) {
+            result[0] = mLats[0];
+            result[1] = mLons[0];
+            return;
+        }
+        if (next == mDistances.length) {
+            result[0] = mLats[next - 1];
+            result[1] = mLons[next - 1];
+            return;
+        }
+        int prev = next - 1;
+        double fraction = (distance - mDistances[prev]) / (mDistances[next] - mDistances[prev]);
+        result[0] = mLats[prev] + (mLats[next] - mLats[prev]) * fraction;
+        result[1] = mLons[prev] + (mLons[next] - mLons[prev]) * fraction;
+    }
+
+    /**
+     * Returns the great-circle distance in meters between two points
+     */
+    static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
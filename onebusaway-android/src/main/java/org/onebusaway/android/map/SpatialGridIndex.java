@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.map;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform lat/lon grid of values keyed by ID, used to quickly find everything that lies outside
+ * an area of the map (e.g., stop markers that have scrolled far out of view) without checking
+ * each value individually.
+ *
+ * @param <T> type of value stored in the index
+ */
+public class SpatialGridIndex<T> {
+
+    private final double mCellSize;
+
+    // Cell key -> (ID -> value)
+    private final HashMap<Long, HashMap<String, T>> mCells = new HashMap<>();
+
+    // ID -> cell key
+    private final HashMap<String, Long> mIdCells = new HashMap<>();
+
+    /**
+     * @param cellSize width and height of each grid cell in degrees
+     */
+    public SpatialGridIndex(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("cellSize must be greater than 0");
+        }
+        mCellSize = cellSize;
+    }
+
+    /**
+     * Adds a value at the provided location, replacing any existing value with the same ID
+     */
+    public void put(String id, double lat, double lon, T value) {
+        remove(id);
+        long key = getCellKey(getRow(lat), getColumn(lon));
+        HashMap<String, T> cell = mCells.get(key);
+        if (cell == null) {
+            cell = new HashMap<>();
+            mCells.put(key, cell);
+        }
+        cell.put(id, value);
+        mIdCells.put(id, key);
+    }
+
+    /**
+     * Removes the value with the provided ID
+     *
+     * @return the removed value, or null if there wasn't a value with this ID
+     */
+    public T remove(String id) {
+        Long key = mIdCells.remove(id);
+        if (key == null) {
+            return null;
+        }
+        HashMap<String, T> cell = mCells.get(key);
+        T value = cell.remove(id);
+        if (cell.isEmpty()) {
+            mCells.remove(key);
+        }
+        return value;
+    }
+
+    public T get(String id) {
+        Long key = mIdCells.get(id);
+        if (key == null) {
+            return null;
+        }
+        return mCells.get(key).get(id);
+    }
+
+    public boolean contains(String id) {
+        return mIdCells.containsKey(id);
+    }
+
+    public int size() {
+        return mIdCells.size();
+    }
+
+    public void clear() {
+        mCells.clear();
+        mIdCells.clear();
+    }
+
+    /**
+     * Returns the IDs of all values in grid cells that lie entirely outside the provided bounds.
+     * Only the occupied cells are examined, not the individual values.
+     */
+    public List<String> getIdsOutside(double minLat, double minLon, double maxLat,
+            double maxLon) {
+        int minRow = getRow(minLat);
+        int maxRow = getRow(maxLat);
+        int minColumn = getColumn(minLon);
+        int maxColumn = getColumn(maxLon);
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<Long, HashMap<String, T>> entry : mCells.entrySet()) {
+            long key = entry.getKey();
+            int row = (int) (key >> 32);
+            int column = (int) key;
+            if (row < minRow || row > maxRow || column < minColumn || column > maxColumn) {
+                result.addAll(entry.getValue().keySet());
+            }
+        }
+        return result;
+    }
+
+    private int getRow(double lat) {
+        return (int) Math.floor((lat + 90) / mCellSize);
+    }
+
+    private int getColumn(double lon) {
+        return (int) Math.floor((lon + 180) / mCellSize);
+    }
+
+    private static long getCellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
@@ -20,8 +20,8 @@ import com.google.android.gms.common.api.GoogleApiClient;
 
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.elements.ObaReferences;
 import org.onebusaway.android.io.elements.ObaStop;
-import org.onebusaway.android.io.request.ObaStopsForLocationRequest;
 import org.onebusaway.android.io.request.ObaStopsForLocationResponse;
 import org.onebusaway.android.map.googlemapsv2.BaseMapFragment;
 import org.onebusaway.android.util.RegionUtils;
@@ -78,9 +78,34 @@ final class StopsResponse {
 
     private final ObaStopsForLocationResponse mResponse;
 
+    private final List<ObaStop> mStops;
+
+    private final ObaReferences mRefs;
+
+    private final boolean mLimitExceeded;
+
     StopsResponse(StopsRequest req, ObaStopsForLocationResponse response) {
         mRequest = req;
         mResponse = response;
+        mStops = response != null ? Arrays.asList(response.getStops()) : null;
+        mRefs = response;
+        mLimitExceeded = response != null && response.getLimitExceeded();
+    }
+
+    /**
+     * @param req           the request
+     * @param response      the response used for the status code and out of range checks
+     * @param stops         the stops merged from all responses
+     * @param refs          the references merged from all responses
+     * @param limitExceeded true if any of the responses exceeded the server limits
+     */
+    StopsResponse(StopsRequest req, ObaStopsForLocationResponse response, List<ObaStop> stops,
+            ObaReferences refs, boolean limitExceeded) {
+        mRequest = req;
+        mResponse = response;
+        mStops = stops;
+        mRefs = refs;
+        mLimitExceeded = limitExceeded;
     }
 
     StopsRequest getRequest() {
@@ -91,6 +116,14 @@ final class StopsResponse {
         return mResponse;
     }
 
+    List<ObaStop> getStops() {
+        return mStops;
+    }
+
+    ObaReferences getRefs() {
+        return mRefs;
+    }
+
     /**
      * Returns true if newReq also fulfills response.
      */
@@ -99,13 +132,9 @@ final class StopsResponse {
             //Log.d(TAG, "No center");
             return false;
         }
-        if (!mRequest.getCenter().equals(newReq.getCenter())) {
-            //Log.d(TAG, "Center not the same");
-            return false;
-        }
         if (mResponse != null) {
             if ((newReq.getZoomLevel() > mRequest.getZoomLevel()) &&
-                    mResponse.getLimitExceeded()) {
+                    mLimitExceeded) {
                 //Log.d(TAG, "Zooming in -- limit exceeded");
                 return false;
             } else if (newReq.getZoomLevel() < mRequest.getZoomLevel()) {
@@ -113,6 +142,13 @@ final class StopsResponse {
                 return false;
             }
         }
+        if (!mRequest.getCenter().equals(newReq.getCenter())) {
+            // If the new request is covered by exactly the same tiles, there's nothing new
+            // to load
+            List<StopTileCache.Tile> tiles = StopTileCache.getTiles(mRequest);
+            return mResponse != null && mResponse.getCode() == ObaApi.OBA_OK && tiles != null
+                    && tiles.equals(StopTileCache.getTiles(newReq));
+        }
         return true;
 
         // Otherwise:
@@ -234,15 +270,14 @@ public class StopMapController extends BaseMapController implements
                         + ", long = " + myLocation.getLongitude());
             }
 
-            if (!inRegion && Arrays.asList(response.getStops()).isEmpty()) {
+            if (!inRegion && (_response.getStops() == null || _response.getStops().isEmpty())) {
                 Log.d(TAG, "Device location is outside region range, notifying...");
                 mCallback.notifyOutOfRange();
                 return;
             }
         }
 
-        List<ObaStop> stops = Arrays.asList(response.getStops());
-        mCallback.showStops(stops, response);
+        mCallback.showStops(_response.getStops(), _response.getRefs());
     }
 
     @Override
@@ -285,14 +320,8 @@ public class StopMapController extends BaseMapController implements
                             "OBA REST API endpoint, aborting...");
                 return new StopsResponse(req, null);
             }
-            //Make OBA REST API call to the server and return result
-            ObaStopsForLocationResponse response =
-                    new ObaStopsForLocationRequest.Builder(getContext(),
-                            req.getCenter())
-                            .setSpan(req.getLatSpan(), req.getLonSpan())
-                            .build()
-                            .call();
-            return new StopsResponse(req, response);
+            //Make OBA REST API calls to the server for any tiles we don't already have
+            return StopTileCache.getInstance().load(getContext(), req);
         }
 
         @Override
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.nav;
+
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Picks how often NavigationService requests location updates, based on the distance to the
+ * second-to-last stop.  While the rider is far away, updates are requested just often enough that
+ * a vehicle can't reach the "get ready" radius between two fixes, using coarse (network/Wi-Fi)
+ * locations when far enough away.  Within the radius, high-accuracy fixes are requested every
+ * second for the stop detection.
+ *
+ * The rate only ever speeds up during a trip - a single inaccurate fix that places the rider
+ * further away (e.g., a network fix in between GPS fixes) doesn't slow down updates again.
+ */
+public final class LocationRate {
+
+    /**
+     * Distance (in meters) from the second-to-last stop within which every fix is needed
+     */
+    public static final float NEAR_DISTANCE = NavigationServiceProvider.DISTANCE_THRESHOLD + 100;
+
+    /**
+     * Fastest speed (in meters per second) we assume a vehicle travels between two fixes
+     */
+    public static final float MAX_SPEED = 35;
+
+    /**
+     * Update intervals (in milliseconds) that can be requested, fastest first
+     */
+    static final long[] INTERVALS = {1000, 5000, 15000, 30000, 60000};
+
+    /**
+     * Intervals at least this long use coarse locations
+     */
+    private static final long COARSE_INTERVAL = 30000;
+
+    private long mInterval = -1;
+
+    /**
+     * Updates the rate with the latest distance to the second-to-last stop
+     *
+     * @param distance distance in meters to the second-to-last stop, or -1 if unknown
+     * @return true if the update interval changed and should be requested again, false if it
+     * didn't change
+     */
+    public boolean update(float distance) {
+        long interval = getInterval(distance);
+        if (mInterval != -1 && interval >= mInterval) {
+            return false;
+        }
+        mInterval = interval;
+        return true;
+    }
+
+    /**
+     * Returns the update interval in milliseconds, or -1 if no distance has been provided yet
+     */
+    public long getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * Returns the LocationRequest priority to use for the current interval
+     */
+    public int getPriority() {
+        return mInterval >= COARSE_INTERVAL ? LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY
+                : LocationRequest.PRIORITY_HIGH_ACCURACY;
+    }
+
+    /**
+     * Returns true if updates are requested at the fastest interval
+     */
+    public boolean isFastest() {
+        return mInterval == INTERVALS[0];
+    }
+
+    /**
+     * Returns the longest interval after which a fix still can't be within NEAR_DISTANCE of the
+     * second-to-last stop, for the provided distance
+     *
+     * @param distance distance in meters to the second-to-last stop, or -1 if unknown
+     */
+    static long getInterval(float distance) {
+        if (distance < 0 || distance <= NEAR_DISTANCE) {
+            return INTERVALS[0];
+        }
+        float maxInterval = (distance - NEAR_DISTANCE) / MAX_SPEED * 1000;
+        long result = INTERVALS[0];
+        for (long interval : INTERVALS) {
+            if (interval <= maxInterval) {
+                result = interval;
+            }
+        }
+        return result;
+    }
+}
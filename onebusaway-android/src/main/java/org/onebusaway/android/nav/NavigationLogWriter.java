@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.nav;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Appends lines to a navigation log file on a background thread, so the file isn't opened and
+ * written on the main thread for each location update.  Lines are buffered and flushed to the
+ * file every FLUSH_LINES lines and when the writer is closed.
+ */
+public class NavigationLogWriter {
+
+    private static final String TAG = "NavigationLogWriter";
+
+    /**
+     * Number of lines to buffer before flushing them to the file
+     */
+    private static final int FLUSH_LINES = 10;
+
+    private final File mFile;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    // Only accessed from the executor thread
+    private BufferedWriter mWriter;
+
+    private int mUnflushedLines;
+
+    public NavigationLogWriter(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Appends the provided line (including any line separator) to the end of the file
+     */
+    public synchronized void write(final String line) {
+        if (mExecutor.isShutdown()) {
+            Log.e(TAG, "Failed to write to file - writer is closed");
+            return;
+        }
+        mExecutor.execute(() -> {
+            try {
+                if (mWriter == null) {
+                    mWriter = new BufferedWriter(new FileWriter(mFile, true));
+                }
+                mWriter.write(line);
+                mUnflushedLines++;
+                if (mUnflushedLines >= FLUSH_LINES) {
+                    mWriter.flush();
+                    mUnflushedLines = 0;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "File write failed: " + e.toString());
+            }
+        });
+    }
+
+    /**
+     * Flushes any buffered lines and closes the file.  Lines written before this call are still
+     * written to the file, and lines written after it are dropped.
+     */
+    public synchronized void close() {
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+        mExecutor.execute(() -> {
+            if (mWriter == null) {
+                return;
+            }
+            try {
+                mWriter.close();
+            } catch (IOException e) {
+                Log.e(TAG, "File close failed: " + e.toString());
+            }
+            mWriter = null;
+        });
+        mExecutor.shutdown();
+    }
+}
@@ -91,6 +91,9 @@ public class NavigationService extends Service implements LocationHelper.Listene
 
     private NavigationServiceProvider mNavProvider;
     private File mLogFile = null;
+    private NavigationLogWriter mLogWriter = null;
+
+    private LocationRate mLocationRate = new LocationRate();
 
     private long mFinishedTime;
 
@@ -174,6 +177,9 @@ public class NavigationService extends Service implements LocationHelper.Listene
     public void onDestroy() {
         Log.d(TAG, "Destroying Service.");
         mLocationHelper.unregisterListener(this);
+        if (mLogWriter != null) {
+            mLogWriter.close();
+        }
         super.onDestroy();
 
         // Send Broadcast
@@ -197,6 +203,13 @@ public class NavigationService extends Service implements LocationHelper.Listene
             mNavProvider.locationUpdated(location);
         }
 
+        // Request fixes only as often as needed for the distance to the second-to-last stop
+        if (mLocationRate.update(mNavProvider.mSectoCurDistance)) {
+            Log.d(TAG, "Location update interval: " + mLocationRate.getInterval() + "ms");
+            mLocationHelper.setUpdateRate(mLocationRate.getPriority(),
+                    mLocationRate.getInterval());
+        }
+
         if (mNavProvider.mSectoCurDistance <= RECORDING_THRESHOLD) {
             writeToLog(location);
         }
@@ -208,6 +221,10 @@ public class NavigationService extends Service implements LocationHelper.Listene
                 mFinishedTime = System.currentTimeMillis();
             } else if (System.currentTimeMillis() - mFinishedTime >= 30000) {
                 ObaAnalytics.reportUiEvent(mFirebaseAnalytics, getString(R.string.analytics_label_destination_reminder), getString(R.string.analytics_label_destination_reminder_variant_ended));
+                // Finish writing the log before asking for feedback on it
+                if (mLogWriter != null) {
+                    mLogWriter.close();
+                }
                 getUserFeedback();
                 stopSelf();
                 setupLogCleanupTask();
@@ -266,6 +283,7 @@ public class NavigationService extends Service implements LocationHelper.Listene
 
             if (mLogFile != null) {
                 FileUtils.write(mLogFile, header, false);
+                mLogWriter = new NavigationLogWriter(mLogFile);
             } else {
                 Log.e(TAG, "Failed to write to file - null file");
             }
@@ -275,38 +293,33 @@ public class NavigationService extends Service implements LocationHelper.Listene
     }
 
     private void writeToLog(Location l) {
-        try {
-            String nanoTime = "";
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                nanoTime = Long.toString(l.getElapsedRealtimeNanos());
-            }
-
-            int satellites = 0;
-            if (l.getExtras() != null) {
-                satellites = l.getExtras().getInt("satellites", 0);
-            }
+        String nanoTime = "";
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            nanoTime = Long.toString(l.getElapsedRealtimeNanos());
+        }
 
-            // mGetReadyFlag =mNavProvider.getGetReady();
-            //  mPullTheCordFlag = mNavProvider.getFinished();
+        int satellites = 0;
+        if (l.getExtras() != null) {
+            satellites = l.getExtras().getInt("satellites", 0);
+        }
 
-            // TODO: Add isMockProvider
-            String log = String.format(Locale.US, "%d,%s,%s,%s,%d,%f,%f,%f,%f,%f,%f,%d,%s\n",
-                    mCoordId, mNavProvider.getGetReady(), mNavProvider.getFinished(), nanoTime, l.getTime(),
-                    l.getLatitude(), l.getLongitude(), l.getAltitude(), l.getSpeed(),
-                    l.getBearing(), l.getAccuracy(), satellites, l.getProvider());
+        // mGetReadyFlag =mNavProvider.getGetReady();
+        //  mPullTheCordFlag = mNavProvider.getFinished();
 
+        // TODO: Add isMockProvider
+        String log = String.format(Locale.US, "%d,%s,%s,%s,%d,%f,%f,%f,%f,%f,%f,%d,%s\n",
+                mCoordId, mNavProvider.getGetReady(), mNavProvider.getFinished(), nanoTime, l.getTime(),
+                l.getLatitude(), l.getLongitude(), l.getAltitude(), l.getSpeed(),
+                l.getBearing(), l.getAccuracy(), satellites, l.getProvider());
 
-            //Increments the id for each coordinate
-            mCoordId++;
 
-            if (mLogFile != null && mLogFile.canWrite()) {
-                FileUtils.write(mLogFile, log, true);
-            } else {
-                Log.e(TAG, "Failed to write to file");
-            }
+        //Increments the id for each coordinate
+        mCoordId++;
 
-        } catch (IOException e) {
-            Log.e(TAG, "File write failed: " + e.toString());
+        if (mLogWriter != null) {
+            mLogWriter.write(log);
+        } else {
+            Log.e(TAG, "Failed to write to file");
         }
     }
 
@@ -90,6 +90,8 @@ public class NavigationServiceProvider implements TextToSpeech.OnInitListener {
 
     public float mSectoCurDistance = -1;
 
+    private String mDistanceText;       // Distance last shown in the notification
+
     public static TextToSpeech mTTS;          // TextToSpeech for speaking commands.
 
     SharedPreferences mSettings = Application.getPrefs();  // Shared Prefs
@@ -570,6 +572,17 @@ public class NavigationServiceProvider implements TextToSpeech.OnInitListener {
      */
     private Notification updateUi(int eventType) {
         Application app = Application.get();
+
+        String distanceText = null;
+        if (eventType == EVENT_TYPE_UPDATE_DISTANCE) {
+            distanceText = getDistanceText();
+            if (distanceText.equals(mDistanceText)) {
+                // Don't rebuild the notification if the rounded distance hasn't changed
+                return null;
+            }
+            mDistanceText = distanceText;
+        }
+
         TripDetailsActivity.Builder bldr = new TripDetailsActivity.Builder(
                 app.getApplicationContext(), mTripId);
 
@@ -600,41 +613,7 @@ public class NavigationServiceProvider implements TextToSpeech.OnInitListener {
             mBuilder.setOngoing(true);
             return mBuilder.build();
         } else if (eventType == EVENT_TYPE_UPDATE_DISTANCE) {
-            // Retrieve preferred unit and calculate distance.
-            String IMPERIAL = app.getString(R.string.preferences_preferred_units_option_imperial);
-            String METRIC = app.getString(R.string.preferences_preferred_units_option_metric);
-            String AUTOMATIC = app.getString(R.string.preferences_preferred_units_option_automatic);
-            String preferredUnits = mSettings
-                    .getString(app.getString(R.string.preference_key_preferred_units), AUTOMATIC);
-            double distance = mProxCalculator.endDistance;
-            double miles = distance * RegionUtils.METERS_TO_MILES;  // Get miles.
-            distance /= 1000;                                       // Get kilometers.
-            DecimalFormat fmt = new DecimalFormat("0.0");
-
-            Locale mLocale = Locale.getDefault();
-
-            if (preferredUnits.equalsIgnoreCase(AUTOMATIC)) {
-                Log.d(TAG, "Setting units automatically");
-                // If the country is set to USA, assume imperial, otherwise metric
-                // TODO - Method of guessing metric/imperial can definitely be improved
-                if (mLocale.getISO3Country().equalsIgnoreCase(Locale.US.getISO3Country())) {
-                    mBuilder.setContentText(Application.get().getResources().getQuantityString(R.plurals.distance_miles,
-                            (int) miles,
-                            fmt.format(miles)));
-                } else {
-                    mBuilder.setContentText(Application.get().getResources().getQuantityString(R.plurals.distance_kilometers,
-                            (int) distance,
-                            fmt.format(distance)));
-                }
-            } else if (preferredUnits.equalsIgnoreCase(IMPERIAL)) {
-                mBuilder.setContentText(Application.get().getResources().getQuantityString(R.plurals.distance_miles,
-                        (int) miles,
-                        fmt.format(miles)));
-            } else {
-                mBuilder.setContentText(Application.get().getResources().getQuantityString(R.plurals.distance_kilometers,
-                        (int) distance,
-                        fmt.format(distance)));
-            }
+            mBuilder.setContentText(distanceText);
 
             receiverIntent.putExtra(NavigationReceiver.ACTION_NUM, NavigationReceiver.CANCEL_TRIP);
             receiverIntent.putExtra(NavigationReceiver.NOTIFICATION_ID, NOTIFICATION_ID);
@@ -717,6 +696,48 @@ public class NavigationServiceProvider implements TextToSpeech.OnInitListener {
         return null;
     }
 
+    /**
+     * Returns the distance to the destination to show in the notification, in the preferred units
+     */
+    private String getDistanceText() {
+        Application app = Application.get();
+
+        // Retrieve preferred unit and calculate distance.
+        String IMPERIAL = app.getString(R.string.preferences_preferred_units_option_imperial);
+        String METRIC = app.getString(R.string.preferences_preferred_units_option_metric);
+        String AUTOMATIC = app.getString(R.string.preferences_preferred_units_option_automatic);
+        String preferredUnits = mSettings
+                .getString(app.getString(R.string.preference_key_preferred_units), AUTOMATIC);
+        double distance = mProxCalculator.endDistance;
+        double miles = distance * RegionUtils.METERS_TO_MILES;  // Get miles.
+        distance /= 1000;                                       // Get kilometers.
+        DecimalFormat fmt = new DecimalFormat("0.0");
+
+        Locale mLocale = Locale.getDefault();
+
+        if (preferredUnits.equalsIgnoreCase(AUTOMATIC)) {
+            // If the country is set to USA, assume imperial, otherwise metric
+            // TODO - Method of guessing metric/imperial can definitely be improved
+            if (mLocale.getISO3Country().equalsIgnoreCase(Locale.US.getISO3Country())) {
+                return Application.get().getResources().getQuantityString(R.plurals.distance_miles,
+                        (int) miles,
+                        fmt.format(miles));
+            } else {
+                return Application.get().getResources().getQuantityString(R.plurals.distance_kilometers,
+                        (int) distance,
+                        fmt.format(distance));
+            }
+        } else if (preferredUnits.equalsIgnoreCase(IMPERIAL)) {
+            return Application.get().getResources().getQuantityString(R.plurals.distance_miles,
+                    (int) miles,
+                    fmt.format(miles));
+        } else {
+            return Application.get().getResources().getQuantityString(R.plurals.distance_kilometers,
+                    (int) distance,
+                    fmt.format(distance));
+        }
+    }
+
     /**
      * Speak specified message out loud using TTS
      *
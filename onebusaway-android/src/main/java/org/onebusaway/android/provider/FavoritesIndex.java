@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.provider;
+
+import org.onebusaway.android.app.Application;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * An in-memory copy of the route/headsign favorites and the service alert hidden states, so
+ * they can be checked for each arrival and alert without querying the database.  The index is
+ * loaded from the database on first use, updated in place by the writes made through
+ * ObaContract, and reloaded if the tables are changed in any other way.
+ */
+public final class FavoritesIndex {
+
+    private static class SingletonHolder {
+
+        public static final FavoritesIndex INSTANCE = new FavoritesIndex();
+    }
+
+    /**
+     * Query parameter added to the URIs of writes that update the index themselves, so the
+     * change notification for the write doesn't cause the index to be reloaded
+     */
+    static final String PARAM_INDEXED = "indexed";
+
+    // Flags for the records that exist for a route/headsign/stop
+    private static final int FAVORITE = 1;
+
+    private static final int EXCLUDED = 2;
+
+    // Separates the parts of route/headsign/stop keys
+    private static final char SEPARATOR = '\u0000';
+
+    // Route/headsign/stop key -> FAVORITE and/or EXCLUDED, or null if not loaded
+    private HashMap<String, Integer> mRouteHeadsigns;
+
+    // Situation ID -> true if hidden, for all alerts in the database, or null if not loaded
+    private HashMap<String, Boolean> mAlerts;
+
+    private boolean mObserving = false;
+
+    private FavoritesIndex() { /* singleton */ }
+
+    public static FavoritesIndex getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the URI to use for a write to a table that updates this index itself
+     */
+    static Uri indexedUri(Uri uri) {
+        return uri.buildUpon().appendQueryParameter(PARAM_INDEXED, "true").build();
+    }
+
+    /**
+     * Returns true if this combination of routeId and headsign is a favorite for this stop
+     * or all stops (and that stop is not excluded as a favorite), false if it is not
+     */
+    public synchronized boolean isRouteHeadsignFavorite(String routeId, String headsign,
+            String stopId) {
+        loadRouteHeadsigns();
+        int stopFlags = getFlags(key(routeId, headsign, stopId));
+        if ((stopFlags & FAVORITE) != 0) {
+            return true;
+        }
+        return mRouteHeadsigns.containsKey(key(routeId, headsign,
+                ObaContract.RouteHeadsignFavorites.ALL_STOPS))
+                && (stopFlags & EXCLUDED) == 0;
+    }
+
+    /**
+     * Returns true if this routeId is a favorite for at least one headsign that isn't an
+     * exclusion
+     */
+    synchronized boolean isRouteFavorite(String routeId) {
+        loadRouteHeadsigns();
+        String prefix = routeId + SEPARATOR;
+        for (HashMap.Entry<String, Integer> entry : mRouteHeadsigns.entrySet()) {
+            if ((entry.getValue() & FAVORITE) != 0 && entry.getKey().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records that a route/headsign/stop record was inserted
+     */
+    synchronized void onRouteHeadsignInserted(String routeId, String headsign, String stopId,
+            boolean exclude) {
+        if (mRouteHeadsigns == null) {
+            return;
+        }
+        String key = key(routeId, headsign, stopId);
+        mRouteHeadsigns.put(key, getFlags(key) | (exclude ? EXCLUDED : FAVORITE));
+    }
+
+    /**
+     * Records that all records for a route/headsign/stop were deleted
+     */
+    synchronized void onRouteHeadsignDeleted(String routeId, String headsign, String stopId) {
+        if (mRouteHeadsigns == null) {
+            return;
+        }
+        mRouteHeadsigns.remove(key(routeId, headsign, stopId));
+    }
+
+    /**
+     * Records that all records for a route/headsign were deleted, for all stops
+     */
+    synchronized void onRouteHeadsignDeleted(String routeId, String headsign) {
+        if (mRouteHeadsigns == null) {
+            return;
+        }
+        String prefix = routeId + SEPARATOR + headsign + SEPARATOR;
+        Iterator<String> it = mRouteHeadsigns.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns true if this service alert (situation) has been hidden by the user
+     */
+    public synchronized boolean isAlertHidden(String situationId) {
+        loadAlerts();
+        return Boolean.TRUE.equals(mAlerts.get(situationId));
+    }
+
+    /**
+     * Returns true if this service alert (situation) has been saved to the database
+     */
+    synchronized boolean containsAlert(String situationId) {
+        loadAlerts();
+        return mAlerts.containsKey(situationId);
+    }
+
+    /**
+     * Records that an alert was inserted or updated
+     *
+     * @param hidden true if the alert is now hidden, false if it isn't, or null if the hidden
+     *               state wasn't changed
+     */
+    synchronized void onAlertSaved(String situationId, Boolean hidden) {
+        if (mAlerts == null) {
+            return;
+        }
+        if (hidden != null) {
+            mAlerts.put(situationId, hidden);
+        } else if (!mAlerts.containsKey(situationId)) {
+            mAlerts.put(situationId, false);
+        }
+    }
+
+    /**
+     * Records that all alerts were marked as not hidden
+     */
+    synchronized void onAllAlertsShown() {
+        if (mAlerts == null) {
+            return;
+        }
+        for (HashMap.Entry<String, Boolean> entry : mAlerts.entrySet()) {
+            entry.setValue(false);
+        }
+    }
+
+    /**
+     * Discards the index so that it's reloaded from the database on next use (e.g., after the
+     * database is restored from a backup)
+     */
+    public synchronized void invalidate() {
+        mRouteHeadsigns = null;
+        mAlerts = null;
+    }
+
+    private int getFlags(String key) {
+        Integer flags = mRouteHeadsigns.get(key);
+        return flags != null ? flags : 0;
+    }
+
+    private static String key(String routeId, String headsign, String stopId) {
+        return routeId + SEPARATOR + (headsign != null ? headsign : "") + SEPARATOR + stopId;
+    }
+
+    private void loadRouteHeadsigns() {
+        if (mRouteHeadsigns != null) {
+            return;
+        }
+        observeChanges();
+        mRouteHeadsigns = new HashMap<>();
+        ContentResolver cr = Application.get().getContentResolver();
+        Cursor c = cr.query(ObaContract.RouteHeadsignFavorites.CONTENT_URI,
+                new String[]{
+                        ObaContract.RouteHeadsignFavorites.ROUTE_ID,
+                        ObaContract.RouteHeadsignFavorites.HEADSIGN,
+                        ObaContract.RouteHeadsignFavorites.STOP_ID,
+                        ObaContract.RouteHeadsignFavorites.EXCLUDE
+                }, null, null, null);
+        if (c != null) {
+            try {
+                while (c.moveToNext()) {
+                    String key = key(c.getString(0), c.getString(1), c.getString(2));
+                    mRouteHeadsigns.put(key, getFlags(key)
+                            | (c.getInt(3) == 1 ? EXCLUDED : FAVORITE));
+                }
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    private void loadAlerts() {
+        if (mAlerts != null) {
+            return;
+        }
+        observeChanges();
+        mAlerts = new HashMap<>();
+        ContentResolver cr = Application.get().getContentResolver();
+        Cursor c = cr.query(ObaContract.ServiceAlerts.CONTENT_URI,
+                new String[]{
+                        ObaContract.ServiceAlerts._ID,
+                        ObaContract.ServiceAlerts.HIDDEN
+                }, null, null, null);
+        if (c != null) {
+            try {
+                while (c.moveToNext()) {
+                    mAlerts.put(c.getString(0), !c.isNull(1) && c.getInt(1) == 1);
+                }
+            } finally {
+                c.close();
+            }
+        }
+    }
+
+    /**
+     * Reloads the index when the tables are changed by something other than the writes that
+     * update the index themselves
+     */
+    private void observeChanges() {
+        if (mObserving) {
+            return;
+        }
+        mObserving = true;
+        ContentResolver cr = Application.get().getContentResolver();
+        cr.registerContentObserver(ObaContract.RouteHeadsignFavorites.CONTENT_URI, true,
+                new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        if (!isIndexed(uri)) {
+                            synchronized (FavoritesIndex.this) {
+                                mRouteHeadsigns = null;
+                            }
+                        }
+                    }
+                });
+        cr.registerContentObserver(ObaContract.ServiceAlerts.CONTENT_URI, true,
+                new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        if (!isIndexed(uri)) {
+                            synchronized (FavoritesIndex.this) {
+                                mAlerts = null;
+                            }
+                        }
+                    }
+                });
+    }
+
+    private static boolean isIndexed(Uri uri) {
+        return uri != null && uri.getBooleanQueryParameter(PARAM_INDEXED, false);
+    }
+}
@@ -1189,8 +1189,16 @@ public final class ObaContract {
             if (values == null) {
                 values = new ContentValues();
             }
+            FavoritesIndex index = FavoritesIndex.getInstance();
+            if (index.containsAlert(id) && !markAsRead && hidden == null
+                    && values.size() == 0) {
+                // Already saved and nothing to update, so skip the database entirely
+                return Uri.withAppendedPath(CONTENT_URI, id);
+            }
             ContentResolver cr = Application.get().getContentResolver();
             final Uri uri = Uri.withAppendedPath(CONTENT_URI, id);
+            // Writes through this URI update the index directly instead of invalidating it
+            final Uri indexedUri = FavoritesIndex.indexedUri(uri);
             Cursor c = cr.query(uri, new String[]{}, null, null, null);
             Uri result;
             if (c != null && c.getCount() > 0) {
@@ -1208,7 +1216,7 @@ public final class ObaContract {
                     }
                 }
                 if (values.size() != 0) {
-                    cr.update(uri, values, null, null);
+                    cr.update(indexedUri, values, null, null);
                 }
                 result = uri;
             } else {
@@ -1224,11 +1232,12 @@ public final class ObaContract {
                     }
                 }
                 values.put(_ID, id);
-                result = cr.insert(CONTENT_URI, values);
+                result = cr.insert(FavoritesIndex.indexedUri(CONTENT_URI), values);
             }
             if (c != null) {
                 c.close();
             }
+            index.onAlertSaved(id, hidden);
             return result;
         }
 
@@ -1241,21 +1250,7 @@ public final class ObaContract {
          * false it if has not
          */
         public static boolean isHidden(String situationId) {
-            final String[] selection = {_ID, HIDDEN};
-            final String[] selectionArgs = {situationId, Integer.toString(1)};
-            final String WHERE = _ID + "=? AND " + HIDDEN + "=?";
-            ContentResolver cr = Application.get().getContentResolver();
-            Cursor c = cr.query(CONTENT_URI, selection, WHERE, selectionArgs, null);
-            boolean hidden;
-            if (c != null && c.getCount() > 0) {
-                hidden = true;
-            } else {
-                hidden = false;
-            }
-            if (c != null) {
-                c.close();
-            }
-            return hidden;
+            return FavoritesIndex.getInstance().isAlertHidden(situationId);
         }
 
         /**
@@ -1267,7 +1262,9 @@ public final class ObaContract {
             ContentResolver cr = Application.get().getContentResolver();
             ContentValues values = new ContentValues();
             values.put(HIDDEN, 0);
-            return cr.update(CONTENT_URI, values, null, null);
+            int result = cr.update(FavoritesIndex.indexedUri(CONTENT_URI), values, null, null);
+            FavoritesIndex.getInstance().onAllAlertsShown();
+            return result;
         }
     }
 
@@ -1552,7 +1549,7 @@ public final class ObaContract {
                 = "vnd.android.dir/" + BuildConfig.DATABASE_AUTHORITY + ".routeheadsignfavorites";
 
         // String used to indicate that a route/headsign combination is a favorite for all stops
-        private static final String ALL_STOPS = "all";
+        static final String ALL_STOPS = "all";
 
         /**
          * Set the specified route and headsign combination as a favorite, optionally for a specific
@@ -1578,6 +1575,9 @@ public final class ObaContract {
             }
 
             ContentResolver cr = context.getContentResolver();
+            FavoritesIndex index = FavoritesIndex.getInstance();
+            // Writes through this URI update the index directly instead of invalidating it
+            Uri uri = FavoritesIndex.indexedUri(CONTENT_URI);
             Uri routeUri = Uri.withAppendedPath(ObaContract.Routes.CONTENT_URI, routeId);
 
             String stopIdInternal;
@@ -1592,7 +1592,8 @@ public final class ObaContract {
             if (favorite) {
                 if (stopIdInternal != ALL_STOPS) {
                     // First, delete any potential exclusion records for this stop by removing all records
-                    cr.delete(CONTENT_URI, WHERE, selectionArgs);
+                    cr.delete(uri, WHERE, selectionArgs);
+                    index.onRouteHeadsignDeleted(routeId, headsign, stopIdInternal);
                 }
 
                 // Mark as favorite by inserting a record for this route/headsign combo
@@ -1601,24 +1602,27 @@ public final class ObaContract {
                 values.put(HEADSIGN, headsign);
                 values.put(STOP_ID, stopIdInternal);
                 values.put(EXCLUDE, 0);
-                cr.insert(CONTENT_URI, values);
+                cr.insert(uri, values);
+                index.onRouteHeadsignInserted(routeId, headsign, stopIdInternal, false);
 
                 // Mark the route as a favorite also in the routes table
                 Routes.markAsFavorite(context, routeUri, true);
             } else {
                 // Deselect it as favorite by deleting all records for this route/headsign/stopId combo
-                cr.delete(CONTENT_URI, WHERE, selectionArgs);
+                cr.delete(uri, WHERE, selectionArgs);
+                index.onRouteHeadsignDeleted(routeId, headsign, stopIdInternal);
                 if (stopIdInternal == ALL_STOPS) {
                     // Also make sure we've deleted the single record for this specific stop, if it exists
                     // We don't have the stopId here, so we can just delete all records for this routeId/headsign
                     final String[] selectionArgs2 = {routeId, headsign};
                     final String WHERE2 = ROUTE_ID + "=? AND " + HEADSIGN + "=?";
-                    cr.delete(CONTENT_URI, WHERE2, selectionArgs2);
+                    cr.delete(uri, WHERE2, selectionArgs2);
+                    index.onRouteHeadsignDeleted(routeId, headsign);
                 }
 
                 // If there are no more route/headsign combinations that are favorites for this route,
                 // then mark the route as not a favorite
-                if (!isFavorite(context, routeId)) {
+                if (!index.isRouteFavorite(routeId)) {
                     Routes.markAsFavorite(context, routeUri, false);
                 }
 
@@ -1632,7 +1636,8 @@ public final class ObaContract {
                     values.put(HEADSIGN, headsign);
                     values.put(STOP_ID, stopIdInternal);
                     values.put(EXCLUDE, 1);
-                    cr.insert(CONTENT_URI, values);
+                    cr.insert(uri, values);
+                    index.onRouteHeadsignInserted(routeId, headsign, stopIdInternal, true);
                 }
             }
 
@@ -1666,77 +1671,7 @@ public final class ObaContract {
          */
         public static boolean isFavorite(String routeId, String headsign,
                 String stopId) {
-            if (headsign == null) {
-                headsign = "";
-            }
-            final String[] selection = {ROUTE_ID, HEADSIGN, STOP_ID, EXCLUDE};
-            final String[] selectionArgs = {routeId, headsign, stopId, Integer.toString(0)};
-            ContentResolver cr = Application.get().getContentResolver();
-            final String FILTER_WHERE_ALL_FIELDS = ROUTE_ID + "=? AND " + HEADSIGN + "=? AND "
-                    + STOP_ID + "=? AND " + EXCLUDE + "=?";
-            Cursor c = cr.query(CONTENT_URI, selection, FILTER_WHERE_ALL_FIELDS,
-                    selectionArgs, null);
-            boolean favorite;
-            if (c != null && c.getCount() > 0) {
-                favorite = true;
-            } else {
-                // Check again to see if the user has favorited this route/headsign combo for all stops
-                final String[] selectionArgs2 = {routeId, headsign, ALL_STOPS};
-                String WHERE_PARTIAL = ROUTE_ID + "=? AND " + HEADSIGN + "=? AND "
-                        + STOP_ID + "=?";
-                Cursor c2 = cr.query(CONTENT_URI, selection, WHERE_PARTIAL,
-                        selectionArgs2, null);
-                favorite = c2 != null && c2.getCount() > 0;
-                if (c2 != null) {
-                    c2.close();
-                }
-
-                if (favorite) {
-                    // Finally, make sure the user hasn't excluded this stop as a favorite
-                    final String[] selectionArgs3 = {routeId, headsign, stopId,
-                            Integer.toString(1)};
-                    Cursor c3 = cr.query(CONTENT_URI, selection, FILTER_WHERE_ALL_FIELDS,
-                            selectionArgs3, null);
-                    // If this query returns at least one record, it means the stop has been excluded as
-                    // a favorite (i.e., the user explicitly de-selected it)
-                    boolean isStopExcluded = c3 != null && c3.getCount() > 0;
-                    favorite = !isStopExcluded;
-                    if (c3 != null) {
-                        c3.close();
-                    }
-                }
-            }
-            if (c != null) {
-                c.close();
-            }
-            return favorite;
-        }
-
-        /**
-         * Returns true if this routeId is listed as a favorite for at least one headsign with
-         * EXCLUDED set to false, or false if it is not
-         *
-         * @param routeId The routeId to check for favorite
-         * @return true if this routeId is listed as a favorite for at least one headsign without
-         * EXCLUDE being set to true, or false if it is not
-         */
-        private static boolean isFavorite(Context context, String routeId) {
-            final String[] selection = {ROUTE_ID, EXCLUDE};
-            final String[] selectionArgs = {routeId, Integer.toString(0)};
-            final String WHERE = ROUTE_ID + "=? AND " + EXCLUDE + "=?";
-            ContentResolver cr = context.getContentResolver();
-            Cursor c = cr.query(CONTENT_URI, selection, WHERE,
-                    selectionArgs, null);
-            boolean favorite = false;
-            if (c != null && c.getCount() > 0) {
-                favorite = true;
-            } else {
-                favorite = false;
-            }
-            if (c != null) {
-                c.close();
-            }
-            return favorite;
+            return FavoritesIndex.getInstance().isRouteHeadsignFavorite(routeId, headsign, stopId);
         }
     }
 
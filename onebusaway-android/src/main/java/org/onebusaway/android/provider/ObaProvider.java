@@ -20,9 +20,12 @@ package org.onebusaway.android.provider;
 import org.onebusaway.android.BuildConfig;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
@@ -34,7 +37,9 @@ import android.net.Uri;
 import android.util.Log;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 public class ObaProvider extends ContentProvider {
@@ -49,10 +54,12 @@ public class ObaProvider extends ContentProvider {
 
     private class OpenHelper extends SQLiteOpenHelper {
 
-        private static final int DATABASE_VERSION = 30;
+        private static final int DATABASE_VERSION = 31;
 
         public OpenHelper(Context context) {
             super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            // Let the UI read while the TripService and other background tasks are writing
+            setWriteAheadLoggingEnabled(true);
         }
 
         @Override
@@ -305,6 +312,10 @@ public class ObaProvider extends ContentProvider {
                         " ADD COLUMN " + ObaContract.Regions.TRAVEL_BEHAVIOR_DATA_COLLECTION + " INTEGER");
                 db.execSQL("ALTER TABLE " + ObaContract.Regions.PATH +
                         " ADD COLUMN " + ObaContract.Regions.ENROLL_PARTICIPANTS_IN_STUDY + " INTEGER");
+                ++oldVersion;
+            }
+            if (oldVersion == 30) {
+                createIndexes(db);
             }
         }
 
@@ -355,6 +366,43 @@ public class ObaProvider extends ContentProvider {
                             ");");
         }
 
+        /**
+         * Creates the indexes used by the most frequent lookups - favorites, trip reminders, and
+         * navigation stops
+         */
+        private void createIndexes(SQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_stops_favorite ON " +
+                    ObaContract.Stops.PATH + " (" +
+                    ObaContract.Stops.FAVORITE + ", " +
+                    ObaContract.Stops.USE_COUNT + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_routes_favorite ON " +
+                    ObaContract.Routes.PATH + " (" +
+                    ObaContract.Routes.FAVORITE + ", " +
+                    ObaContract.Routes.USE_COUNT + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_trips_id_stop ON " +
+                    ObaContract.Trips.PATH + " (" +
+                    ObaContract.Trips._ID + ", " +
+                    ObaContract.Trips.STOP_ID + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_trip_alerts_trip_stop ON " +
+                    ObaContract.TripAlerts.PATH + " (" +
+                    ObaContract.TripAlerts.TRIP_ID + ", " +
+                    ObaContract.TripAlerts.STOP_ID + ", " +
+                    ObaContract.TripAlerts.START_TIME + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_stop_route_filters_stop ON " +
+                    ObaContract.StopRouteFilters.PATH + " (" +
+                    ObaContract.StopRouteFilters.STOP_ID + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_route_headsign_favorites ON " +
+                    ObaContract.RouteHeadsignFavorites.PATH + " (" +
+                    ObaContract.RouteHeadsignFavorites.ROUTE_ID + ", " +
+                    ObaContract.RouteHeadsignFavorites.HEADSIGN + ", " +
+                    ObaContract.RouteHeadsignFavorites.STOP_ID + ", " +
+                    ObaContract.RouteHeadsignFavorites.EXCLUDE + ")");
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_nav_stops_nav_id ON " +
+                    ObaContract.NavStops.PATH + " (" +
+                    ObaContract.NavStops.NAV_ID + ", " +
+                    ObaContract.NavStops.SEQUENCE + ")");
+        }
+
         private void dropTables(SQLiteDatabase db) {
             db.execSQL("DROP TABLE IF EXISTS " + ObaContract.StopRouteFilters.PATH);
             db.execSQL("DROP TABLE IF EXISTS " + ObaContract.Routes.PATH);
@@ -606,6 +654,10 @@ public class ObaProvider extends ContentProvider {
 
     private OpenHelper mOpenHelper;
 
+    // URIs changed by the batch in progress, which are notified once the batch is committed, or
+    // null if no batch is in progress.  Only accessed while holding the database transaction.
+    private LinkedHashSet<Uri> mBatchChanges;
+
     public static File getDatabasePath(Context context) {
         return context.getDatabasePath(DATABASE_NAME);
     }
@@ -669,7 +721,7 @@ public class ObaProvider extends ContentProvider {
         db.beginTransaction();
         try {
             Uri result = insertInternal(db, uri, values);
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
             db.setTransactionSuccessful();
             return result;
         } finally {
@@ -677,6 +729,53 @@ public class ObaProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Inserts all of the values in a single transaction, instead of the default implementation's
+     * transaction per row, and notifies observers once
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        final SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            for (ContentValues v : values) {
+                insertInternal(db, uri, v);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (values.length > 0) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return values.length;
+    }
+
+    /**
+     * Applies all of the operations in a single transaction, so either all or none of them are
+     * committed, and notifies observers of each changed URI once after the commit
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = getDatabase();
+        LinkedHashSet<Uri> changes = new LinkedHashSet<>();
+        ContentProviderResult[] results;
+        db.beginTransaction();
+        try {
+            mBatchChanges = changes;
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            mBatchChanges = null;
+            db.endTransaction();
+        }
+        for (Uri uri : changes) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return results;
+    }
+
     @Override
     public Cursor query(Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
@@ -692,7 +791,7 @@ public class ObaProvider extends ContentProvider {
         try {
             int result = updateInternal(db, uri, values, selection, selectionArgs);
             if (result > 0) {
-                getContext().getContentResolver().notifyChange(uri, null);
+                notifyChange(uri);
             }
             db.setTransactionSuccessful();
             return result;
@@ -708,7 +807,7 @@ public class ObaProvider extends ContentProvider {
         try {
             int result = deleteInternal(db, uri, selection, selectionArgs);
             if (result > 0) {
-                getContext().getContentResolver().notifyChange(uri, null);
+                notifyChange(uri);
             }
             db.setTransactionSuccessful();
             return result;
@@ -1178,6 +1277,30 @@ public class ObaProvider extends ContentProvider {
         return mDb;
     }
 
+    /**
+     * Notifies observers of a change to the URI, or defers the notification until the batch in
+     * progress is committed
+     */
+    private void notifyChange(Uri uri) {
+        if (mBatchChanges != null) {
+            mBatchChanges.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Copies any changes in the write-ahead log into the database file, so the file can be
+     * copied on its own (e.g., for a backup)
+     */
+    public void checkpoint() {
+        Cursor c = getDatabase().rawQuery("PRAGMA wal_checkpoint(FULL)", null);
+        if (c != null) {
+            c.moveToFirst();
+            c.close();
+        }
+    }
+
     //
     // Closes the database
     //
@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.provider;
+
+import org.onebusaway.android.app.Application;
+import org.onebusaway.android.io.elements.ObaRoute;
+import org.onebusaway.android.io.elements.ObaRouteElement;
+import org.onebusaway.android.io.elements.ObaStop;
+import org.onebusaway.android.io.elements.ObaStopElement;
+import org.onebusaway.android.util.PreferenceUtils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.location.Location;
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local full-text index of the stops and routes for the current region (or custom API
+ * server), so stops and routes can be found by name or stop code as the user types without
+ * waiting on the network.  The index is built in the background by SearchIndexWorker and is
+ * replaced as a whole when it's rebuilt.
+ *
+ * The SQLite version bundled with Android doesn't include FTS5, so this uses FTS4 with prefix
+ * queries.  The candidates for each search are exact stop code or route short name matches, the
+ * matches the user has viewed most often, and the closest (or shortest named) of the other
+ * matches, which are then ranked in memory by distance and by how often the user has viewed each
+ * stop or route.
+ */
+public final class SearchIndex {
+
+    private static class SingletonHolder {
+
+        public static final SearchIndex INSTANCE = new SearchIndex();
+    }
+
+    private static final String TAG = "SearchIndex";
+
+    private static final String DATABASE_NAME = "search_index.db";
+
+    /**
+     * Age after which the index is rebuilt, to pick up service changes
+     */
+    public static final long MAX_AGE = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Age after which an index that's missing some routes is rebuilt
+     */
+    private static final long INCOMPLETE_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Max number of full-text matches that are ranked for each search
+     */
+    private static final int MAX_CANDIDATES = 200;
+
+    /**
+     * Max number of the stops or routes the user has viewed most often that are looked up in
+     * each search, which keeps the query under SQLite's limit on parameters
+     */
+    private static final int MAX_USED_CANDIDATES = 100;
+
+    private static final String STOP_COLUMNS = "s.stop_id, s.name, s.code, s.direction, s.lat, "
+            + "s.lon";
+
+    private static final String ROUTE_COLUMNS = "r.route_id, r.short_name, r.long_name, "
+            + "r.description, r.type, r.url, r.color, r.text_color, r.agency_id";
+
+    // Preferences that describe the index, so they can be checked without opening the database
+    private static final String PREFERENCE_SERVER = "search_index_server";
+
+    private static final String PREFERENCE_UPDATED = "search_index_updated";
+
+    private static final class OpenHelper extends SQLiteOpenHelper {
+
+        private static final int DATABASE_VERSION = 2;
+
+        OpenHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE stops (_id INTEGER PRIMARY KEY, stop_id TEXT UNIQUE, "
+                    + "name TEXT, code TEXT, direction TEXT, lat REAL, lon REAL)");
+            db.execSQL("CREATE INDEX stops_code ON stops (code COLLATE NOCASE)");
+            db.execSQL("CREATE VIRTUAL TABLE stops_fts USING fts4(name, code)");
+            db.execSQL("CREATE TABLE routes (_id INTEGER PRIMARY KEY, route_id TEXT UNIQUE, "
+                    + "short_name TEXT, long_name TEXT, description TEXT, type INTEGER, "
+                    + "url TEXT, color TEXT, text_color TEXT, agency_id TEXT)");
+            db.execSQL("CREATE INDEX routes_short_name ON routes (short_name COLLATE NOCASE)");
+            db.execSQL("CREATE VIRTUAL TABLE routes_fts USING fts4(short_name, long_name)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // The index can always be rebuilt from the server, so just start over
+            db.execSQL("DROP TABLE IF EXISTS stops");
+            db.execSQL("DROP TABLE IF EXISTS stops_fts");
+            db.execSQL("DROP TABLE IF EXISTS routes");
+            db.execSQL("DROP TABLE IF EXISTS routes_fts");
+            onCreate(db);
+            PreferenceUtils.saveString(PREFERENCE_SERVER, null);
+        }
+    }
+
+    private final OpenHelper mOpenHelper;
+
+    private SearchIndex() {
+        mOpenHelper = new OpenHelper(Application.get());
+    }
+
+    public static SearchIndex getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the key identifying the server that the index should be built from - the custom
+     * API URL if one is set, otherwise the ID of the current region
+     */
+    public static String getServerKey() {
+        String serverKey = Application.get().getCustomApiUrl();
+        if (serverKey == null || serverKey.isEmpty()) {
+            serverKey = Application.get().getCurrentRegion() != null
+                    ? String.valueOf(Application.get().getCurrentRegion().getId()) : "";
+        }
+        return serverKey;
+    }
+
+    /**
+     * Returns true if the index has been built for the current server and can be searched
+     */
+    public boolean isReady() {
+        String serverKey = getServerKey();
+        return !serverKey.isEmpty()
+                && serverKey.equals(Application.getPrefs().getString(PREFERENCE_SERVER, null));
+    }
+
+    /**
+     * Returns true if the index has been built for the current server within MAX_AGE
+     */
+    public boolean isCurrent() {
+        long updated = Application.getPrefs().getLong(PREFERENCE_UPDATED, 0);
+        return isReady() && System.currentTimeMillis() - updated < MAX_AGE;
+    }
+
+    /**
+     * Replaces the contents of the index with the provided routes and stops
+     *
+     * @param serverKey the key of the server the routes and stops were loaded from
+     */
+    public void replace(String serverKey, Collection<ObaRoute> routes,
+            Collection<ObaStop> stops) {
+        replace(serverKey, routes, stops, true);
+    }
+
+    /**
+     * Replaces the contents of the index with the provided routes and stops
+     *
+     * @param serverKey the key of the server the routes and stops were loaded from
+     * @param complete  false if some of the routes couldn't be loaded, in which case the index
+     *                  can be searched but is rebuilt after INCOMPLETE_MAX_AGE
+     */
+    public synchronized void replace(String serverKey, Collection<ObaRoute> routes,
+            Collection<ObaStop> stops, boolean complete) {
+        // The index isn't usable until it's completely written
+        PreferenceUtils.saveString(PREFERENCE_SERVER, null);
+
+        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete("stops", null, null);
+            db.delete("stops_fts", null, null);
+            db.delete("routes", null, null);
+            db.delete("routes_fts", null, null);
+
+            SQLiteStatement insertStop = db.compileStatement("INSERT OR IGNORE INTO stops "
+                    + "(stop_id, name, code, direction, lat, lon) VALUES (?, ?, ?, ?, ?, ?)");
+            SQLiteStatement insertStopText = db.compileStatement(
+                    "INSERT INTO stops_fts (docid, name, code) VALUES (?, ?, ?)");
+            for (ObaStop stop : stops) {
+                bindString(insertStop, 1, stop.getId());
+                bindString(insertStop, 2, stop.getName());
+                bindString(insertStop, 3, stop.getStopCode());
+                bindString(insertStop, 4, stop.getDirection());
+                insertStop.bindDouble(5, stop.getLatitude());
+                insertStop.bindDouble(6, stop.getLongitude());
+                long rowId = insertStop.executeInsert();
+                if (rowId == -1) {
+                    continue;
+                }
+                insertStopText.bindLong(1, rowId);
+                bindString(insertStopText, 2, stop.getName());
+                bindString(insertStopText, 3, stop.getStopCode());
+                insertStopText.executeInsert();
+            }
+
+            SQLiteStatement insertRoute = db.compileStatement("INSERT OR IGNORE INTO routes "
+                    + "(route_id, short_name, long_name, description, type, url, color, "
+                    + "text_color, agency_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            SQLiteStatement insertRouteText = db.compileStatement(
+                    "INSERT INTO routes_fts (docid, short_name, long_name) VALUES (?, ?, ?)");
+            for (ObaRoute route : routes) {
+                bindString(insertRoute, 1, route.getId());
+                bindString(insertRoute, 2, route.getShortName());
+                bindString(insertRoute, 3, route.getLongName());
+                bindString(insertRoute, 4, route.getDescription());
+                insertRoute.bindLong(5, route.getType());
+                bindString(insertRoute, 6, route.getUrl());
+                bindString(insertRoute, 7, toColorString(route.getColor()));
+                bindString(insertRoute, 8, toColorString(route.getTextColor()));
+                bindString(insertRoute, 9, route.getAgencyId());
+                long rowId = insertRoute.executeInsert();
+                if (rowId == -1) {
+                    continue;
+                }
+                insertRouteText.bindLong(1, rowId);
+                bindString(insertRouteText, 2, route.getShortName());
+                bindString(insertRouteText, 3, route.getLongName());
+                insertRouteText.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        long updated = System.currentTimeMillis();
+        if (!complete) {
+            updated -= MAX_AGE - INCOMPLETE_MAX_AGE;
+        }
+        PreferenceUtils.saveLong(PREFERENCE_UPDATED, updated);
+        PreferenceUtils.saveString(PREFERENCE_SERVER, serverKey);
+        Log.d(TAG, "Indexed " + routes.size() + " routes and " + stops.size() + " stops"
+                + (complete ? "" : " (incomplete)"));
+    }
+
+    /**
+     * Returns the stops with a name or stop code that starts with the words in the provided
+     * text.  A stop with exactly the text as its stop code comes first, and the other stops are
+     * ordered by distance from the center, with stops the user has viewed more often counted as
+     * closer.
+     *
+     * @param center location to rank stops by their distance from, or null to rank them only
+     *               by use
+     * @param limit  max number of stops to return
+     */
+    public List<ObaStop> searchStops(final String text, final Location center, int limit) {
+        String match = getMatchQuery(text);
+        if (match == null || !isReady()) {
+            return new ArrayList<>();
+        }
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        final Map<String, Integer> useCounts = getUseCounts(ObaContract.Stops.CONTENT_URI);
+        final String code = text.trim();
+
+        // Stop ID -> stop, so a stop found by more than one query is only ranked once
+        LinkedHashMap<String, ObaStop> candidates = new LinkedHashMap<>();
+        readStops(db.rawQuery("SELECT " + STOP_COLUMNS + " FROM stops s "
+                + "WHERE s.code = ? COLLATE NOCASE", new String[]{code}), candidates);
+        List<String> used = getMostUsed(useCounts);
+        if (!used.isEmpty()) {
+            readStops(db.rawQuery("SELECT " + STOP_COLUMNS + " FROM stops_fts JOIN stops s "
+                    + "ON s._id = stops_fts.docid WHERE stops_fts MATCH ? AND s.stop_id IN ("
+                    + getPlaceholders(used.size()) + ")", getArgs(match, used)), candidates);
+        }
+        String order = "";
+        if (center != null) {
+            // Squared distance in degrees, with longitude scaled to the latitude of the center
+            String lat = String.valueOf(center.getLatitude());
+            String lon = String.valueOf(center.getLongitude());
+            String scale = String.valueOf(Math.cos(Math.toRadians(center.getLatitude())));
+            order = " ORDER BY (s.lat - " + lat + ") * (s.lat - " + lat + ") + (s.lon - " + lon
+                    + ") * (s.lon - " + lon + ") * " + scale + " * " + scale;
+        }
+        readStops(db.rawQuery("SELECT " + STOP_COLUMNS + " FROM stops_fts JOIN stops s "
+                + "ON s._id = stops_fts.docid WHERE stops_fts MATCH ?" + order + " LIMIT "
+                + MAX_CANDIDATES, new String[]{match}), candidates);
+        ArrayList<ObaStop> stops = new ArrayList<>(candidates.values());
+
+        final HashMap<String, Double> scores = new HashMap<>(stops.size());
+        float[] results = new float[1];
+        for (ObaStop stop : stops) {
+            double score = 0;
+            if (!code.equalsIgnoreCase(stop.getStopCode())) {
+                double distance = 1;
+                if (center != null) {
+                    Location.distanceBetween(center.getLatitude(), center.getLongitude(),
+                            stop.getLatitude(), stop.getLongitude(), results);
+                    distance += results[0];
+                }
+                score = distance / (1 + getUseCount(useCounts, stop.getId()));
+            }
+            scores.put(stop.getId(), score);
+        }
+        Collections.sort(stops, new Comparator<ObaStop>() {
+            @Override
+            public int compare(ObaStop lhs, ObaStop rhs) {
+                return Double.compare(scores.get(lhs.getId()), scores.get(rhs.getId()));
+            }
+        });
+        return stops.size() > limit ? new ArrayList<>(stops.subList(0, limit)) : stops;
+    }
+
+    /**
+     * Returns the routes with a short or long name that starts with the words in the provided
+     * text.  A route with exactly the text as its short name comes first, followed by the routes
+     * the user has viewed most often and then by short name.
+     *
+     * @param limit max number of routes to return
+     */
+    public List<ObaRoute> searchRoutes(String text, int limit) {
+        String match = getMatchQuery(text);
+        if (match == null || !isReady()) {
+            return new ArrayList<>();
+        }
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        final Map<String, Integer> useCounts = getUseCounts(ObaContract.Routes.CONTENT_URI);
+
+        // Route ID -> route, so a route found by more than one query is only ranked once
+        LinkedHashMap<String, ObaRoute> candidates = new LinkedHashMap<>();
+        readRoutes(db.rawQuery("SELECT " + ROUTE_COLUMNS + " FROM routes r "
+                + "WHERE r.short_name = ? COLLATE NOCASE", new String[]{text.trim()}), candidates);
+        List<String> used = getMostUsed(useCounts);
+        if (!used.isEmpty()) {
+            readRoutes(db.rawQuery("SELECT " + ROUTE_COLUMNS + " FROM routes_fts JOIN routes r "
+                    + "ON r._id = routes_fts.docid WHERE routes_fts MATCH ? AND r.route_id IN ("
+                    + getPlaceholders(used.size()) + ")", getArgs(match, used)), candidates);
+        }
+        readRoutes(db.rawQuery("SELECT " + ROUTE_COLUMNS + " FROM routes_fts JOIN routes r "
+                + "ON r._id = routes_fts.docid WHERE routes_fts MATCH ? "
+                + "ORDER BY length(r.short_name), r.short_name LIMIT " + MAX_CANDIDATES,
+                new String[]{match}), candidates);
+        ArrayList<ObaRoute> routes = new ArrayList<>(candidates.values());
+
+        final String shortName = text.trim();
+        Collections.sort(routes, new Comparator<ObaRoute>() {
+            @Override
+            public int compare(ObaRoute lhs, ObaRoute rhs) {
+                boolean lhsExact = shortName.equalsIgnoreCase(lhs.getShortName());
+                boolean rhsExact = shortName.equalsIgnoreCase(rhs.getShortName());
+                if (lhsExact != rhsExact) {
+                    return lhsExact ? -1 : 1;
+                }
+                int result = getUseCount(useCounts, rhs.getId())
+                        - getUseCount(useCounts, lhs.getId());
+                if (result != 0) {
+                    return result;
+                }
+                String lhsName = lhs.getShortName() != null ? lhs.getShortName() : "";
+                String rhsName = rhs.getShortName() != null ? rhs.getShortName() : "";
+                result = lhsName.length() - rhsName.length();
+                return result != 0 ? result : lhsName.compareTo(rhsName);
+            }
+        });
+        return routes.size() > limit ? new ArrayList<>(routes.subList(0, limit)) : routes;
+    }
+
+    private static void readStops(Cursor c, Map<String, ObaStop> stops) {
+        try {
+            while (c.moveToNext()) {
+                if (!stops.containsKey(c.getString(0))) {
+                    stops.put(c.getString(0), new ObaStopElement(c.getString(0), c.getDouble(4),
+                            c.getDouble(5), c.getString(1), c.getString(2), c.getString(3)));
+                }
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    private static void readRoutes(Cursor c, Map<String, ObaRoute> routes) {
+        try {
+            while (c.moveToNext()) {
+                if (!routes.containsKey(c.getString(0))) {
+                    routes.put(c.getString(0), new ObaRouteElement(c.getString(0),
+                            c.getString(1), c.getString(2), c.getString(3), c.getInt(4),
+                            c.getString(5), c.getString(6), c.getString(7), c.getString(8)));
+                }
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Returns the IDs of the stops or routes the user has viewed most often, up to
+     * MAX_USED_CANDIDATES
+     */
+    private static List<String> getMostUsed(final Map<String, Integer> useCounts) {
+        ArrayList<String> result = new ArrayList<>(useCounts.keySet());
+        if (result.size() > MAX_USED_CANDIDATES) {
+            Collections.sort(result, new Comparator<String>() {
+                @Override
+                public int compare(String lhs, String rhs) {
+                    return useCounts.get(rhs) - useCounts.get(lhs);
+                }
+            });
+            return result.subList(0, MAX_USED_CANDIDATES);
+        }
+        return result;
+    }
+
+    private static String getPlaceholders(int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(i > 0 ? ", ?" : "?");
+        }
+        return result.toString();
+    }
+
+    private static String[] getArgs(String match, List<String> ids) {
+        String[] result = new String[ids.size() + 1];
+        result[0] = match;
+        for (int i = 0; i < ids.size(); i++) {
+            result[i + 1] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a full-text query that matches rows with words that start with each of the words
+     * in the provided text, or null if the text doesn't contain any words
+     */
+    static String getMatchQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        // Only letters and digits are kept, so the text can't contain full-text query syntax
+        for (String word : text.toLowerCase(Locale.getDefault()).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(word).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    /**
+     * Returns the use counts of the stops or routes the user has viewed, by ID
+     *
+     * @param uri ObaContract.Stops.CONTENT_URI or ObaContract.Routes.CONTENT_URI
+     */
+    private static Map<String, Integer> getUseCounts(Uri uri) {
+        HashMap<String, Integer> result = new HashMap<>();
+        ContentResolver cr = Application.get().getContentResolver();
+        Cursor c = cr.query(uri, new String[]{ObaContract.Stops._ID,
+                        ObaContract.Stops.USE_COUNT}, ObaContract.Stops.USE_COUNT + " > 0", null,
+                null);
+        if (c == null) {
+            return result;
+        }
+        try {
+            while (c.moveToNext()) {
+                result.put(c.getString(0), c.getInt(1));
+            }
+        } finally {
+            c.close();
+        }
+        return result;
+    }
+
+    private static int getUseCount(Map<String, Integer> useCounts, String id) {
+        Integer count = useCounts.get(id);
+        return count != null ? count : 0;
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Converts a route color back to the hex format used in API responses
+     */
+    private static String toColorString(Integer color) {
+        return color != null ? String.format("%06X", color & 0xFFFFFF) : null;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.provider;
+
+import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.elements.ObaAgencyWithCoverage;
+import org.onebusaway.android.io.elements.ObaRoute;
+import org.onebusaway.android.io.elements.ObaStop;
+import org.onebusaway.android.io.request.ObaAgenciesWithCoverageRequest;
+import org.onebusaway.android.io.request.ObaAgenciesWithCoverageResponse;
+import org.onebusaway.android.io.request.ObaRouteIdsForAgencyRequest;
+import org.onebusaway.android.io.request.ObaRouteIdsForAgencyResponse;
+import org.onebusaway.android.io.request.ObaStopsForRouteRequest;
+import org.onebusaway.android.io.request.ObaStopsForRouteResponse;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Builds the SearchIndex for the current server from the routes of each agency with coverage
+ * and the stops served by each route.  The whole index is loaded before it replaces the old one.
+ * Routes that fail to load are retried once at the end, and if some still fail the routes that
+ * did load are indexed anyway and the index is rebuilt later, so one bad route doesn't throw
+ * away the rest.  The work is only retried with backoff if nothing could be loaded.
+ */
+public class SearchIndexWorker extends Worker {
+
+    private static final String TAG = "SearchIndexWorker";
+
+    /**
+     * Name of the unique work, so only one index is built at a time
+     */
+    public static final String WORK_NAME = "SearchIndexUpdate";
+
+    public SearchIndexWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the index to be built if it isn't current.  A first index for the server is
+     * built on any network connection, while an index that's only out of date waits for an
+     * unmetered network.
+     */
+    public static void updateIfNeeded() {
+        SearchIndex index = SearchIndex.getInstance();
+        if (SearchIndex.getServerKey().isEmpty() || index.isCurrent()) {
+            return;
+        }
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(index.isReady() ? NetworkType.UNMETERED
+                        : NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(SearchIndexWorker.class)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance().enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP,
+                workRequest);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        String serverKey = SearchIndex.getServerKey();
+
+        ObaAgenciesWithCoverageResponse agencies =
+                ObaAgenciesWithCoverageRequest.newRequest(context).call();
+        if (agencies.getCode() != ObaApi.OBA_OK) {
+            return Result.retry();
+        }
+
+        LinkedHashMap<String, ObaRoute> routes = new LinkedHashMap<>();
+        LinkedHashMap<String, ObaStop> stops = new LinkedHashMap<>();
+        ArrayList<String> failedRoutes = new ArrayList<>();
+        boolean agencyFailed = false;
+        for (ObaAgencyWithCoverage agency : agencies.getAgencies()) {
+            ObaRouteIdsForAgencyResponse routeIds =
+                    ObaRouteIdsForAgencyRequest.newRequest(context, agency.getId()).call();
+            if (routeIds.getCode() != ObaApi.OBA_OK) {
+                agencyFailed = true;
+                continue;
+            }
+            for (String routeId : routeIds.getRouteIds()) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                if (!loadRoute(context, routeId, routes, stops)) {
+                    failedRoutes.add(routeId);
+                }
+            }
+        }
+
+        // Try the routes that failed once more, in case the errors were temporary
+        for (Iterator<String> i = failedRoutes.iterator(); i.hasNext(); ) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            if (loadRoute(context, i.next(), routes, stops)) {
+                i.remove();
+            }
+        }
+        boolean complete = !agencyFailed && failedRoutes.isEmpty();
+        if (!complete) {
+            Log.w(TAG, "Couldn't load " + failedRoutes.size() + " routes"
+                    + (agencyFailed ? " and the routes of some agencies" : ""));
+            if (routes.isEmpty()) {
+                return Result.retry();
+            }
+        }
+
+        if (!serverKey.equals(SearchIndex.getServerKey())) {
+            // The region changed while loading, so start over for the new region
+            return Result.retry();
+        }
+        SearchIndex.getInstance().replace(serverKey, routes.values(), stops.values(), complete);
+        return Result.success();
+    }
+
+    /**
+     * Loads a route and the stops it serves into the provided maps
+     *
+     * @return true if the route was loaded, or false if the request failed
+     */
+    private static boolean loadRoute(Context context, String routeId,
+            Map<String, ObaRoute> routes, Map<String, ObaStop> stops) {
+        ObaStopsForRouteRequest request = new ObaStopsForRouteRequest.Builder(context, routeId)
+                .setIncludeShapes(false)
+                .build();
+        // Every route in the region is loaded, which would push the UI's responses out of the cache
+        request.setUseCache(false);
+        ObaStopsForRouteResponse response = request.call();
+        if (response.getCode() != ObaApi.OBA_OK) {
+            return false;
+        }
+        ObaRoute route = response.getRoute(routeId);
+        if (route != null) {
+            routes.put(route.getId(), route);
+        }
+        for (ObaStop stop : response.getStops()) {
+            stops.put(stop.getId(), stop);
+        }
+        return true;
+    }
+}
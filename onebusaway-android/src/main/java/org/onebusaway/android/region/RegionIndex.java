@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.region;
+
+import org.onebusaway.android.io.elements.ObaRegion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A spatial index over the bounds of a list of regions, built once when the regions are loaded,
+ * for finding the region closest to a location and the lat/lon span of a region without looping
+ * through every bound of every region.
+ * <p>
+ * The closest region is the one with the closest bound center, as in
+ * RegionUtils.getDistanceAway().  Bound centers are stored as points on the unit sphere in a
+ * k-d tree, where the nearest point by straight-line distance is also the nearest point by
+ * great-circle distance.
+ */
+public class RegionIndex {
+
+    private final List<ObaRegion> mRegions;
+
+    // Unit vectors of the bound centers, ordered as an implicit k-d tree - the point at the
+    // middle of each range splits the rest of the range on the axis for that depth
+    private final double[] mX;
+
+    private final double[] mY;
+
+    private final double[] mZ;
+
+    // Index into mRegions of the region that each point belongs to
+    private final int[] mPointRegions;
+
+    // Region ID -> lat/lon span, in the format of RegionUtils.getRegionSpan()
+    private final HashMap<Long, double[]> mSpans = new HashMap<>();
+
+    /**
+     * @param regions regions to index, which should only include the regions that can be used
+     */
+    public RegionIndex(List<ObaRegion> regions) {
+        mRegions = new ArrayList<>(regions);
+        int count = 0;
+        for (ObaRegion region : mRegions) {
+            if (region.getBounds() != null) {
+                count += region.getBounds().length;
+            }
+        }
+        final double[][] points = new double[count][];
+        int[] pointRegions = new int[count];
+        int p = 0;
+        for (int r = 0; r < mRegions.size(); r++) {
+            ObaRegion region = mRegions.get(r);
+            ObaRegion.Bounds[] bounds = region.getBounds();
+            if (bounds == null) {
+                continue;
+            }
+            for (ObaRegion.Bounds bound : bounds) {
+                points[p] = toUnitVector(bound.getLat(), bound.getLon());
+                pointRegions[p] = r;
+                p++;
+            }
+            if (bounds.length > 0) {
+                mSpans.put(region.getId(), computeSpan(bounds));
+            }
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        buildTree(order, points, 0, count, 0);
+
+        mX = new double[count];
+        mY = new double[count];
+        mZ = new double[count];
+        mPointRegions = new int[count];
+        for (int i = 0; i < count; i++) {
+            double[] point = points[order[i]];
+            mX[i] = point[0];
+            mY[i] = point[1];
+            mZ[i] = point[2];
+            mPointRegions[i] = pointRegions[order[i]];
+        }
+    }
+
+    /**
+     * @return the regions in this index
+     */
+    public List<ObaRegion> getRegions() {
+        return mRegions;
+    }
+
+    /**
+     * Returns the region with the bound center closest to the provided location, or null if no
+     * region in the index has bounds
+     */
+    public ObaRegion getClosestRegion(double lat, double lon) {
+        int region = findClosestRegion(lat, lon);
+        return region != -1 ? mRegions.get(region) : null;
+    }
+
+    /**
+     * Returns the ID of the region with the bound center closest to the provided location, or
+     * -1 if no region in the index has bounds.  Callers can use this to look up the region in
+     * their own list, which may have newer region info than the regions in the index.
+     */
+    public long getClosestRegionId(double lat, double lon) {
+        int region = findClosestRegion(lat, lon);
+        return region != -1 ? mRegions.get(region).getId() : -1;
+    }
+
+    private int findClosestRegion(double lat, double lon) {
+        if (mX.length == 0) {
+            return -1;
+        }
+        double[] q = toUnitVector(lat, lon);
+        // best[0] is the squared distance to the closest point so far, best[1] its index
+        double[] best = {Double.MAX_VALUE, -1};
+        findNearest(q, 0, mX.length, 0, best);
+        return mPointRegions[(int) best[1]];
+    }
+
+    /**
+     * Returns the lat/lon span of the region with the provided ID, in the format of
+     * RegionUtils.getRegionSpan(), or null if the region isn't in the index
+     */
+    public double[] getSpan(long regionId) {
+        return mSpans.get(regionId);
+    }
+
+    private static void buildTree(Integer[] order, final double[][] points, int from, int to,
+            int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        final int axis = depth % 3;
+        Arrays.sort(order, from, to, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(points[a][axis], points[b][axis]);
+            }
+        });
+        int mid = (from + to) >>> 1;
+        buildTree(order, points, from, mid, depth + 1);
+        buildTree(order, points, mid + 1, to, depth + 1);
+    }
+
+    private void findNearest(double[] q, int from, int to, int depth, double[] best) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        double dx = q[0] - mX[mid];
+        double dy = q[1] - mY[mid];
+        double dz = q[2] - mZ[mid];
+        double d = dx * dx + dy * dy + dz * dz;
+        if (d < best[0]) {
+            best[0] = d;
+            best[1] = mid;
+        }
+        int axis = depth % 3;
+        double diff = axis == 0 ? dx : (axis == 1 ? dy : dz);
+        // Search the side of the split containing the query first, then the other side only if
+        // it could contain a closer point
+        if (diff < 0) {
+            findNearest(q, from, mid, depth + 1, best);
+            if (diff * diff < best[0]) {
+                findNearest(q, mid + 1, to, depth + 1, best);
+            }
+        } else {
+            findNearest(q, mid + 1, to, depth + 1, best);
+            if (diff * diff < best[0]) {
+                findNearest(q, from, mid, depth + 1, best);
+            }
+        }
+    }
+
+    private static double[] toUnitVector(double lat, double lon) {
+        double latRad = Math.toRadians(lat);
+        double lonRad = Math.toRadians(lon);
+        double cosLat = Math.cos(latRad);
+        return new double[]{cosLat * Math.cos(lonRad), cosLat * Math.sin(lonRad),
+                Math.sin(latRad)};
+    }
+
+    private static double[] computeSpan(ObaRegion.Bounds[] bounds) {
+        double latMin = 90;
+        double latMax = -90;
+        double lonMin = 180;
+        double lonMax = -180;
+        for (ObaRegion.Bounds bound : bounds) {
+            double latSpanHalf = bound.getLatSpan() / 2.0;
+            latMin = Math.min(latMin, bound.getLat() - latSpanHalf);
+            latMax = Math.max(latMax, bound.getLat() + latSpanHalf);
+            double lonSpanHalf = bound.getLonSpan() / 2.0;
+            lonMin = Math.min(lonMin, bound.getLon() - lonSpanHalf);
+            lonMax = Math.max(lonMax, bound.getLon() + lonSpanHalf);
+        }
+        return new double[]{latMax - latMin, lonMax - lonMin,
+                latMin + ((latMax - latMin) / 2.0), lonMin + ((lonMax - lonMin) / 2.0)};
+    }
+}
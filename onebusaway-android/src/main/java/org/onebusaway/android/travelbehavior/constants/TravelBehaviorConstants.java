@@ -25,6 +25,10 @@ public class TravelBehaviorConstants {
 
     public static final String USER_ID = "tbUserId";
 
+    public static final String TRANSITION_ELAPSED_REALTIME_NANOS = "tbTransitionElapsedRealtimeNanos";
+
+    public static final String TRANSITION_SYSTEM_CURR_MILLIS = "tbTransitionSystemCurrMillis";
+
     public static final String USER_EMAIL = "tbUserEmail";
 
     public static final String PARTICIPANT_SERVICE_RESULT = "STATUS OK";
@@ -33,14 +37,8 @@ public class TravelBehaviorConstants {
 
     public static final String RECOGNITION_REQUEST_CODE = "tbRecognitionRequestCode";
 
-    public static final String TRIP_PLAN_COUNTER = "tripPlanCounter";
-
-    public static final String ARRIVAL_LIST_COUNTER = "arrivalCounter";
-
     public static final String DEVICE_INFO_HASH = "deviceInfoHash";
 
-    public static final String DESTINATION_REMINDER_COUNTER = "destinationReminderCounter";
-
     public static final String FIREBASE_ACTIVITY_TRANSITION_FOLDER = "activity-transitions";
 
     public static final String FIREBASE_ARRIVAL_AND_DEPARTURE_FOLDER = "arrival-and-departures";
@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.travelbehavior.io;
+
+import org.onebusaway.android.app.Application;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of travel behavior events, stored as a series of segment files in one
+ * folder.  Each record is its length, a CRC32 of its content, and the UTF-8 encoded event.
+ * Records are appended to the newest segment until it reaches SEGMENT_SIZE, when a new segment
+ * is started, and the oldest segments are dropped if the log grows past MAX_SIZE.
+ * <p>
+ * A record cut short by the process dying mid-write is truncated the next time the log is
+ * opened, and readers stop at the first record that doesn't match its CRC.  Readers stream the
+ * segments one record at a time, and the segments they've read are only deleted once the reader
+ * is committed, so events aren't lost if the upload fails.
+ */
+public class TravelBehaviorEventLog {
+
+    private static final String TAG = "TravelBehaviorEventLog";
+
+    public static final long SEGMENT_SIZE = 64 * 1024;
+
+    public static final long MAX_SIZE = 2 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Events were written one file per event before the log was added
+    private static final String LEGACY_SUFFIX = ".json";
+
+    // Length and CRC32 before each record
+    private static final int HEADER_SIZE = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Map<String, TravelBehaviorEventLog> mLogs = new HashMap<>();
+
+    private final File mDir;
+
+    private final long mSegmentSize;
+
+    private final long mMaxSize;
+
+    private boolean mOpened = false;
+
+    private long mNextSegment;
+
+    // Segment being appended to, or null if the next append starts a new segment
+    private File mActive;
+
+    /**
+     * Returns the log stored in the provided folder of the app's files directory
+     *
+     * @param folder one of the TravelBehaviorConstants.LOCAL_*_FOLDER names
+     */
+    public static synchronized TravelBehaviorEventLog get(String folder) {
+        TravelBehaviorEventLog log = mLogs.get(folder);
+        if (log == null) {
+            log = new TravelBehaviorEventLog(new File(Application.get().getFilesDir(), folder),
+                    SEGMENT_SIZE, MAX_SIZE);
+            mLogs.put(folder, log);
+        }
+        return log;
+    }
+
+    public TravelBehaviorEventLog(File dir, long segmentSize, long maxSize) {
+        mDir = dir;
+        mSegmentSize = segmentSize;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Appends an event to the log
+     */
+    public synchronized void append(String event) throws IOException {
+        open();
+        byte[] data = event.getBytes(UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        // Build the whole record so it's written at once
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + data.length);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeInt(data.length);
+        record.writeInt((int) crc.getValue());
+        record.write(data);
+
+        if (mActive == null || mActive.length() + bytes.size() > mSegmentSize) {
+            mActive = getSegment(mNextSegment++);
+        }
+        FileOutputStream out = new FileOutputStream(mActive, true);
+        try {
+            bytes.writeTo(out);
+        } finally {
+            out.close();
+        }
+
+        trim();
+    }
+
+    /**
+     * Returns a reader for all events appended so far.  Events appended while reading go to a
+     * new segment, which is left for the next reader.
+     */
+    public synchronized Reader openReader() throws IOException {
+        open();
+        // Seal the active segment
+        mActive = null;
+        return new Reader(listFiles());
+    }
+
+    /**
+     * Returns the total size of the log's files in bytes
+     */
+    public synchronized long getSize() {
+        long size = 0;
+        for (File file : listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Finds the newest segment and truncates any partial record at its end, the first time the
+     * log is used
+     */
+    private void open() throws IOException {
+        if (mOpened) {
+            return;
+        }
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            throw new IOException("Couldn't create " + mDir);
+        }
+        mNextSegment = 0;
+        File newest = null;
+        for (File file : listFiles()) {
+            if (file.getName().endsWith(SEGMENT_SUFFIX)) {
+                newest = file;
+                mNextSegment = getSequence(file) + 1;
+            }
+        }
+        if (newest != null) {
+            long valid = getValidLength(newest);
+            if (valid < newest.length()) {
+                Log.w(TAG, "Truncating " + newest + " from " + newest.length() + " to " + valid
+                        + " bytes");
+                RandomAccessFile file = new RandomAccessFile(newest, "rw");
+                try {
+                    file.setLength(valid);
+                } finally {
+                    file.close();
+                }
+            }
+            mActive = newest;
+        }
+        mOpened = true;
+    }
+
+    /**
+     * Deletes the oldest files until the log is under its max size, keeping the active segment
+     */
+    private void trim() {
+        List<File> files = listFiles();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        for (File file : files) {
+            if (size <= mMaxSize || file.equals(mActive)) {
+                break;
+            }
+            size -= file.length();
+            Log.d(TAG, "Log is over " + mMaxSize + " bytes, dropping " + file.getName());
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns the log's legacy event files and then its segments, oldest first
+     */
+    private List<File> listFiles() {
+        File[] files = mDir.listFiles();
+        List<File> legacy = new ArrayList<>();
+        List<File> segments = new ArrayList<>();
+        if (files == null) {
+            return segments;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SEGMENT_SUFFIX)) {
+                segments.add(file);
+            } else if (file.getName().endsWith(LEGACY_SUFFIX)) {
+                legacy.add(file);
+            }
+        }
+        // Segment names are zero-padded, so they sort in sequence order
+        Collections.sort(legacy);
+        Collections.sort(segments);
+        legacy.addAll(segments);
+        return legacy;
+    }
+
+    private static boolean isLegacy(File file) {
+        return file.getName().endsWith(LEGACY_SUFFIX);
+    }
+
+    /**
+     * Compares file names in the order the files are read - legacy files first, then segments
+     */
+    private static int compareNames(String lhs, String rhs) {
+        boolean lhsSegment = lhs.endsWith(SEGMENT_SUFFIX);
+        boolean rhsSegment = rhs.endsWith(SEGMENT_SUFFIX);
+        if (lhsSegment != rhsSegment) {
+            return lhsSegment ? 1 : -1;
+        }
+        return lhs.compareTo(rhs);
+    }
+
+    private File getSegment(long sequence) {
+        return new File(mDir, String.format("%012d", sequence) + SEGMENT_SUFFIX);
+    }
+
+    private static long getSequence(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the length of the complete, valid records at the start of the segment
+     */
+    private static long getValidLength(File segment) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(segment)));
+        long valid = 0;
+        try {
+            byte[] data;
+            while ((data = readRecord(in, segment.length() - valid)) != null) {
+                valid += HEADER_SIZE + data.length;
+            }
+        } finally {
+            in.close();
+        }
+        return valid;
+    }
+
+    /**
+     * Reads the next record, or returns null at the end of the segment or at a record that's
+     * incomplete or doesn't match its CRC
+     *
+     * @param remaining number of bytes left in the segment
+     */
+    private static byte[] readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining < HEADER_SIZE) {
+            return null;
+        }
+        int length = in.readInt();
+        int expectedCrc = in.readInt();
+        if (length < 0 || length > remaining - HEADER_SIZE) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        try {
+            in.readFully(data);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue() == expectedCrc ? data : null;
+    }
+
+    /**
+     * Streams the events in the files that were in the log when the reader was opened, oldest
+     * first
+     */
+    public class Reader implements Closeable {
+
+        private final List<File> mFiles;
+
+        private int mFileIndex = -1;
+
+        // File being read, or null if the next event is in the next file
+        private File mCurrent;
+
+        private DataInputStream mIn;
+
+        private long mRemaining;
+
+        // Number of events read from the current file
+        private int mEvents;
+
+        private Reader(List<File> files) {
+            mFiles = files;
+        }
+
+        /**
+         * Returns the next event, or null if all events have been read
+         */
+        public String next() throws IOException {
+            while (mCurrent != null || openNext()) {
+                String event = readFromCurrent();
+                if (event != null) {
+                    return event;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the position after the last event returned by next(), which can be passed to
+         * seek() on a later reader to continue from the same place
+         */
+        public String getPosition() {
+            if (mFileIndex < 0 || mFileIndex >= mFiles.size()) {
+                return null;
+            }
+            return mFiles.get(mFileIndex).getName() + ":" + mEvents;
+        }
+
+        /**
+         * Skips the events before a position returned by getPosition() on an earlier reader.  If
+         * the file containing the position has been dropped, reading starts at the next file.
+         */
+        public void seek(String position) throws IOException {
+            int split = position.lastIndexOf(':');
+            String name = position.substring(0, split);
+            int events = Integer.parseInt(position.substring(split + 1));
+
+            close();
+            mFileIndex = -1;
+            while (mFileIndex + 1 < mFiles.size()
+                    && compareNames(mFiles.get(mFileIndex + 1).getName(), name) < 0) {
+                mFileIndex++;
+            }
+            if (mFileIndex + 1 < mFiles.size()
+                    && mFiles.get(mFileIndex + 1).getName().equals(name) && openNext()) {
+                while (mEvents < events && readFromCurrent() != null) {
+                    // Skip the events that were already read
+                }
+            }
+        }
+
+        /**
+         * Opens the next file that still exists, returning false if there isn't one
+         */
+        private boolean openNext() throws IOException {
+            while (++mFileIndex < mFiles.size()) {
+                File file = mFiles.get(mFileIndex);
+                if (!file.exists()) {
+                    // Dropped to keep the log under its max size
+                    continue;
+                }
+                mCurrent = file;
+                mEvents = 0;
+                if (!isLegacy(file)) {
+                    mIn = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                    mRemaining = file.length();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns the next event in the current file, or closes the file and returns null if
+         * there aren't any more
+         */
+        private String readFromCurrent() throws IOException {
+            if (isLegacy(mCurrent)) {
+                if (mEvents == 0) {
+                    mEvents++;
+                    return readLegacy(mCurrent);
+                }
+            } else {
+                byte[] data = readRecord(mIn, mRemaining);
+                if (data != null) {
+                    mRemaining -= HEADER_SIZE + data.length;
+                    mEvents++;
+                    return new String(data, UTF_8);
+                }
+                if (mRemaining > 0) {
+                    Log.w(TAG, "Skipping " + mRemaining + " corrupt bytes at the end of "
+                            + mCurrent);
+                }
+            }
+            close();
+            return null;
+        }
+
+        /**
+         * Deletes the files that were read, once their events have been handled
+         */
+        public void commit() throws IOException {
+            close();
+            synchronized (TravelBehaviorEventLog.this) {
+                for (File file : mFiles) {
+                    file.delete();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mCurrent = null;
+            if (mIn != null) {
+                mIn.close();
+                mIn = null;
+            }
+        }
+
+        private String readLegacy(File file) throws IOException {
+            byte[] data = new byte[(int) file.length()];
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(data);
+            } finally {
+                in.close();
+            }
+            return new String(data, UTF_8);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.travelbehavior.io;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+
+import org.onebusaway.android.travelbehavior.utils.TravelBehaviorFirebaseIOUtils;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Uploads each batch as a Firestore document in the participant's folder.  Firestore sends
+ * documents in its own binary format, so the structured document is uploaded rather than the
+ * batch's compressed JSON, which keeps the documents in the format the study reads.
+ */
+public class TravelBehaviorFirebaseUploader implements TravelBehaviorUploader {
+
+    private static final String TAG = "TBFirebaseUploader";
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Override
+    public void upload(TravelBehaviorUploadBatch batch) throws IOException {
+        DocumentReference document = TravelBehaviorFirebaseIOUtils.
+                getFirebaseDocReferenceByUserIdAndRecordId(batch.getUserId(),
+                        batch.getDocumentId(), batch.getFolder());
+        try {
+            Tasks.await(document.set(batch.getDocument()), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            Log.d(TAG, batch.getRecords().size() + " records are saved with ID: "
+                    + document.getId());
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Failed to save " + document.getPath(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving " + document.getPath(), e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.travelbehavior.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A size-bounded group of travel behavior records uploaded together as one document
+ */
+public class TravelBehaviorUploadBatch {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String mFolder;
+
+    private final String mUserId;
+
+    private final String mDocumentId;
+
+    private final Object mDocument;
+
+    private final List<String> mRecords;
+
+    private byte[] mCompressed;
+
+    /**
+     * @param folder     folder the document is stored in, one of the
+     *                   TravelBehaviorConstants.FIREBASE_*_FOLDER names
+     * @param documentId ID of the document within the user's folder
+     * @param document   object holding the batch's records, which is stored as the document
+     * @param records    the batch's records as JSON
+     */
+    public TravelBehaviorUploadBatch(String folder, String userId, String documentId,
+            Object document, List<String> records) {
+        mFolder = folder;
+        mUserId = userId;
+        mDocumentId = documentId;
+        mDocument = document;
+        mRecords = records;
+    }
+
+    public String getFolder() {
+        return mFolder;
+    }
+
+    public String getUserId() {
+        return mUserId;
+    }
+
+    public String getDocumentId() {
+        return mDocumentId;
+    }
+
+    public Object getDocument() {
+        return mDocument;
+    }
+
+    public List<String> getRecords() {
+        return mRecords;
+    }
+
+    /**
+     * Returns the size of the batch as a JSON array, in bytes
+     */
+    public long getSize() {
+        long size = 2 + Math.max(0, mRecords.size() - 1);
+        for (String record : mRecords) {
+            size += record.getBytes(UTF_8).length;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the batch's records as a gzip-compressed JSON array
+     */
+    public synchronized byte[] getCompressed() throws IOException {
+        if (mCompressed == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GZIPOutputStream out = new GZIPOutputStream(bytes);
+            try {
+                out.write('[');
+                for (int i = 0; i < mRecords.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    out.write(mRecords.get(i).getBytes(UTF_8));
+                }
+                out.write(']');
+            } finally {
+                out.close();
+            }
+            mCompressed = bytes.toByteArray();
+        }
+        return mCompressed;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.travelbehavior.io;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads the records in a travel behavior event log in batches of up to MAX_BATCH_RECORDS
+ * records or MAX_BATCH_BYTES of JSON.  The log position after each uploaded batch is saved as a
+ * checkpoint, so if the upload fails or the worker is stopped, the next run continues after the
+ * last uploaded batch.  The log is only cleared once every batch has been uploaded.
+ * <p>
+ * The first batch for a record ID is stored as the document with that ID, and later batches are
+ * stored as "recordId-1", "recordId-2", and so on.
+ *
+ * @param <T> type of the records in the log
+ */
+public class TravelBehaviorUploadPipeline<T> {
+
+    private static final String TAG = "TBUploadPipeline";
+
+    public static final int MAX_BATCH_RECORDS = 100;
+
+    // Well under Firestore's max document size
+    public static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    /**
+     * Number of times a worker runs the pipeline before giving up until the next upload
+     */
+    public static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * Initial backoff time for retrying a failed upload
+     */
+    public static final long BACKOFF_SECONDS = 30;
+
+    private static final String PREFERENCE_CHECKPOINT = "tbUploadCheckpoint_";
+
+    /**
+     * Decides which records in the log are uploaded
+     */
+    public interface Filter<T> {
+
+        boolean accept(T record);
+    }
+
+    /**
+     * Creates the object stored as the document for a batch of records
+     */
+    public interface DocumentFactory<T> {
+
+        Object create(List<T> records);
+    }
+
+    /**
+     * Counts of what was uploaded by a run of the pipeline
+     */
+    public static class Stats {
+
+        private int mRecords;
+
+        private int mBatches;
+
+        private long mBytes;
+
+        private long mCompressedBytes;
+
+        private long mDuration;
+
+        public int getRecords() {
+            return mRecords;
+        }
+
+        public int getBatches() {
+            return mBatches;
+        }
+
+        /**
+         * Returns the size of the uploaded records as JSON, in bytes
+         */
+        public long getBytes() {
+            return mBytes;
+        }
+
+        /**
+         * Returns the size of the uploaded records as gzip-compressed JSON, in bytes
+         */
+        public long getCompressedBytes() {
+            return mCompressedBytes;
+        }
+
+        /**
+         * Returns the time the run took, in milliseconds
+         */
+        public long getDuration() {
+            return mDuration;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d records in %d batches, %d bytes (%d compressed, "
+                            + "%.1f per record) in %dms", mRecords, mBatches, mBytes,
+                    mCompressedBytes, mRecords > 0 ? (double) mCompressedBytes / mRecords : 0,
+                    mDuration);
+        }
+    }
+
+    private final TravelBehaviorEventLog mLog;
+
+    private final String mFolder;
+
+    private final Class<T> mRecordClass;
+
+    private final DocumentFactory<T> mDocumentFactory;
+
+    private final TravelBehaviorUploader mUploader;
+
+    private final SharedPreferences mPrefs;
+
+    private Filter<T> mFilter;
+
+    /**
+     * @param log             log containing the records
+     * @param folder          folder the batches are uploaded to, one of the
+     *                        TravelBehaviorConstants.FIREBASE_*_FOLDER names
+     * @param recordClass     class the records are parsed into with Gson
+     * @param documentFactory creates the document for each batch
+     * @param uploader        uploads each batch
+     * @param prefs           preferences the checkpoint is saved in
+     */
+    public TravelBehaviorUploadPipeline(TravelBehaviorEventLog log, String folder,
+            Class<T> recordClass, DocumentFactory<T> documentFactory,
+            TravelBehaviorUploader uploader, SharedPreferences prefs) {
+        mLog = log;
+        mFolder = folder;
+        mRecordClass = recordClass;
+        mDocumentFactory = documentFactory;
+        mUploader = uploader;
+        mPrefs = prefs;
+    }
+
+    /**
+     * Sets the filter for the records that are uploaded.  All records are uploaded by default.
+     */
+    public TravelBehaviorUploadPipeline<T> setFilter(Filter<T> filter) {
+        mFilter = filter;
+        return this;
+    }
+
+    /**
+     * Uploads the records in the log, continuing from the checkpoint if an earlier run failed
+     *
+     * @param userId   ID of the study participant
+     * @param recordId ID of the activity transition the records are uploaded for
+     * @return counts of what was uploaded
+     * @throws IOException if reading the log or uploading a batch failed, in which case the
+     *                     batches uploaded before the failure aren't uploaded again by the next
+     *                     run
+     */
+    public Stats run(String userId, String recordId) throws IOException {
+        long start = System.nanoTime();
+        Stats stats = new Stats();
+        Gson gson = new Gson();
+
+        int batchIndex = 0;
+        TravelBehaviorEventLog.Reader reader = mLog.openReader();
+        try {
+            String[] checkpoint = getCheckpoint();
+            if (checkpoint != null) {
+                Log.d(TAG, "Continuing " + mFolder + " upload from " + checkpoint[2]);
+                reader.seek(checkpoint[2]);
+                if (checkpoint[0].equals(recordId)) {
+                    batchIndex = Integer.parseInt(checkpoint[1]);
+                }
+            }
+
+            List<T> records = new ArrayList<>();
+            List<String> json = new ArrayList<>();
+            long size = 0;
+            // Log position after the last record in the batch
+            String batchEnd = null;
+            String event;
+            while ((event = reader.next()) != null) {
+                T record;
+                try {
+                    record = gson.fromJson(event, mRecordClass);
+                } catch (JsonParseException e) {
+                    Log.e(TAG, e.toString());
+                    continue;
+                }
+                if (record == null || (mFilter != null && !mFilter.accept(record))) {
+                    continue;
+                }
+                if (!records.isEmpty() && size + event.length() > MAX_BATCH_BYTES) {
+                    upload(userId, recordId, batchIndex++, records, json, batchEnd, stats);
+                    size = 0;
+                }
+                records.add(record);
+                json.add(event);
+                size += event.length();
+                batchEnd = reader.getPosition();
+                if (records.size() >= MAX_BATCH_RECORDS) {
+                    upload(userId, recordId, batchIndex++, records, json, batchEnd, stats);
+                    size = 0;
+                }
+            }
+            if (!records.isEmpty()) {
+                upload(userId, recordId, batchIndex, records, json, batchEnd, stats);
+            }
+        } finally {
+            reader.close();
+        }
+
+        reader.commit();
+        clearCheckpoint();
+        stats.mDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return stats;
+    }
+
+    /**
+     * Uploads a batch, saves the checkpoint after it, and clears the lists for the next batch
+     *
+     * @param batchEnd log position after the last record in the batch
+     */
+    private void upload(String userId, String recordId, int batchIndex, List<T> records,
+            List<String> json, String batchEnd, Stats stats) throws IOException {
+        String documentId = batchIndex == 0 ? recordId : recordId + "-" + batchIndex;
+        TravelBehaviorUploadBatch batch = new TravelBehaviorUploadBatch(mFolder, userId,
+                documentId, mDocumentFactory.create(new ArrayList<>(records)),
+                new ArrayList<>(json));
+        mUploader.upload(batch);
+        saveCheckpoint(recordId, batchIndex + 1, batchEnd);
+
+        stats.mRecords += records.size();
+        stats.mBatches++;
+        stats.mBytes += batch.getSize();
+        stats.mCompressedBytes += batch.getCompressed().length;
+        records.clear();
+        json.clear();
+    }
+
+    /**
+     * Returns the record ID, next batch index and log position saved after the last uploaded
+     * batch, or null if there isn't a checkpoint
+     */
+    private String[] getCheckpoint() {
+        String checkpoint = mPrefs.getString(PREFERENCE_CHECKPOINT + mFolder, null);
+        if (checkpoint == null) {
+            return null;
+        }
+        String[] parts = checkpoint.split("\n");
+        return parts.length == 3 ? parts : null;
+    }
+
+    private void saveCheckpoint(String recordId, int batchIndex, String position) {
+        // Saved synchronously, since the worker may be stopped at any time
+        mPrefs.edit()
+                .putString(PREFERENCE_CHECKPOINT + mFolder,
+                        recordId + "\n" + batchIndex + "\n" + position)
+                .commit();
+    }
+
+    private void clearCheckpoint() {
+        mPrefs.edit().remove(PREFERENCE_CHECKPOINT + mFolder).commit();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.travelbehavior.io;
+
+import java.io.IOException;
+
+/**
+ * Stores batches of travel behavior records for the study.  TravelBehaviorFirebaseUploader
+ * writes them to Firestore, and tests can use an in-process implementation instead.
+ */
+public interface TravelBehaviorUploader {
+
+    /**
+     * Uploads a batch, blocking until it's stored.  A batch may be uploaded again if the worker
+     * is stopped before its progress is saved, so uploading the same batch twice must replace
+     * the first copy.
+     *
+     * @throws IOException if the batch couldn't be stored, so it should be retried later
+     */
+    void upload(TravelBehaviorUploadBatch batch) throws IOException;
+}
@@ -19,13 +19,12 @@ import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.gson.Gson;
 
-import org.apache.commons.io.FileUtils;
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.travelbehavior.constants.TravelBehaviorConstants;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorEventLog;
 import org.onebusaway.android.travelbehavior.io.TravelBehaviorFileSaverExecutorManager;
 import org.onebusaway.android.travelbehavior.model.DestinationReminderData;
 import org.onebusaway.android.travelbehavior.model.DestinationReminderInfo;
-import org.onebusaway.android.util.PreferenceUtils;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
@@ -36,9 +35,7 @@ import android.os.Build;
 import android.os.SystemClock;
 import android.util.Log;
 
-import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -90,28 +87,13 @@ public class DestinationReminderDataSaverTask implements Runnable {
 
     private void saveDestinationReminders(Location location) {
         try {
-            // Get the counter that's incremented for each test
-            int counter = Application.getPrefs().getInt(TravelBehaviorConstants.DESTINATION_REMINDER_COUNTER, 0);
-            PreferenceUtils.saveInt(TravelBehaviorConstants.DESTINATION_REMINDER_COUNTER, ++counter);
-
-            SimpleDateFormat sdf = new SimpleDateFormat("EEE, MMM d yyyy, hh:mm aaa");
             Date time = Calendar.getInstance().getTime();
-            String readableDate = sdf.format(time);
-
-            File subFolder = new File(Application.get().getApplicationContext()
-                    .getFilesDir().getAbsolutePath() + File.separator +
-                    TravelBehaviorConstants.LOCAL_DESTINATION_REMINDER_FOLDER);
-
-            if (!subFolder.exists()) {
-                subFolder.mkdirs();
-            }
 
             Long localElapsedRealtimeNanos = null;
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
                 localElapsedRealtimeNanos = SystemClock.elapsedRealtimeNanos();
             }
 
-            File file = new File(subFolder, counter + "-" + readableDate + ".json");
             DestinationReminderData drd = new DestinationReminderData(mCurrStopId ,mDestStopId,
                     mTripId, mRouteId, Application.get().getCurrentRegion().getId(),
                     localElapsedRealtimeNanos, time.getTime(), mServerTime, location);
@@ -123,7 +105,8 @@ public class DestinationReminderDataSaverTask implements Runnable {
             Gson gson = new Gson();
             String data = gson.toJson(drd);
 
-            FileUtils.write(file, data, false);
+            TravelBehaviorEventLog.get(TravelBehaviorConstants.LOCAL_DESTINATION_REMINDER_FOLDER)
+                    .append(data);
         } catch (IOException e) {
             Log.e(TAG, "File write failed: " + e.toString());
         }
@@ -19,12 +19,11 @@ import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.gson.Gson;
 
-import org.apache.commons.io.FileUtils;
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.travelbehavior.constants.TravelBehaviorConstants;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorEventLog;
 import org.onebusaway.android.travelbehavior.io.TravelBehaviorFileSaverExecutorManager;
 import org.onebusaway.android.travelbehavior.model.TripPlanData;
-import org.onebusaway.android.util.PreferenceUtils;
 import org.opentripplanner.api.model.TripPlan;
 
 import android.Manifest;
@@ -36,9 +35,7 @@ import android.os.Build;
 import android.os.SystemClock;
 import android.util.Log;
 
-import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -81,21 +78,7 @@ public class TripPlanDataSaverTask implements Runnable {
 
     private void saveTripPlan(Location location) {
         try {
-            // Get the counter that's incremented for each test
-            int counter = Application.getPrefs().getInt(TravelBehaviorConstants.TRIP_PLAN_COUNTER, 0);
-            PreferenceUtils.saveInt(TravelBehaviorConstants.TRIP_PLAN_COUNTER, ++counter);
-
-            SimpleDateFormat sdf = new SimpleDateFormat("EEE, MMM d yyyy, hh:mm aaa");
             Date time = Calendar.getInstance().getTime();
-            String readableDate = sdf.format(time);
-
-            File subFolder = new File(Application.get().getApplicationContext()
-                    .getFilesDir().getAbsolutePath() + File.separator +
-                    TravelBehaviorConstants.LOCAL_TRIP_PLAN_FOLDER);
-
-            if (!subFolder.exists()) {
-                subFolder.mkdirs();
-            }
 
             Long localElapsedRealtimeNanos = null;
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
@@ -107,7 +90,6 @@ public class TripPlanDataSaverTask implements Runnable {
                 serverTime = Long.valueOf(mTripPlan.getDate());
             }
 
-            File file = new File(subFolder, counter + "-" + readableDate + ".json");
             TripPlanData tpd = new TripPlanData(mTripPlan, mUrl,
                     Application.get().getCurrentRegion().getId(), localElapsedRealtimeNanos,
                     time.getTime(), serverTime);
@@ -116,7 +98,8 @@ public class TripPlanDataSaverTask implements Runnable {
             Gson gson = new Gson();
             String data = gson.toJson(tpd);
 
-            FileUtils.write(file, data, false);
+            TravelBehaviorEventLog.get(TravelBehaviorConstants.LOCAL_TRIP_PLAN_FOLDER)
+                    .append(data);
         } catch (IOException e) {
             Log.e(TAG, "File write failed: " + e.toString());
         }
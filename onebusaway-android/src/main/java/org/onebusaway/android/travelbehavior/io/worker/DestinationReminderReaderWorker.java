@@ -15,24 +15,17 @@
  */
 package org.onebusaway.android.travelbehavior.io.worker;
 
-import com.google.gson.Gson;
-
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.travelbehavior.constants.TravelBehaviorConstants;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorEventLog;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorFirebaseUploader;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorUploadPipeline;
 import org.onebusaway.android.travelbehavior.model.DestinationReminderData;
-import org.onebusaway.android.travelbehavior.utils.TravelBehaviorFirebaseIOUtils;
+import org.onebusaway.android.travelbehavior.model.DestinationReminderInfo;
 
 import android.content.Context;
 import android.util.Log;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
 import androidx.annotation.NonNull;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
@@ -48,44 +41,27 @@ public class DestinationReminderReaderWorker extends Worker {
     @NonNull
     @Override
     public Result doWork() {
-        readAndPostDestinationReminderData();
-        return Result.success();
-    }
-
-    private void readAndPostDestinationReminderData() {
-        try {
-            File subFolder = new File(Application.get().getApplicationContext()
-                    .getFilesDir().getAbsolutePath() + File.separator +
-                    TravelBehaviorConstants.LOCAL_DESTINATION_REMINDER_FOLDER);
+        String uid = getInputData().getString(TravelBehaviorConstants.USER_ID);
+        String recordId = getInputData().getString(TravelBehaviorConstants.RECORD_ID);
 
-            // If the directory does not exist do not read
-            if (subFolder == null || !subFolder.isDirectory()) return;
+        TravelBehaviorEventLog log = TravelBehaviorEventLog.get(
+                TravelBehaviorConstants.LOCAL_DESTINATION_REMINDER_FOLDER);
+        TravelBehaviorUploadPipeline<DestinationReminderData> pipeline =
+                new TravelBehaviorUploadPipeline<>(log,
+                        TravelBehaviorConstants.FIREBASE_DESTINATION_REMINDER_FOLDER,
+                        DestinationReminderData.class, DestinationReminderInfo::new,
+                        new TravelBehaviorFirebaseUploader(), Application.getPrefs());
 
-            Collection<File> files = FileUtils.listFiles(subFolder, TrueFileFilter.INSTANCE,
-                    TrueFileFilter.INSTANCE);
-            Gson gson = new Gson();
-            if (files != null && !files.isEmpty()) {
-                List<DestinationReminderData> l = new ArrayList<>();
-                for (File f : files) {
-                    try {
-                        String jsonStr = FileUtils.readFileToString(f);
-                        DestinationReminderData destinationReminderData =
-                                gson.fromJson(jsonStr, DestinationReminderData.class);
-                        l.add(destinationReminderData);
-                    } catch (IOException e) {
-                        Log.e(TAG, e.toString());
-                    }
-                }
-
-                FileUtils.cleanDirectory(subFolder);
-
-                String uid = getInputData().getString(TravelBehaviorConstants.USER_ID);
-                String recordId = getInputData().getString(TravelBehaviorConstants.RECORD_ID);
-
-                TravelBehaviorFirebaseIOUtils.saveDestinationReminders(l, uid, recordId);
-            }
+        try {
+            Log.d(TAG, "Uploaded " + pipeline.run(uid, recordId));
+            return Result.success();
         } catch (Exception e) {
             Log.e(TAG, e.toString());
+            // Batches that were uploaded are checkpointed, so a retry continues after them.  When
+            // giving up, the records are left in the log for the next upload, which is queued
+            // after this one and wouldn't run if this one failed.
+            return getRunAttemptCount() < TravelBehaviorUploadPipeline.MAX_ATTEMPTS
+                    ? Result.retry() : Result.success();
         }
     }
 }
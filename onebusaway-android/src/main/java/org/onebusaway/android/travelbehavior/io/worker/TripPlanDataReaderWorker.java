@@ -15,26 +15,19 @@
  */
 package org.onebusaway.android.travelbehavior.io.worker;
 
-import com.google.gson.Gson;
-
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.travelbehavior.constants.TravelBehaviorConstants;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorEventLog;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorFirebaseUploader;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorUploadPipeline;
 import org.onebusaway.android.travelbehavior.model.TripPlanData;
-import org.onebusaway.android.travelbehavior.utils.TravelBehaviorFirebaseIOUtils;
+import org.onebusaway.android.travelbehavior.model.TripPlanInfo;
 
 import android.content.Context;
 import android.os.Build;
 import android.os.SystemClock;
 import android.util.Log;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
 import androidx.annotation.NonNull;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
@@ -50,53 +43,45 @@ public class TripPlanDataReaderWorker extends Worker {
     @NonNull
     @Override
     public Result doWork() {
-        readAndPostTripPlanData();
-        return Result.success();
-    }
-
-    private void readAndPostTripPlanData() {
-        try {
-            File subFolder = new File(Application.get().getApplicationContext()
-                    .getFilesDir().getAbsolutePath() + File.separator +
-                    TravelBehaviorConstants.LOCAL_TRIP_PLAN_FOLDER);
-
-            // If the directory does not exist do not read
-            if (subFolder == null || !subFolder.isDirectory()) return;
+        String uid = getInputData().getString(TravelBehaviorConstants.USER_ID);
+        String recordId = getInputData().getString(TravelBehaviorConstants.RECORD_ID);
+        // Work queued before the transition time was added uses the current time
+        long transitionNanos = getInputData().getLong(
+                TravelBehaviorConstants.TRANSITION_ELAPSED_REALTIME_NANOS,
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                        ? SystemClock.elapsedRealtimeNanos() : 0);
+        long transitionMillis = getInputData().getLong(
+                TravelBehaviorConstants.TRANSITION_SYSTEM_CURR_MILLIS, System.currentTimeMillis());
 
-            Collection<File> files = FileUtils.listFiles(subFolder, TrueFileFilter.INSTANCE,
-                    TrueFileFilter.INSTANCE);
-            Gson gson = new Gson();
-            if (files != null && !files.isEmpty()) {
-                List<TripPlanData> l = new ArrayList<>();
-                for (File f : files) {
-                    try {
-                        String jsonStr = FileUtils.readFileToString(f);
-                        TripPlanData tripPlanData = gson.fromJson(jsonStr, TripPlanData.class);
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-                            if (SystemClock.elapsedRealtimeNanos() -  tripPlanData.getLocalElapsedRealtimeNanos() <
-                                    TravelBehaviorConstants.MOST_RECENT_DATA_THRESHOLD_NANO) {
-                                l.add(tripPlanData);
-                            }
-                        } else {
-                            if (System.currentTimeMillis() -  tripPlanData.getLocalSystemCurrMillis() <
-                                    TravelBehaviorConstants.MOST_RECENT_DATA_THRESHOLD_MILLIS) {
-                                l.add(tripPlanData);
-                            }
-                        }
-                    } catch (IOException e) {
-                        Log.e(TAG, e.toString());
-                    }
-                }
-
-                FileUtils.cleanDirectory(subFolder);
-
-                String uid = getInputData().getString(TravelBehaviorConstants.USER_ID);
-                String recordId = getInputData().getString(TravelBehaviorConstants.RECORD_ID);
-
-                TravelBehaviorFirebaseIOUtils.saveTripPlans(l, uid, recordId);
+        TravelBehaviorEventLog log = TravelBehaviorEventLog.get(
+                TravelBehaviorConstants.LOCAL_TRIP_PLAN_FOLDER);
+        TravelBehaviorUploadPipeline<TripPlanData> pipeline =
+                new TravelBehaviorUploadPipeline<>(log,
+                        TravelBehaviorConstants.FIREBASE_TRIP_PLAN_FOLDER,
+                        TripPlanData.class, TripPlanInfo::new,
+                        new TravelBehaviorFirebaseUploader(), Application.getPrefs());
+        // Only records from around the activity transition are uploaded.  This is measured from
+        // the transition rather than now, since the worker can run long after it.
+        pipeline.setFilter(record -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                return transitionNanos - record.getLocalElapsedRealtimeNanos()
+                        < TravelBehaviorConstants.MOST_RECENT_DATA_THRESHOLD_NANO;
+            } else {
+                return transitionMillis - record.getLocalSystemCurrMillis()
+                        < TravelBehaviorConstants.MOST_RECENT_DATA_THRESHOLD_MILLIS;
             }
+        });
+
+        try {
+            Log.d(TAG, "Uploaded " + pipeline.run(uid, recordId));
+            return Result.success();
         } catch (Exception e) {
             Log.e(TAG, e.toString());
+            // Batches that were uploaded are checkpointed, so a retry continues after them.  When
+            // giving up, the records are left in the log for the next upload, which is queued
+            // after this one and wouldn't run if this one failed.
+            return getRunAttemptCount() < TravelBehaviorUploadPipeline.MAX_ATTEMPTS
+                    ? Result.retry() : Result.success();
         }
     }
 }
@@ -26,6 +26,7 @@ import com.google.firebase.firestore.DocumentReference;
 
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.travelbehavior.constants.TravelBehaviorConstants;
+import org.onebusaway.android.travelbehavior.io.TravelBehaviorUploadPipeline;
 import org.onebusaway.android.travelbehavior.io.worker.ArrivalsAndDeparturesDataReaderWorker;
 import org.onebusaway.android.travelbehavior.io.worker.DestinationReminderReaderWorker;
 import org.onebusaway.android.travelbehavior.io.worker.TripPlanDataReaderWorker;
@@ -46,6 +47,7 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.location.LocationManager;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityManager;
 
@@ -54,7 +56,11 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
 import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
 import androidx.work.OneTimeWorkRequest;
 import androidx.work.WorkManager;
 
@@ -64,16 +70,24 @@ public class TransitionBroadcastReceiver extends BroadcastReceiver {
 
     private static final String TAG = "ActivityTransition";
 
+    private static final String UPLOAD_WORK_NAME_PREFIX = "tbUpload_";
+
     private Context mContext;
     private List<TravelBehaviorInfo.TravelBehaviorActivity> mActivityList;
     private String mUid;
     private String mRecordId;
+    private long mTransitionElapsedRealtimeNanos;
+    private long mTransitionSystemCurrMillis;
 
     @Override
     public void onReceive(Context context, Intent intent) {
         if (intent != null) {
             if (ActivityTransitionResult.hasResult(intent)) {
                 mContext = context;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                    mTransitionElapsedRealtimeNanos = SystemClock.elapsedRealtimeNanos();
+                }
+                mTransitionSystemCurrMillis = System.currentTimeMillis();
 
                 ActivityTransitionResult result = ActivityTransitionResult.extractResult(intent);
                 if (result == null) {
@@ -137,40 +151,67 @@ public class TransitionBroadcastReceiver extends BroadcastReceiver {
     }
 
     private void startSaveArrivalAndDepartureWorker() {
-        Data myData = new Data.Builder()
-                .putString(TravelBehaviorConstants.USER_ID, mUid)
-                .putString(TravelBehaviorConstants.RECORD_ID, mRecordId)
-                .build();
-
         OneTimeWorkRequest workRequest = new OneTimeWorkRequest.
                 Builder(ArrivalsAndDeparturesDataReaderWorker.class)
-                .setInputData(myData)
+                .setInputData(getUploadInputData())
+                .setConstraints(getUploadConstraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL,
+                        TravelBehaviorUploadPipeline.BACKOFF_SECONDS, TimeUnit.SECONDS)
                 .build();
-        WorkManager.getInstance().enqueue(workRequest);
+        enqueueUpload(TravelBehaviorConstants.FIREBASE_ARRIVAL_AND_DEPARTURE_FOLDER, workRequest);
     }
 
     private void startSaveTripPlansWorker() {
-        Data myData = new Data.Builder()
-                .putString(TravelBehaviorConstants.USER_ID, mUid)
-                .putString(TravelBehaviorConstants.RECORD_ID, mRecordId)
-                .build();
-
         OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(TripPlanDataReaderWorker.class)
-                .setInputData(myData)
+                .setInputData(getUploadInputData())
+                .setConstraints(getUploadConstraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL,
+                        TravelBehaviorUploadPipeline.BACKOFF_SECONDS, TimeUnit.SECONDS)
                 .build();
-        WorkManager.getInstance().enqueue(workRequest);
+        enqueueUpload(TravelBehaviorConstants.FIREBASE_TRIP_PLAN_FOLDER, workRequest);
     }
 
     private void startSaveDestinationRemindersWorker() {
-        Data myData = new Data.Builder()
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(DestinationReminderReaderWorker.class)
+                .setInputData(getUploadInputData())
+                .setConstraints(getUploadConstraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL,
+                        TravelBehaviorUploadPipeline.BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        enqueueUpload(TravelBehaviorConstants.FIREBASE_DESTINATION_REMINDER_FOLDER, workRequest);
+    }
+
+    /**
+     * Returns the input for the upload workers.  The transition time is included so the workers
+     * pick the records from around the transition, even if they run long after it.
+     */
+    private Data getUploadInputData() {
+        return new Data.Builder()
                 .putString(TravelBehaviorConstants.USER_ID, mUid)
                 .putString(TravelBehaviorConstants.RECORD_ID, mRecordId)
+                .putLong(TravelBehaviorConstants.TRANSITION_ELAPSED_REALTIME_NANOS,
+                        mTransitionElapsedRealtimeNanos)
+                .putLong(TravelBehaviorConstants.TRANSITION_SYSTEM_CURR_MILLIS,
+                        mTransitionSystemCurrMillis)
                 .build();
+    }
 
-        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(DestinationReminderReaderWorker.class)
-                .setInputData(myData)
+    /**
+     * Queues an upload after any earlier upload of the same folder, so only one pipeline reads
+     * a log and updates its checkpoint at a time
+     */
+    private static void enqueueUpload(String folder, OneTimeWorkRequest workRequest) {
+        WorkManager.getInstance().enqueueUniqueWork(UPLOAD_WORK_NAME_PREFIX + folder,
+                ExistingWorkPolicy.APPEND, workRequest);
+    }
+
+    /**
+     * Returns the constraints for the upload workers, which wait for a network connection
+     */
+    private static Constraints getUploadConstraints() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
                 .build();
-        WorkManager.getInstance().enqueue(workRequest);
     }
 
     private void requestActivityRecognition() {
@@ -20,21 +20,14 @@ import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 import org.onebusaway.android.travelbehavior.constants.TravelBehaviorConstants;
-import org.onebusaway.android.travelbehavior.model.ArrivalAndDepartureData;
-import org.onebusaway.android.travelbehavior.model.ArrivalAndDepartureInfo;
-import org.onebusaway.android.travelbehavior.model.DestinationReminderData;
-import org.onebusaway.android.travelbehavior.model.DestinationReminderInfo;
 import org.onebusaway.android.travelbehavior.model.DeviceInformation;
 import org.onebusaway.android.travelbehavior.model.TravelBehaviorInfo;
-import org.onebusaway.android.travelbehavior.model.TripPlanData;
-import org.onebusaway.android.travelbehavior.model.TripPlanInfo;
 import org.onebusaway.android.util.PreferenceUtils;
 
 import android.location.Location;
 import android.util.Log;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class TravelBehaviorFirebaseIOUtils {
@@ -74,60 +67,6 @@ public class TravelBehaviorFirebaseIOUtils {
                 });
     }
 
-    public static void saveArrivalsAndDepartures(List<ArrivalAndDepartureData> arrivalAndDepartureList,
-                                                 String userId, String recordId) {
-        DocumentReference document = TravelBehaviorFirebaseIOUtils.
-                getFirebaseDocReferenceByUserIdAndRecordId(userId, recordId,
-                        TravelBehaviorConstants.FIREBASE_ARRIVAL_AND_DEPARTURE_FOLDER);
-
-        document.set(new ArrivalAndDepartureInfo(arrivalAndDepartureList)).
-                addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "Arrivals and departure are saved with ID: " +
-                                document.getId());
-                    } else {
-                        logErrorMessage(task.getException(),
-                                "Arrivals and departure are failed to be saved ");
-                    }
-                });
-    }
-
-    public static void saveTripPlans(List<TripPlanData> tripPlanDataList,
-                                     String userId, String recordId) {
-        DocumentReference document = TravelBehaviorFirebaseIOUtils.
-                getFirebaseDocReferenceByUserIdAndRecordId(userId, recordId,
-                        TravelBehaviorConstants.FIREBASE_TRIP_PLAN_FOLDER);
-
-        document.set(new TripPlanInfo(tripPlanDataList)).
-                addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "Trip plans are saved with ID: " +
-                                document.getId());
-                    } else {
-                        logErrorMessage(task.getException(),
-                                "Trip plans are failed to be saved ");
-                    }
-                });
-    }
-
-    public static void saveDestinationReminders(List<DestinationReminderData> reminderData,
-                                                String userId, String recordId) {
-        DocumentReference document = TravelBehaviorFirebaseIOUtils.
-                getFirebaseDocReferenceByUserIdAndRecordId(userId, recordId,
-                        TravelBehaviorConstants.FIREBASE_DESTINATION_REMINDER_FOLDER);
-
-        document.set(new DestinationReminderInfo(reminderData)).
-                addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "Destination reminders are saved with ID: " +
-                                document.getId());
-                    } else {
-                        logErrorMessage(task.getException(),
-                                "Destination reminders are failed to be saved ");
-                    }
-                });
-    }
-
     public static void saveDeviceInfo(DeviceInformation deviceInformation, String userId,
                                       String recordId, int hashCode) {
         deviceInformation.setTimestamp(recordId);
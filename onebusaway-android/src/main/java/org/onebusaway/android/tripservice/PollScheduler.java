@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.tripservice;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of when each active trip reminder (TripAlert) should next be polled, so the
+ * PollerTask can check all reminders in a single cycle.  Reminders for the same stop are grouped
+ * so each stop only needs a single arrivals request per cycle, and each reminder is polled less
+ * often while its bus is still far from the reminder time.
+ * <p>
+ * The number of times the device was woken up to poll is also counted for each reminder, so the
+ * cost of a reminder can be measured.
+ */
+public final class PollScheduler {
+
+    private static class SingletonHolder {
+
+        public static final PollScheduler INSTANCE = new PollScheduler();
+    }
+
+    private static final long ONE_SECOND = 1000;
+
+    private static final long ONE_MINUTE = 60 * ONE_SECOND;
+
+    private static final long ONE_HOUR = 60 * ONE_MINUTE;
+
+    /**
+     * Interval used when the trip couldn't be found in the arrivals for its stop, or after the
+     * reminder has been shown and only the notification text is updated
+     */
+    public static final long DEFAULT_INTERVAL = ONE_MINUTE;
+
+    /**
+     * Reminders due within this long of the current cycle are polled in it, so reminders with
+     * nearly the same poll time share a cycle instead of each getting their own
+     */
+    private static final long DUE_SLACK = 5 * ONE_SECOND;
+
+    /**
+     * A cycle gets a precise alarm if a bus is projected to be within its reminder time no more
+     * than this long after the cycle.  Doze can defer WorkManager work by several minutes, so a
+     * deferred cycle could notify the user too late.
+     */
+    static final long EXACT_ALARM_WINDOW = 10 * ONE_MINUTE;
+
+    // Alert ID -> time of the next poll, for alerts that have been polled
+    private final HashMap<Long, Long> mNextPolls = new HashMap<>();
+
+    // Alert ID -> projected time the bus will be within the reminder time, for alerts that
+    // haven't been notified yet
+    private final HashMap<Long, Long> mReminderTimes = new HashMap<>();
+
+    // Alert ID -> number of polling cycles run while the alert was active
+    private final HashMap<Long, Integer> mWakeups = new HashMap<>();
+
+    // Times of the arrivals requests made in the last hour
+    private final ArrayDeque<Long> mRequestTimes = new ArrayDeque<>();
+
+    private PollScheduler() { /* singleton */ }
+
+    public static PollScheduler getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Returns how long to wait before polling a reminder again
+     *
+     * @param minutesUntilReminder minutes until the bus is within the reminder time (i.e., the
+     *                             ETA minus the reminder time)
+     */
+    public static long getPollInterval(long minutesUntilReminder) {
+        if (minutesUntilReminder <= 0) {
+            // Already notified, so polling only keeps the notification text up to date
+            return DEFAULT_INTERVAL;
+        } else if (minutesUntilReminder <= 2) {
+            return 15 * ONE_SECOND;
+        } else if (minutesUntilReminder <= 5) {
+            return 30 * ONE_SECOND;
+        } else if (minutesUntilReminder <= 10) {
+            return ONE_MINUTE;
+        } else if (minutesUntilReminder <= 20) {
+            return 2 * ONE_MINUTE;
+        } else {
+            return 5 * ONE_MINUTE;
+        }
+    }
+
+    /**
+     * Returns true if the polling cycle at the provided time needs a precise alarm, because a
+     * bus is projected to be within its reminder time soon after it (or before it).  Other
+     * cycles are scheduled with WorkManager, which lets the platform batch wakeups.
+     *
+     * @param cycleTime time of the cycle in milliseconds
+     */
+    public synchronized boolean needsExactAlarm(long cycleTime) {
+        for (long reminderTime : mReminderTimes.values()) {
+            if (reminderTime - cycleTime <= EXACT_ALARM_WINDOW) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the reminders that should be polled in this cycle, grouped by stop ID.  Reminders
+     * that aren't in alertStops anymore (e.g., they've been cancelled) are forgotten.
+     *
+     * @param alertStops alert ID -> stop ID of each active reminder
+     * @param now        current time in milliseconds
+     */
+    public synchronized Map<String, List<Long>> getDueAlerts(Map<Long, String> alertStops,
+            long now) {
+        mNextPolls.keySet().retainAll(alertStops.keySet());
+        mReminderTimes.keySet().retainAll(alertStops.keySet());
+        mWakeups.keySet().retainAll(alertStops.keySet());
+        HashMap<String, List<Long>> result = new HashMap<>();
+        for (Map.Entry<Long, String> entry : alertStops.entrySet()) {
+            Long nextPoll = mNextPolls.get(entry.getKey());
+            if (nextPoll != null && nextPoll > now + DUE_SLACK) {
+                continue;
+            }
+            List<Long> alerts = result.get(entry.getValue());
+            if (alerts == null) {
+                alerts = new ArrayList<>();
+                result.put(entry.getValue(), alerts);
+            }
+            alerts.add(entry.getKey());
+        }
+        return result;
+    }
+
+    public synchronized void setNextPoll(long alertId, long time) {
+        mNextPolls.put(alertId, time);
+    }
+
+    /**
+     * Sets the projected time the bus for a reminder will be within the reminder time, from the
+     * latest arrivals for its stop
+     *
+     * @param time the projected time in milliseconds, or 0 if the user has already been notified
+     */
+    public synchronized void setReminderTime(long alertId, long time) {
+        if (time > 0) {
+            mReminderTimes.put(alertId, time);
+        } else {
+            mReminderTimes.remove(alertId);
+        }
+    }
+
+    /**
+     * Returns the time of the next poll for the provided reminders, or 0 if there aren't any
+     */
+    public synchronized long getNextCycle(Iterable<Long> alertIds, long now) {
+        long next = 0;
+        for (Long id : alertIds) {
+            Long nextPoll = mNextPolls.get(id);
+            long time = nextPoll != null ? Math.max(now, nextPoll) : now;
+            if (next == 0 || time < next) {
+                next = time;
+            }
+        }
+        return next;
+    }
+
+    public synchronized void remove(long alertId) {
+        mNextPolls.remove(alertId);
+        mReminderTimes.remove(alertId);
+        mWakeups.remove(alertId);
+    }
+
+    /**
+     * Records that a polling cycle was run while the provided reminders were active
+     */
+    public synchronized void onWakeup(Iterable<Long> alertIds) {
+        for (Long id : alertIds) {
+            Integer count = mWakeups.get(id);
+            mWakeups.put(id, count != null ? count + 1 : 1);
+        }
+    }
+
+    /**
+     * @return the number of polling cycles run while the reminder was active
+     */
+    public synchronized int getWakeups(long alertId) {
+        Integer count = mWakeups.get(alertId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Records that an arrivals request was made at the provided time
+     */
+    public synchronized void onRequest(long now) {
+        mRequestTimes.add(now);
+        pruneRequests(now);
+    }
+
+    /**
+     * @return the number of arrivals requests made by the PollerTask in the last hour
+     */
+    public synchronized int getRequestsInLastHour(long now) {
+        pruneRequests(now);
+        return mRequestTimes.size();
+    }
+
+    public synchronized void clear() {
+        mNextPolls.clear();
+        mReminderTimes.clear();
+        mWakeups.clear();
+        mRequestTimes.clear();
+    }
+
+    private void pruneRequests(long now) {
+        Iterator<Long> i = mRequestTimes.iterator();
+        while (i.hasNext() && i.next() <= now - ONE_HOUR) {
+            i.remove();
+        }
+    }
+}
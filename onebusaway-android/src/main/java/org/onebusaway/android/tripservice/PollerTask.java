@@ -16,6 +16,7 @@
  */
 package org.onebusaway.android.tripservice;
 
+import org.onebusaway.android.BuildConfig;
 import org.onebusaway.android.io.ObaApi;
 import org.onebusaway.android.io.elements.ObaArrivalInfo;
 import org.onebusaway.android.io.request.ObaArrivalInfoRequest;
@@ -25,17 +26,28 @@ import org.onebusaway.android.ui.ArrivalInfo;
 import org.onebusaway.android.util.UIUtils;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A task (thread) that is responsible for polling the server to determine if a Notification to
  * remind the user of an arriving bus should be triggered.
+ * <p>
+ * Each run is a polling cycle for all active reminders, so reminders that are waiting for buses
+ * at the same stop share a single arrivals request.  The PollScheduler decides which reminders
+ * are due in each cycle, and TripService.schedulePoll() schedules the next cycle.  This task is
+ * run by TripService when a reminder's alarm fires, and by the ReminderPollWorker for cycles
+ * that were scheduled with WorkManager.
  */
 public final class PollerTask implements Runnable {
-    //private static final String TAG = "PollerTask";
+
+    private static final String TAG = "PollerTask";
 
     private static final long ONE_MINUTE = 60 * 1000;
 
@@ -57,6 +69,9 @@ public final class PollerTask implements Runnable {
 
     private static final int COL_STATE = 4;
 
+    // Keeps cycles started by an alarm and by WorkManager at the same time from both polling
+    private static final Object mPollLock = new Object();
+
     private final Context mContext;
 
     private final ContentResolver mCR;
@@ -65,6 +80,13 @@ public final class PollerTask implements Runnable {
 
     private final Uri mUri;
 
+    private final PollScheduler mScheduler = PollScheduler.getInstance();
+
+    private boolean mRequestsFailed;
+
+    /**
+     * @param taskContext context of the running TripService, or null if only pollAll() is used
+     */
     public PollerTask(Context context, TaskContext taskContext, Uri uri) {
         mContext = context;
         mCR = mContext.getContentResolver();
@@ -74,72 +96,173 @@ public final class PollerTask implements Runnable {
 
     @Override
     public void run() {
-        Cursor c = mCR.query(mUri, ALERT_PROJECTION, null, null, null);
+        try {
+            if (!ObaContract.TripAlerts.CONTENT_URI.equals(mUri)) {
+                startPolling(mUri);
+            }
+            if (!UIUtils.isConnected(mContext)) {
+                // Let WorkManager run the cycle once we're connected, instead of waking up again
+                // just to find that the network is still down
+                TripService.schedulePollWork(mContext, 0);
+                return;
+            }
+            // Before we do anything else, schedule another cycle in a minute.
+            // That way we know the polling will continue even if we're killed.
+            TripService.schedulePollWork(mContext, ONE_MINUTE);
 
+            long next = pollAll();
+            if (next != 0) {
+                TripService.schedulePoll(mContext, next);
+            } else {
+                TripService.cancelPoll(mContext);
+            }
+        } finally {
+            mTaskContext.taskComplete();
+        }
+    }
+
+    /**
+     * @return true if there were reminders to poll in the last call to pollAll(), but all of the
+     * arrivals requests failed
+     */
+    boolean requestsFailed() {
+        return mRequestsFailed;
+    }
+
+    /**
+     * Marks a newly triggered alert as polling, so it's polled in this cycle
+     */
+    private void startPolling(Uri alertUri) {
+        Cursor c = mCR.query(alertUri, ALERT_PROJECTION, null, null, null);
         try {
-            if (c != null) {
-                while (c.moveToNext()) {
-                    poll1(c);
-                }
+            if (c != null && c.moveToFirst()
+                    && c.getInt(COL_STATE) == ObaContract.TripAlerts.STATE_SCHEDULED) {
+                ObaContract.TripAlerts
+                        .setState(mContext, alertUri, ObaContract.TripAlerts.STATE_POLLING);
+                mScheduler.remove(c.getLong(COL_ID));
             }
         } finally {
             if (c != null) {
                 c.close();
             }
-            mTaskContext.taskComplete();
         }
     }
 
-    private void poll1(Cursor c) {
-        final Uri alertUri = ObaContract.TripAlerts.buildUri(c.getInt(COL_ID));
-        final int state = c.getInt(COL_STATE);
-        if (state == ObaContract.TripAlerts.STATE_CANCELLED) {
-            return;
+    /**
+     * Runs a polling cycle for all active reminders
+     *
+     * @return the time the next cycle should run, or 0 if there aren't any active reminders
+     */
+    long pollAll() {
+        synchronized (mPollLock) {
+            return pollAllLocked();
         }
+    }
+
+    private long pollAllLocked() {
         long now = System.currentTimeMillis();
+        mRequestsFailed = false;
 
-        final long startTime = c.getLong(COL_START_TIME);
-        // After a half-hour we can completely give up.
-        if (startTime < (now - ONE_MINUTE * 30)) {
-            ContentValues values = new ContentValues();
-            values.put(ObaContract.TripAlerts.STATE, ObaContract.TripAlerts.STATE_CANCELLED);
-            mCR.update(alertUri, values, null, null);
+        // Alert ID -> stop ID, and alert ID -> trip ID, for the alerts that are still active
+        HashMap<Long, String> alertStops = new HashMap<>();
+        HashMap<Long, String> alertTrips = new HashMap<>();
+        boolean cancelled = false;
 
+        Cursor c = mCR.query(ObaContract.TripAlerts.CONTENT_URI, ALERT_PROJECTION,
+                ObaContract.TripAlerts.STATE + "=" + ObaContract.TripAlerts.STATE_POLLING,
+                null, null);
+        try {
+            if (c != null) {
+                while (c.moveToNext()) {
+                    final long id = c.getLong(COL_ID);
+                    // After a half-hour we can completely give up.
+                    if (c.getLong(COL_START_TIME) < (now - ONE_MINUTE * 30)) {
+                        ObaContract.TripAlerts.setState(mContext,
+                                ObaContract.TripAlerts.buildUri((int) id),
+                                ObaContract.TripAlerts.STATE_CANCELLED);
+                        if (BuildConfig.DEBUG) {
+                            Log.d(TAG, "Reminder " + id + " finished after "
+                                    + mScheduler.getWakeups(id) + " wakeups");
+                        }
+                        mScheduler.remove(id);
+                        cancelled = true;
+                        continue;
+                    }
+                    alertStops.put(id, c.getString(COL_STOP_ID));
+                    alertTrips.put(id, c.getString(COL_TRIP_ID));
+                }
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        if (cancelled) {
             TripService.scheduleAll(mContext, true);
-            return;
+        }
+        if (alertStops.isEmpty()) {
+            return 0;
+        }
+        mScheduler.onWakeup(alertStops.keySet());
+
+        Map<String, List<Long>> due = mScheduler.getDueAlerts(alertStops, now);
+        int polled = 0;
+        int failed = 0;
+        for (Map.Entry<String, List<Long>> entry : due.entrySet()) {
+            ObaArrivalInfoResponse response = ObaArrivalInfoRequest
+                    .newRequest(mContext, entry.getKey()).call();
+            mScheduler.onRequest(now);
+            if (response.getCode() != ObaApi.OBA_OK) {
+                failed++;
+            }
+            for (Long id : entry.getValue()) {
+                poll1(id, alertTrips.get(id), entry.getKey(), response, now);
+                polled++;
+            }
         }
 
-        // Before we do anything else, schedule another poll in a minute.
-        // That way we know the polling will continue even if we're killed.
-        TripService.pollTrip(mContext, alertUri, now + ONE_MINUTE);
+        mRequestsFailed = failed > 0 && failed == due.size();
 
-        // If this is just scheduled, mark it as polling.
-        if (state == ObaContract.TripAlerts.STATE_SCHEDULED) {
-            ObaContract.TripAlerts
-                    .setState(mContext, alertUri, ObaContract.TripAlerts.STATE_POLLING);
+        long next = mScheduler.getNextCycle(alertStops.keySet(), now);
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "Polled " + polled + " of " + alertStops.size() + " reminders with "
+                    + due.size() + " requests (" + mScheduler.getRequestsInLastHour(now)
+                    + " in the last hour, " + failed + " failed), next cycle in "
+                    + (next - now) / 1000 + "s");
         }
+        return next;
+    }
 
-        final String tripId = c.getString(COL_TRIP_ID);
-        final String stopId = c.getString(COL_STOP_ID);
+    /**
+     * Checks the arrivals for a single alert, notifying the user if the bus is within the
+     * reminder time, and schedules the next poll for the alert
+     */
+    private void poll1(long id, String tripId, String stopId, ObaArrivalInfoResponse response,
+            long now) {
+        final Uri alertUri = ObaContract.TripAlerts.buildUri((int) id);
         final long reminderMin = getReminderMin(tripId, stopId);
 
-        ObaArrivalInfoResponse response = ObaArrivalInfoRequest
-                .newRequest(mContext, stopId).call();
-
         // Arrival information
         ArrivalInfo arrivalInfo = null;
         if (response.getCode() == ObaApi.OBA_OK) {
-            arrivalInfo = checkArrivals(response, c.getString(COL_TRIP_ID));
+            arrivalInfo = checkArrivals(response, tripId);
         }
 
+        long interval = PollScheduler.DEFAULT_INTERVAL;
         if (arrivalInfo != null) {
             if (arrivalInfo.getEta() <= reminderMin) {
                 // Bus is within the reminder interval (or it possibly has left!)
                 // Send off a notification.
                 //Log.d(TAG, "Notify for trip: " + alertUri);
-                TripService.notifyTrip(mContext, mUri, getReminderName(tripId, stopId), arrivalInfo.getNotifyText());
+                TripService.notifyTrip(mContext, alertUri, getReminderName(tripId, stopId),
+                        arrivalInfo.getNotifyText());
             }
+            long minutesUntilReminder = arrivalInfo.getEta() - reminderMin;
+            interval = PollScheduler.getPollInterval(minutesUntilReminder);
+            mScheduler.setReminderTime(id,
+                    minutesUntilReminder > 0 ? now + minutesUntilReminder * ONE_MINUTE : 0);
         }
+        mScheduler.setNextPoll(id, now + interval);
     }
 
     private String getReminderName(String tripId, String stopId) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020 University of South Florida (sjbarbeau@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.tripservice;
+
+import org.onebusaway.android.provider.ObaContract;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Runs a polling cycle for the active trip reminders when the next cycle isn't soon enough to
+ * need a precise alarm (see TripService.schedulePoll()).  WorkManager only runs the cycle when
+ * there's a network connection, and retries it with exponential backoff if the server can't be
+ * reached, so the device isn't repeatedly woken up while the network is down.
+ */
+public class ReminderPollWorker extends Worker {
+
+    /**
+     * Name of the unique work, so only one cycle is ever scheduled
+     */
+    public static final String WORK_NAME = "TripReminderPoll";
+
+    /**
+     * Initial backoff time when all arrivals requests in a cycle fail
+     */
+    public static final long BACKOFF_SECONDS = 30;
+
+    public ReminderPollWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        PollerTask task = new PollerTask(getApplicationContext(), null,
+                ObaContract.TripAlerts.CONTENT_URI);
+        long next = task.pollAll();
+        if (next == 0) {
+            TripService.cancelPoll(getApplicationContext());
+            return Result.success();
+        }
+        if (task.requestsFailed()) {
+            return Result.retry();
+        }
+        TripService.schedulePoll(getApplicationContext(), next);
+        return Result.success();
+    }
+}
@@ -41,8 +41,15 @@ import android.util.Log;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import androidx.core.app.NotificationCompat;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
 
 /**
  * A container Service for a thread pool that manages the scheduling, polling, and notifying the
@@ -57,7 +64,9 @@ import androidx.core.app.NotificationCompat;
  *
  * This Service is not constructed to continously run - instead, it can shut down in between the
  * execution of tasks.  For example, the PollerTask actually reschedules itself each time it polls
- * (in PollerTask.poll1()), so the TripService service could shut down in between polling events.
+ * (a single cycle for all active reminders, see PollScheduler), so the TripService service could
+ * shut down in between polling events.  Cycles that aren't in the final minutes before a reminder
+ * are run by the ReminderPollWorker using WorkManager, without starting this Service.
  *
  * Following #290, mNotifications is only used as a semaphore to synchronize the multiple tasks and
  * shutdown of the Service.  This is a complex implementation prone to multi-threading and
@@ -279,6 +288,67 @@ public class TripService extends Service {
         }
     }
 
+    /**
+     * Schedules the next polling cycle for all active reminders.  A precise alarm is only used
+     * when a bus is close to its reminder time (see PollScheduler.needsExactAlarm()), otherwise
+     * the cycle is run by WorkManager.
+     */
+    public static void schedulePoll(Context context, long triggerTime) {
+        long delay = triggerTime - System.currentTimeMillis();
+        if (PollScheduler.getInstance().needsExactAlarm(triggerTime)) {
+            WorkManager.getInstance().cancelUniqueWork(ReminderPollWorker.WORK_NAME);
+            pollTrip(context, ObaContract.TripAlerts.CONTENT_URI, triggerTime);
+        } else {
+            cancelPollAlarm(context);
+            schedulePollWork(context, delay);
+        }
+    }
+
+    /**
+     * Schedules a polling cycle with WorkManager, replacing any cycle that's already scheduled.
+     * The cycle waits for a network connection, and is retried with exponential backoff if the
+     * server can't be reached.
+     *
+     * @param delay minimum time until the cycle in milliseconds
+     */
+    public static void schedulePollWork(Context context, long delay) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(
+                ReminderPollWorker.class)
+                .setConstraints(constraints)
+                .setInitialDelay(Math.max(0, delay), TimeUnit.MILLISECONDS)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, ReminderPollWorker.BACKOFF_SECONDS,
+                        TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance().enqueueUniqueWork(ReminderPollWorker.WORK_NAME,
+                ExistingWorkPolicy.REPLACE, workRequest);
+    }
+
+    /**
+     * Cancels the next polling cycle, when there aren't any active reminders left
+     */
+    public static void cancelPoll(Context context) {
+        WorkManager.getInstance().cancelUniqueWork(ReminderPollWorker.WORK_NAME);
+        cancelPollAlarm(context);
+    }
+
+    private static void cancelPollAlarm(Context context) {
+        Intent intent = new Intent(TripService.ACTION_POLL, ObaContract.TripAlerts.CONTENT_URI,
+                context, AlarmReceiver.class);
+        // The flags must match the ones used in pollTrip(), or the alarm won't be found
+        PendingIntent alarmIntent = PendingIntent.getBroadcast(context, 0,
+                intent, PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_ONE_SHOT);
+        if (alarmIntent != null) {
+            AlarmManager alarm =
+                    (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarm.cancel(alarmIntent);
+            alarmIntent.cancel();
+        }
+    }
+
     public static void pollTrip(Context context, Uri alertUri, long triggerTime) {
         Intent intent = new Intent(TripService.ACTION_POLL, alertUri,
                 context, AlarmReceiver.class);
@@ -18,6 +18,7 @@ package org.onebusaway.android.ui;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.text.TextUtils;
 
 import org.onebusaway.android.R;
 import org.onebusaway.android.io.elements.ObaArrivalInfo;
@@ -39,11 +40,25 @@ public final class ArrivalInfo {
 
     private final long mDisplayTime;
 
-    private final String mStatusText;
+    // Labels are formatted when first requested, as most rows are never displayed
+    private String mStatusText;
 
-    private final String mTimeText;
+    private String mTimeText;
 
-    private final String mNotifyText;
+    private String mNotifyText;
+
+    // Application context used to format the labels, or null if the Activity was destroyed
+    private final Context mContext;
+
+    private final long mNow;
+
+    private final long mPredictedTime;
+
+    private final long mScheduledMins;
+
+    private final long mPredictedMins;
+
+    private final boolean mIncludeArrivalDepartureInStatusLabel;
 
     private final int mColor;
 
@@ -70,6 +85,9 @@ public final class ArrivalInfo {
     public ArrivalInfo(Context context, ObaArrivalInfo info, long now,
                        boolean includeArrivalDepartureInStatusLabel) {
         mInfo = info;
+        mContext = context != null ? context.getApplicationContext() : null;
+        mNow = now;
+        mIncludeArrivalDepartureInStatusLabel = includeArrivalDepartureInStatusLabel;
         // First, all times have to have to be converted to 'minutes'
         final long nowMins = now / ms_in_mins;
         long scheduled, predicted;
@@ -85,31 +103,26 @@ public final class ArrivalInfo {
             mIsArrival = false;
         }
 
-        final long scheduledMins = scheduled / ms_in_mins;
-        final long predictedMins = predicted / ms_in_mins;
+        mPredictedTime = predicted;
+        mScheduledMins = scheduled / ms_in_mins;
+        mPredictedMins = predicted / ms_in_mins;
 
         if (predicted != 0) {
             mPredicted = true;
-            mEta = predictedMins - nowMins;
+            mEta = mPredictedMins - nowMins;
             mDisplayTime = predicted;
         } else {
             mPredicted = false;
-            mEta = scheduledMins - nowMins;
+            mEta = mScheduledMins - nowMins;
             mDisplayTime = scheduled;
         }
 
-        mColor = ArrivalInfoUtils.computeColor(scheduledMins, predictedMins);
-
-        mStatusText = computeStatusLabel(context, info, now, predicted,
-                scheduledMins, predictedMins, includeArrivalDepartureInStatusLabel);
-        mTimeText = computeTimeLabel(context);
+        mColor = ArrivalInfoUtils.computeColor(mScheduledMins, mPredictedMins);
 
         // Check if the user has marked this routeId/headsign/stopId as a favorite
         mIsRouteAndHeadsignFavorite = ObaContract.RouteHeadsignFavorites
                 .isFavorite(info.getRouteId(), info.getHeadsign(), info.getStopId());
 
-        mNotifyText = computeNotifyText(context);
-
         mHistoricalOccupancy = info.getHistoricalOccupancy();
         mPredictedOccupancy = info.getPredictedOccupancy();
         if (info.getTripStatus() != null) {
@@ -119,6 +132,27 @@ public final class ArrivalInfo {
         }
     }
 
+    /**
+     * Returns the ETA in minutes that an ArrivalInfo created for this arrival would have, without
+     * creating the ArrivalInfo
+     *
+     * @param info arrival to compute the ETA for
+     * @param now  current time in milliseconds
+     * @return the ETA in minutes, which is negative if the vehicle has already arrived/departed
+     */
+    public static long computeEta(ObaArrivalInfo info, long now) {
+        long scheduled, predicted;
+        if (info.getStopSequence() != 0) {
+            scheduled = info.getScheduledArrivalTime();
+            predicted = info.getPredictedArrivalTime();
+        } else {
+            scheduled = info.getScheduledDepartureTime();
+            predicted = info.getPredictedDepartureTime();
+        }
+        long time = predicted != 0 ? predicted : scheduled;
+        return time / ms_in_mins - now / ms_in_mins;
+    }
+
     /**
      * @param includeArrivalDeparture true if the arrival/departure label should be included, false
      *                                if it should not
@@ -325,14 +359,24 @@ public final class ArrivalInfo {
     }
 
     public final String getStatusText() {
+        if (mStatusText == null) {
+            mStatusText = computeStatusLabel(mContext, mInfo, mNow, mPredictedTime,
+                    mScheduledMins, mPredictedMins, mIncludeArrivalDepartureInStatusLabel);
+        }
         return mStatusText;
     }
 
     public final String getTimeText() {
+        if (mTimeText == null) {
+            mTimeText = computeTimeLabel(mContext);
+        }
         return mTimeText;
     }
 
     public final String getNotifyText() {
+        if (mNotifyText == null) {
+            mNotifyText = computeNotifyText(mContext);
+        }
         return mNotifyText;
     }
 
@@ -399,4 +443,32 @@ public final class ArrivalInfo {
     public Status getStatus() {
         return mStatus;
     }
+
+    /**
+     * Returns true if this arrival is for the same trip and stop as the provided arrival, so it
+     * would be shown in the same row of the arrivals list
+     */
+    public boolean isSameArrival(ArrivalInfo other) {
+        return mInfo.getStopSequence() == other.mInfo.getStopSequence()
+                && TextUtils.equals(mInfo.getTripId(), other.mInfo.getTripId());
+    }
+
+    /**
+     * Returns true if this arrival would be displayed exactly the same as the provided arrival,
+     * so a row showing the provided arrival doesn't need to be bound again
+     */
+    public boolean isDisplayedSameAs(ArrivalInfo other) {
+        return mNow / ms_in_mins == other.mNow / ms_in_mins
+                && mEta == other.mEta
+                && mDisplayTime / ms_in_mins == other.mDisplayTime / ms_in_mins
+                && mScheduledMins == other.mScheduledMins
+                && mPredictedMins == other.mPredictedMins
+                && mPredicted == other.mPredicted
+                && mIsRouteAndHeadsignFavorite == other.mIsRouteAndHeadsignFavorite
+                && mStatus == other.mStatus
+                && mHistoricalOccupancy == other.mHistoricalOccupancy
+                && mPredictedOccupancy == other.mPredictedOccupancy
+                && TextUtils.equals(mInfo.getShortName(), other.mInfo.getShortName())
+                && TextUtils.equals(mInfo.getHeadsign(), other.mInfo.getHeadsign());
+    }
 }
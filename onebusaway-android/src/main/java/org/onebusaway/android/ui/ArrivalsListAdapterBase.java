@@ -20,11 +20,16 @@ import org.onebusaway.android.util.ArrayAdapter;
 
 import android.content.ContentQueryMap;
 import android.content.Context;
+import android.view.View;
+import android.widget.ListView;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Base adapter class for the various styles of arrivals lists
+ * Base adapter class for the various styles of arrivals lists.  When a refresh returns the same
+ * rows in the same order, only the visible rows that would be displayed differently are bound
+ * again, instead of rebuilding the whole list.
  *
  * @author barbeau
  */
@@ -32,6 +37,8 @@ public abstract class ArrivalsListAdapterBase<T> extends ArrayAdapter<T> {
 
     protected ContentQueryMap mTripsForStop;
 
+    private ListView mListView;
+
     public ArrivalsListAdapterBase(Context context, int layout) {
         super(context, layout);
     }
@@ -41,5 +48,70 @@ public abstract class ArrivalsListAdapterBase<T> extends ArrayAdapter<T> {
         notifyDataSetChanged();
     }
 
+    /**
+     * Sets the ListView showing this adapter, so changed rows can be bound again without
+     * notifying the ListView that the whole data set changed
+     */
+    public void setListView(ListView listView) {
+        mListView = listView;
+    }
+
     abstract public void setData(ObaArrivalInfo[] arrivals, ArrayList<String> routesFilter, long currentTime);
+
+    /**
+     * @return true if the two items should be shown in the same row
+     */
+    abstract protected boolean isSameItem(T oldItem, T newItem);
+
+    /**
+     * @return true if a row showing the old item would look the same showing the new item
+     */
+    abstract protected boolean isSameContent(T oldItem, T newItem);
+
+    /**
+     * Updates the adapter with new data.  If the rows are the same as the current rows, the
+     * items are replaced without notifying the ListView and only the visible rows that changed
+     * are bound again.  Otherwise, the whole list is updated.
+     */
+    protected void updateData(List<T> data) {
+        final int count = getCount();
+        if (mListView == null || data == null || data.size() != count || count == 0) {
+            setData(data);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!isSameItem(getItem(i), data.get(i))) {
+                setData(data);
+                return;
+            }
+        }
+
+        setNotifyOnChange(false);
+        final int offset = mListView.getHeaderViewsCount() - mListView.getFirstVisiblePosition();
+        for (int i = 0; i < count; i++) {
+            T oldItem = getItem(i);
+            T newItem = data.get(i);
+            // Always replace the item, since click handlers use the latest arrival info
+            remove(oldItem);
+            insert(newItem, i);
+            View view = mListView.getChildAt(i + offset);
+            if (view == null) {
+                // Not visible, so it will be bound when it's scrolled into view
+                continue;
+            }
+            if (isSameContent(oldItem, newItem)) {
+                updateViewItem(view, newItem);
+            } else {
+                initView(view, newItem);
+            }
+        }
+        setNotifyOnChange(true);
+    }
+
+    /**
+     * Called instead of initView() when a visible row is given a new item that looks the same,
+     * so any click handlers of the row can use the new item
+     */
+    protected void updateViewItem(View view, T item) {
+    }
 }
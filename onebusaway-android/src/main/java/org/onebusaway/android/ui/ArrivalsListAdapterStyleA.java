@@ -46,6 +46,30 @@ public class ArrivalsListAdapterStyleA extends ArrivalsListAdapterBase<ArrivalIn
         super(context, R.layout.arrivals_list_item);
     }
 
+    /**
+     * Views of a row, so they don't need to be found each time the row is bound
+     */
+    private static final class ViewHolder {
+
+        TextView route;
+
+        TextView destination;
+
+        TextView time;
+
+        TextView status;
+
+        TextView eta;
+
+        TextView min;
+
+        ViewGroup realtime;
+
+        ViewGroup occupancy;
+
+        TextView reminder;
+    }
+
     /**
      * Sets the data to be used with the adapter
      *
@@ -58,43 +82,83 @@ public class ArrivalsListAdapterStyleA extends ArrivalsListAdapterBase<ArrivalIn
             ArrayList<ArrivalInfo> list =
                     ArrivalInfoUtils.convertObaArrivalInfo(getContext(),
                             arrivals, routesFilter, currentTime, false);
-            setData(list);
+            updateData(list);
         } else {
             setData(null);
         }
     }
 
     @Override
-    protected void initView(View view, ArrivalInfo stopInfo) {
+    protected boolean isSameItem(ArrivalInfo oldItem, ArrivalInfo newItem) {
+        return oldItem.isSameArrival(newItem);
+    }
+
+    @Override
+    protected boolean isSameContent(ArrivalInfo oldItem, ArrivalInfo newItem) {
+        return oldItem.isDisplayedSameAs(newItem);
+    }
+
+    private ViewHolder getViewHolder(View view) {
+        ViewHolder holder = (ViewHolder) view.getTag();
+        if (holder != null) {
+            return holder;
+        }
         final Context context = getContext();
-        final ObaArrivalInfo arrivalInfo = stopInfo.getInfo();
+        holder = new ViewHolder();
+        holder.route = (TextView) view.findViewById(R.id.route);
+        holder.destination = (TextView) view.findViewById(R.id.destination);
+        holder.time = (TextView) view.findViewById(R.id.time);
+        holder.status = (TextView) view.findViewById(R.id.status);
+        holder.eta = (TextView) view.findViewById(R.id.eta);
+        holder.min = (TextView) view.findViewById(R.id.eta_min);
+        holder.realtime = (ViewGroup) view.findViewById(R.id.eta_realtime_indicator);
+        holder.occupancy = view.findViewById(R.id.occupancy);
+        holder.reminder = (TextView) view.findViewById(R.id.reminder);
 
-        TextView route = (TextView) view.findViewById(R.id.route);
-        TextView destination = (TextView) view.findViewById(R.id.destination);
-        TextView time = (TextView) view.findViewById(R.id.time);
-        TextView status = (TextView) view.findViewById(R.id.status);
-        TextView etaView = (TextView) view.findViewById(R.id.eta);
-        TextView minView = (TextView) view.findViewById(R.id.eta_min);
-        ViewGroup realtimeView = (ViewGroup) view.findViewById(R.id.eta_realtime_indicator);
-        ViewGroup occupancyView = view.findViewById(R.id.occupancy);
         ImageView moreView = (ImageView) view.findViewById(R.id.more_horizontal);
         moreView.setColorFilter(
                 context.getResources().getColor(R.color.switch_thumb_normal_material_dark));
         ImageView starView = (ImageView) view.findViewById(R.id.route_favorite);
         starView.setColorFilter(context.getResources().getColor(R.color.navdrawer_icon_tint));
+
+        holder.status.setBackgroundResource(R.drawable.round_corners_style_b_status);
+        holder.status.getBackground().mutate();
+        // Set padding on status view
+        int pSides = UIUtils.dpToPixels(context, 5);
+        int pTopBottom = UIUtils.dpToPixels(context, 2);
+        holder.status.setPadding(pSides, pTopBottom, pSides, pTopBottom);
+
+        view.setTag(holder);
+        return holder;
+    }
+
+    @Override
+    protected void initView(View view, ArrivalInfo stopInfo) {
+        final Context context = getContext();
+        final ObaArrivalInfo arrivalInfo = stopInfo.getInfo();
+        final ViewHolder holder = getViewHolder(view);
+
+        TextView route = holder.route;
+        TextView destination = holder.destination;
+        TextView time = holder.time;
+        TextView status = holder.status;
+        TextView etaView = holder.eta;
+        TextView minView = holder.min;
+        ViewGroup realtimeView = holder.realtime;
+        ViewGroup occupancyView = holder.occupancy;
+        ImageView starView = (ImageView) view.findViewById(R.id.route_favorite);
         starView.setImageResource(stopInfo.isRouteAndHeadsignFavorite() ?
                 R.drawable.focus_star_on :
                 R.drawable.focus_star_off);
 
-        // CANCELED trips
-        if (Status.CANCELED.equals(stopInfo.getStatus())) {
-            // Strike through the text fields
-            route.setPaintFlags(Paint.STRIKE_THRU_TEXT_FLAG);
-            destination.setPaintFlags(Paint.STRIKE_THRU_TEXT_FLAG);
-            time.setPaintFlags(Paint.STRIKE_THRU_TEXT_FLAG);
-            etaView.setPaintFlags(Paint.STRIKE_THRU_TEXT_FLAG);
-            minView.setPaintFlags(Paint.STRIKE_THRU_TEXT_FLAG);
-        }
+        // CANCELED trips - strike through the text fields.  Rows are reused, so also clear it.
+        int strikeThru = Status.CANCELED.equals(stopInfo.getStatus())
+                ? Paint.STRIKE_THRU_TEXT_FLAG : 0;
+        setStrikeThru(route, strikeThru);
+        setStrikeThru(destination, strikeThru);
+        setStrikeThru(time, strikeThru);
+        setStrikeThru(etaView, strikeThru);
+        setStrikeThru(minView, strikeThru);
 
         String shortName = arrivalInfo.getShortName();
         route.setText(shortName.trim());
@@ -112,7 +176,6 @@ public class ArrivalsListAdapterStyleA extends ArrivalsListAdapterBase<ArrivalIn
             minView.setVisibility(View.VISIBLE);
         }
 
-        status.setBackgroundResource(R.drawable.round_corners_style_b_status);
         GradientDrawable d = (GradientDrawable) status.getBackground();
 
         Integer colorCode = stopInfo.getColor();
@@ -130,11 +193,6 @@ public class ArrivalsListAdapterStyleA extends ArrivalsListAdapterBase<ArrivalIn
         minView.setTextColor(color);
         d.setColor(color);
 
-        // Set padding on status view
-        int pSides = UIUtils.dpToPixels(context, 5);
-        int pTopBottom = UIUtils.dpToPixels(context, 2);
-        status.setPadding(pSides, pTopBottom, pSides, pTopBottom);
-
         time.setText(stopInfo.getTimeText());
 
         // Occupancy
@@ -155,7 +213,7 @@ public class ArrivalsListAdapterStyleA extends ArrivalsListAdapterBase<ArrivalIn
         if (values != null) {
             String reminderName = values.getAsString(ObaContract.Trips.NAME);
 
-            TextView reminder = (TextView) view.findViewById(R.id.reminder);
+            TextView reminder = holder.reminder;
             if (reminderName.length() == 0) {
                 reminderName = context.getString(R.string.trip_info_noname);
             }
@@ -169,8 +227,11 @@ public class ArrivalsListAdapterStyleA extends ArrivalsListAdapterBase<ArrivalIn
         } else {
             // Explicitly set this to invisible because we might be reusing
             // this view.
-            View reminder = view.findViewById(R.id.reminder);
-            reminder.setVisibility(View.GONE);
+            holder.reminder.setVisibility(View.GONE);
         }
     }
+
+    private static void setStrikeThru(TextView view, int flag) {
+        view.setPaintFlags((view.getPaintFlags() & ~Paint.STRIKE_THRU_TEXT_FLAG) | flag);
+    }
 }
@@ -24,6 +24,7 @@ import android.content.res.Resources;
 import android.graphics.Paint;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.ImageButton;
@@ -54,6 +55,7 @@ import org.onebusaway.util.comparators.AlphanumComparator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * Styles of arrival times used by York Region Transit
@@ -128,7 +130,7 @@ public class ArrivalsListAdapterStyleB extends ArrivalsListAdapterBase<CombinedA
                 }
                 if (!cArrivalInfo.getArrivalInfoList().isEmpty()) {
                     newList.add(cArrivalInfo);
-                    setData(newList);
+                    updateData(newList);
                     return;
                 }
             }
@@ -138,100 +140,157 @@ public class ArrivalsListAdapterStyleB extends ArrivalsListAdapterBase<CombinedA
     }
 
     @Override
-    protected void initView(final View view, CombinedArrivalInfoStyleB combinedArrivalInfoStyleB) {
-        final ArrivalInfo stopInfo = combinedArrivalInfoStyleB.getArrivalInfoList().get(0);
-        final ObaArrivalInfo arrivalInfo = stopInfo.getInfo();
-        final Context context = getContext();
+    protected boolean isSameItem(CombinedArrivalInfoStyleB oldItem,
+            CombinedArrivalInfoStyleB newItem) {
+        ObaArrivalInfo oldInfo = oldItem.getArrivalInfoList().get(0).getInfo();
+        ObaArrivalInfo newInfo = newItem.getArrivalInfoList().get(0).getInfo();
+        return TextUtils.equals(oldInfo.getRouteId(), newInfo.getRouteId())
+                && TextUtils.equals(oldInfo.getHeadsign(), newInfo.getHeadsign());
+    }
+
+    @Override
+    protected boolean isSameContent(CombinedArrivalInfoStyleB oldItem,
+            CombinedArrivalInfoStyleB newItem) {
+        List<ArrivalInfo> oldList = oldItem.getArrivalInfoList();
+        List<ArrivalInfo> newList = newItem.getArrivalInfoList();
+        if (oldList.size() != newList.size()) {
+            return false;
+        }
+        for (int i = 0; i < oldList.size(); i++) {
+            if (!oldList.get(i).isSameArrival(newList.get(i))
+                    || !oldList.get(i).isDisplayedSameAs(newList.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void updateViewItem(View view, CombinedArrivalInfoStyleB item) {
+        CardHolder holder = (CardHolder) view.getTag();
+        if (holder == null) {
+            return;
+        }
+        holder.stopInfo = item.getArrivalInfoList().get(0);
+        for (int i = 0; i < holder.rows.size(); i++) {
+            holder.rows.get(i).arrival = item.getArrivalInfoList().get(i);
+        }
+    }
 
-        LayoutInflater inflater = LayoutInflater.from(context);
+    /**
+     * Views of a card, which are set up once and reused each time the card is bound
+     */
+    private final class CardHolder {
 
-        TextView routeName = view.findViewById(R.id.routeName);
-        TextView destination = view.findViewById(R.id.routeDestination);
+        final TextView routeName;
 
-        // TableLayout that we will fill with TableRows of arrival times
-        TableLayout arrivalTimesLayout = view.findViewById(R.id.arrivalTimeLayout);
-        arrivalTimesLayout.removeAllViews();
+        final TextView destination;
 
-        Resources r = view.getResources();
+        final TableLayout arrivalTimes;
 
-        ImageButton starBtn = view.findViewById(R.id.route_star);
-        starBtn.setColorFilter(r.getColor(R.color.theme_primary));
+        final ImageButton star;
 
-        ImageButton mapImageBtn = view.findViewById(R.id.mapImageBtn);
-        mapImageBtn.setColorFilter(r.getColor(R.color.theme_primary));
+        final ImageButton discuss;
 
-        ImageButton discussBtn = view.findViewById(R.id.route_discussion);
-        discussBtn.setColorFilter(r.getColor(R.color.theme_primary));
+        final TextView reminder;
 
-        ImageButton routeMoreInfo = view.findViewById(R.id.route_more_info);
-        routeMoreInfo.setColorFilter(r.getColor(R.color.switch_thumb_normal_material_dark));
+        // Rows of arrival times currently in arrivalTimes
+        final ArrayList<RowHolder> rows = new ArrayList<>();
 
-        starBtn.setImageResource(stopInfo.isRouteAndHeadsignFavorite() ?
-                R.drawable.focus_star_on :
-                R.drawable.focus_star_off);
+        // First arrival in the card
+        ArrivalInfo stopInfo;
 
-        starBtn.setOnClickListener(v -> {
-            // Show dialog for setting route favorite
-            RouteFavoriteDialogFragment dialog = new RouteFavoriteDialogFragment.Builder(
-                    stopInfo.getInfo().getRouteId(), stopInfo.getInfo().getHeadsign())
-                    .setRouteShortName(stopInfo.getInfo().getShortName())
-                    .setRouteLongName(stopInfo.getInfo().getRouteLongName())
-                    .setStopId(stopInfo.getInfo().getStopId())
-                    .setFavorite(!stopInfo.isRouteAndHeadsignFavorite())
-                    .build();
-
-            dialog.setCallback(savedFavorite -> {
-                if (savedFavorite) {
-                    mFragment.refreshLocal();
-                }
+        CardHolder(final View view) {
+            Resources r = view.getResources();
+            routeName = view.findViewById(R.id.routeName);
+            destination = view.findViewById(R.id.routeDestination);
+            reminder = view.findViewById(R.id.reminder);
+
+            // TableLayout that we will fill with TableRows of arrival times
+            arrivalTimes = view.findViewById(R.id.arrivalTimeLayout);
+            arrivalTimes.removeAllViews();
+
+            star = view.findViewById(R.id.route_star);
+            star.setColorFilter(r.getColor(R.color.theme_primary));
+
+            ImageButton mapImageBtn = view.findViewById(R.id.mapImageBtn);
+            mapImageBtn.setColorFilter(r.getColor(R.color.theme_primary));
+
+            discuss = view.findViewById(R.id.route_discussion);
+            discuss.setColorFilter(r.getColor(R.color.theme_primary));
+
+            ImageButton routeMoreInfo = view.findViewById(R.id.route_more_info);
+            routeMoreInfo.setColorFilter(r.getColor(R.color.switch_thumb_normal_material_dark));
+
+            star.setOnClickListener(v -> {
+                // Show dialog for setting route favorite
+                RouteFavoriteDialogFragment dialog = new RouteFavoriteDialogFragment.Builder(
+                        stopInfo.getInfo().getRouteId(), stopInfo.getInfo().getHeadsign())
+                        .setRouteShortName(stopInfo.getInfo().getShortName())
+                        .setRouteLongName(stopInfo.getInfo().getRouteLongName())
+                        .setStopId(stopInfo.getInfo().getStopId())
+                        .setFavorite(!stopInfo.isRouteAndHeadsignFavorite())
+                        .build();
+
+                dialog.setCallback(savedFavorite -> {
+                    if (savedFavorite) {
+                        mFragment.refreshLocal();
+                    }
+                });
+                dialog.show(mFragment.getFragmentManager(), RouteFavoriteDialogFragment.TAG);
             });
-            dialog.show(mFragment.getFragmentManager(), RouteFavoriteDialogFragment.TAG);
-        });
 
-        // Setup map
-        mapImageBtn.setOnClickListener(v -> mFragment.showRouteOnMap(stopInfo));
+            // Setup map
+            mapImageBtn.setOnClickListener(v -> mFragment.showRouteOnMap(stopInfo));
 
-        // Setup discussion
-        discussBtn.setOnClickListener(v -> {
-            ObaAnalytics.reportUiEvent(FirebaseAnalytics.getInstance(getContext()),
-                    context.getString(R.string.analytics_label_button_press_social_route_style_b),
-                    null);
-            mFragment.openRouteDiscussion(arrivalInfo.getRouteId());
-        });
+            // Setup discussion
+            discuss.setOnClickListener(v -> {
+                ObaAnalytics.reportUiEvent(FirebaseAnalytics.getInstance(getContext()),
+                        getContext().getString(
+                                R.string.analytics_label_button_press_social_route_style_b),
+                        null);
+                mFragment.openRouteDiscussion(stopInfo.getInfo().getRouteId());
+            });
 
-        ObaRegion currentRegion = Application.get().getCurrentRegion();
-        if (currentRegion != null && !EmbeddedSocialUtils.isSocialEnabled()) {
-            discussBtn.setVisibility(View.GONE);
+            // Setup more
+            routeMoreInfo.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    mFragment.showListItemMenu(view, stopInfo);
+                }
+            });
         }
+    }
 
-        // Setup more
-        routeMoreInfo.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                mFragment.showListItemMenu(view, stopInfo);
-            }
-        });
+    /**
+     * Views of a row of arrival times in a card
+     */
+    private final class RowHolder {
 
-        routeName.setText(arrivalInfo.getShortName());
-        destination.setText(UIUtils.formatDisplayText(arrivalInfo.getHeadsign()));
+        final TableRow row;
 
-        // Loop through the arrival times and create the TableRows that contains the data
-        for (int i = 0; i < combinedArrivalInfoStyleB.getArrivalInfoList().size(); i++) {
-            final ArrivalInfo arrivalRow = combinedArrivalInfoStyleB.getArrivalInfoList().get(i);
-            final ObaArrivalInfo tempArrivalInfo = arrivalRow.getInfo();
-            long scheduledTime = tempArrivalInfo.getScheduledArrivalTime();
+        // Divider above the row, or null for the first row
+        final View divider;
 
+        final TextView scheduleView;
+
+        final TextView estimatedView;
+
+        final TextView statusView;
+
+        final ConstraintLayout occupancyView;
+
+        final int alpha;
+
+        ArrivalInfo arrival;
+
+        RowHolder(Context context, LayoutInflater inflater, boolean first) {
             // Create a new row to be added
-            final TableRow tr = (TableRow) inflater
-                    .inflate(R.layout.arrivals_list_tr_template_style_b, null);
+            row = (TableRow) inflater.inflate(R.layout.arrivals_list_tr_template_style_b, null);
 
             // Layout and views to inflate from XML templates
             RelativeLayout layout;
-            ConstraintLayout occupancyView;
-            TextView scheduleView, estimatedView, statusView;
-            View divider;
-
-            if (i == 0) {
+            if (first) {
                 // Use larger styled layout/view for next arrival time
                 layout = (RelativeLayout) inflater
                         .inflate(R.layout.arrivals_list_rl_template_style_b_large, null);
@@ -241,6 +300,8 @@ public class ArrivalsListAdapterStyleB extends ArrivalsListAdapterBase<CombinedA
                         .inflate(R.layout.arrivals_list_tv_template_style_b_estimated_large, null);
                 statusView = (TextView) inflater
                         .inflate(R.layout.arrivals_list_tv_template_style_b_status_large, null);
+                // Set next arrival
+                alpha = (int) (1.0f * 255);  // X percent transparency
             } else {
                 // Use smaller styled layout/view for further out times
                 layout = (RelativeLayout) inflater
@@ -251,68 +312,20 @@ public class ArrivalsListAdapterStyleB extends ArrivalsListAdapterBase<CombinedA
                         .inflate(R.layout.arrivals_list_tv_template_style_b_estimated_small, null);
                 statusView = (TextView) inflater
                         .inflate(R.layout.arrivals_list_tv_template_style_b_status_small, null);
+                // Set smaller rows
+                alpha = (int) (.35f * 255);  // X percent transparency
             }
 
             occupancyView = (ConstraintLayout) inflater.inflate(R.layout.occupancy, null);
 
-            // CANCELED trips
-            if (Status.CANCELED.equals(stopInfo.getStatus())) {
-                // Strike through the text fields
-                scheduleView.setPaintFlags(Paint.STRIKE_THRU_TEXT_FLAG);
-            }
-
-            // Occupancy
-            if (stopInfo.getPredictedOccupancy() != null) {
-                // Predicted occupancy data
-                UIUtils.setOccupancyVisibilityAndColor(occupancyView, stopInfo.getPredictedOccupancy(), OccupancyState.PREDICTED);
-                UIUtils.setOccupancyContentDescription(occupancyView, stopInfo.getPredictedOccupancy(), OccupancyState.PREDICTED);
-            } else {
-                // Historical occupancy data
-                UIUtils.setOccupancyVisibilityAndColor(occupancyView, stopInfo.getHistoricalOccupancy(), OccupancyState.HISTORICAL);
-                UIUtils.setOccupancyContentDescription(occupancyView, stopInfo.getHistoricalOccupancy(), OccupancyState.HISTORICAL);
-            }
-
-            // Set arrival times and status in views
-            scheduleView.setText(UIUtils.formatTime(context, scheduledTime));
-            if (arrivalRow.getPredicted()) {
-                long eta = arrivalRow.getEta();
-                if (eta == 0) {
-                    estimatedView.setText(R.string.stop_info_eta_now);
-                } else {
-                    estimatedView.setText(eta + " min");
-                }
-            } else {
-                estimatedView.setText(R.string.stop_info_eta_unknown);
-            }
-            statusView.setText(arrivalRow.getStatusText());
-            int colorCode = arrivalRow.getColor();
             statusView.setBackgroundResource(R.drawable.round_corners_style_b_status);
-            GradientDrawable d = (GradientDrawable) statusView.getBackground();
-            d.setColor(context.getResources().getColor(colorCode));
-
-            int alpha;
-            if (i == 0) {
-                // Set next arrival
-                alpha = (int) (1.0f * 255);  // X percent transparency
-            } else {
-                // Set smaller rows
-                alpha = (int) (.35f * 255);  // X percent transparency
-            }
-            d.setAlpha(alpha);
-            // Set text color w/ alpha, but increase it a bit to give text better contrast
-            estimatedView.setTextColor(UIUtils.getTransparentColor(
-                    context.getResources().getColor(colorCode), alpha * 2));
+            statusView.getBackground().mutate().setAlpha(alpha);
 
             // Set padding on status view
             int pSides = UIUtils.dpToPixels(context, 5);
             int pTopBottom = UIUtils.dpToPixels(context, 2);
             statusView.setPadding(pSides, pTopBottom, pSides, pTopBottom);
 
-            // Set alpha for occupancy person icons
-            for (int index = 0; index < occupancyView.getChildCount(); ++index) {
-                ((ImageView) occupancyView.getChildAt(index)).setAlpha(alpha);
-            }
-
             // Add TextViews to layout
             layout.addView(scheduleView);
             layout.addView(statusView);
@@ -348,30 +361,82 @@ public class ArrivalsListAdapterStyleB extends ArrivalsListAdapterBase<CombinedA
             occupancyView.setLayoutParams(params4);
 
             // Add layout to TableRow
-            tr.addView(layout);
+            row.addView(layout);
 
             // Add the divider, if its not the first row
-            if (i != 0) {
+            if (!first) {
                 int dividerHeight = UIUtils.dpToPixels(context, 1);
                 divider = inflater.inflate(R.layout.arrivals_list_divider_template_style_b, null);
                 divider.setLayoutParams(
                         new TableRow.LayoutParams(TableRow.LayoutParams.MATCH_PARENT,
                                 dividerHeight));
-                arrivalTimesLayout.addView(divider);
+            } else {
+                divider = null;
             }
 
             // Add click listener
-            tr.setOnClickListener(new View.OnClickListener() {
+            row.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    mFragment.showListItemMenu(tr, arrivalRow);
+                    mFragment.showListItemMenu(row, arrival);
                 }
             });
+        }
+    }
 
-            // Add TableRow to container layout
-            arrivalTimesLayout.addView(tr,
-                    new TableLayout.LayoutParams(TableLayout.LayoutParams.MATCH_PARENT,
-                            TableLayout.LayoutParams.MATCH_PARENT));
+    @Override
+    protected void initView(final View view, CombinedArrivalInfoStyleB combinedArrivalInfoStyleB) {
+        CardHolder holder = (CardHolder) view.getTag();
+        if (holder == null) {
+            holder = new CardHolder(view);
+            view.setTag(holder);
+        }
+        final List<ArrivalInfo> arrivals = combinedArrivalInfoStyleB.getArrivalInfoList();
+        final ArrivalInfo stopInfo = arrivals.get(0);
+        final ObaArrivalInfo arrivalInfo = stopInfo.getInfo();
+        final Context context = getContext();
+        holder.stopInfo = stopInfo;
+
+        holder.star.setImageResource(stopInfo.isRouteAndHeadsignFavorite() ?
+                R.drawable.focus_star_on :
+                R.drawable.focus_star_off);
+
+        ObaRegion currentRegion = Application.get().getCurrentRegion();
+        if (currentRegion != null && !EmbeddedSocialUtils.isSocialEnabled()) {
+            holder.discuss.setVisibility(View.GONE);
+        }
+
+        holder.routeName.setText(arrivalInfo.getShortName());
+        holder.destination.setText(UIUtils.formatDisplayText(arrivalInfo.getHeadsign()));
+
+        // Remove rows that aren't needed anymore, and reuse the rest
+        while (holder.rows.size() > arrivals.size()) {
+            RowHolder last = holder.rows.remove(holder.rows.size() - 1);
+            holder.arrivalTimes.removeView(last.row);
+            if (last.divider != null) {
+                holder.arrivalTimes.removeView(last.divider);
+            }
+        }
+        LayoutInflater inflater = null;
+        for (int i = 0; i < arrivals.size(); i++) {
+            RowHolder row;
+            if (i < holder.rows.size()) {
+                row = holder.rows.get(i);
+            } else {
+                if (inflater == null) {
+                    inflater = LayoutInflater.from(context);
+                }
+                row = new RowHolder(context, inflater, i == 0);
+                holder.rows.add(row);
+                if (row.divider != null) {
+                    holder.arrivalTimes.addView(row.divider);
+                }
+                // Add TableRow to container layout
+                holder.arrivalTimes.addView(row.row,
+                        new TableLayout.LayoutParams(TableLayout.LayoutParams.MATCH_PARENT,
+                                TableLayout.LayoutParams.MATCH_PARENT));
+            }
+            bindRow(context, row, stopInfo, arrivals.get(i));
         }
 
         // Show or hide reminder for this trip
@@ -382,7 +447,7 @@ public class ArrivalsListAdapterStyleB extends ArrivalsListAdapterBase<CombinedA
         if (values != null) {
             String reminderName = values.getAsString(ObaContract.Trips.NAME);
 
-            TextView reminder = (TextView) view.findViewById(R.id.reminder);
+            TextView reminder = holder.reminder;
             if (reminderName.length() == 0) {
                 reminderName = context.getString(R.string.trip_info_noname);
             }
@@ -395,8 +460,56 @@ public class ArrivalsListAdapterStyleB extends ArrivalsListAdapterBase<CombinedA
         } else {
             // Explicitly set reminder to invisible because we might be reusing
             // this view.
-            View reminder = view.findViewById(R.id.reminder);
-            reminder.setVisibility(View.GONE);
+            holder.reminder.setVisibility(View.GONE);
+        }
+    }
+
+    private void bindRow(Context context, RowHolder row, ArrivalInfo stopInfo,
+            ArrivalInfo arrivalRow) {
+        final ObaArrivalInfo tempArrivalInfo = arrivalRow.getInfo();
+        long scheduledTime = tempArrivalInfo.getScheduledArrivalTime();
+        row.arrival = arrivalRow;
+
+        // CANCELED trips - strike through the text fields.  Rows are reused, so also clear it.
+        int flags = row.scheduleView.getPaintFlags() & ~Paint.STRIKE_THRU_TEXT_FLAG;
+        if (Status.CANCELED.equals(stopInfo.getStatus())) {
+            flags |= Paint.STRIKE_THRU_TEXT_FLAG;
+        }
+        row.scheduleView.setPaintFlags(flags);
+
+        // Occupancy
+        if (stopInfo.getPredictedOccupancy() != null) {
+            // Predicted occupancy data
+            UIUtils.setOccupancyVisibilityAndColor(row.occupancyView, stopInfo.getPredictedOccupancy(), OccupancyState.PREDICTED);
+            UIUtils.setOccupancyContentDescription(row.occupancyView, stopInfo.getPredictedOccupancy(), OccupancyState.PREDICTED);
+        } else {
+            // Historical occupancy data
+            UIUtils.setOccupancyVisibilityAndColor(row.occupancyView, stopInfo.getHistoricalOccupancy(), OccupancyState.HISTORICAL);
+            UIUtils.setOccupancyContentDescription(row.occupancyView, stopInfo.getHistoricalOccupancy(), OccupancyState.HISTORICAL);
+        }
+
+        // Set arrival times and status in views
+        row.scheduleView.setText(UIUtils.formatTime(context, scheduledTime));
+        if (arrivalRow.getPredicted()) {
+            long eta = arrivalRow.getEta();
+            if (eta == 0) {
+                row.estimatedView.setText(R.string.stop_info_eta_now);
+            } else {
+                row.estimatedView.setText(eta + " min");
+            }
+        } else {
+            row.estimatedView.setText(R.string.stop_info_eta_unknown);
+        }
+        row.statusView.setText(arrivalRow.getStatusText());
+        int color = context.getResources().getColor(arrivalRow.getColor());
+        GradientDrawable d = (GradientDrawable) row.statusView.getBackground();
+        d.setColor(color);
+        // Set text color w/ alpha, but increase it a bit to give text better contrast
+        row.estimatedView.setTextColor(UIUtils.getTransparentColor(color, row.alpha * 2));
+
+        // Set alpha for occupancy person icons
+        for (int index = 0; index < row.occupancyView.getChildCount(); ++index) {
+            ((ImageView) row.occupancyView.getChildAt(index)).setAlpha(row.alpha);
         }
     }
 }
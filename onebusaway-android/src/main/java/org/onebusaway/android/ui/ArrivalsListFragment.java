@@ -59,6 +59,7 @@ import androidx.loader.content.Loader;
 
 import com.google.firebase.analytics.FirebaseAnalytics;
 
+import org.onebusaway.android.BuildConfig;
 import org.onebusaway.android.R;
 import org.onebusaway.android.app.Application;
 import org.onebusaway.android.io.ObaAnalytics;
@@ -129,8 +130,6 @@ public class ArrivalsListFragment extends ListFragment
      */
     public static final String EXTERNAL_HEADER = ".ExternalHeader";
 
-    private static final long RefreshPeriod = 60 * 1000;
-
     private static int TRIPS_FOR_STOP_LOADER = 1;
 
     private static int ARRIVALS_LIST_LOADER = 2;
@@ -403,7 +402,8 @@ public class ArrivalsListFragment extends ListFragment
 
         // If our timer would have gone off, then refresh.
         long lastResponseTime = getArrivalsLoader().getLastResponseTime();
-        long newPeriod = Math.min(RefreshPeriod, (lastResponseTime + RefreshPeriod)
+        long refreshPeriod = getRefreshPeriod();
+        long newPeriod = Math.min(refreshPeriod, (lastResponseTime + refreshPeriod)
                 - System.currentTimeMillis());
         // Wait at least one second at least, and the full minute at most.
         //Log.d(TAG, "Refresh period:" + newPeriod);
@@ -489,8 +489,11 @@ public class ArrivalsListFragment extends ListFragment
         // Clear any pending refreshes
         mRefreshHandler.removeCallbacks(mRefresh);
 
-        // Post an update
-        mRefreshHandler.postDelayed(mRefresh, RefreshPeriod);
+        // Post an update, unless we've been paused (e.g., the screen was turned off) while loading
+        // - onResume() will schedule it
+        if (isResumed()) {
+            mRefreshHandler.postDelayed(mRefresh, getRefreshPeriod());
+        }
 
         // If the user just tried to load more arrivals, determine if we
         // should show a Toast in the case where no additional arrivals were loaded
@@ -641,6 +644,10 @@ public class ArrivalsListFragment extends ListFragment
             }
             return true;
         } else if (id == R.id.refresh) {
+            ArrivalsListLoader loader = getArrivalsLoader();
+            if (loader != null) {
+                loader.setForceRefresh();
+            }
             refresh();
             return true;
         } else if (id == R.id.sort_arrivals) {
@@ -1236,6 +1243,7 @@ public class ArrivalsListFragment extends ListFragment
 
         // We present arrivals as cards, so hide the divider in the listview
         getListView().setDivider(null);
+        mAdapter.setListView(getListView());
         setListAdapter(mAdapter);
     }
 
@@ -1582,6 +1590,24 @@ public class ArrivalsListFragment extends ListFragment
         }
     };
 
+    /**
+     * Returns the time until the next refresh, based on how soon the next vehicle arrives and how
+     * much the last responses changed
+     */
+    private long getRefreshPeriod() {
+        ArrivalsListLoader loader = getArrivalsLoader();
+        if (loader == null) {
+            return ArrivalInfoUtils.DEFAULT_REFRESH_PERIOD;
+        }
+        long period = ArrivalInfoUtils.getRefreshPeriod(loader.getSoonestEta(),
+                loader.getMaxPredictionChange(), loader.getUnchangedCount());
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "Refresh period " + period / 1000 + "s after " + loader.getRequestCount()
+                    + " requests");
+        }
+        return period;
+    }
+
     private void setStopId() {
         Uri uri = (Uri) getArguments().getParcelable(FragmentUtils.URI);
         if (uri == null) {
@@ -17,14 +17,20 @@
 package org.onebusaway.android.ui;
 
 import org.onebusaway.android.io.ObaApi;
+import org.onebusaway.android.io.elements.ObaArrivalInfo;
 import org.onebusaway.android.io.request.ObaArrivalInfoRequest;
 import org.onebusaway.android.io.request.ObaArrivalInfoResponse;
 
 import android.content.Context;
 
-import androidx.loader.content.AsyncTaskLoader;
+import java.util.HashMap;
 
+import androidx.loader.content.AsyncTaskLoader;
 
+/**
+ * Loads arrivals for a stop, and keeps statistics about the responses (e.g., how soon the next
+ * vehicle arrives and how much predictions changed) that are used to decide when to refresh
+ */
 public class ArrivalsListLoader extends AsyncTaskLoader<ObaArrivalInfoResponse> {
 
     private final String mStopId;
@@ -44,6 +50,19 @@ public class ArrivalsListLoader extends AsyncTaskLoader<ObaArrivalInfoResponse>
 
     private String mUrl;
 
+    // Trip ID and stop sequence -> predicted (or scheduled) time, from the last good response
+    private HashMap<String, Long> mLastTimes;
+
+    private long mSoonestEta = Long.MAX_VALUE;
+
+    private long mMaxPredictionChange;
+
+    private int mUnchangedCount;
+
+    private int mRequestCount;
+
+    private boolean mForceRefresh;
+
     public ArrivalsListLoader(Context context, String stopId) {
         super(context);
         mStopId = stopId;
@@ -55,6 +74,9 @@ public class ArrivalsListLoader extends AsyncTaskLoader<ObaArrivalInfoResponse>
                 mStopId, mMinutesAfter);
         // Cache the URL so we have a record of the request w/ params made to the server
         mUrl = obaArrivalInfoRequest.getUri().toString();
+        mRequestCount++;
+        obaArrivalInfoRequest.setForceRefresh(mForceRefresh);
+        mForceRefresh = false;
         return obaArrivalInfoRequest.call();
     }
 
@@ -67,6 +89,7 @@ public class ArrivalsListLoader extends AsyncTaskLoader<ObaArrivalInfoResponse>
         if (data.getCode() == ObaApi.OBA_OK) {
             mLastGoodResponse = data;
             mLastGoodResponseTime = mLastResponseTime;
+            updateStats(data);
         }
         super.deliverResult(data);
     }
@@ -83,6 +106,84 @@ public class ArrivalsListLoader extends AsyncTaskLoader<ObaArrivalInfoResponse>
         return mLastGoodResponseTime;
     }
 
+    /**
+     * @return the ETA in minutes of the next arrival in the last good response that hasn't
+     * arrived yet, or Long.MAX_VALUE if there aren't any
+     */
+    public long getSoonestEta() {
+        return mSoonestEta;
+    }
+
+    /**
+     * @return the largest change in milliseconds of the time for a trip between the last two
+     * good responses
+     */
+    public long getMaxPredictionChange() {
+        return mMaxPredictionChange;
+    }
+
+    /**
+     * @return the number of consecutive good responses that had the same times as the response
+     * before them
+     */
+    public int getUnchangedCount() {
+        return mUnchangedCount;
+    }
+
+    /**
+     * @return the number of requests this loader has made to the server
+     */
+    public int getRequestCount() {
+        return mRequestCount;
+    }
+
+    private void updateStats(ObaArrivalInfoResponse response) {
+        final ObaArrivalInfo[] arrivals = response.getArrivalInfo();
+        final long now = response.getCurrentTime();
+        HashMap<String, Long> times = new HashMap<>(arrivals.length * 2);
+        long soonestEta = Long.MAX_VALUE;
+        long maxChange = 0;
+        for (ObaArrivalInfo info : arrivals) {
+            long time = getTime(info);
+            String key = info.getTripId() + "_" + info.getStopSequence();
+            times.put(key, time);
+            Long lastTime = mLastTimes != null ? mLastTimes.get(key) : null;
+            if (lastTime != null) {
+                maxChange = Math.max(maxChange, Math.abs(time - lastTime));
+            }
+            long eta = ArrivalInfo.computeEta(info, now);
+            if (eta >= 0) {
+                soonestEta = Math.min(soonestEta, eta);
+            }
+        }
+        if (mLastTimes != null && times.equals(mLastTimes)) {
+            mUnchangedCount++;
+        } else {
+            mUnchangedCount = 0;
+        }
+        mLastTimes = times;
+        mSoonestEta = soonestEta;
+        mMaxPredictionChange = maxChange;
+    }
+
+    private static long getTime(ObaArrivalInfo info) {
+        long predicted = info.getStopSequence() != 0 ? info.getPredictedArrivalTime()
+                : info.getPredictedDepartureTime();
+        if (predicted != 0) {
+            return predicted;
+        }
+        return info.getStopSequence() != 0 ? info.getScheduledArrivalTime()
+                : info.getScheduledDepartureTime();
+    }
+
+    /**
+     * Makes the next load go to the server instead of reusing a response another screen just
+     * got for the same stop.  Used when the user explicitly asks for a refresh.
+     */
+    public void setForceRefresh() {
+        mForceRefresh = true;
+    }
+
     public void incrementMinutesAfter() {
         mMinutesAfter = mMinutesAfter + MINUTES_INCREMENT;
     }
@@ -108,6 +209,10 @@ public class ArrivalsListLoader extends AsyncTaskLoader<ObaArrivalInfoResponse>
         super.onReset();
         mLastGoodResponse = null;
         mLastGoodResponseTime = 0;
+        mLastTimes = null;
+        mSoonestEta = Long.MAX_VALUE;
+        mMaxPredictionChange = 0;
+        mUnchangedCount = 0;
         // Ensure the loader is stopped
         onStopLoading();
     }
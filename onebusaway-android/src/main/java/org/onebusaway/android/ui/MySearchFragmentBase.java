@@ -32,6 +32,8 @@ import com.google.android.gms.common.api.GoogleApiClient;
 
 import org.onebusaway.android.R;
 import org.onebusaway.android.app.Application;
+import org.onebusaway.android.provider.SearchIndex;
+import org.onebusaway.android.provider.SearchIndexWorker;
 import org.onebusaway.android.util.LocationUtils;
 import org.onebusaway.android.util.UIUtils;
 import org.onebusaway.android.view.SearchViewV1;
@@ -81,6 +83,9 @@ abstract class MySearchFragmentBase extends ListFragment
         mSearchViewV1.setQueryHint(getString(getEditBoxHintText()));
         mSearchViewV1.setOnQueryTextListener(this);
         mSearchViewV1.setOnQueryTextFocusChangeListener(mOnQueryTextFocusChangeListener);
+
+        // Build the local search index in the background, if it isn't current
+        SearchIndexWorker.updateIfNeeded();
     }
 
     @Override
@@ -141,6 +146,10 @@ abstract class MySearchFragmentBase extends ListFragment
         }
 
         final String query = newText;
+        if (SearchIndex.getInstance().isReady()) {
+            // Show the matches in the local index right away, and the server's after the delay
+            doLocalSearch(query);
+        }
         final Runnable doSearch = new Runnable() {
             public void run() {
                 doSearch(query);
@@ -220,6 +229,12 @@ abstract class MySearchFragmentBase extends ListFragment
      */
     abstract protected void doSearch(String text);
 
+    /**
+     * Tells the subclass to start a search of only the local search index, while the user is
+     * still typing
+     */
+    abstract protected void doLocalSearch(String text);
+
     /**
      * @return The hint text for the search box.
      */
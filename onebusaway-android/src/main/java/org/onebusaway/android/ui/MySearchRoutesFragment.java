@@ -22,6 +22,7 @@ import org.onebusaway.android.io.ObaApi;
 import org.onebusaway.android.io.elements.ObaRoute;
 import org.onebusaway.android.io.request.ObaRoutesForLocationRequest;
 import org.onebusaway.android.io.request.ObaRoutesForLocationResponse;
+import org.onebusaway.android.provider.SearchIndex;
 import org.onebusaway.android.util.ArrayAdapter;
 import org.onebusaway.android.util.LocationUtils;
 import org.onebusaway.android.util.UIUtils;
@@ -42,6 +43,7 @@ import android.widget.ListView;
 import android.widget.TextView;
 
 import java.util.Arrays;
+import java.util.List;
 
 import androidx.core.content.pm.ShortcutInfoCompat;
 import androidx.loader.app.LoaderManager;
@@ -49,11 +51,15 @@ import androidx.loader.content.AsyncTaskLoader;
 import androidx.loader.content.Loader;
 
 public class MySearchRoutesFragment extends MySearchFragmentBase
-        implements LoaderManager.LoaderCallbacks<ObaRoutesForLocationResponse> {
+        implements LoaderManager.LoaderCallbacks<SearchResponse<ObaRoute>> {
 
     //private static final String TAG = "MySearchRoutesActivity";
     private static final String QUERY_TEXT = "query_text";
 
+    private static final String LOCAL_ONLY = "local_only";
+
+    private static final int MAX_LOCAL_RESULTS = 50;
+
     public static final String TAB_NAME = "search";
 
     private MyAdapter mAdapter;
@@ -79,20 +85,26 @@ public class MySearchRoutesFragment extends MySearchFragmentBase
     }
 
     @Override
-    public Loader<ObaRoutesForLocationResponse> onCreateLoader(int id, Bundle args) {
+    public Loader<SearchResponse<ObaRoute>> onCreateLoader(int id, Bundle args) {
         String query = args.getString(QUERY_TEXT);
-        return new MyLoader(getActivity(), query, getSearchCenter());
+        return new MyLoader(getActivity(), query, getSearchCenter(),
+                args.getBoolean(LOCAL_ONLY));
     }
 
     @Override
-    public void onLoadFinished(Loader<ObaRoutesForLocationResponse> loader,
-            ObaRoutesForLocationResponse response) {
+    public void onLoadFinished(Loader<SearchResponse<ObaRoute>> loader,
+            SearchResponse<ObaRoute> response) {
         UIUtils.showProgress(this, false);
         //Log.d(TAG, "Loader finished");
+        if (!response.isComplete()) {
+            // Matches in the local index, shown while waiting for the server
+            mAdapter.setData(response.getResults());
+            return;
+        }
         final int code = response.getCode();
         if (code == ObaApi.OBA_OK) {
             setEmptyText(getString(R.string.find_hint_noresults));
-            mAdapter.setData(Arrays.asList(response.getRoutesForLocation()));
+            mAdapter.setData(response.getResults());
         } else if (code != 0) {
             // If we get anything other than a '0' error, that means
             // the server actually returned something to us,
@@ -105,7 +117,7 @@ public class MySearchRoutesFragment extends MySearchFragmentBase
     }
 
     @Override
-    public void onLoaderReset(Loader<ObaRoutesForLocationResponse> loader) {
+    public void onLoaderReset(Loader<SearchResponse<ObaRoute>> loader) {
         mAdapter.clear();
     }
 
@@ -121,6 +133,15 @@ public class MySearchRoutesFragment extends MySearchFragmentBase
         loader.onContentChanged();
     }
 
+    @Override
+    protected void doLocalSearch(String text) {
+        Bundle args = new Bundle();
+        args.putString(QUERY_TEXT, text);
+        args.putBoolean(LOCAL_ONLY, true);
+        Loader<?> loader = getLoaderManager().restartLoader(0, args, this);
+        loader.onContentChanged();
+    }
+
     @Override
     protected int getEditBoxHintText() {
         return R.string.search_route_hint;
@@ -228,20 +249,47 @@ public class MySearchRoutesFragment extends MySearchFragmentBase
     //
     // Loader
     //
-    private static final class MyLoader extends AsyncTaskLoader<ObaRoutesForLocationResponse> {
+    private static final class MyLoader extends AsyncTaskLoader<SearchResponse<ObaRoute>> {
 
         private final String mQueryText;
 
         private final Location mCenter;
 
-        public MyLoader(Context context, String query, Location center) {
+        private final boolean mLocalOnly;
+
+        public MyLoader(Context context, String query, Location center, boolean localOnly) {
             super(context);
             mQueryText = query;
             mCenter = center;
+            mLocalOnly = localOnly;
         }
 
+        /**
+         * Delivers the matches in the local index first, then the server's results merged in
+         * after them
+         */
         @Override
-        public ObaRoutesForLocationResponse loadInBackground() {
+        public SearchResponse<ObaRoute> loadInBackground() {
+            List<ObaRoute> local = SearchIndex.getInstance().searchRoutes(mQueryText,
+                    MAX_LOCAL_RESULTS);
+            if (mLocalOnly) {
+                return new SearchResponse<>(ObaApi.OBA_OK, local, false);
+            }
+            if (!local.isEmpty()) {
+                new SearchResponse<>(ObaApi.OBA_OK, local, false).deliverPartial(this);
+            }
+
+            ObaRoutesForLocationResponse response = search();
+            if (response.getCode() != ObaApi.OBA_OK) {
+                // Still show the local matches if the server couldn't be reached
+                return new SearchResponse<>(local.isEmpty() ? response.getCode() : ObaApi.OBA_OK,
+                        local);
+            }
+            return new SearchResponse<>(ObaApi.OBA_OK,
+                    SearchResponse.merge(local, Arrays.asList(response.getRoutesForLocation())));
+        }
+
+        private ObaRoutesForLocationResponse search() {
             ObaRoutesForLocationResponse response =
                     new ObaRoutesForLocationRequest.Builder(getContext(), mCenter)
                             .setQuery(mQueryText)
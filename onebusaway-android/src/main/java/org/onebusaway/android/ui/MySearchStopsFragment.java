@@ -21,6 +21,7 @@ import org.onebusaway.android.io.ObaApi;
 import org.onebusaway.android.io.elements.ObaStop;
 import org.onebusaway.android.io.request.ObaStopsForLocationRequest;
 import org.onebusaway.android.io.request.ObaStopsForLocationResponse;
+import org.onebusaway.android.provider.SearchIndex;
 import org.onebusaway.android.util.ArrayAdapter;
 import org.onebusaway.android.util.UIUtils;
 
@@ -39,6 +40,7 @@ import android.widget.ListView;
 import android.widget.TextView;
 
 import java.util.Arrays;
+import java.util.List;
 
 import androidx.core.content.pm.ShortcutInfoCompat;
 import androidx.loader.app.LoaderManager;
@@ -46,11 +48,15 @@ import androidx.loader.content.AsyncTaskLoader;
 import androidx.loader.content.Loader;
 
 public class MySearchStopsFragment extends MySearchFragmentBase
-        implements LoaderManager.LoaderCallbacks<ObaStopsForLocationResponse> {
+        implements LoaderManager.LoaderCallbacks<SearchResponse<ObaStop>> {
 
     //private static final String TAG = "MySearchStopsFragment";
     private static final String QUERY_TEXT = "query_text";
 
+    private static final String LOCAL_ONLY = "local_only";
+
+    private static final int MAX_LOCAL_RESULTS = 50;
+
     public static final String TAB_NAME = "search";
 
     private UIUtils.StopUserInfoMap mStopUserMap;
@@ -87,20 +93,26 @@ public class MySearchStopsFragment extends MySearchFragmentBase
     }
 
     @Override
-    public Loader<ObaStopsForLocationResponse> onCreateLoader(int id, Bundle args) {
+    public Loader<SearchResponse<ObaStop>> onCreateLoader(int id, Bundle args) {
         String query = args.getString(QUERY_TEXT);
-        return new MyLoader(getActivity(), query, getSearchCenter());
+        return new MyLoader(getActivity(), query, getSearchCenter(),
+                args.getBoolean(LOCAL_ONLY));
     }
 
     @Override
-    public void onLoadFinished(Loader<ObaStopsForLocationResponse> loader,
-            ObaStopsForLocationResponse response) {
+    public void onLoadFinished(Loader<SearchResponse<ObaStop>> loader,
+            SearchResponse<ObaStop> response) {
         UIUtils.showProgress(this, false);
         //Log.d(TAG, "Loader finished");
+        if (!response.isComplete()) {
+            // Matches in the local index, shown while waiting for the server
+            mAdapter.setData(response.getResults());
+            return;
+        }
         final int code = response.getCode();
         if (code == ObaApi.OBA_OK) {
             setEmptyText(getString(R.string.find_hint_noresults));
-            mAdapter.setData(Arrays.asList(response.getStops()));
+            mAdapter.setData(response.getResults());
         } else if (code != 0) {
             // If we get anything other than a '0' error, that means
             // the server actually returned something to us,
@@ -113,7 +125,7 @@ public class MySearchStopsFragment extends MySearchFragmentBase
     }
 
     @Override
-    public void onLoaderReset(Loader<ObaStopsForLocationResponse> loader) {
+    public void onLoaderReset(Loader<SearchResponse<ObaStop>> loader) {
         mAdapter.clear();
     }
 
@@ -129,6 +141,15 @@ public class MySearchStopsFragment extends MySearchFragmentBase
         loader.onContentChanged();
     }
 
+    @Override
+    protected void doLocalSearch(String text) {
+        Bundle args = new Bundle();
+        args.putString(QUERY_TEXT, text);
+        args.putBoolean(LOCAL_ONLY, true);
+        Loader<?> loader = getLoaderManager().restartLoader(0, args, this);
+        loader.onContentChanged();
+    }
+
     @Override
     protected int getEditBoxHintText() {
         return R.string.search_stop_hint;
@@ -226,24 +247,48 @@ public class MySearchStopsFragment extends MySearchFragmentBase
     //
     // Loader
     //
-    private static final class MyLoader extends AsyncTaskLoader<ObaStopsForLocationResponse> {
+    private static final class MyLoader extends AsyncTaskLoader<SearchResponse<ObaStop>> {
 
         private final String mQueryText;
 
         private final Location mCenter;
 
-        public MyLoader(Context context, String query, Location center) {
+        private final boolean mLocalOnly;
+
+        public MyLoader(Context context, String query, Location center, boolean localOnly) {
             super(context);
             mQueryText = query;
             mCenter = center;
+            mLocalOnly = localOnly;
         }
 
+        /**
+         * Delivers the matches in the local index first, then the server's results merged in
+         * after them
+         */
         @Override
-        public ObaStopsForLocationResponse loadInBackground() {
-            return new ObaStopsForLocationRequest.Builder(getContext(), mCenter)
-                    .setQuery(mQueryText)
-                    .build()
-                    .call();
+        public SearchResponse<ObaStop> loadInBackground() {
+            List<ObaStop> local = SearchIndex.getInstance().searchStops(mQueryText, mCenter,
+                    MAX_LOCAL_RESULTS);
+            if (mLocalOnly) {
+                return new SearchResponse<>(ObaApi.OBA_OK, local, false);
+            }
+            if (!local.isEmpty()) {
+                new SearchResponse<>(ObaApi.OBA_OK, local, false).deliverPartial(this);
+            }
+
+            ObaStopsForLocationResponse response =
+                    new ObaStopsForLocationRequest.Builder(getContext(), mCenter)
+                            .setQuery(mQueryText)
+                            .build()
+                            .call();
+            if (response.getCode() != ObaApi.OBA_OK) {
+                // Still show the local matches if the server couldn't be reached
+                return new SearchResponse<>(local.isEmpty() ? response.getCode() : ObaApi.OBA_OK,
+                        local);
+            }
+            return new SearchResponse<>(ObaApi.OBA_OK,
+                    SearchResponse.merge(local, Arrays.asList(response.getStops())));
         }
     }
 }
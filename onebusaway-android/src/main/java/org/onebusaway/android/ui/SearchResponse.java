@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2012 Paul Watts (paulcwatts@gmail.com)
+ * and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onebusaway.android.ui;
+
+import org.onebusaway.android.io.elements.ObaElement;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import androidx.loader.content.AsyncTaskLoader;
+
+/**
+ * This implements the response of a search, which can contain stops, routes or both in one list.
+ *
+ * @author paulw
+ */
+final class SearchResponse<T extends ObaElement> {
+
+    private final int mCode;
+
+    private final List<T> mResults;
+
+    private final boolean mComplete;
+
+    SearchResponse(int code, List<T> r) {
+        this(code, r, true);
+    }
+
+    SearchResponse(int code, List<T> r, boolean complete) {
+        mCode = code;
+        mResults = r;
+        mComplete = complete;
+    }
+
+    int getCode() {
+        return mCode;
+    }
+
+    List<T> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Returns false if these are early results (e.g., from the first of several searches to
+     * finish, or from the local search index) and the rest of the results are still loading
+     */
+    boolean isComplete() {
+        return mComplete;
+    }
+
+    /**
+     * Delivers this partial response from the provided loader while its load is still running.
+     * The response is posted to the main thread, and dropped if the loader is stopped or its
+     * load is cancelled first.  The complete response is posted after this one, so it replaces
+     * this one.
+     */
+    void deliverPartial(final AsyncTaskLoader<SearchResponse<T>> loader) {
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                if (loader.isStarted() && !loader.isLoadInBackgroundCanceled()) {
+                    loader.deliverResult(SearchResponse.this);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the elements in the first list followed by the elements in the second list that
+     * aren't in the first list
+     */
+    static <T extends ObaElement> List<T> merge(List<T> first, List<T> second) {
+        ArrayList<T> result = new ArrayList<>(first.size() + second.size());
+        HashSet<String> ids = new HashSet<>();
+        for (T element : first) {
+            if (ids.add(element.getId())) {
+                result.add(element);
+            }
+        }
+        for (T element : second) {
+            if (ids.add(element.getId())) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+}
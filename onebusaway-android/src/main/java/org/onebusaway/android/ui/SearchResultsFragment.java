@@ -22,6 +22,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.location.Location;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -39,6 +40,7 @@ import org.onebusaway.android.io.ObaApi;
 import org.onebusaway.android.io.elements.ObaElement;
 import org.onebusaway.android.io.elements.ObaRoute;
 import org.onebusaway.android.io.elements.ObaStop;
+import org.onebusaway.android.io.request.ObaResponse;
 import org.onebusaway.android.io.request.ObaRoutesForLocationRequest;
 import org.onebusaway.android.io.request.ObaRoutesForLocationResponse;
 import org.onebusaway.android.io.request.ObaStopsForLocationRequest;
@@ -50,40 +52,23 @@ import org.onebusaway.android.util.UIUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import androidx.loader.app.LoaderManager;
 import androidx.loader.content.AsyncTaskLoader;
 import androidx.loader.content.Loader;
 
-/**
- * This implements the response that returns both stops and routes in one list.
- *
- * @author paulw
- */
-final class SearchResponse {
-
-    private final int mCode;
-
-    private final List<ObaElement> mResults;
-
-    SearchResponse(int code, List<ObaElement> r) {
-        mCode = code;
-        mResults = r;
-    }
-
-    int getCode() {
-        return mCode;
-    }
-
-    List<ObaElement> getResults() {
-        return mResults;
-    }
-}
-
 public class SearchResultsFragment extends ListFragment
-        implements LoaderManager.LoaderCallbacks<SearchResponse> {
+        implements LoaderManager.LoaderCallbacks<SearchResponse<ObaElement>> {
 
-    //private static final String TAG = "SearchResultsFragment";
+    private static final String TAG = "SearchResultsFragment";
     public static final String QUERY_TEXT = "query_text";
 
     private MyAdapter mAdapter;
@@ -142,7 +127,7 @@ public class SearchResultsFragment extends ListFragment
     }
 
     @Override
-    public Loader<SearchResponse> onCreateLoader(int id, Bundle args) {
+    public Loader<SearchResponse<ObaElement>> onCreateLoader(int id, Bundle args) {
         String query = args.getString(QUERY_TEXT);
         Location location = Application.getLastKnownLocation(getActivity(), mGoogleApiClient);
         if (location == null) {
@@ -152,10 +137,15 @@ public class SearchResultsFragment extends ListFragment
     }
 
     @Override
-    public void onLoadFinished(Loader<SearchResponse> loader,
-            SearchResponse response) {
+    public void onLoadFinished(Loader<SearchResponse<ObaElement>> loader,
+            SearchResponse<ObaElement> response) {
         UIUtils.showProgress(this, false);
         //Log.d(TAG, "Loader finished");
+        if (!response.isComplete()) {
+            // Show the results of the first search to finish while the other is still loading
+            mAdapter.setData(response.getResults());
+            return;
+        }
         final int code = response.getCode();
         if (code == ObaApi.OBA_OK) {
             setEmptyText(getString(R.string.find_hint_noresults));
@@ -172,7 +162,7 @@ public class SearchResultsFragment extends ListFragment
     }
 
     @Override
-    public void onLoaderReset(Loader<SearchResponse> loader) {
+    public void onLoaderReset(Loader<SearchResponse<ObaElement>> loader) {
         mAdapter.clear();
     }
 
@@ -285,12 +275,20 @@ public class SearchResultsFragment extends ListFragment
     //
     // Loader
     //
-    private static final class MyLoader extends AsyncTaskLoader<SearchResponse> {
+    private static final class MyLoader extends AsyncTaskLoader<SearchResponse<ObaElement>> {
+
+        /**
+         * Runs the route and stop searches at the same time
+         */
+        private static final ExecutorService mExecutor = Executors.newFixedThreadPool(2);
 
         private final String mQueryText;
 
         private final Location mCenter;
 
+        // Searches in progress, so they can be cancelled if the query is replaced
+        private final List<Future<ObaResponse>> mSearches = new ArrayList<>(2);
+
         public MyLoader(Context context, String query, Location center) {
             super(context);
             mQueryText = query;
@@ -314,7 +312,10 @@ public class SearchResultsFragment extends ListFragment
                 }
             }
             Location center = LocationUtils.getDefaultSearchCenter();
-            if (center != null) {
+            // Skip the wider search if the query was replaced, or if it would be the same search
+            if (center != null && !Thread.currentThread().isInterrupted()
+                    && (center.getLatitude() != mCenter.getLatitude()
+                    || center.getLongitude() != mCenter.getLongitude())) {
                 return new ObaRoutesForLocationRequest.Builder(getContext(), center)
                         .setRadius(LocationUtils.DEFAULT_SEARCH_RADIUS)
                         .setQuery(mQueryText)
@@ -334,28 +335,109 @@ public class SearchResultsFragment extends ListFragment
                     .call();
         }
 
+        /**
+         * Runs the route and stop searches in parallel, delivering the results of the first one
+         * to finish before the combined results
+         */
         @Override
-        public SearchResponse loadInBackground() {
-            ArrayList<ObaElement> results = new ArrayList<ObaElement>();
+        public SearchResponse<ObaElement> loadInBackground() {
+            CompletionService<ObaResponse> searches = new ExecutorCompletionService<>(mExecutor);
+            Future<ObaResponse> routesSearch;
+            synchronized (mSearches) {
+                if (isLoadInBackgroundCanceled()) {
+                    return null;
+                }
+                routesSearch = searches.submit(new Callable<ObaResponse>() {
+                    @Override
+                    public ObaResponse call() {
+                        return getRoutes();
+                    }
+                });
+                mSearches.add(routesSearch);
+                mSearches.add(searches.submit(new Callable<ObaResponse>() {
+                    @Override
+                    public ObaResponse call() {
+                        return getStops();
+                    }
+                }));
+            }
 
-            ObaRoutesForLocationResponse routes = getRoutes();
-            ObaStopsForLocationResponse stops = getStops();
+            ObaRoutesForLocationResponse routes = null;
+            ObaStopsForLocationResponse stops = null;
+            try {
+                for (int i = 0; i < 2; i++) {
+                    Future<ObaResponse> search = searches.take();
+                    if (search == routesSearch) {
+                        routes = (ObaRoutesForLocationResponse) search.get();
+                    } else {
+                        stops = (ObaStopsForLocationResponse) search.get();
+                    }
+                    if (i == 0) {
+                        deliverPartialResult(getResponse(routes, stops, false));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (CancellationException e) {
+                // The query was replaced, so the results won't be shown
+                return null;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Search failed: " + e.getCause());
+                return new SearchResponse<ObaElement>(0, new ArrayList<ObaElement>());
+            } finally {
+                synchronized (mSearches) {
+                    mSearches.clear();
+                }
+            }
+            return getResponse(routes, stops, true);
+        }
 
-            int routeCode = routes.getCode();
-            int stopCode = stops.getCode();
+        @Override
+        public void cancelLoadInBackground() {
+            synchronized (mSearches) {
+                for (Future<ObaResponse> search : mSearches) {
+                    search.cancel(true);
+                }
+            }
+        }
+
+        /**
+         * Delivers the results of the first search to finish, if there are any, while the other
+         * search is still running
+         */
+        private void deliverPartialResult(SearchResponse<ObaElement> response) {
+            if (!response.getResults().isEmpty()) {
+                response.deliverPartial(this);
+            }
+        }
+
+        /**
+         * Combines the route and stop search responses, either of which may be null if that
+         * search hasn't finished yet
+         */
+        private static SearchResponse<ObaElement> getResponse(
+                ObaRoutesForLocationResponse routes, ObaStopsForLocationResponse stops,
+                boolean complete) {
+            ArrayList<ObaElement> results = new ArrayList<ObaElement>();
             int code = ObaApi.OBA_OK;
 
             // if neither of them are OK, return one of them.
-            if (routeCode != ObaApi.OBA_OK && stopCode != ObaApi.OBA_OK) {
-                code = routeCode;
+            if (complete && routes.getCode() != ObaApi.OBA_OK
+                    && stops.getCode() != ObaApi.OBA_OK) {
+                code = routes.getCode();
             }
 
             if (code == ObaApi.OBA_OK) {
-                results.addAll(Arrays.asList(routes.getRoutesForLocation()));
-                results.addAll(Arrays.asList(stops.getStops()));
+                if (routes != null && routes.getCode() == ObaApi.OBA_OK) {
+                    results.addAll(Arrays.asList(routes.getRoutesForLocation()));
+                }
+                if (stops != null && stops.getCode() == ObaApi.OBA_OK) {
+                    results.addAll(Arrays.asList(stops.getStops()));
+                }
             }
 
-            return new SearchResponse(code, results);
+            return new SearchResponse<ObaElement>(code, results, complete);
         }
     }
 }
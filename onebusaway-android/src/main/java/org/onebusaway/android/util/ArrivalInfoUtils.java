@@ -25,20 +25,16 @@ import android.content.Context;
 import android.content.res.Resources;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.HashSet;
 
 public class ArrivalInfoUtils {
 
-    final static class InfoComparator implements Comparator<ArrivalInfo> {
-
-        public int compare(ArrivalInfo lhs, ArrivalInfo rhs) {
-            return (int) (lhs.getEta() - rhs.getEta());
-        }
-    }
-
     /**
-     * Converts the ObaArrivalInfo array received from the server to an ArrayList for the adapter
+     * Converts the ObaArrivalInfo array received from the server to an ArrayList for the adapter.
+     * ETAs are computed and sorted before any ArrivalInfo is created, so ArrivalInfo objects are
+     * only built for the arrivals that are shown, and their labels are formatted only when a row
+     * is displayed.
      *
      * @param context
      * @param arrivalInfo
@@ -54,48 +50,59 @@ public class ArrivalInfoUtils {
                                                                      ArrayList<String> filter, long ms,
                                                                      boolean includeArrivalDepartureInStatusLabel) {
         final int len = arrivalInfo.length;
-        ArrayList<ArrivalInfo> result = new ArrayList<ArrivalInfo>(len);
-        if (filter != null && filter.size() > 0) {
-            // Only add routes that haven't been filtered out
-            for (int i = 0; i < len; ++i) {
-                ObaArrivalInfo arrival = arrivalInfo[i];
-                if (filter.contains(arrival.getRouteId())) {
-                    ArrivalInfo info = new ArrivalInfo(context, arrival, ms,
-                            includeArrivalDepartureInStatusLabel);
-                    if (shouldAddEta(info)) {
-                        result.add(info);
-                    }
-                }
+        // Read the preference once for the whole response instead of once per arrival
+        final boolean showNegativeArrivals = shouldShowNegativeArrivals();
+        // Only add routes that haven't been filtered out
+        final HashSet<String> routeIds = filter != null && filter.size() > 0
+                ? new HashSet<>(filter) : null;
+
+        // Each key holds the ETA in the upper 32 bits and the array index in the lower 32 bits,
+        // so sorting the keys sorts by ETA, keeping the server order for equal ETAs
+        long[] keys = new long[len];
+        int count = 0;
+        for (int i = 0; i < len; ++i) {
+            ObaArrivalInfo arrival = arrivalInfo[i];
+            if (routeIds != null && !routeIds.contains(arrival.getRouteId())) {
+                continue;
             }
-        } else {
-            // Add arrivals for all routes
-            for (int i = 0; i < len; ++i) {
-                ArrivalInfo info = new ArrivalInfo(context, arrivalInfo[i], ms,
-                        includeArrivalDepartureInStatusLabel);
-                if (shouldAddEta(info)) {
-                    result.add(info);
-                }
+            long eta = ArrivalInfo.computeEta(arrival, ms);
+            if (shouldAddEta(eta, showNegativeArrivals)) {
+                keys[count++] = (eta << 32) | i;
             }
         }
 
         // Sort by ETA
-        Collections.sort(result, new InfoComparator());
+        Arrays.sort(keys, 0, count);
+
+        ArrayList<ArrivalInfo> result = new ArrayList<ArrivalInfo>(count);
+        for (int i = 0; i < count; ++i) {
+            result.add(new ArrivalInfo(context, arrivalInfo[(int) keys[i]], ms,
+                    includeArrivalDepartureInStatusLabel));
+        }
         return result;
     }
 
+    /**
+     * Returns true if the user preference is set to show negative arrival times (arrivals and
+     * departures that have already happened), and false if it is not
+     */
+    private static boolean shouldShowNegativeArrivals() {
+        return Application.getPrefs()
+                .getBoolean(Application.get().getResources()
+                        .getString(R.string.preference_key_show_negative_arrivals), true);
+    }
+
     /**
      * Returns true if this ETA should be added based on the user preference for adding negative
      * arrival times, and false if it should not
      *
-     * @param info info that includes the ETA to be evaluated
+     * @param eta                  the ETA to be evaluated, in minutes
+     * @param showNegativeArrivals the user preference for showing negative arrival times
      * @return true if this ETA should be added based on the user preference for adding negative
      * arrival times, and false if it should not
      */
-    private static boolean shouldAddEta(ArrivalInfo info) {
-        boolean showNegativeArrivals = Application.getPrefs()
-                .getBoolean(Application.get().getResources()
-                        .getString(R.string.preference_key_show_negative_arrivals), true);
-        if (info.getEta() >= 0) {
+    private static boolean shouldAddEta(long eta, boolean showNegativeArrivals) {
+        if (eta >= 0) {
             // Always add positive ETAs
             return true;
         } else {
@@ -253,4 +260,55 @@ public class ArrivalInfoUtils {
             return res.getString(R.string.stop_info_ontime);
         }
     }
+
+    /**
+     * Shortest period between refreshes of arrival times
+     */
+    public static final long MIN_REFRESH_PERIOD = 30 * 1000;
+
+    /**
+     * Period between refreshes of arrival times when nothing is arriving soon or far in the future
+     */
+    public static final long DEFAULT_REFRESH_PERIOD = 60 * 1000;
+
+    /**
+     * Longest period between refreshes of arrival times
+     */
+    public static final long MAX_REFRESH_PERIOD = 3 * 60 * 1000;
+
+    /**
+     * Returns how long to wait before refreshing arrival times from the server.  Refreshes are
+     * more frequent when a vehicle is arriving within a few minutes or predictions are changing a
+     * lot, and less frequent when the next vehicle is far out or responses haven't changed (as
+     * long as nothing is arriving within a few minutes).
+     *
+     * @param soonestEta          ETA in minutes of the next arrival that hasn't arrived yet, or
+     *                            Long.MAX_VALUE if there aren't any
+     * @param maxPredictionChange largest change in milliseconds of a predicted time between the
+     *                            last two responses
+     * @param unchangedCount      number of consecutive responses that were the same as the
+     *                            response before them
+     * @return the period in milliseconds until the next refresh
+     */
+    public static long getRefreshPeriod(long soonestEta, long maxPredictionChange,
+            int unchangedCount) {
+        long period;
+        boolean arrivingSoon = soonestEta <= 3;
+        if (arrivingSoon) {
+            period = MIN_REFRESH_PERIOD;
+        } else if (soonestEta >= 20) {
+            period = 2 * DEFAULT_REFRESH_PERIOD;
+        } else {
+            period = DEFAULT_REFRESH_PERIOD;
+        }
+        if (maxPredictionChange >= DEFAULT_REFRESH_PERIOD) {
+            // Predictions are volatile
+            period /= 2;
+        } else if (unchangedCount > 0 && !arrivingSoon) {
+            // Back off while responses stay the same, unless a vehicle is about to arrive and
+            // its arrival would be shown late
+            period <<= Math.min(unchangedCount, 2);
+        }
+        return Math.max(MIN_REFRESH_PERIOD, Math.min(MAX_REFRESH_PERIOD, period));
+    }
 }
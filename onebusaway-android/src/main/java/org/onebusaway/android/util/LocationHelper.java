@@ -84,6 +84,11 @@ public class LocationHelper implements com.google.android.gms.location.LocationL
     private static final long FASTEST_INTERVAL =
             MILLISECONDS_PER_SECOND * FASTEST_INTERVAL_IN_SECONDS;
 
+    /**
+     * Minimum time between updates requested from the LocationManager providers
+     */
+    private long mMinTime = 0;
+
     public LocationHelper(Context context) {
         mContext = context;
         mLocationManager = (LocationManager) Application.get().getBaseContext()
@@ -108,6 +113,10 @@ public class LocationHelper implements com.google.android.gms.location.LocationL
         UPDATE_INTERVAL = interval*MILLISECONDS_PER_SECOND;
         mLocationManager = (LocationManager) Application.get().getBaseContext()
                 .getSystemService(Context.LOCATION_SERVICE);
+        mLocationRequest = LocationRequest.create();
+        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        mLocationRequest.setInterval(UPDATE_INTERVAL);
+        mLocationRequest.setFastestInterval(Math.min(FASTEST_INTERVAL, UPDATE_INTERVAL));
         setupGooglePlayServices();
     }
 
@@ -151,6 +160,39 @@ public class LocationHelper implements com.google.android.gms.location.LocationL
         }
     }
 
+    /**
+     * Changes the priority and interval of the location updates for the registered listeners.
+     * The GPS provider is only used for PRIORITY_HIGH_ACCURACY, so lower priorities let the
+     * device rely on network and Wi-Fi locations instead.
+     *
+     * @param priority one of the LocationRequest PRIORITY_* constants
+     * @param interval interval between updates in milliseconds
+     */
+    public synchronized void setUpdateRate(int priority, long interval) {
+        mLocationRequest.setPriority(priority);
+        mLocationRequest.setInterval(interval);
+        mLocationRequest.setFastestInterval(interval);
+        mMinTime = interval;
+
+        if (mListeners.isEmpty()) {
+            return;
+        }
+        try {
+            mLocationManager.removeUpdates(this);
+            registerProviders();
+            if (mGoogleApiClient != null && mGoogleApiClient.isConnected()
+                    && mLocationCallback != null) {
+                // Requesting updates with the same callback replaces the previous request
+                getFusedLocationProviderClient(mContext)
+                        .requestLocationUpdates(mLocationRequest, mLocationCallback, null);
+            }
+        } catch (SecurityException e) {
+            // If the user revoked permissions after the listener was registered, log the warning
+            // and continue
+            Log.w(TAG, "User may have denied location permission - " + e);
+        }
+    }
+
     /**
      * Returns the GoogleApiClient being used for fused provider location updates
      *
@@ -220,13 +262,22 @@ public class LocationHelper implements com.google.android.gms.location.LocationL
     }
 
     private void registerAllProviders() throws SecurityException {
+        registerProviders();
+        setupGooglePlayServices();
+    }
+
+    private void registerProviders() throws SecurityException {
         // Register the network and GPS provider (and anything else available)
+        boolean useGps = mLocationRequest == null
+                || mLocationRequest.getPriority() == LocationRequest.PRIORITY_HIGH_ACCURACY;
         List<String> providers = mLocationManager.getProviders(true);
         for (Iterator<String> i = providers.iterator(); i.hasNext(); ) {
-            mLocationManager.requestLocationUpdates(i.next(), 0, 0, this);
+            String provider = i.next();
+            if (!useGps && LocationManager.GPS_PROVIDER.equals(provider)) {
+                continue;
+            }
+            mLocationManager.requestLocationUpdates(provider, mMinTime, 0, this);
         }
-
-        setupGooglePlayServices();
     }
 
     /**
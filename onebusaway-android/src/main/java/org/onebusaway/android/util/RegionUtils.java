@@ -25,18 +25,20 @@ import org.onebusaway.android.io.elements.ObaRegionElement;
 import org.onebusaway.android.io.request.ObaRegionsRequest;
 import org.onebusaway.android.io.request.ObaRegionsResponse;
 import org.onebusaway.android.provider.ObaContract;
+import org.onebusaway.android.region.RegionIndex;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.location.Location;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.util.Log;
 
 import java.security.MessageDigest;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -60,6 +62,17 @@ public class RegionUtils {
 
     private static final int DISTANCE_LIMITER = 100;  // miles
 
+    // Spatial index over the regions that were last loaded, see updateRegionIndex()
+    private static RegionIndex mRegionIndex;
+
+    // IDs of all of the regions (usable or not) that mRegionIndex was built from, in order
+    private static long[] mRegionIndexIds;
+
+    // The last region passed to isLocationWithinRegion(), and its span
+    private static ObaRegion mSpanRegion;
+
+    private static double[] mSpan;
+
     /**
      * Get the closest region from a list of regions and a given location
      *
@@ -79,39 +92,24 @@ public class RegionUtils {
         if (loc == null) {
             return null;
         }
-        float minDist = Float.MAX_VALUE;
-        ObaRegion closestRegion = null;
-        Float distToRegion;
-
-        NumberFormat fmt = NumberFormat.getInstance();
-        if (fmt instanceof DecimalFormat) {
-            ((DecimalFormat) fmt).setMaximumFractionDigits(1);
-        }
-        double miles;
-
         Log.d(TAG, "Finding region closest to " + loc.getLatitude() + "," + loc.getLongitude());
 
+        // The index can have older instances of the regions, so return the caller's instance
+        long closestId = getRegionIndex(regions)
+                .getClosestRegionId(loc.getLatitude(), loc.getLongitude());
+        ObaRegion closestRegion = null;
         for (ObaRegion region : regions) {
-            if (!isRegionUsable(region)) {
-                Log.d(TAG,
-                        "Excluding '" + region.getName() + "' from 'closest region' consideration");
-                continue;
-            }
-
-            distToRegion = getDistanceAway(region, loc.getLatitude(), loc.getLongitude());
-            if (distToRegion == null) {
-                Log.e(TAG, "Couldn't measure distance to region '" + region.getName() + "'");
-                continue;
-            }
-            miles = distToRegion * METERS_TO_MILES;
-            Log.d(TAG, "Region '" + region.getName() + "' is " + fmt.format(miles) + " miles away");
-            if (distToRegion < minDist) {
+            if (region.getId() == closestId) {
                 closestRegion = region;
-                minDist = distToRegion;
+                break;
             }
         }
+        if (closestRegion == null) {
+            return null;
+        }
 
         if (enforceThreshold) {
+            Float minDist = getDistanceAway(closestRegion, loc.getLatitude(), loc.getLongitude());
             if (minDist * METERS_TO_MILES < DISTANCE_LIMITER) {
                 return closestRegion;
             } else {
@@ -121,6 +119,57 @@ public class RegionUtils {
         return closestRegion;
     }
 
+    /**
+     * Returns the spatial index for the provided regions, which only includes the regions that
+     * are usable (see isRegionUsable()).  The index built when the regions were last loaded is
+     * used, unless it was built from a different set of regions, so lookups don't have to look
+     * at the bounds of each region.
+     *
+     * @param regions list of regions
+     * @return the spatial index for the usable regions in the provided list
+     */
+    public synchronized static RegionIndex getRegionIndex(List<ObaRegion> regions) {
+        if (mRegionIndex == null || !hasSameIds(regions, mRegionIndexIds)) {
+            updateRegionIndex(regions);
+        }
+        return mRegionIndex;
+    }
+
+    /**
+     * Rebuilds the spatial index from the provided regions.  This is called whenever regions are
+     * loaded or saved, so changes to their bounds or usability are picked up.
+     *
+     * @param regions list of regions
+     */
+    public synchronized static void updateRegionIndex(List<ObaRegion> regions) {
+        ArrayList<ObaRegion> usable = new ArrayList<>();
+        long[] ids = new long[regions.size()];
+        for (int i = 0; i < regions.size(); i++) {
+            ObaRegion region = regions.get(i);
+            ids[i] = region.getId();
+            if (isRegionUsable(region)) {
+                usable.add(region);
+            } else {
+                Log.d(TAG, "Excluding '" + region.getName()
+                        + "' from 'closest region' consideration");
+            }
+        }
+        mRegionIndex = new RegionIndex(usable);
+        mRegionIndexIds = ids;
+    }
+
+    private static boolean hasSameIds(List<ObaRegion> regions, long[] ids) {
+        if (regions.size() != ids.length) {
+            return false;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (regions.get(i).getId() != ids[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Get the region name if it is available. If there is a custom url instead of a region from
      * the region api, then hash the custom url and return it.
@@ -275,9 +324,21 @@ public class RegionUtils {
      * @return true if the location is within the region, false if it is not
      */
     public static boolean isLocationWithinRegion(Location location, ObaRegion region) {
-        double[] regionSpan = new double[4];
-        getRegionSpan(region, regionSpan);
-        return isLocationWithinRegion(location, regionSpan);
+        return isLocationWithinRegion(location, getCachedRegionSpan(region));
+    }
+
+    /**
+     * Returns the span of the provided region, which is only computed again if the region is a
+     * different instance than last time (e.g., the current region changed)
+     */
+    private synchronized static double[] getCachedRegionSpan(ObaRegion region) {
+        if (region == null || mSpanRegion != region) {
+            double[] span = new double[4];
+            getRegionSpan(region, span);
+            mSpan = span;
+            mSpanRegion = region;
+        }
+        return mSpan;
     }
 
     /**
@@ -343,12 +404,13 @@ public class RegionUtils {
             results = RegionUtils.getRegionsFromProvider(context);
             if (results != null) {
                 Log.d(TAG, "Retrieved regions from database.");
+                updateRegionIndex(results);
                 return results;
             }
             Log.d(TAG, "Regions list retrieved from database was null.");
         }
 
-        results = RegionUtils.getRegionsFromServer(context);
+        results = RegionUtils.getRegionsFromServer(context, forceReload);
         if (results == null || results.isEmpty()) {
             Log.d(TAG, "Regions list retrieved from server was null or empty.");
 
@@ -357,6 +419,7 @@ public class RegionUtils {
                 results = RegionUtils.getRegionsFromProvider(context);
                 if (results != null) {
                     Log.d(TAG, "Retrieved regions from database.");
+                    updateRegionIndex(results);
                     return results;
                 } else {
                     Log.d(TAG, "Regions list retrieved from database was null.");
@@ -585,8 +648,12 @@ public class RegionUtils {
         }
     }
 
-    private synchronized static ArrayList<ObaRegion> getRegionsFromServer(Context context) {
-        ObaRegionsResponse response = ObaRegionsRequest.newRequest(context).call();
+    private synchronized static ArrayList<ObaRegion> getRegionsFromServer(Context context,
+            boolean forceReload) {
+        ObaRegionsRequest request = ObaRegionsRequest.newRequest(context);
+        // An explicit refresh shouldn't be answered from the response cache
+        request.setForceRefresh(forceReload);
+        ObaRegionsResponse response = request.call();
         return new ArrayList<ObaRegion>(Arrays.asList(response.getRegions()));
     }
 
@@ -666,13 +733,33 @@ public class RegionUtils {
     // Saving
     //
     public synchronized static void saveToProvider(Context context, List<ObaRegion> regions) {
-        // Delete all the existing regions
+        // Replace all the existing regions in a single transaction
         ContentResolver cr = context.getContentResolver();
-        cr.delete(ObaContract.Regions.CONTENT_URI, null, null);
+        try {
+            cr.applyBatch(ObaContract.AUTHORITY, getSaveOperations(regions));
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(TAG, "Couldn't save regions to provider: " + e);
+        }
+        updateRegionIndex(regions);
+    }
+
+    /**
+     * Returns the operations that replace all regions in the provider with the provided regions,
+     * along with their bounds and Open311 servers
+     *
+     * @param regions regions to save to the provider
+     * @return the operations that replace all regions in the provider with the provided regions
+     */
+    public static ArrayList<ContentProviderOperation> getSaveOperations(
+            List<ObaRegion> regions) {
+        ArrayList<ContentProviderOperation> ops = new ArrayList<>();
+        // Delete all the existing regions
+        ops.add(ContentProviderOperation.newDelete(ObaContract.Regions.CONTENT_URI).build());
         // Should be a no-op?
-        cr.delete(ObaContract.RegionBounds.CONTENT_URI, null, null);
+        ops.add(ContentProviderOperation.newDelete(ObaContract.RegionBounds.CONTENT_URI).build());
         // Delete all existing open311 endpoints
-        cr.delete(ObaContract.RegionOpen311Servers.CONTENT_URI, null, null);
+        ops.add(ContentProviderOperation.newDelete(ObaContract.RegionOpen311Servers.CONTENT_URI)
+                .build());
 
         for (ObaRegion region : regions) {
             if (!isRegionUsable(region)) {
@@ -680,29 +767,31 @@ public class RegionUtils {
                 continue;
             }
 
-            cr.insert(ObaContract.Regions.CONTENT_URI, toContentValues(region));
-            Log.d(TAG, "Saved region '" + region.getName() + "' to provider");
+            ops.add(ContentProviderOperation.newInsert(ObaContract.Regions.CONTENT_URI)
+                    .withValues(toContentValues(region))
+                    .build());
             long regionId = region.getId();
-            // Bulk insert the bounds
             ObaRegion.Bounds[] bounds = region.getBounds();
             if (bounds != null) {
-                ContentValues[] values = new ContentValues[bounds.length];
-                for (int i = 0; i < bounds.length; ++i) {
-                    values[i] = toContentValues(regionId, bounds[i]);
+                for (ObaRegion.Bounds bound : bounds) {
+                    ops.add(ContentProviderOperation
+                            .newInsert(ObaContract.RegionBounds.CONTENT_URI)
+                            .withValues(toContentValues(regionId, bound))
+                            .build());
                 }
-                cr.bulkInsert(ObaContract.RegionBounds.CONTENT_URI, values);
             }
 
             ObaRegion.Open311Server[] open311Servers = region.getOpen311Servers();
-
             if (open311Servers != null) {
-                ContentValues[] values = new ContentValues[open311Servers.length];
-                for (int i = 0; i < open311Servers.length; ++i) {
-                    values[i] = toContentValues(regionId, open311Servers[i]);
+                for (ObaRegion.Open311Server server : open311Servers) {
+                    ops.add(ContentProviderOperation
+                            .newInsert(ObaContract.RegionOpen311Servers.CONTENT_URI)
+                            .withValues(toContentValues(regionId, server))
+                            .build());
                 }
-                cr.bulkInsert(ObaContract.RegionOpen311Servers.CONTENT_URI, values);
             }
         }
+        return ops;
     }
 
     private static ContentValues toContentValues(ObaRegion region) {